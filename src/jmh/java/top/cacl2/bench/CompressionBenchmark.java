@@ -0,0 +1,62 @@
+package top.cacl2.bench;
+
+import org.openjdk.jmh.annotations.*;
+import top.cacl2.backup.CompressionUtil;
+import top.cacl2.backup.DurableOutputStream;
+import top.cacl2.config.Durability;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2G"})
+// The default grid runs in about ten minutes; widen it with -PjmhParams, e.g. "threads=1,2,4,8 level=1,6,9".
+public class CompressionBenchmark {
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"1", "6"})
+    public int level;
+
+    @Param({"MIXED"})
+    public SyntheticFixture.Distribution distribution;
+
+    @Param({"64"})
+    public int worldSizeMB;
+
+    @Param({"true", "false"})
+    public boolean offHeap;
+
+    private Path world;
+    private Path output;
+    private long worldBytes;
+    private CompressionUtil compressionUtil;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        world = SyntheticFixture.world(distribution, worldSizeMB);
+        worldBytes = CompressionUtil.totalSize(CompressionUtil.listFiles(world));
+        output = Files.createTempFile(SyntheticFixture.baseDir(), "compress", ".zip");
+        compressionUtil = new CompressionUtil(level, threads);
+        compressionUtil.setMemoryBudget(64L * 1024 * 1024, 8L * 1024 * 1024, offHeap);
+        compressionUtil.setWriteSettings(new DurableOutputStream.Settings(Durability.NONE, 1024 * 1024, 0, false, offHeap));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        compressionUtil.shutdown();
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public long compressDirectory(ByteCounters counters) throws Exception {
+        CompressionUtil.CompressionResult result = compressionUtil.compressDirectory(world, output);
+        counters.bytes += worldBytes;
+        return result.getCompressedSize();
+    }
+}
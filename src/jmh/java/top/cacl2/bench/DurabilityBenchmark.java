@@ -0,0 +1,74 @@
+package top.cacl2.bench;
+
+import org.openjdk.jmh.annotations.*;
+import top.cacl2.backup.CompressionUtil;
+import top.cacl2.backup.DurableOutputStream;
+import top.cacl2.config.Durability;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2G"})
+public class DurabilityBenchmark {
+    private static final int DEFLATER_CHUNK = 512;
+
+    @Param({"NONE", "FSYNC", "PERIODIC", "FSYNC_DIR"})
+    public Durability durability;
+
+    @Param({"8", "64", "1024"})
+    public int bufferKB;
+
+    @Param({"256"})
+    public int sizeMB;
+
+    private final byte[] chunk = new byte[DEFLATER_CHUNK];
+    private Path world;
+    private Path output;
+    private long worldBytes;
+    private DurableOutputStream.Settings settings;
+    private CompressionUtil compressionUtil;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        new Random(42).nextBytes(chunk);
+        world = SyntheticFixture.world(SyntheticFixture.Distribution.MIXED, sizeMB);
+        worldBytes = CompressionUtil.totalSize(CompressionUtil.listFiles(world));
+        output = SyntheticFixture.baseDir().resolve("durability.zip");
+        settings = new DurableOutputStream.Settings(durability, bufferKB * 1024, 64L * 1024 * 1024, false);
+        compressionUtil = new CompressionUtil(1, Runtime.getRuntime().availableProcessors());
+        compressionUtil.setWriteSettings(settings);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        compressionUtil.shutdown();
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public long writeArchive(ByteCounters counters) throws Exception {
+        long total = (long) sizeMB * 1024 * 1024;
+        try (DurableOutputStream out = new DurableOutputStream(output, settings, null)) {
+            for (long written = 0; written < total; written += chunk.length) {
+                out.write(chunk, 0, chunk.length);
+            }
+            out.publish();
+        }
+        counters.bytes += total;
+        return total;
+    }
+
+    @Benchmark
+    public long compressDirectory(ByteCounters counters) throws Exception {
+        CompressionUtil.CompressionResult result = compressionUtil.compressDirectory(world, output);
+        counters.bytes += worldBytes;
+        return result.getCompressedSize();
+    }
+}
@@ -0,0 +1,58 @@
+package top.cacl2.bench;
+
+import org.openjdk.jmh.annotations.*;
+import top.cacl2.backup.CompressionUtil;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2G"})
+public class ExtractionBenchmark {
+    @Param({"1", "6"})
+    public int level;
+
+    @Param({"MIXED"})
+    public SyntheticFixture.Distribution distribution;
+
+    @Param({"64"})
+    public int worldSizeMB;
+
+    private Path archive;
+    private Path target;
+    private long worldBytes;
+    private CompressionUtil compressionUtil;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Path world = SyntheticFixture.world(distribution, worldSizeMB);
+        worldBytes = CompressionUtil.totalSize(CompressionUtil.listFiles(world));
+        archive = Files.createTempFile(SyntheticFixture.baseDir(), "extract", ".zip");
+        target = Files.createTempDirectory(SyntheticFixture.baseDir(), "extract");
+        compressionUtil = new CompressionUtil(level, Runtime.getRuntime().availableProcessors());
+        compressionUtil.compressDirectory(world, archive);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTarget() throws Exception {
+        SyntheticFixture.deleteRecursively(target);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        compressionUtil.shutdown();
+        SyntheticFixture.deleteRecursively(target);
+        Files.deleteIfExists(archive);
+    }
+
+    @Benchmark
+    public void decompressArchive(ByteCounters counters) throws Exception {
+        compressionUtil.decompressArchive(archive, target);
+        counters.bytes += worldBytes;
+    }
+}
@@ -0,0 +1,78 @@
+package top.cacl2.bench;
+
+import org.openjdk.jmh.annotations.*;
+import top.cacl2.backup.BackupManager;
+import top.cacl2.backup.CompressionUtil;
+import top.cacl2.backup.RestoreManager;
+import top.cacl2.config.BackupConfig;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2G"})
+public class RestoreBenchmark {
+    @Param({"6"})
+    public int level;
+
+    @Param({"MIXED", "SMALL", "REGION"})
+    public SyntheticFixture.Distribution distribution;
+
+    @Param({"64", "256"})
+    public int worldSizeMB;
+
+    private Path gameDir;
+    private long worldBytes;
+    private BackupConfig config;
+    private BackupManager backupManager;
+    private RestoreManager restoreManager;
+    private String backupName;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        gameDir = Files.createTempDirectory(SyntheticFixture.baseDir(), "restore");
+        Path world = SyntheticFixture.world(distribution, worldSizeMB);
+        Path worldCopy = gameDir.resolve("world");
+        for (Path file : CompressionUtil.listFiles(world)) {
+            Path target = worldCopy.resolve(world.relativize(file).toString());
+            Files.createDirectories(target.getParent());
+            Files.copy(file, target);
+        }
+        worldBytes = CompressionUtil.totalSize(CompressionUtil.listFiles(worldCopy));
+
+        config = new BackupConfig();
+        config.setCompressionLevel(level);
+        config.setSpaceCheckEnabled(false);
+        config.setJmxEnabled(false);
+        config.setAutoRestartAfterRestore(false);
+        backupManager = new BackupManager(gameDir, config);
+        restoreManager = new RestoreManager(backupManager, gameDir);
+
+        BackupManager.BackupResult result = backupManager.createBackupSync("bench");
+        if (!result.isSuccess()) {
+            throw new IllegalStateException(result.getMessage());
+        }
+        backupName = result.getBackupFile().getFileName().toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        backupManager.shutdown();
+        SyntheticFixture.deleteRecursively(gameDir);
+    }
+
+    @Benchmark
+    public boolean restoreBackup(ByteCounters counters) {
+        RestoreManager.RestoreResult result = restoreManager.restoreBackup(null, config, backupName).join();
+        if (!result.isSuccess()) {
+            throw new IllegalStateException(result.getMessage());
+        }
+        counters.bytes += worldBytes;
+        return result.isSuccess();
+    }
+}
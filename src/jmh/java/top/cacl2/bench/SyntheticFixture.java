@@ -0,0 +1,114 @@
+package top.cacl2.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+
+public final class SyntheticFixture {
+    private static final int BLOCK_SIZE = 4096;
+    private static final long SEED = 0xCAC12L;
+
+    private SyntheticFixture() {
+    }
+
+    public enum Distribution {
+        SMALL,
+        REGION,
+        MIXED
+    }
+
+    public static Path baseDir() throws IOException {
+        Path dir = Paths.get(System.getProperty("cacl2backup.fixtureDir",
+            Paths.get(System.getProperty("java.io.tmpdir"), "cacl2backup-jmh").toString()));
+        Files.createDirectories(dir);
+        return dir;
+    }
+
+    public static Path world(Distribution distribution, int sizeMB) throws IOException {
+        Path dir = baseDir().resolve(distribution.name().toLowerCase() + "-" + sizeMB + "mb");
+        Path marker = dir.resolve(".complete");
+        if (Files.exists(marker)) {
+            return dir;
+        }
+        deleteRecursively(dir);
+        generate(dir, distribution, (long) sizeMB * 1024 * 1024);
+        Files.createFile(marker);
+        return dir;
+    }
+
+    private static void generate(Path dir, Distribution distribution, long totalBytes) throws IOException {
+        Random random = new Random(SEED);
+        long written = 0;
+        int index = 0;
+        while (written < totalBytes) {
+            boolean small = switch (distribution) {
+                case SMALL -> true;
+                case REGION -> false;
+                case MIXED -> written < totalBytes * 3 / 10;
+            };
+            Path file;
+            int size;
+            if (small) {
+                size = 2048 + random.nextInt(62 * 1024);
+                file = dir.resolve("playerdata").resolve(String.format("%08d.dat", index));
+            } else {
+                size = (1 + random.nextInt(10)) * 1024 * 1024;
+                file = dir.resolve("region").resolve(String.format("r.%d.%d.mca", index % 32, index / 32));
+            }
+            size = (int) Math.min(size, totalBytes - written);
+            writeFile(file, size, random);
+            written += size;
+            index++;
+        }
+    }
+
+    private static void writeFile(Path file, int size, Random random) throws IOException {
+        Files.createDirectories(file.getParent());
+        byte[] block = new byte[BLOCK_SIZE];
+        try (OutputStream out = Files.newOutputStream(file)) {
+            int remaining = size;
+            while (remaining > 0) {
+                fillBlock(block, random);
+                int len = Math.min(remaining, block.length);
+                out.write(block, 0, len);
+                remaining -= len;
+            }
+        }
+    }
+
+    private static void fillBlock(byte[] block, Random random) {
+        int noisy = block.length / 2;
+        for (int i = 0; i < noisy; i++) {
+            block[i] = (byte) random.nextInt(256);
+        }
+        byte pattern = (byte) random.nextInt(16);
+        for (int i = noisy; i < block.length; i++) {
+            block[i] = (byte) (pattern + (i & 7));
+        }
+    }
+
+    public static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -3,15 +3,24 @@ package top.cacl2;
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import top.cacl2.backup.*;
 import top.cacl2.command.BackupCommand;
 import top.cacl2.config.BackupConfig;
+import top.cacl2.metrics.WorldSaveEvent;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
 
 public class CaCl2Backup implements ModInitializer {
     public static final String MOD_ID = "cacl2backup";
@@ -21,6 +30,7 @@ public class CaCl2Backup implements ModInitializer {
     private static BackupManager backupManager;
     private static RestoreManager restoreManager;
     private static BackupScheduler scheduler;
+    private static ProgressReporter progressReporter;
     private static MinecraftServer server;
 
     @Override
@@ -29,16 +39,14 @@ public class CaCl2Backup implements ModInitializer {
 
         config = BackupConfig.load();
         Path gameDir = FabricLoader.getInstance().getGameDir();
+        exportJfrSettings();
 
-        backupManager = new BackupManager(
-            gameDir,
-            config.getBackupFolderName(),
-            config.getCompressionLevel(),
-            config.getCompressionThreads()
-        );
+        backupManager = new BackupManager(gameDir, config);
 
         restoreManager = new RestoreManager(backupManager, gameDir);
 
+        progressReporter = new ProgressReporter(backupManager.getJobQueue(), config);
+
         scheduler = new BackupScheduler(backupManager, config, new BackupScheduler.BackupListener() {
             @Override
             public boolean onBackupStart(String label) {
@@ -47,6 +55,8 @@ public class CaCl2Backup implements ModInitializer {
                         LOGGER.info("Saving world before backup...");
                         final boolean[] success = {false};
                         server.executeBlocking(() -> {
+                            WorldSaveEvent event = new WorldSaveEvent();
+                            event.begin();
                             try {
                                 server.saveEverything(true, true, true);
                                 server.getPlayerList().saveAll();
@@ -54,6 +64,10 @@ public class CaCl2Backup implements ModInitializer {
                                 success[0] = true;
                             } catch (Exception e) {
                                 LOGGER.error("Failed to save before backup", e);
+                            } finally {
+                                event.trigger = label;
+                                event.success = success[0];
+                                event.commit();
                             }
                         });
                         if (!success[0]) {
@@ -90,6 +104,7 @@ public class CaCl2Backup implements ModInitializer {
 
         ServerLifecycleEvents.SERVER_STARTING.register(server -> {
             CaCl2Backup.server = server;
+            backupManager.resumeShutdownSnapshot();
             
             if (restoreManager.hasPendingRestore()) {
                 LOGGER.info("Pending restore detected! Executing restore before server starts...");
@@ -99,7 +114,24 @@ public class CaCl2Backup implements ModInitializer {
             LOGGER.info("Server starting, backup system ready");
         });
 
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            if (server.getTickCount() % 20 == 0) {
+                backupManager.getActivityTracker().samplePlayers(server.getPlayerList().getPlayerCount());
+                progressReporter.tick(server);
+            }
+            if (config.isPlayerJournalEnabled()
+                    && server.getTickCount() % (config.getPlayerJournalIntervalSeconds() * 20) == 0) {
+                journalPlayers(server);
+            }
+            PlayerJournal journal = backupManager.getPlayerJournal();
+            if (journal.hasPendingRestores()) {
+                journal.applyPendingRestores(backupManager.getWorldDir(),
+                    uuid -> server.getPlayerList().getPlayer(uuid) != null);
+            }
+        });
+
         ServerLifecycleEvents.SERVER_STARTED.register(server -> {
+            backupManager.setWorldLayout(WorldLayout.discover(server));
             scheduler.start();
             LOGGER.info("Backup scheduler started (interval: {} minutes, auto: {})", 
                 config.getBackupIntervalMinutes(), 
@@ -110,6 +142,24 @@ public class CaCl2Backup implements ModInitializer {
             LOGGER.info("Server stopping, shutting down backup system...");
             
             scheduler.stop();
+            progressReporter.hideBossBar();
+            if (config.isShutdownBackupEnabled()) {
+                if (backupManager.isBackingUp() && backupManager.getJobQueue().cancelCurrent()) {
+                    LOGGER.info("Cancelled the running backup, the shutdown backup replaces it");
+                }
+                return;
+            }
+            backupManager.shutdown();
+            scheduler.shutdown();
+            LOGGER.info("Backup system shutdown complete");
+        });
+
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            if (!config.isShutdownBackupEnabled()) {
+                return;
+            }
+            LOGGER.info("World saved, taking shutdown backup (at most {}s)...", config.getShutdownBackupMaxSeconds());
+            backupManager.backupOnShutdown();
             backupManager.shutdown();
             scheduler.shutdown();
             LOGGER.info("Backup system shutdown complete");
@@ -121,6 +171,34 @@ public class CaCl2Backup implements ModInitializer {
             config.isAutoBackupEnabled(), config.getBackupIntervalMinutes());
     }
 
+    private static void journalPlayers(MinecraftServer server) {
+        try {
+            server.getPlayerList().saveAll();
+            Map<UUID, String> names = new HashMap<>();
+            for (ServerPlayer player : server.getPlayerList().getPlayers()) {
+                names.put(player.getGameProfile().id(), player.getGameProfile().name());
+            }
+            backupManager.getPlayerJournal().capture(backupManager.getWorldDir(), names);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to journal player data", e);
+        }
+    }
+
+    private static void exportJfrSettings() {
+        Path target = FabricLoader.getInstance().getConfigDir().resolve("cacl2backup.jfc");
+        if (Files.exists(target)) {
+            return;
+        }
+        try (InputStream in = CaCl2Backup.class.getResourceAsStream("/cacl2backup.jfc")) {
+            if (in != null) {
+                Files.createDirectories(target.getParent());
+                Files.copy(in, target);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to export JFR settings to {}", target, e);
+        }
+    }
+
     public static BackupConfig getConfig() {
         return config;
     }
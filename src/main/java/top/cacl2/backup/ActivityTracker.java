@@ -0,0 +1,127 @@
+package top.cacl2.backup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+public class ActivityTracker {
+    private static final Logger LOGGER = LoggerFactory.getLogger("cacl2backup");
+    private static final long SCAN_CACHE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private volatile Path worldDir;
+    private volatile int onlinePlayers = 0;
+    private volatile int peakPlayers = 0;
+    private volatile long playerSeconds = 0;
+    private volatile long lastSampleTime = 0;
+    private volatile long lastBackupTime;
+    private WorldChanges cachedChanges;
+
+    public ActivityTracker(Path worldDir, long lastBackupTime) {
+        this.worldDir = worldDir;
+        this.lastBackupTime = lastBackupTime;
+    }
+
+    public synchronized void setWorldDir(Path worldDir) {
+        this.worldDir = worldDir;
+        cachedChanges = null;
+    }
+
+    public synchronized void samplePlayers(int count) {
+        long now = System.currentTimeMillis();
+        if (lastSampleTime > 0 && onlinePlayers > 0) {
+            playerSeconds += onlinePlayers * Math.max(0, now - lastSampleTime) / 1000;
+        }
+        lastSampleTime = now;
+        onlinePlayers = count;
+        peakPlayers = Math.max(peakPlayers, count);
+    }
+
+    public synchronized void markBackupTaken(long startTime) {
+        lastBackupTime = startTime;
+        peakPlayers = onlinePlayers;
+        playerSeconds = 0;
+        cachedChanges = null;
+    }
+
+    public synchronized WorldChanges getWorldChanges(boolean forceRescan) {
+        long now = System.currentTimeMillis();
+        if (!forceRescan && cachedChanges != null && now - cachedChanges.getScanTime() < SCAN_CACHE_MILLIS) {
+            return cachedChanges;
+        }
+        cachedChanges = scanWorldChanges(lastBackupTime);
+        return cachedChanges;
+    }
+
+    public synchronized WorldChanges getCachedWorldChanges() {
+        return cachedChanges;
+    }
+
+    private WorldChanges scanWorldChanges(long since) {
+        long[] totals = new long[3];
+        if (Files.exists(worldDir)) {
+            try {
+                Files.walkFileTree(worldDir, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (attrs.isRegularFile() && attrs.lastModifiedTime().toMillis() >= since) {
+                            totals[0]++;
+                            if (!RegionFiles.isRegionFile(file)) {
+                                totals[1] += attrs.size();
+                                return FileVisitResult.CONTINUE;
+                            }
+                            // Region files are touched by every chunk save, so only the rewritten chunks count.
+                            try {
+                                RegionFiles.SavedChunks saved = RegionFiles.savedSince(file, since);
+                                totals[1] += saved.getBytes();
+                                totals[2] += saved.getChunks();
+                            } catch (IOException e) {
+                                totals[1] += attrs.size();
+                                LOGGER.debug("Failed to read region header {}", file, e);
+                            }
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                LOGGER.warn("Failed to scan world for changes", e);
+            }
+        }
+        return new WorldChanges(System.currentTimeMillis(), totals[0], totals[1], totals[2]);
+    }
+
+    public int getOnlinePlayers() { return onlinePlayers; }
+    public int getPeakPlayers() { return peakPlayers; }
+    public long getPlayerSeconds() { return playerSeconds; }
+    public long getLastBackupTime() { return lastBackupTime; }
+
+    public static class WorldChanges {
+        private final long scanTime;
+        private final long changedFiles;
+        private final long changedBytes;
+        private final long chunksSaved;
+
+        public WorldChanges(long scanTime, long changedFiles, long changedBytes, long chunksSaved) {
+            this.scanTime = scanTime;
+            this.changedFiles = changedFiles;
+            this.changedBytes = changedBytes;
+            this.chunksSaved = chunksSaved;
+        }
+
+        public long getScanTime() { return scanTime; }
+        public long getChangedFiles() { return changedFiles; }
+        public long getChangedBytes() { return changedBytes; }
+        public long getChunksSaved() { return chunksSaved; }
+    }
+}
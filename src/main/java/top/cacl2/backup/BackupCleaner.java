@@ -1,5 +1,11 @@
 package top.cacl2.backup;
 
+import top.cacl2.config.BackupProfile;
+import top.cacl2.config.RetentionTier;
+import top.cacl2.metrics.BackupDeleteEvent;
+import top.cacl2.metrics.Phase;
+import top.cacl2.metrics.RunMetrics;
+
 import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
@@ -12,98 +18,223 @@ public class BackupCleaner {
     private final Path backupDir;
     private final int maxBackups;
     private final int maxAgeDays;
+    private final List<RetentionTier> tiers;
+    private final RunMetrics metrics;
+    private final List<String> deletedNames = new ArrayList<>();
 
     public BackupCleaner(Path backupDir, int maxBackups, int maxAgeDays) {
+        this(backupDir, maxBackups, maxAgeDays, Collections.emptyList(), null);
+    }
+
+    public BackupCleaner(Path backupDir, int maxBackups, int maxAgeDays, List<RetentionTier> tiers, RunMetrics metrics) {
         this.backupDir = backupDir;
         this.maxBackups = maxBackups;
         this.maxAgeDays = maxAgeDays;
+        this.tiers = tiers;
+        this.metrics = metrics != null ? metrics : new RunMetrics();
     }
 
     public int cleanup() {
+        return cleanup(Set.of());
+    }
+
+    // Protected names are kept regardless of retention, e.g. the base an incremental backup is about to reference.
+    public int cleanup(Set<String> protectedNames) {
         if (!Files.exists(backupDir)) {
             return 0;
         }
 
         List<BackupInfo> backups;
         try {
-            backups = Files.list(backupDir)
-                .filter(p -> p.toString().endsWith(".zip"))
+            backups = listBackups();
+        } catch (IOException e) {
+            return 0;
+        }
+
+        int deletedCount = 0;
+        try (RunMetrics.Span span = metrics.start(Phase.DELETE)) {
+            for (BackupInfo backup : selectForDeletion(backups, protectedNames)) {
+                BackupDeleteEvent event = new BackupDeleteEvent();
+                event.begin();
+                try {
+                    long freed = delete(backup);
+                    BackupManifest.deleteSidecar(backup.getFile());
+                    commitDeleteEvent(event, backup, "retention");
+                    deletedNames.add(backup.getFile().getFileName().toString());
+                    metrics.addBytes(Math.max(0, freed));
+                    metrics.addFiles(1);
+                    deletedCount++;
+                } catch (IOException e) {
+                    // Ignore deletion failures
+                }
+            }
+        }
+
+        return deletedCount;
+    }
+
+    public long freeSpace(long bytesNeeded, int minKeep, Set<String> protectedNames) {
+        if (bytesNeeded <= 0 || !Files.exists(backupDir)) {
+            return 0;
+        }
+
+        List<BackupInfo> backups;
+        try {
+            backups = listBackups();
+        } catch (IOException e) {
+            return 0;
+        }
+        Collections.reverse(backups);
+
+        long freed = 0;
+        Map<String, Integer> remaining = new HashMap<>();
+        for (BackupInfo backup : backups) {
+            remaining.merge(backup.getGroup(), 1, Integer::sum);
+        }
+        try (RunMetrics.Span span = metrics.start(Phase.DELETE)) {
+            for (BackupInfo backup : backups) {
+                if (freed >= bytesNeeded) {
+                    break;
+                }
+                if (remaining.get(backup.getGroup()) <= minKeep || isBaseOfAny(backup, backups)
+                        || protectedNames.contains(backup.getFile().getFileName().toString())) {
+                    continue;
+                }
+                BackupDeleteEvent event = new BackupDeleteEvent();
+                event.begin();
+                try {
+                    long released = delete(backup);
+                    if (released >= 0) {
+                        BackupManifest.deleteSidecar(backup.getFile());
+                        commitDeleteEvent(event, backup, "space");
+                        metrics.addBytes(released);
+                        metrics.addFiles(1);
+                        freed += released;
+                        remaining.merge(backup.getGroup(), -1, Integer::sum);
+                    }
+                } catch (IOException e) {
+                    // Ignore deletion failures
+                }
+            }
+        }
+
+        return freed;
+    }
+
+    // Tree files still linked from newer trees stay on disk, so only the bytes actually released are counted.
+    private static long delete(BackupInfo backup) throws IOException {
+        if (LinkTree.isTree(backup.getFile())) {
+            return LinkTree.delete(backup.getFile(), LinkTree.DELETE_THREADS);
+        }
+        return BackupVolumes.delete(backup.getFile()) ? backup.getSize() : -1;
+    }
+
+    private static void commitDeleteEvent(BackupDeleteEvent event, BackupInfo backup, String reason) {
+        if (event.shouldCommit()) {
+            event.backup = backup.getFile().getFileName().toString();
+            event.bytes = backup.getSize();
+            event.reason = reason;
+            event.commit();
+        }
+    }
+
+    private boolean isBaseOfAny(BackupInfo candidate, List<BackupInfo> backups) {
+        String name = candidate.getFile().getFileName().toString();
+        for (BackupInfo backup : backups) {
+            if (name.equals(backup.getBase()) && Files.exists(backup.getFile())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<BackupInfo> listBackups() throws IOException {
+        try (RunMetrics.Span span = metrics.start(Phase.WALK);
+             var stream = Files.list(backupDir)) {
+            return stream
+                .filter(p -> p.toString().endsWith(".zip") || LinkTree.isTree(p))
                 .map(this::toBackupInfo)
                 .filter(Objects::nonNull)
                 .sorted(Comparator.comparing(BackupInfo::getCreationTime).reversed())
                 .collect(Collectors.toList());
-        } catch (IOException e) {
-            return 0;
         }
+    }
 
-        int deletedCount = 0;
-        LocalDateTime cutoffDate = LocalDateTime.now().minusDays(maxAgeDays);
-        
-        Set<Path> toDelete = new HashSet<>();
-        
-        int index = 0;
+    private List<BackupInfo> selectForDeletion(List<BackupInfo> backups, Set<String> protectedNames) {
+        // Each world unit keeps its own history, otherwise one busy dimension would push out the others.
+        Map<String, List<BackupInfo>> byGroup = new LinkedHashMap<>();
         for (BackupInfo backup : backups) {
-            index++;
-            if (backup.getCreationTime().isBefore(cutoffDate)) {
-                toDelete.add(backup.getFile());
-            } else if (index > maxBackups) {
-                toDelete.add(backup.getFile());
+            byGroup.computeIfAbsent(backup.getGroup(), k -> new ArrayList<>()).add(backup);
+        }
+
+        List<BackupInfo> toDelete = new ArrayList<>();
+        for (List<BackupInfo> group : byGroup.values()) {
+            RetentionTier tier = resolveTier(group.get(0).getTier());
+            LocalDateTime cutoffDate = LocalDateTime.now().minusDays(tier.getMaxAgeDays());
+
+            int index = 0;
+            for (BackupInfo backup : group) {
+                index++;
+                if (backup.getCreationTime().isBefore(cutoffDate) || index > tier.getMaxBackups()) {
+                    toDelete.add(backup);
+                }
             }
         }
 
-        for (Path file : toDelete) {
-            try {
-                Files.deleteIfExists(file);
-                deletedCount++;
-            } catch (IOException e) {
-                // Ignore deletion failures
+        Set<String> neededBases = new HashSet<>();
+        for (BackupInfo backup : backups) {
+            if (backup.getBase() != null && !toDelete.contains(backup)) {
+                neededBases.add(backup.getBase());
             }
         }
+        neededBases.addAll(protectedNames);
+        toDelete.removeIf(backup -> neededBases.contains(backup.getFile().getFileName().toString()));
+        return toDelete;
+    }
 
-        return deletedCount;
+    private RetentionTier resolveTier(String name) {
+        for (RetentionTier tier : tiers) {
+            if (tier.getName() != null && tier.getName().equals(name)) {
+                return tier;
+            }
+        }
+        return new RetentionTier(BackupProfile.DEFAULT_TIER, maxBackups, maxAgeDays);
     }
 
     private BackupInfo toBackupInfo(Path file) {
         try {
             BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
             FileTime creationTime = attrs.creationTime();
-            long size = attrs.size();
-            
+            BackupManifest header = BackupManifest.readHeader(file);
+            long size = header != null && header.isTree() ? header.getStoredBytes() : BackupVolumes.totalSize(file);
+            String tier = header != null && header.getTier() != null ? header.getTier() : BackupProfile.DEFAULT_TIER;
+            String base = header != null ? header.getBase() : null;
+            String unit = header != null ? header.getUnit() : null;
+
             return new BackupInfo(
                 file,
                 LocalDateTime.ofInstant(creationTime.toInstant(), ZoneId.systemDefault()),
-                size
+                size,
+                tier,
+                base,
+                unit
             );
         } catch (IOException e) {
             return null;
         }
     }
 
+    public List<String> getDeletedNames() {
+        return deletedNames;
+    }
+
     public List<BackupInfo> getBackupsToDelete() {
         if (!Files.exists(backupDir)) {
             return Collections.emptyList();
         }
 
         try {
-            List<BackupInfo> backups = Files.list(backupDir)
-                .filter(p -> p.toString().endsWith(".zip"))
-                .map(this::toBackupInfo)
-                .filter(Objects::nonNull)
-                .sorted(Comparator.comparing(BackupInfo::getCreationTime).reversed())
-                .collect(Collectors.toList());
-
-            List<BackupInfo> toDelete = new ArrayList<>();
-            LocalDateTime cutoffDate = LocalDateTime.now().minusDays(maxAgeDays);
-            
-            int index = 0;
-            for (BackupInfo backup : backups) {
-                index++;
-                if (backup.getCreationTime().isBefore(cutoffDate) || index > maxBackups) {
-                    toDelete.add(backup);
-                }
-            }
-            
-            return toDelete;
+            return selectForDeletion(listBackups(), Set.of());
         } catch (IOException e) {
             return Collections.emptyList();
         }
@@ -113,15 +244,29 @@ public class BackupCleaner {
         private final Path file;
         private final LocalDateTime creationTime;
         private final long size;
+        private final String tier;
+        private final String base;
+        private final String unit;
 
         public BackupInfo(Path file, LocalDateTime creationTime, long size) {
+            this(file, creationTime, size, BackupProfile.DEFAULT_TIER, null, null);
+        }
+
+        public BackupInfo(Path file, LocalDateTime creationTime, long size, String tier, String base, String unit) {
             this.file = file;
             this.creationTime = creationTime;
             this.size = size;
+            this.tier = tier;
+            this.base = base;
+            this.unit = unit;
         }
 
         public Path getFile() { return file; }
         public LocalDateTime getCreationTime() { return creationTime; }
         public long getSize() { return size; }
+        public String getTier() { return tier; }
+        public String getBase() { return base; }
+        public String getUnit() { return unit; }
+        public String getGroup() { return (unit != null ? unit : "") + "/" + tier; }
     }
 }
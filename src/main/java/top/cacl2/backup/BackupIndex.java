@@ -0,0 +1,318 @@
+package top.cacl2.backup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+public class BackupIndex {
+    private static final int CACHE_SIZE = 8;
+    private static final Map<Path, BackupIndex> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, BackupIndex> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final Path backupFile;
+    private final long stamp;
+    private final BackupManifest manifest;
+    private final TreeMap<String, BackupManifest.Entry> entries = new TreeMap<>();
+    private final Map<String, Long> compressed = new HashMap<>();
+
+    private BackupIndex(Path backupFile, long stamp, BackupManifest manifest) {
+        this.backupFile = backupFile;
+        this.stamp = stamp;
+        this.manifest = manifest;
+    }
+
+    // Built from the manifest and the central directory of each volume; no entry data is inflated.
+    public static BackupIndex load(Path backupFile) throws IOException {
+        if (!Files.exists(backupFile)) {
+            throw new IOException("Backup " + backupFile.getFileName() + " does not exist locally");
+        }
+        long stamp = stampOf(backupFile);
+        synchronized (CACHE) {
+            BackupIndex cached = CACHE.get(backupFile);
+            if (cached != null && cached.stamp == stamp) {
+                return cached;
+            }
+        }
+        BackupIndex index = new BackupIndex(backupFile, stamp, BackupManifest.read(backupFile));
+        if (index.manifest != null) {
+            for (BackupManifest.Entry entry : index.manifest.getEntries()) {
+                index.entries.put(entry.getPath(), entry);
+            }
+        }
+        if (Files.isDirectory(backupFile)) {
+            index.indexTree();
+            synchronized (CACHE) {
+                CACHE.put(backupFile, index);
+            }
+            return index;
+        }
+        List<Path> volumes = BackupVolumes.list(backupFile);
+        for (int i = 0; i < volumes.size(); i++) {
+            try (ZipFile zip = new ZipFile(volumes.get(i).toFile())) {
+                Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+                while (zipEntries.hasMoreElements()) {
+                    ZipEntry entry = zipEntries.nextElement();
+                    if (entry.isDirectory()) {
+                        continue;
+                    }
+                    index.compressed.put(entry.getName(), entry.getCompressedSize());
+                    if (index.manifest == null) {
+                        index.entries.put(entry.getName(), new BackupManifest.Entry(entry.getName(), entry.getSize(),
+                            entry.getLastModifiedTime() != null ? entry.getLastModifiedTime().toMillis() : 0,
+                            entry.getCrc(), true, i + 1));
+                    }
+                }
+            }
+        }
+        synchronized (CACHE) {
+            CACHE.put(backupFile, index);
+        }
+        return index;
+    }
+
+    // Tree files are stored as they are, so their on-disk size stands in for the compressed size.
+    private void indexTree() throws IOException {
+        if (manifest == null) {
+            try (var stream = Files.walk(backupFile)) {
+                for (Path file : (Iterable<Path>) stream.filter(Files::isRegularFile)::iterator) {
+                    String name = backupFile.relativize(file).toString().replace('\\', '/');
+                    entries.put(name, new BackupManifest.Entry(name, Files.size(file),
+                        Files.getLastModifiedTime(file).toMillis(), 0, true));
+                }
+            }
+        }
+        for (BackupManifest.Entry entry : entries.values()) {
+            compressed.put(entry.getPath(), entry.getSize());
+        }
+    }
+
+    private static long stampOf(Path backupFile) throws IOException {
+        Path sidecar = BackupManifest.sidecarOf(backupFile);
+        long stamp = Files.getLastModifiedTime(backupFile).toMillis();
+        return Files.exists(sidecar) ? stamp * 31 + Files.getLastModifiedTime(sidecar).toMillis() : stamp;
+    }
+
+    public String getName() {
+        return backupFile.getFileName().toString();
+    }
+
+    public boolean hasManifest() {
+        return manifest != null;
+    }
+
+    public String getUnit() {
+        return manifest != null ? manifest.getUnit() : null;
+    }
+
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    public long getTotalSize() {
+        long total = 0;
+        for (BackupManifest.Entry entry : entries.values()) {
+            total += entry.getSize();
+        }
+        return total;
+    }
+
+    public List<Node> browse(String path) {
+        String normalized = normalize(path);
+        BackupManifest.Entry file = entries.get(normalized);
+        if (file != null) {
+            return List.of(fileNode(file.getPath().substring(file.getPath().lastIndexOf('/') + 1), file));
+        }
+        String prefix = normalized.isEmpty() ? "" : normalized + "/";
+        Map<String, Node> folders = new TreeMap<>();
+        List<Node> files = new ArrayList<>();
+        for (BackupManifest.Entry entry : entries.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+            String rest = entry.getPath().substring(prefix.length());
+            int slash = rest.indexOf('/');
+            if (slash < 0) {
+                files.add(fileNode(rest, entry));
+                continue;
+            }
+            Node folder = folders.computeIfAbsent(rest.substring(0, slash + 1), name -> new Node(name, true));
+            folder.files++;
+            folder.size += entry.getSize();
+            folder.compressedSize += compressed.getOrDefault(entry.getPath(), 0L);
+            folder.mtime = Math.max(folder.mtime, entry.getMtime());
+        }
+        List<Node> nodes = new ArrayList<>(folders.values());
+        nodes.addAll(files);
+        return nodes;
+    }
+
+    private Node fileNode(String name, BackupManifest.Entry entry) {
+        Node node = new Node(name, false);
+        node.files = 1;
+        node.size = entry.getSize();
+        node.compressedSize = compressed.getOrDefault(entry.getPath(), -1L);
+        node.mtime = entry.getMtime();
+        node.chunks = entry.getChunks() != null ? countChunks(RegionFiles.decodeTimestamps(entry.getChunks())) : -1;
+        return node;
+    }
+
+    public static Diff diff(BackupIndex from, BackupIndex to) {
+        Diff diff = new Diff();
+        Iterator<BackupManifest.Entry> before = from.entries.values().iterator();
+        Iterator<BackupManifest.Entry> after = to.entries.values().iterator();
+        BackupManifest.Entry a = before.hasNext() ? before.next() : null;
+        BackupManifest.Entry b = after.hasNext() ? after.next() : null;
+        while (a != null || b != null) {
+            int order = a == null ? 1 : b == null ? -1 : a.getPath().compareTo(b.getPath());
+            if (order < 0) {
+                diff.removed.add(new Change(a, null));
+                a = before.hasNext() ? before.next() : null;
+            } else if (order > 0) {
+                diff.added.add(new Change(null, b));
+                b = after.hasNext() ? after.next() : null;
+            } else {
+                if (!sameContent(a, b)) {
+                    diff.changed.add(new Change(a, b));
+                } else {
+                    diff.unchanged++;
+                }
+                a = before.hasNext() ? before.next() : null;
+                b = after.hasNext() ? after.next() : null;
+            }
+        }
+        Comparator<Change> bySize = Comparator.comparingLong((Change c) -> -Math.abs(c.getSizeDelta()))
+            .thenComparing(Change::getPath);
+        diff.added.sort(bySize);
+        diff.removed.sort(bySize);
+        diff.changed.sort(Comparator.comparing((Change c) -> !c.isRegion()).thenComparing(bySize));
+        return diff;
+    }
+
+    private static boolean sameContent(BackupManifest.Entry a, BackupManifest.Entry b) {
+        if (a.getSize() != b.getSize()) {
+            return false;
+        }
+        if (a.getCrc() != 0 && b.getCrc() != 0) {
+            return a.getCrc() == b.getCrc();
+        }
+        return a.getMtime() == b.getMtime();
+    }
+
+    private static String normalize(String path) {
+        if (path == null) {
+            return "";
+        }
+        String normalized = path.trim().replace('\\', '/');
+        while (normalized.startsWith("/")) {
+            normalized = normalized.substring(1);
+        }
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+
+    private static int countChunks(int[] timestamps) {
+        if (timestamps == null) {
+            return -1;
+        }
+        int count = 0;
+        for (int timestamp : timestamps) {
+            if (timestamp != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public static class Node {
+        private final String name;
+        private final boolean folder;
+        private int files;
+        private long size;
+        private long compressedSize;
+        private long mtime;
+        private int chunks = -1;
+
+        Node(String name, boolean folder) {
+            this.name = name;
+            this.folder = folder;
+        }
+
+        public String getName() { return name; }
+        public boolean isFolder() { return folder; }
+        public int getFiles() { return files; }
+        public long getSize() { return size; }
+        public long getMtime() { return mtime; }
+        public int getChunks() { return chunks; }
+
+        // -1 when the file is not stored in this archive but carried over from the base backup.
+        public long getCompressedSize() { return compressedSize; }
+    }
+
+    public static class Diff {
+        private final List<Change> added = new ArrayList<>();
+        private final List<Change> removed = new ArrayList<>();
+        private final List<Change> changed = new ArrayList<>();
+        private int unchanged;
+
+        public List<Change> getAdded() { return added; }
+        public List<Change> getRemoved() { return removed; }
+        public List<Change> getChanged() { return changed; }
+        public int getUnchanged() { return unchanged; }
+
+        public long getSizeDelta() {
+            long delta = 0;
+            for (List<Change> list : List.of(added, removed, changed)) {
+                for (Change change : list) {
+                    delta += change.getSizeDelta();
+                }
+            }
+            return delta;
+        }
+    }
+
+    public static class Change {
+        private final BackupManifest.Entry before;
+        private final BackupManifest.Entry after;
+
+        Change(BackupManifest.Entry before, BackupManifest.Entry after) {
+            this.before = before;
+            this.after = after;
+        }
+
+        public String getPath() {
+            return after != null ? after.getPath() : before.getPath();
+        }
+
+        public long getSizeBefore() {
+            return before != null ? before.getSize() : 0;
+        }
+
+        public long getSizeAfter() {
+            return after != null ? after.getSize() : 0;
+        }
+
+        public long getSizeDelta() {
+            return getSizeAfter() - getSizeBefore();
+        }
+
+        public boolean isRegion() {
+            return RegionFiles.isRegionFile(Path.of(getPath()));
+        }
+
+        // Null when either backup predates chunk timestamps in manifests.
+        public List<int[]> getChangedChunks() {
+            if (before == null || after == null || !isRegion()) {
+                return null;
+            }
+            int[] a = RegionFiles.decodeTimestamps(before.getChunks());
+            int[] b = RegionFiles.decodeTimestamps(after.getChunks());
+            return a != null && b != null ? RegionFiles.changedChunks(getPath(), a, b) : null;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package top.cacl2.backup;
+
+import top.cacl2.metrics.RunMetrics;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+public class BackupJob<T> {
+    private final long id;
+    private final BackupJobQueue.JobType type;
+    private final String description;
+    private final String coalesceKey;
+    private final Task<T> task;
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+    private final RunMetrics metrics = new RunMetrics();
+    private final ProgressTracker tracker = new ProgressTracker();
+    private final long submitTime;
+    private volatile long startTime;
+    private volatile State state = State.PENDING;
+    private volatile boolean cancelRequested = false;
+    private volatile double progress = 0;
+    private volatile String progressMessage = "";
+
+    BackupJob(long id, BackupJobQueue.JobType type, String description, String coalesceKey, Task<T> task) {
+        this.id = id;
+        this.type = type;
+        this.description = description;
+        this.coalesceKey = coalesceKey;
+        this.task = task;
+        this.submitTime = System.currentTimeMillis();
+    }
+
+    void run(Runnable onFinished) {
+        if (cancelRequested) {
+            state = State.CANCELLED;
+            future.cancel(false);
+            return;
+        }
+        state = State.RUNNING;
+        startTime = System.currentTimeMillis();
+        T result;
+        try {
+            result = task.run(this);
+            state = cancelRequested ? State.CANCELLED : State.DONE;
+        } catch (CancellationException e) {
+            state = State.CANCELLED;
+            onFinished.run();
+            future.cancel(false);
+            return;
+        } catch (Throwable e) {
+            state = State.FAILED;
+            onFinished.run();
+            future.completeExceptionally(e);
+            return;
+        }
+        onFinished.run();
+        future.complete(result);
+    }
+
+    void markCancelled() {
+        cancelRequested = true;
+        state = State.CANCELLED;
+        future.cancel(false);
+    }
+
+    void requestCancel() {
+        cancelRequested = true;
+    }
+
+    public void checkCancelled() {
+        if (cancelRequested) {
+            throw new CancellationException("Job #" + id + " was cancelled");
+        }
+    }
+
+    public void setProgress(double progress, String message) {
+        this.progress = Math.max(0, Math.min(1, progress));
+        this.progressMessage = message;
+    }
+
+    public long getId() { return id; }
+    public BackupJobQueue.JobType getType() { return type; }
+    public String getDescription() { return description; }
+    public String getCoalesceKey() { return coalesceKey; }
+    public CompletableFuture<T> getFuture() { return future; }
+    public long getSubmitTime() { return submitTime; }
+    public long getStartTime() { return startTime; }
+    public State getState() { return state; }
+    public boolean isCancelRequested() { return cancelRequested; }
+    public double getProgress() { return tracker.isStarted() ? tracker.getFraction() : progress; }
+    public String getProgressMessage() { return progressMessage; }
+    public RunMetrics getMetrics() { return metrics; }
+    public ProgressTracker getTracker() { return tracker; }
+
+    public String getSummary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('#').append(id).append(' ').append(type.name().toLowerCase()).append(": ").append(description);
+        if (state == State.RUNNING) {
+            long elapsed = (System.currentTimeMillis() - startTime) / 1000;
+            if (tracker.isStarted()) {
+                sb.append(" [").append(ProgressTracker.formatDuration(elapsed)).append(", ").append(tracker.describe());
+            } else {
+                sb.append(String.format(" [%.0f%%, %ds", progress * 100, elapsed));
+                if (!progressMessage.isEmpty()) {
+                    sb.append(", ").append(progressMessage);
+                }
+            }
+            sb.append(']');
+            if (cancelRequested) {
+                sb.append(" (cancelling)");
+            }
+        }
+        return sb.toString();
+    }
+
+    public enum State {
+        PENDING, RUNNING, DONE, FAILED, CANCELLED
+    }
+
+    public interface Task<T> {
+        T run(BackupJob<T> job) throws Exception;
+    }
+}
@@ -0,0 +1,225 @@
+package top.cacl2.backup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.cacl2.metrics.BackupMetrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class BackupJobQueue {
+    private static final Logger LOGGER = LoggerFactory.getLogger("cacl2backup");
+    private static final int MAX_PENDING = 32;
+
+    private final PriorityQueue<BackupJob<?>> pending = new PriorityQueue<>(
+        Comparator.<BackupJob<?>>comparingInt(job -> job.getType().getPriority())
+            .thenComparingLong(BackupJob::getId)
+    );
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final Thread worker;
+    private volatile BackupJob<?> current;
+    private volatile boolean running = true;
+    private volatile BackupMetrics metrics;
+
+    public BackupJobQueue() {
+        this.worker = new Thread(this::workLoop, "cacl2backup-jobs");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized <T> BackupJob<T> submit(JobType type, String description, String coalesceKey, BackupJob.Task<T> task) {
+        if (!running) {
+            throw new IllegalStateException("Job queue is shut down");
+        }
+        if (coalesceKey != null) {
+            for (BackupJob<?> job : pending) {
+                if (coalesceKey.equals(job.getCoalesceKey())) {
+                    LOGGER.debug("Coalesced {} job into pending job #{}", type, job.getId());
+                    return (BackupJob<T>) job;
+                }
+            }
+        }
+        if (pending.size() >= MAX_PENDING) {
+            throw new IllegalStateException("Too many pending jobs (" + pending.size() + ")");
+        }
+
+        BackupJob<T> job = new BackupJob<>(nextId.getAndIncrement(), type, description, coalesceKey, task);
+        pending.add(job);
+        notifyAll();
+        return job;
+    }
+
+    public synchronized boolean cancel(long id) {
+        BackupJob<?> active = current;
+        if (active != null && active.getId() == id) {
+            active.requestCancel();
+            return true;
+        }
+        for (BackupJob<?> job : pending) {
+            if (job.getId() == id) {
+                pending.remove(job);
+                job.markCancelled();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean cancelCurrent() {
+        BackupJob<?> active = current;
+        if (active == null) {
+            return false;
+        }
+        active.requestCancel();
+        return true;
+    }
+
+    public BackupJob<?> getCurrent() {
+        return current;
+    }
+
+    public synchronized List<BackupJob<?>> getPending() {
+        List<BackupJob<?>> jobs = new ArrayList<>(pending);
+        jobs.sort(pending.comparator());
+        return jobs;
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public synchronized boolean isActive(JobType... types) {
+        BackupJob<?> active = current;
+        for (JobType type : types) {
+            if (active != null && active.getType() == type) {
+                return true;
+            }
+            for (BackupJob<?> job : pending) {
+                if (job.getType() == type) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public boolean isWorkerThread() {
+        return Thread.currentThread() == worker;
+    }
+
+    public boolean isRunning(JobType... types) {
+        BackupJob<?> active = current;
+        if (active == null) {
+            return false;
+        }
+        for (JobType type : types) {
+            if (active.getType() == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void workLoop() {
+        while (true) {
+            BackupJob<?> job;
+            synchronized (this) {
+                while (running && pending.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                job = pending.poll();
+                current = job;
+                job.getMetrics().begin(pending.size(), System.currentTimeMillis() - job.getSubmitTime());
+            }
+
+            try {
+                LOGGER.debug("Running job {}", job.getSummary());
+                job.run(() -> {
+                    job.getMetrics().end();
+                    recordMetrics(job);
+                });
+            } finally {
+                current = null;
+            }
+        }
+    }
+
+    private void recordMetrics(BackupJob<?> job) {
+        BackupMetrics target = metrics;
+        if (target == null || job.getState() == BackupJob.State.CANCELLED) {
+            return;
+        }
+        if (job.getState() == BackupJob.State.FAILED) {
+            job.getMetrics().markFailed();
+        }
+        BackupMetrics.Operation operation = switch (job.getType()) {
+            case RESTORE -> BackupMetrics.Operation.RESTORE;
+            case CLEANUP -> BackupMetrics.Operation.CLEANUP;
+            case MAINTENANCE -> BackupMetrics.Operation.RECOMPRESS;
+            default -> BackupMetrics.Operation.BACKUP;
+        };
+        try {
+            target.record(operation, job.getMetrics());
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to record metrics for job #{}", job.getId(), e);
+        }
+    }
+
+    public void setMetrics(BackupMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void shutdown() {
+        synchronized (this) {
+            running = false;
+            for (BackupJob<?> job : pending) {
+                job.markCancelled();
+            }
+            pending.clear();
+            notifyAll();
+        }
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(60));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            BackupJob<?> active = current;
+            if (active != null) {
+                LOGGER.warn("Job still running at shutdown: {}", active.getSummary());
+                active.requestCancel();
+            }
+        }
+    }
+
+    public enum JobType {
+        SHUTDOWN(0),
+        RESTORE(0),
+        MANUAL(1),
+        AUTO(2),
+        CLEANUP(3),
+        MAINTENANCE(4);
+
+        private final int priority;
+
+        JobType(int priority) {
+            this.priority = priority;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+    }
+}
@@ -1,5 +1,20 @@
 package top.cacl2.backup;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.cacl2.config.BackupConfig;
+import top.cacl2.config.BackupProfile;
+import top.cacl2.config.Durability;
+import top.cacl2.config.StandbyReceiver;
+import top.cacl2.metrics.BackupMetrics;
+import top.cacl2.metrics.BackupWalkEvent;
+import top.cacl2.metrics.Phase;
+import top.cacl2.metrics.RunMetrics;
+import top.cacl2.storage.Replication;
+import top.cacl2.storage.StandbyServer;
+import top.cacl2.storage.StorageBackend;
+import top.cacl2.storage.StorageTargets;
+
 import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
@@ -7,123 +22,765 @@ import java.nio.file.attribute.FileTime;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 
 public class BackupManager {
+    private static final Logger LOGGER = LoggerFactory.getLogger("cacl2backup");
     private static final DateTimeFormatter BACKUP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
     
+    private final Path gameDir;
     private final Path backupDir;
-    private final Path worldDir;
+    private volatile WorldLayout layout;
+    private final BackupConfig config;
     private final CompressionUtil compressionUtil;
-    private volatile boolean isBackingUp = false;
+    private final SpaceForecaster spaceForecaster;
+    private final ThreadTuner threadTuner;
+    private final PlayerJournal playerJournal;
+    private final ActivityTracker activityTracker;
+    private final BackupJobQueue jobQueue;
+    private final BackupMetrics metrics;
+    private final StorageTargets storage;
+    private volatile PathFilter filter;
+    private volatile PathFilter.Stats lastFilterStats;
+    private StandbyServer standbyServer;
+    private StandbyReceiver standbySettings;
 
-    public BackupManager(Path gameDir, String backupFolderName, int compressionLevel, int threads) {
-        this.backupDir = gameDir.resolve(backupFolderName);
-        this.worldDir = gameDir.resolve("world");
-        this.compressionUtil = new CompressionUtil(compressionLevel, threads);
+    public BackupManager(Path gameDir, BackupConfig config) {
+        this.gameDir = gameDir;
+        this.backupDir = gameDir.resolve(config.getBackupFolderName());
+        this.layout = WorldLayout.fromDisk(gameDir);
+        this.config = config;
+        this.compressionUtil = new CompressionUtil(config.getCompressionLevel(), config.getCompressionThreads());
         
         try {
             Files.createDirectories(backupDir);
         } catch (IOException e) {
             throw new RuntimeException("Failed to create backup directory", e);
         }
+        DurableOutputStream.deletePartials(backupDir);
+
+        this.spaceForecaster = new SpaceForecaster(backupDir);
+        this.threadTuner = new ThreadTuner(backupDir);
+        this.playerJournal = new PlayerJournal(backupDir);
+        configurePlayerJournal();
+        List<BackupInfo> existing = listBackups();
+        long lastBackupTime = existing.isEmpty() ? 0
+            : existing.get(0).getCreationTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        this.activityTracker = new ActivityTracker(layout.getRoot(), lastBackupTime);
+        this.jobQueue = new BackupJobQueue();
+        this.metrics = new BackupMetrics(backupDir.resolve(".metrics_history.json"), jobQueue::getPendingCount, () -> {
+            BackupJob<?> current = jobQueue.getCurrent();
+            return current != null ? current.getSummary() : null;
+        });
+        this.jobQueue.setMetrics(metrics);
+        this.metrics.setJmxEnabled(config.isJmxEnabled());
+        this.storage = new StorageTargets(gameDir, backupDir, config.getStorageTargets(), config.getColdStorage());
+        this.filter = PathFilter.compile(config.getFilters());
+        configureStandbyReceiver();
+    }
+
+    public void reloadFilters() {
+        filter = PathFilter.compile(config.getFilters());
+        lastFilterStats = null;
+    }
+
+    public void reconfigureCompression() {
+        if (compressionUtil.reconfigure(config.getCompressionLevel(), config.getCompressionThreads())) {
+            LOGGER.info("Compression engine now uses {} threads at level {}{}", compressionUtil.getThreadCount(),
+                compressionUtil.getCompressionLevel(), jobQueue.getCurrent() != null
+                    ? "; the running backup finishes with its current settings" : "");
+        }
     }
 
     public CompletableFuture<BackupResult> createBackup(String label) {
-        if (isBackingUp) {
-            return CompletableFuture.completedFuture(
-                new BackupResult(null, false, "A backup is already in progress", 0)
-            );
+        return submitBackup(BackupJobQueue.JobType.MANUAL, label, null).getFuture();
+    }
+
+    public BackupJob<BackupResult> submitBackup(BackupJobQueue.JobType type, String label, BooleanSupplier beforeStart) {
+        return submitBackup(type, label, null, beforeStart);
+    }
+
+    public BackupJob<BackupResult> submitBackup(BackupJobQueue.JobType type, String label, BackupProfile profile,
+                                                BooleanSupplier beforeStart) {
+        return submitBackup(type, label, profile, null, beforeStart);
+    }
+
+    public BackupJob<BackupResult> submitBackup(BackupJobQueue.JobType type, String label, BackupProfile profile,
+                                                List<String> units, BooleanSupplier beforeStart) {
+        BackupProfile resolved = profile != null ? profile : config.getDefaultProfile();
+        String description = label != null && !label.isEmpty() ? "backup [" + label + "]" : "backup";
+        if (profile != null) {
+            description += " (" + resolved.getName() + ")";
         }
-        
-        return CompletableFuture.supplyAsync(() -> {
-            isBackingUp = true;
-            long startTime = System.currentTimeMillis();
-            
-            try {
-                if (!Files.exists(worldDir)) {
-                    return new BackupResult(null, false, "World directory not found", 0);
-                }
-
-                String timestamp = LocalDateTime.now().format(BACKUP_FORMATTER);
-                String backupName = label != null && !label.isEmpty() 
-                    ? String.format("backup_%s_%s.zip", timestamp, sanitizeLabel(label))
-                    : String.format("backup_%s.zip", timestamp);
-                
-                Path backupFile = backupDir.resolve(backupName);
-                
-                CompressionUtil.CompressionResult result = compressionUtil.compressDirectory(worldDir, backupFile);
-                
-                long duration = System.currentTimeMillis() - startTime;
-                
-                return new BackupResult(
-                    backupFile,
-                    true,
-                    String.format("Backup created: %s (%s -> %s, ratio: %.1f%%, time: %dms, threads: %d)",
-                        backupName,
-                        result.getFormattedSize(result.getOriginalSize()),
-                        result.getFormattedSize(result.getCompressedSize()),
-                        (1 - result.getCompressionRatio()) * 100,
-                        duration,
-                        result.getThreadsUsed()
-                    ),
-                    duration
-                );
-            } catch (Exception e) {
-                return new BackupResult(null, false, "Backup failed: " + e.getMessage(), 
-                    System.currentTimeMillis() - startTime);
-            } finally {
-                isBackingUp = false;
+        String unitKey = units != null && !units.isEmpty() ? ":" + String.join(",", units) : "";
+        String coalesceKey = type == BackupJobQueue.JobType.AUTO ? "auto:" + resolved.getName() + unitKey : null;
+        return jobQueue.submit(type, description, coalesceKey, job -> {
+            RunMetrics run = job.getMetrics();
+            if (beforeStart != null) {
+                boolean saved;
+                try (RunMetrics.Span span = run.start(Phase.SAVE)) {
+                    saved = beforeStart.getAsBoolean();
+                }
+                if (!saved) {
+                    run.markFailed();
+                    return new BackupResult(null, false, "World save failed, backup cancelled", 0);
+                }
+            }
+            BackupResult result = doBackup(label, resolved, units, job);
+            if (!result.isSuccess()) {
+                run.markFailed();
             }
+            return result;
         });
     }
 
+    // A job waiting on the queue from its own worker would never return, so it runs the backup itself instead.
     public BackupResult createBackupSync(String label) {
-        if (isBackingUp) {
-            return new BackupResult(null, false, "A backup is already in progress", 0);
+        BackupJob<?> current = jobQueue.getCurrent();
+        if (jobQueue.isWorkerThread() && current != null) {
+            return doBackup(label, config.getDefaultProfile(), null, current);
         }
-        
-        isBackingUp = true;
+        return createBackup(label).join();
+    }
+
+    public void backupOnShutdown() {
+        int maxSeconds = config.getShutdownBackupMaxSeconds();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(maxSeconds);
+        WorldUnit world = layout.getWholeWorld();
+        PathFilter activeFilter = filter;
+        BackupJob<BackupResult> job;
+        try {
+            job = jobQueue.submit(BackupJobQueue.JobType.SHUTDOWN, "shutdown backup", null, j -> {
+                ShutdownSnapshot snapshot;
+                try (RunMetrics.Span span = j.getMetrics().start(Phase.SNAPSHOT)) {
+                    snapshot = ShutdownSnapshot.take(backupDir, world, activeFilter, deadline);
+                }
+                return backupSnapshot(snapshot, j);
+            });
+        } catch (IllegalStateException e) {
+            LOGGER.warn("Skipping shutdown backup: {}", e.getMessage());
+            return;
+        }
+        try {
+            BackupResult result = job.getFuture().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            if (result.isSuccess()) {
+                LOGGER.info("Shutdown backup completed: {}", result.getMessage());
+            } else {
+                LOGGER.warn("Shutdown backup did not complete: {}", result.getMessage());
+            }
+        } catch (TimeoutException e) {
+            jobQueue.cancel(job.getId());
+            LOGGER.warn("Shutdown backup did not finish within {}s; {}", maxSeconds,
+                ShutdownSnapshot.find(backupDir) != null
+                    ? "the snapshot will be compressed on the next start" : "no snapshot was kept");
+        } catch (ExecutionException e) {
+            LOGGER.error("Shutdown backup failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            jobQueue.cancel(job.getId());
+        }
+    }
+
+    public void resumeShutdownSnapshot() {
+        ShutdownSnapshot snapshot = ShutdownSnapshot.find(backupDir);
+        if (snapshot == null) {
+            return;
+        }
+        try {
+            int copied = snapshot.detach();
+            LOGGER.info("Compressing the shutdown snapshot of {} files left by the last stop in the background "
+                + "({} hardlinked file(s) copied)", snapshot.getFiles(), copied);
+            BackupJob<BackupResult> job = jobQueue.submit(BackupJobQueue.JobType.SHUTDOWN, "shutdown backup (resumed)",
+                null, j -> {
+                    BackupResult result = backupSnapshot(snapshot, j);
+                    if (!result.isSuccess()) {
+                        snapshot.delete();
+                    }
+                    return result;
+                });
+            job.getFuture().whenComplete((result, error) -> {
+                if (error != null) {
+                    LOGGER.error("Shutdown backup failed", error);
+                } else if (result.isSuccess()) {
+                    LOGGER.info("Shutdown backup completed: {}", result.getMessage());
+                } else {
+                    LOGGER.error("Shutdown backup failed: {}", result.getMessage());
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            // The world is about to be opened and would rewrite the region files still linked into the snapshot.
+            LOGGER.error("Failed to keep the shutdown snapshot", e);
+            snapshot.delete();
+        }
+    }
+
+    private BackupResult backupSnapshot(ShutdownSnapshot snapshot, BackupJob<?> job) {
+        BackupProfile profile = new BackupProfile("shutdown", BackupProfile.Scope.INCREMENTAL, "deflate", 1, 0,
+            BackupProfile.DEFAULT_TIER);
+        BackupResult result = doUnitBackup("shutdown", profile, snapshot.getWorld(), config.getCompressionThreads(),
+            null, PathFilter.NONE, PathFilter.NONE.newStats(), job);
+        if (result.isSuccess()) {
+            snapshot.delete();
+            markBackupTaken(result, profile, snapshot.getCreatedAt());
+        } else {
+            job.getMetrics().markFailed();
+        }
+        return result;
+    }
+
+    public BackupJob<Integer> submitCleanup() {
+        return jobQueue.submit(BackupJobQueue.JobType.CLEANUP, "cleanup", "cleanup", job -> {
+            ColdTierMigrator migrator = newMigrator(job.getMetrics());
+            if (migrator != null) {
+                int migrated = migrator.migrate(activityTracker.getOnlinePlayers() <= config.getQuietPlayerThreshold());
+                if (migrated > 0) {
+                    LOGGER.info("Moved {} backup(s) to the cold tier", migrated);
+                }
+            }
+            BackupCleaner cleaner = newCleaner(job.getMetrics());
+            int deleted = cleaner.cleanup();
+            spaceForecaster.sampleFreeSpace();
+            if (!storage.isEmpty()) {
+                int remote = storage.applyRetention(cleaner.getDeletedNames(), job.getMetrics());
+                if (remote > 0) {
+                    LOGGER.info("Deleted {} backup(s) from storage targets", remote);
+                }
+            }
+            return deleted;
+        });
+    }
+
+    public BackupJob<RecompressionResult> submitRecompression(boolean idleOnly) {
+        int level = config.getIdleRecompressLevel();
+        return jobQueue.submit(BackupJobQueue.JobType.MAINTENANCE, "recompress", "recompress", job -> {
+            BooleanSupplier interrupted = () -> job.isCancelRequested()
+                || (idleOnly && (activityTracker.getOnlinePlayers() > 0 || jobQueue.getPendingCount() > 0));
+            List<BackupInfo> backups = listBackups();
+            Collections.reverse(backups);
+            int archives = 0;
+            long before = 0;
+            long after = 0;
+            for (BackupInfo backup : backups) {
+                if (interrupted.getAsBoolean()) {
+                    return new RecompressionResult(archives, before, after, true);
+                }
+                BackupManifest manifest = BackupManifest.read(backup.getFile());
+                if (manifest == null || manifest.isTree() || manifest.getLevel() >= level || manifest.getVolumes() > 1) {
+                    continue;
+                }
+                try {
+                    long size = Files.size(backup.getFile());
+                    compressionUtil.setWriteSettings(writeSettings());
+                    compressionUtil.setMemoryBudget(config.getCompressionMemoryBytes(), config.getSpillThresholdBytes(),
+                        config.isOffHeapStaging());
+                    long newSize = compressionUtil.recompress(backup.getFile(), manifest, level, interrupted, job);
+                    if (newSize < 0) {
+                        LOGGER.info("Kept {}: level {} would not make it smaller", backup.getFile().getFileName(), level);
+                        continue;
+                    }
+                    manifest.setLevel(level);
+                    manifest.write(backup.getFile(), writeSettings());
+                    archives++;
+                    before += size;
+                    after += newSize;
+                    LOGGER.info("Recompressed {} at level {}: {} -> {}", backup.getFile().getFileName(), level,
+                        formatSize(size), formatSize(newSize));
+                } catch (CancellationException e) {
+                    return new RecompressionResult(archives, before, after, true);
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to recompress {}", backup.getFile().getFileName(), e);
+                    job.getMetrics().markFailed();
+                }
+            }
+            return new RecompressionResult(archives, before, after, false);
+        });
+    }
+
+    private DurableOutputStream.Settings writeSettings() {
+        return new DurableOutputStream.Settings(config.getDurability(), config.getWriteBufferKB() * 1024,
+            config.getSyncIntervalMB() * 1024L * 1024, config.isPreallocateArchives(), config.isOffHeapStaging());
+    }
+
+    private ColdTierMigrator newMigrator(RunMetrics run) {
+        StorageBackend cold = storage.getColdTier();
+        return cold != null ? new ColdTierMigrator(backupDir, cold, config.getColdStorage(), run) : null;
+    }
+
+    private BackupCleaner newCleaner(RunMetrics run) {
+        return new BackupCleaner(backupDir, config.getMaxBackups(), config.getMaxBackupAgeDays(), config.getRetentionTiers(), run);
+    }
+
+    private BackupResult doBackup(String label, BackupProfile profile, List<String> units, BackupJob<?> job) {
         long startTime = System.currentTimeMillis();
-        
+        WorldLayout current = layout;
+        boolean split = (config.isSplitDimensions() || units != null && !units.isEmpty())
+            && profile.getScope() != BackupProfile.Scope.PLAYERDATA;
+        List<WorldUnit> selected = split ? current.select(units) : List.of(current.getWholeWorld());
+        if (selected.isEmpty()) {
+            return new BackupResult(null, false, "No world units match " + units, 0);
+        }
+        int threads = profile.resolveThreads(config.getCompressionThreads());
+        String threadReason = null;
+        boolean tuned = config.isAutoTuneThreads() && profile.getThreads() <= 0;
+        if (tuned) {
+            ThreadTuner.Choice choice = threadTuner.next(config.getCompressionThreads(), config.getAutoTuneTolerance());
+            threads = choice.getThreads();
+            threadReason = choice.getReason();
+        }
+        PathFilter activeFilter = filter;
+        PathFilter.Stats filterStats = activeFilter.newStats();
+        if (selected.size() == 1) {
+            BackupResult result = doUnitBackup(label, profile, selected.get(0), threads, threadReason, activeFilter,
+                filterStats, job);
+            recordFilterStats(filterStats);
+            if (tuned && result.isSuccess()) {
+                threadTuner.record(threads, job.getMetrics(), config.getCompressionThreads(), config.getAutoTuneTolerance());
+            }
+            if (!split || selected.size() == current.getUnits().size()) {
+                markBackupTaken(result, profile, startTime);
+            }
+            return result;
+        }
+
+        int share = Math.max(1, threads / selected.size());
+        String shareReason = threadReason;
+        ExecutorService pool = Executors.newFixedThreadPool(selected.size(), r -> {
+            Thread t = new Thread(r, "cacl2backup-unit");
+            t.setDaemon(true);
+            return t;
+        });
+        List<BackupResult> results = new ArrayList<>();
         try {
-            if (!Files.exists(worldDir)) {
-                return new BackupResult(null, false, "World directory not found", 0);
+            List<Future<UnitPlan>> planned = new ArrayList<>();
+            for (WorldUnit unit : selected) {
+                planned.add(pool.submit(() -> planUnit(profile, unit, activeFilter, filterStats, job.getMetrics())));
+            }
+            List<UnitPlan> plans = new ArrayList<>();
+            for (int i = 0; i < planned.size(); i++) {
+                try {
+                    plans.add(planned.get(i).get());
+                } catch (ExecutionException e) {
+                    plans.add(new UnitPlan(selected.get(i), startTime).fail(selected.get(i).getName() + ": "
+                        + e.getCause().getMessage()));
+                }
             }
 
-            String timestamp = LocalDateTime.now().format(BACKUP_FORMATTER);
-            String backupName = label != null && !label.isEmpty() 
-                ? String.format("backup_%s_%s.zip", timestamp, sanitizeLabel(label))
-                : String.format("backup_%s.zip", timestamp);
-            
-            Path backupFile = backupDir.resolve(backupName);
-            
-            CompressionUtil.CompressionResult result = compressionUtil.compressDirectory(worldDir, backupFile);
+            List<UnitPlan> ready = plans.stream().filter(plan -> plan.failure == null).collect(Collectors.toList());
+            String spaceError = ready.isEmpty() ? null : checkSpace(ready, job);
+            List<Future<BackupResult>> futures = new ArrayList<>();
+            for (UnitPlan plan : plans) {
+                if (plan.failure == null && spaceError != null) {
+                    plan.fail(spaceError);
+                }
+                futures.add(plan.failure != null ? null
+                    : pool.submit(() -> writeUnit(label, profile, plan, share, shareReason, job)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                if (futures.get(i) == null) {
+                    results.add(plans.get(i).failure);
+                    continue;
+                }
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(new BackupResult(null, false, selected.get(i).getName() + ": "
+                        + e.getCause().getMessage(), 0));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new BackupResult(null, false, "Backup interrupted", System.currentTimeMillis() - startTime);
+        } finally {
+            pool.shutdown();
+        }
+        recordFilterStats(filterStats);
+
+        List<String> messages = new ArrayList<>();
+        Path first = null;
+        boolean success = true;
+        for (BackupResult result : results) {
+            messages.add(result.getMessage());
+            success &= result.isSuccess();
+            if (first == null) {
+                first = result.getBackupFile();
+            }
+        }
+        BackupResult combined = new BackupResult(first, success,
+            String.format("%d/%d world unit(s) backed up in parallel: %s",
+                results.stream().filter(BackupResult::isSuccess).count(), results.size(), String.join("; ", messages)),
+            System.currentTimeMillis() - startTime);
+        if (selected.size() == current.getUnits().size()) {
+            markBackupTaken(combined, profile, startTime);
+        }
+        return combined;
+    }
+
+    private void recordFilterStats(PathFilter.Stats stats) {
+        lastFilterStats = stats;
+        if (!stats.isEmpty()) {
+            LOGGER.info("{}", stats.getSummary());
+            stats.describe().forEach(line -> LOGGER.debug(" {}", line));
+        }
+    }
+
+    private void markBackupTaken(BackupResult result, BackupProfile profile, long startTime) {
+        if (result.isSuccess() && profile.getScope() != BackupProfile.Scope.PLAYERDATA) {
+            activityTracker.markBackupTaken(startTime);
+        }
+    }
+
+    private BackupResult doUnitBackup(String label, BackupProfile profile, WorldUnit unit, int threads,
+                                      String threadReason, PathFilter filter, PathFilter.Stats filterStats,
+                                      BackupJob<?> job) {
+        UnitPlan plan = planUnit(profile, unit, filter, filterStats, job.getMetrics());
+        if (plan.failure != null) {
+            return plan.failure;
+        }
+        String spaceError = checkSpace(List.of(plan), job);
+        if (spaceError != null) {
+            return plan.fail(spaceError).failure;
+        }
+        return writeUnit(label, profile, plan, threads, threadReason, job);
+    }
+
+    // Walks a unit and picks the backup it will build on, without writing anything yet.
+    private UnitPlan planUnit(BackupProfile profile, WorldUnit unit, PathFilter filter, PathFilter.Stats filterStats,
+                              RunMetrics run) {
+        UnitPlan plan = new UnitPlan(unit, System.currentTimeMillis());
+        Path worldDir = unit.getRoot();
+        try {
+            if (!Files.exists(unit.getDir())) {
+                return plan.fail("World directory not found: " + unit.getDir());
+            }
+
+            BackupProfile.Scope scope = profile.getScope();
+            RunMetrics.Span walkSpan = run.start(Phase.WALK);
+            BackupWalkEvent walkEvent = new BackupWalkEvent();
+            walkEvent.begin();
+            List<Path> files = unit.listFiles(filter, filterStats);
+            if (scope == BackupProfile.Scope.PLAYERDATA) {
+                files.removeIf(file -> !isPlayerData(worldDir.relativize(file)));
+            }
+            plan.files = files;
+            if (profile.getFormat() == BackupProfile.Format.TREE) {
+                walkSpan.close();
+                BackupInfo previous = findLatestTree(unit);
+                BackupManifest previousManifest = previous != null ? BackupManifest.read(previous.getFile()) : null;
+                plan.base = previousManifest != null ? previous : null;
+                plan.tree = new LinkTree(worldDir, previousManifest != null ? previous.getFile() : null,
+                    previousManifest != null ? previousManifest.toMap() : Map.of(), profile.isVerifyHash());
+                plan.spaceBytes = plan.tree.estimateCopyBytes(files);
+                return plan;
+            }
+
+            BackupInfo base = null;
+            BackupManifest baseManifest = null;
+            if (scope == BackupProfile.Scope.INCREMENTAL) {
+                base = findLatestFullBackup(unit);
+                baseManifest = base != null ? BackupManifest.read(base.getFile()) : null;
+                if (baseManifest == null) {
+                    LOGGER.info("No full backup with a manifest found, taking a full backup instead of an incremental");
+                    scope = BackupProfile.Scope.FULL;
+                    base = null;
+                }
+            }
+
+            List<Path> toArchive = files;
+            if (baseManifest != null) {
+                Map<String, BackupManifest.Entry> baseEntries = baseManifest.toMap();
+                toArchive = new ArrayList<>();
+                for (Path file : files) {
+                    String entryName = worldDir.relativize(file).toString().replace('\\', '/');
+                    BackupManifest.Entry previous = baseEntries.get(entryName);
+                    if (previous != null && previous.sameContentAs(currentEntry(file, entryName))) {
+                        plan.unchanged.add(new BackupManifest.Entry(entryName, previous.getSize(), previous.getMtime(), previous.getCrc(), false)
+                            .withChunks(previous.getChunks()));
+                    } else {
+                        toArchive.add(file);
+                    }
+                }
+            }
+            walkSpan.close();
+            plan.scope = scope;
+            plan.base = base;
+            plan.toArchive = toArchive;
+            plan.spaceBytes = CompressionUtil.totalSize(toArchive);
+            if (walkEvent.shouldCommit()) {
+                walkEvent.scope = scope.name();
+                walkEvent.files = files.size();
+                walkEvent.archived = toArchive.size();
+                walkEvent.bytes = plan.spaceBytes;
+                walkEvent.commit();
+            }
+            return plan;
+        } catch (Exception e) {
+            return plan.fail("Backup failed: " + e.getMessage());
+        }
+    }
+
+    // One check covers every unit of a job, so parallel units never reclaim space on their own at the same time.
+    private String checkSpace(List<UnitPlan> plans, BackupJob<?> job) {
+        if (!config.isSpaceCheckEnabled()) {
+            return null;
+        }
+        long bytes = 0;
+        Set<String> protectedNames = new HashSet<>();
+        for (UnitPlan plan : plans) {
+            bytes += plan.spaceBytes;
+            if (plan.base != null) {
+                protectedNames.add(plan.base.getFile().getFileName().toString());
+            }
+        }
+        job.setProgress(0, "checking free space");
+        try (RunMetrics.Span span = job.getMetrics().start(Phase.SPACE_CHECK)) {
+            return ensureSpace(bytes, job.getMetrics(), plans.get(0).tree == null, protectedNames);
+        } catch (IOException e) {
+            return "Backup failed: " + e.getMessage();
+        }
+    }
+
+    private BackupResult writeUnit(String label, BackupProfile profile, UnitPlan plan, int threads, String threadReason,
+                                   BackupJob<?> job) {
+        if (plan.tree != null) {
+            return writeTree(label, profile, plan, threads, job);
+        }
+        long startTime = plan.startTime;
+        WorldUnit unit = plan.unit;
+        Path backupFile = null;
+        Replication replication = null;
+        RunMetrics run = job.getMetrics();
+
+        try {
+            BackupProfile.Scope scope = plan.scope;
+            BackupInfo base = plan.base;
+            List<Path> toArchive = plan.toArchive;
+            List<BackupManifest.Entry> unchanged = plan.unchanged;
+            if (base != null && !Files.exists(base.getFile())) {
+                LOGGER.warn("Base {} disappeared before the incremental was written, taking a full backup instead",
+                    base.getFile().getFileName());
+                scope = BackupProfile.Scope.FULL;
+                base = null;
+                toArchive = plan.files;
+                unchanged = List.of();
+            }
+
+            String backupName = newBackupName(label, unit, ".zip");
+            backupFile = backupDir.resolve(backupName);
+
+            int level = profile.resolveLevel(config.getCompressionLevel());
+            replication = storage.beginReplication(backupName, run);
+            compressionUtil.setWriteSettings(writeSettings());
+            compressionUtil.setMemoryBudget(config.getCompressionMemoryBytes(), config.getSpillThresholdBytes(),
+                config.isOffHeapStaging());
+            long expectedSize = config.isPreallocateArchives()
+                ? spaceForecaster.estimateBackupSize(CompressionUtil.totalSize(toArchive)) : 0;
+            CompressionUtil.CompressionResult result = compressionUtil.compressFiles(unit.getRoot(), toArchive, backupFile, job,
+                level, threads, replication, expectedSize, config.getVolumeSizeMB() * 1024L * 1024);
+
+            BackupManifest manifest = new BackupManifest(backupName, startTime, scope.name(), profile.getName(),
+                profile.getRetentionTier(), base != null ? base.getFile().getFileName().toString() : null, level);
+            result.getEntries().forEach(manifest::addEntry);
+            unchanged.forEach(manifest::addEntry);
+            manifest.setVolumes(result.getVolumes());
+            manifest.setUnit(unit);
+            manifest.setThreads(result.getThreadsUsed(), threadReason);
+            try (RunMetrics.Span span = run.start(Phase.MANIFEST)) {
+                manifest.write(backupFile, writeSettings());
+            }
+            replication.finish(BackupManifest.sidecarOf(backupFile));
+
+            spaceForecaster.recordCompression(result.getOriginalSize(), result.getCompressedSize());
+            spaceForecaster.sampleFreeSpace();
             
             long duration = System.currentTimeMillis() - startTime;
             
             return new BackupResult(
                 backupFile,
                 true,
-                String.format("Backup created: %s (%s -> %s, ratio: %.1f%%, time: %dms, threads: %d)",
+                String.format("Backup created: %s (%s%s -> %s, ratio: %.1f%%, time: %dms, threads: %d%s)",
                     backupName,
+                    scope == BackupProfile.Scope.FULL ? "" : scope.name().toLowerCase() + ", ",
                     result.getFormattedSize(result.getOriginalSize()),
                     result.getFormattedSize(result.getCompressedSize()),
                     (1 - result.getCompressionRatio()) * 100,
                     duration,
-                    result.getThreadsUsed()
+                    result.getThreadsUsed(),
+                    replication.isEmpty() ? "" : ", " + replication.describe()
                 ),
                 duration
             );
+        } catch (CancellationException e) {
+            abortReplication(replication);
+            deleteIncomplete(backupFile);
+            return new BackupResult(null, false, "Backup cancelled", System.currentTimeMillis() - startTime);
         } catch (Exception e) {
+            abortReplication(replication);
+            deleteIncomplete(backupFile);
             return new BackupResult(null, false, "Backup failed: " + e.getMessage(), 
                 System.currentTimeMillis() - startTime);
-        } finally {
-            isBackingUp = false;
         }
     }
 
+    // Trees are always complete: unchanged files are hardlinked to the previous tree instead of referencing a base.
+    private BackupResult writeTree(String label, BackupProfile profile, UnitPlan plan, int threads, BackupJob<?> job) {
+        long startTime = plan.startTime;
+        WorldUnit unit = plan.unit;
+        RunMetrics run = job.getMetrics();
+        Path treeDir = null;
+        try {
+            String backupName = newBackupName(label, unit, LinkTree.SUFFIX);
+            treeDir = backupDir.resolve(backupName);
+            LinkTree.Result result = plan.tree.create(plan.files, treeDir, threads, job);
+            if (config.getDurability() == Durability.FSYNC_DIR) {
+                DurableOutputStream.syncDirectory(backupDir, run);
+            }
+
+            BackupProfile.Scope scope = profile.getScope() == BackupProfile.Scope.PLAYERDATA
+                ? BackupProfile.Scope.PLAYERDATA : BackupProfile.Scope.FULL;
+            BackupManifest manifest = new BackupManifest(backupName, startTime, scope.name(), profile.getName(),
+                profile.getRetentionTier(), null, 0);
+            manifest.setTree(plan.base != null ? plan.base.getFile().getFileName().toString() : null,
+                result.getCopiedBytes());
+            result.getEntries().forEach(manifest::addEntry);
+            manifest.setUnit(unit);
+            manifest.setThreads(threads, null);
+            try (RunMetrics.Span span = run.start(Phase.MANIFEST)) {
+                manifest.write(treeDir, writeSettings());
+            }
+            spaceForecaster.sampleFreeSpace();
+
+            long duration = System.currentTimeMillis() - startTime;
+            return new BackupResult(treeDir, true, String.format(
+                "Backup created: %s (%d files, %s; %d copied, %s; %d hardlinked) in %dms",
+                backupName, result.getEntries().size(), formatSize(result.getTotalBytes()), result.getCopiedFiles(),
+                formatSize(result.getCopiedBytes()), result.getLinkedFiles(), duration), duration);
+        } catch (CancellationException e) {
+            deleteIncomplete(treeDir);
+            return new BackupResult(null, false, "Backup cancelled", System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            deleteIncomplete(treeDir);
+            return new BackupResult(null, false, "Backup failed: " + e.getMessage(),
+                System.currentTimeMillis() - startTime);
+        }
+    }
+
+    private BackupInfo findLatestTree(WorldUnit unit) {
+        String unitName = unit.isWholeWorld() ? null : unit.getName();
+        for (BackupInfo info : listBackups()) {
+            BackupManifest header = BackupManifest.readHeader(info.getFile());
+            if (header != null && header.isTree() && Objects.equals(unitName, header.getUnit())) {
+                return info;
+            }
+        }
+        return null;
+    }
+
+    private String newBackupName(String label, WorldUnit unit, String extension) {
+        String timestamp = LocalDateTime.now().format(BACKUP_FORMATTER);
+        String suffix = label;
+        if (!unit.isWholeWorld()) {
+            suffix = label != null && !label.isEmpty() ? unit.getName() + "_" + label : unit.getName();
+        }
+        return suffix != null && !suffix.isEmpty()
+            ? String.format("backup_%s_%s%s", timestamp, sanitizeLabel(suffix), extension)
+            : String.format("backup_%s%s", timestamp, extension);
+    }
+
+    private static boolean isPlayerData(Path relative) {
+        if (relative.getNameCount() == 0) {
+            return false;
+        }
+        String top = relative.getName(0).toString();
+        return top.equals("playerdata") || top.equals("advancements") || top.equals("stats");
+    }
+
+    private static BackupManifest.Entry currentEntry(Path file, String entryName) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        return new BackupManifest.Entry(entryName, attrs.size(), attrs.lastModifiedTime().toMillis(), 0, true);
+    }
+
+    private BackupInfo findLatestFullBackup(WorldUnit unit) {
+        String unitName = unit.isWholeWorld() ? null : unit.getName();
+        for (BackupInfo info : listBackups()) {
+            BackupManifest header = BackupManifest.readHeader(info.getFile());
+            if (header != null && BackupProfile.Scope.FULL.name().equals(header.getScope()) && !header.isTree()
+                    && Objects.equals(unitName, header.getUnit())) {
+                return info;
+            }
+        }
+        return null;
+    }
+
+    private static void abortReplication(Replication replication) {
+        if (replication != null) {
+            replication.abort();
+        }
+    }
+
+    private void deleteIncomplete(Path backupFile) {
+        if (backupFile != null) {
+            try {
+                if (Files.isDirectory(backupFile)) {
+                    LinkTree.delete(backupFile, LinkTree.DELETE_THREADS);
+                } else {
+                    BackupVolumes.delete(backupFile);
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Failed to remove incomplete backup {}", backupFile, e);
+            }
+            BackupManifest.deleteSidecar(backupFile);
+        }
+    }
+
+    // Protected names are the backups this run will reference, so reclaiming space must not remove them.
+    private String ensureSpace(long worldSize, RunMetrics run, boolean compressed, Set<String> protectedNames)
+            throws IOException {
+        SpaceForecaster.SpaceCheck check = spaceForecaster.check(worldSize, config.getReservedFreeSpaceBytes(), compressed);
+        if (check.isSufficient()) {
+            return null;
+        }
+
+        LOGGER.warn("Estimated backup size {} exceeds available space {}, running retention",
+            formatSize(check.getRequiredBytes()), formatSize(check.getUsableBytes()));
+
+        BackupCleaner cleaner = newCleaner(run);
+        cleaner.cleanup(protectedNames);
+        check = spaceForecaster.check(worldSize, config.getReservedFreeSpaceBytes(), compressed);
+        ColdTierMigrator migrator = newMigrator(run);
+        if (!check.isSufficient() && migrator != null) {
+            long moved = migrator.migrateForSpace(check.getShortfall(), config.getMinBackupsToKeep(), protectedNames);
+            if (moved > 0) {
+                LOGGER.warn("Moved old backups to the cold tier to reclaim {}", formatSize(moved));
+            }
+            check = spaceForecaster.check(worldSize, config.getReservedFreeSpaceBytes(), compressed);
+        }
+        if (!check.isSufficient()) {
+            long freed = cleaner.freeSpace(check.getShortfall(), config.getMinBackupsToKeep(), protectedNames);
+            if (freed > 0) {
+                LOGGER.warn("Deleted old backups to reclaim {}", formatSize(freed));
+            }
+            check = spaceForecaster.check(worldSize, config.getReservedFreeSpaceBytes(), compressed);
+        }
+        spaceForecaster.sampleFreeSpace();
+
+        if (!check.isSufficient()) {
+            return String.format("Not enough disk space: need ~%s (estimated backup %s + reserve), only %s available",
+                formatSize(check.getRequiredBytes()),
+                formatSize(check.getEstimatedBytes()),
+                formatSize(check.getUsableBytes()));
+        }
+        return null;
+    }
+
     public CompletableFuture<BackupResult> createBackup() {
         return createBackup(null);
     }
@@ -135,7 +792,7 @@ public class BackupManager {
             }
             
             return Files.list(backupDir)
-                .filter(p -> p.toString().endsWith(".zip"))
+                .filter(p -> p.toString().endsWith(".zip") || LinkTree.isTree(p))
                 .map(this::getBackupInfo)
                 .filter(Objects::nonNull)
                 .sorted((a, b) -> b.getCreationTime().compareTo(a.getCreationTime()))
@@ -149,12 +806,14 @@ public class BackupManager {
         try {
             BasicFileAttributes attrs = Files.readAttributes(backupFile, BasicFileAttributes.class);
             FileTime creationTime = attrs.creationTime();
-            long size = attrs.size();
+            boolean tree = LinkTree.isTree(backupFile);
+            BackupManifest header = tree ? BackupManifest.readHeader(backupFile) : null;
+            long size = tree ? (header != null ? header.getStoredBytes() : 0) : BackupVolumes.totalSize(backupFile);
             String filename = backupFile.getFileName().toString();
             
             String label = "";
-            if (filename.contains("_") && filename.endsWith(".zip")) {
-                String[] parts = filename.replace("backup_", "").replace(".zip", "").split("_");
+            if (filename.contains("_") && (filename.endsWith(".zip") || tree)) {
+                String[] parts = filename.replace("backup_", "").replace(".zip", "").replace(LinkTree.SUFFIX, "").split("_");
                 if (parts.length > 2) {
                     label = String.join("_", Arrays.copyOfRange(parts, 2, parts.length));
                 }
@@ -171,30 +830,169 @@ public class BackupManager {
         }
     }
 
+    public Path resolveBackupFile(String backupName) {
+        if (backupName.endsWith(".zip") || backupName.endsWith(LinkTree.SUFFIX)) {
+            return backupDir.resolve(backupName);
+        }
+        Path tree = backupDir.resolve(backupName + LinkTree.SUFFIX);
+        return Files.isDirectory(tree) ? tree : backupDir.resolve(backupName + ".zip");
+    }
+
     public boolean deleteBackup(Path backupFile) {
         try {
-            return Files.deleteIfExists(backupFile);
+            boolean deleted = LinkTree.isTree(backupFile)
+                ? LinkTree.delete(backupFile, LinkTree.DELETE_THREADS) >= 0
+                : BackupVolumes.delete(backupFile);
+            BackupManifest.deleteSidecar(backupFile);
+            storage.deleteMirrored(backupFile.getFileName().toString());
+            return deleted;
         } catch (IOException e) {
             return false;
         }
     }
 
+    public void configurePlayerJournal() {
+        playerJournal.configure(config.getPlayerJournalMaxMB() * 1024L * 1024,
+            TimeUnit.HOURS.toMillis(config.getPlayerJournalRetentionHours()));
+    }
+
+    // Restarting drops open connections; senders resume their transfers once the receiver is back.
+    public synchronized void configureStandbyReceiver() {
+        StandbyReceiver settings = config.getStandbyReceiver();
+        if (settings.sameAs(standbySettings)) {
+            return;
+        }
+        if (standbyServer != null) {
+            standbyServer.close();
+            standbyServer = null;
+        }
+        standbySettings = settings;
+        if (!settings.isEnabled()) {
+            return;
+        }
+        Path dir = settings.getPath().isEmpty() ? backupDir : gameDir.resolve(settings.getPath());
+        try {
+            standbyServer = new StandbyServer(dir, settings.getBindAddress(), settings.getPort(), settings.getToken());
+        } catch (IOException e) {
+            LOGGER.warn("Failed to start the standby receiver on port {}", settings.getPort(), e);
+        }
+    }
+
     public void shutdown() {
+        jobQueue.shutdown();
+        playerJournal.shutdown();
         compressionUtil.shutdown();
+        metrics.setJmxEnabled(false);
+        storage.close();
+        synchronized (this) {
+            if (standbyServer != null) {
+                standbyServer.close();
+                standbyServer = null;
+            }
+        }
     }
 
     public boolean isBackingUp() {
-        return isBackingUp;
+        return jobQueue.isRunning(BackupJobQueue.JobType.MANUAL, BackupJobQueue.JobType.AUTO,
+            BackupJobQueue.JobType.SHUTDOWN);
+    }
+
+    public BackupJobQueue getJobQueue() {
+        return jobQueue;
     }
 
     public Path getBackupDir() {
         return backupDir;
     }
 
+    public WorldLayout getWorldLayout() {
+        return layout;
+    }
+
+    public Path getWorldDir() {
+        return layout.getRoot();
+    }
+
+    public void setWorldLayout(WorldLayout layout) {
+        this.layout = layout;
+        activityTracker.setWorldDir(layout.getRoot());
+        LOGGER.info("World {} has {} unit(s): {}", layout.getRoot().getFileName(), layout.getUnits().size(),
+            layout.getUnits());
+    }
+
+    public ThreadTuner getThreadTuner() {
+        return threadTuner;
+    }
+
+    public PlayerJournal getPlayerJournal() {
+        return playerJournal;
+    }
+
+    public SpaceForecaster getSpaceForecaster() {
+        return spaceForecaster;
+    }
+
+    public ActivityTracker getActivityTracker() {
+        return activityTracker;
+    }
+
+    public BackupMetrics getMetrics() {
+        return metrics;
+    }
+
+    public StorageTargets getStorage() {
+        return storage;
+    }
+
+    public StagingPool getStagingPool() {
+        compressionUtil.setMemoryBudget(config.getCompressionMemoryBytes(), config.getSpillThresholdBytes(),
+            config.isOffHeapStaging());
+        return compressionUtil.getStagingPool();
+    }
+
+    public PathFilter getFilter() {
+        return filter;
+    }
+
+    public PathFilter.Stats getLastFilterStats() {
+        return lastFilterStats;
+    }
+
+    public static String formatSize(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format("%.2f KB", bytes / 1024.0);
+        if (bytes < 1024 * 1024 * 1024) return String.format("%.2f MB", bytes / (1024.0 * 1024));
+        return String.format("%.2f GB", bytes / (1024.0 * 1024 * 1024));
+    }
+
     private String sanitizeLabel(String label) {
         return label.replaceAll("[^a-zA-Z0-9_-]", "_");
     }
 
+    private static class UnitPlan {
+        private final WorldUnit unit;
+        private final long startTime;
+        private final List<BackupManifest.Entry> unchanged = new ArrayList<>();
+        private BackupProfile.Scope scope;
+        private List<Path> files;
+        private List<Path> toArchive;
+        // The full backup an incremental references, or the tree a new tree links against.
+        private BackupInfo base;
+        private LinkTree tree;
+        private long spaceBytes;
+        private BackupResult failure;
+
+        UnitPlan(WorldUnit unit, long startTime) {
+            this.unit = unit;
+            this.startTime = startTime;
+        }
+
+        UnitPlan fail(String message) {
+            failure = new BackupResult(null, false, message, System.currentTimeMillis() - startTime);
+            return this;
+        }
+    }
+
     public static class BackupResult {
         private final Path backupFile;
         private final boolean success;
@@ -214,6 +1012,31 @@ public class BackupManager {
         public long getDurationMs() { return durationMs; }
     }
 
+    public static class RecompressionResult {
+        private final int archives;
+        private final long bytesBefore;
+        private final long bytesAfter;
+        private final boolean interrupted;
+
+        public RecompressionResult(int archives, long bytesBefore, long bytesAfter, boolean interrupted) {
+            this.archives = archives;
+            this.bytesBefore = bytesBefore;
+            this.bytesAfter = bytesAfter;
+            this.interrupted = interrupted;
+        }
+
+        public int getArchives() { return archives; }
+        public long getBytesBefore() { return bytesBefore; }
+        public long getBytesAfter() { return bytesAfter; }
+        public long getReclaimedBytes() { return bytesBefore - bytesAfter; }
+        public boolean isInterrupted() { return interrupted; }
+
+        public String getMessage() {
+            return String.format("Recompressed %d backup(s), reclaimed %s%s", archives, formatSize(getReclaimedBytes()),
+                interrupted ? " (interrupted)" : "");
+        }
+    }
+
     public static class BackupInfo {
         private final Path file;
         private final LocalDateTime creationTime;
@@ -233,10 +1056,7 @@ public class BackupManager {
         public String getLabel() { return label; }
         
         public String getFormattedSize() {
-            if (size < 1024) return size + " B";
-            if (size < 1024 * 1024) return String.format("%.2f KB", size / 1024.0);
-            if (size < 1024 * 1024 * 1024) return String.format("%.2f MB", size / (1024.0 * 1024));
-            return String.format("%.2f GB", size / (1024.0 * 1024 * 1024));
+            return formatSize(size);
         }
         
         public String getFormattedTime() {
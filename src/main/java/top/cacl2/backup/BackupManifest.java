@@ -0,0 +1,255 @@
+package top.cacl2.backup;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.cacl2.config.BackupProfile;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BackupManifest {
+    private static final Logger LOGGER = LoggerFactory.getLogger("cacl2backup");
+    private static final Gson GSON = new GsonBuilder().create();
+    public static final String SUFFIX = ".manifest.json";
+
+    private int version = 1;
+    private String backupName;
+    private long createdAt;
+    private String scope;
+    private String format;
+    private String linkDest;
+    private Long storedBytes;
+    private String profile;
+    private String tier;
+    private String base;
+    private int level;
+    private Integer volumes;
+    private String unit;
+    private String unitPath;
+    private List<String> unitExcludes;
+    private Integer threads;
+    private String threadTuning;
+    private List<Entry> entries = new ArrayList<>();
+
+    public BackupManifest() {
+    }
+
+    public BackupManifest(String backupName, long createdAt, String scope, String profile, String tier, String base, int level) {
+        this.backupName = backupName;
+        this.createdAt = createdAt;
+        this.scope = scope;
+        this.profile = profile;
+        this.tier = tier;
+        this.base = base;
+        this.level = level;
+    }
+
+    public static Path sidecarOf(Path backupFile) {
+        return backupFile.resolveSibling(backupFile.getFileName().toString() + SUFFIX);
+    }
+
+    public static BackupManifest read(Path backupFile) {
+        Path sidecar = sidecarOf(backupFile);
+        if (!Files.exists(sidecar)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(sidecar, StandardCharsets.UTF_8)) {
+            return GSON.fromJson(reader, BackupManifest.class);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to read manifest {}", sidecar, e);
+            return null;
+        }
+    }
+
+    public static BackupManifest readHeader(Path backupFile) {
+        Path sidecar = sidecarOf(backupFile);
+        if (!Files.exists(sidecar)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(sidecar, StandardCharsets.UTF_8)) {
+            return readHeader(reader);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to read manifest header {}", sidecar, e);
+            return null;
+        }
+    }
+
+    public static BackupManifest readHeader(Reader source) throws IOException {
+        BackupManifest manifest = new BackupManifest();
+        JsonReader reader = new JsonReader(source);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "version" -> manifest.version = reader.nextInt();
+                case "backupName" -> manifest.backupName = reader.nextString();
+                case "createdAt" -> manifest.createdAt = reader.nextLong();
+                case "scope" -> manifest.scope = reader.nextString();
+                case "format" -> manifest.format = reader.nextString();
+                case "linkDest" -> manifest.linkDest = reader.nextString();
+                case "storedBytes" -> manifest.storedBytes = reader.nextLong();
+                case "profile" -> manifest.profile = reader.nextString();
+                case "tier" -> manifest.tier = reader.nextString();
+                case "base" -> manifest.base = reader.nextString();
+                case "level" -> manifest.level = reader.nextInt();
+                case "volumes" -> manifest.volumes = reader.nextInt();
+                case "unit" -> manifest.unit = reader.nextString();
+                case "entries" -> {
+                    return manifest;
+                }
+                default -> reader.skipValue();
+            }
+        }
+        return manifest;
+    }
+
+    public void write(Path backupFile) throws IOException {
+        write(backupFile, DurableOutputStream.Settings.DEFAULT);
+    }
+
+    public void write(Path backupFile, DurableOutputStream.Settings settings) throws IOException {
+        try (DurableOutputStream out = new DurableOutputStream(sidecarOf(backupFile), settings, null);
+             Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            GSON.toJson(this, writer);
+            writer.flush();
+            out.publish();
+        }
+    }
+
+    public static void deleteSidecar(Path backupFile) {
+        try {
+            Files.deleteIfExists(sidecarOf(backupFile));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete manifest for {}", backupFile, e);
+        }
+    }
+
+    public Map<String, Entry> toMap() {
+        Map<String, Entry> map = new HashMap<>(entries.size() * 2);
+        for (Entry entry : entries) {
+            map.put(entry.getPath(), entry);
+        }
+        return map;
+    }
+
+    public void addEntry(Entry entry) {
+        entries.add(entry);
+    }
+
+    public int getVersion() { return version; }
+    public String getBackupName() { return backupName; }
+    public long getCreatedAt() { return createdAt; }
+    public String getScope() { return scope; }
+    public String getProfile() { return profile; }
+    public String getTier() { return tier; }
+    public String getBase() { return base; }
+    public int getLevel() { return level; }
+    public List<Entry> getEntries() { return entries; }
+    public String getUnit() { return unit; }
+    public String getUnitPath() { return unitPath; }
+    public List<String> getUnitExcludes() { return unitExcludes; }
+    public int getThreads() { return threads != null ? threads : 0; }
+    public String getThreadTuning() { return threadTuning; }
+    public String getLinkDest() { return linkDest; }
+    public long getStoredBytes() { return storedBytes != null ? storedBytes : 0; }
+
+    public boolean isTree() {
+        return BackupProfile.Format.TREE.name().equals(format);
+    }
+
+    public void setTree(String linkDest, long storedBytes) {
+        this.format = BackupProfile.Format.TREE.name();
+        this.linkDest = linkDest;
+        this.storedBytes = storedBytes;
+    }
+
+    public int getVolumes() {
+        return volumes != null ? volumes : 1;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    public void setVolumes(int volumes) {
+        this.volumes = volumes > 1 ? volumes : null;
+    }
+
+    public void setThreads(int threads, String reason) {
+        this.threads = threads;
+        this.threadTuning = reason;
+    }
+
+    public void setUnit(WorldUnit worldUnit) {
+        if (worldUnit == null || worldUnit.isWholeWorld()) {
+            return;
+        }
+        this.unit = worldUnit.getName();
+        this.unitPath = worldUnit.getPath();
+        this.unitExcludes = worldUnit.getExcludes().isEmpty() ? null : new ArrayList<>(worldUnit.getExcludes());
+    }
+
+    public boolean isIncremental() {
+        return base != null && !base.isEmpty();
+    }
+
+    public static class Entry {
+        private String path;
+        private long size;
+        private long mtime;
+        private long crc;
+        private boolean stored = true;
+        private Integer volume;
+        private String chunks;
+
+        public Entry() {
+        }
+
+        public Entry(String path, long size, long mtime, long crc, boolean stored) {
+            this.path = path;
+            this.size = size;
+            this.mtime = mtime;
+            this.crc = crc;
+            this.stored = stored;
+        }
+
+        public Entry(String path, long size, long mtime, long crc, boolean stored, int volume) {
+            this(path, size, mtime, crc, stored);
+            this.volume = volume > 1 ? volume : null;
+        }
+
+        public String getPath() { return path; }
+        public long getSize() { return size; }
+        public long getMtime() { return mtime; }
+        public long getCrc() { return crc; }
+        public boolean isStored() { return stored; }
+        public int getVolume() { return volume != null ? volume : 1; }
+        public String getChunks() { return chunks; }
+
+        public Entry withChunks(String chunks) {
+            this.chunks = chunks;
+            return this;
+        }
+
+        public boolean sameContentAs(Entry other) {
+            return other != null && size == other.size && mtime == other.mtime;
+        }
+    }
+}
@@ -1,21 +1,43 @@
 package top.cacl2.backup;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import top.cacl2.config.BackupConfig;
+import top.cacl2.config.BackupProfile;
+import top.cacl2.config.BackupSchedule;
 
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
 
 public class BackupScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger("cacl2backup");
+    private static final long EVALUATE_INTERVAL_SECONDS = 15;
+    private static final int MAX_DECISIONS = 10;
+
     private final ScheduledExecutorService scheduler;
     private final BackupManager backupManager;
     private final BackupConfig config;
     private final BackupListener listener;
     private ScheduledFuture<?> backupTask;
     private ScheduledFuture<?> cleanupTask;
+    private ScheduledFuture<?> maintenanceTask;
     private long nextBackupTime;
+    private final Map<String, BackupJob<BackupManager.BackupResult>> lastAutoJobs = new ConcurrentHashMap<>();
+    private final Map<String, CronExpression> cronExpressions = new ConcurrentHashMap<>();
+    private final Map<String, LocalDateTime> nextFireTimes = new ConcurrentHashMap<>();
+    private TimingWheel<BackupSchedule> wheel;
+    private long deferredSince;
+    private volatile int skippedCount;
+    private final Deque<ScheduleDecision> decisions = new ArrayDeque<>();
 
     public BackupScheduler(BackupManager backupManager, BackupConfig config, BackupListener listener) {
         this.backupManager = backupManager;
@@ -26,11 +48,82 @@ public class BackupScheduler {
 
     public void start() {
         if (config.isAutoBackupEnabled()) {
-            startAutoBackup();
+            if (hasEnabledSchedules()) {
+                startCronSchedules();
+            } else {
+                startAutoBackup();
+            }
         }
         if (config.isAutoCleanupEnabled()) {
             startAutoCleanup();
         }
+        if (config.isIdleRecompressEnabled()) {
+            maintenanceTask = scheduler.scheduleAtFixedRate(this::doMaintenance, 5, 5, TimeUnit.MINUTES);
+        }
+    }
+
+    private boolean hasEnabledSchedules() {
+        for (BackupSchedule schedule : config.getSchedules()) {
+            if (schedule.isEnabled()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void startCronSchedules() {
+        if (backupTask != null) {
+            backupTask.cancel(false);
+        }
+
+        wheel = new TimingWheel<>(TimeUnit.MINUTES.toMillis(1), 60, System.currentTimeMillis());
+        cronExpressions.clear();
+        nextFireTimes.clear();
+        LocalDateTime now = LocalDateTime.now();
+        for (BackupSchedule schedule : config.getSchedules()) {
+            if (!schedule.isEnabled()) {
+                continue;
+            }
+            try {
+                cronExpressions.put(schedule.getName(), CronExpression.parse(schedule.getCron()));
+                scheduleNext(schedule, now);
+                LOGGER.info("Schedule '{}' ({}) uses profile '{}'{}, next run {}", schedule.getName(), schedule.getCron(),
+                    schedule.getProfile(), schedule.getUnits().isEmpty() ? "" : " for " + schedule.getUnits(),
+                    nextFireTimes.get(schedule.getName()));
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                LOGGER.error("Invalid cron expression for schedule '{}': {}", schedule.getName(), e.getMessage());
+            }
+        }
+
+        backupTask = scheduler.scheduleAtFixedRate(() -> {
+            try {
+                for (BackupSchedule schedule : wheel.advance(System.currentTimeMillis())) {
+                    recordDecision(ScheduleDecision.Action.RAN, "schedule '" + schedule.getName() + "'");
+                    submitAutoBackup(schedule.getName(), config.getProfile(schedule.getProfile()), schedule.getUnits());
+                    scheduleNext(schedule, LocalDateTime.now());
+                }
+            } catch (Exception e) {
+                LOGGER.error("Scheduled backup dispatch failed", e);
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    private void scheduleNext(BackupSchedule schedule, LocalDateTime after) {
+        CronExpression cron = cronExpressions.get(schedule.getName());
+        LocalDateTime next = cron.next(after);
+        long nextMillis = next.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        nextFireTimes.put(schedule.getName(), next);
+        wheel.schedule(schedule, nextMillis);
+
+        long earliest = Long.MAX_VALUE;
+        for (LocalDateTime time : nextFireTimes.values()) {
+            earliest = Math.min(earliest, time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+        nextBackupTime = earliest;
+    }
+
+    public Map<String, LocalDateTime> getNextFireTimes() {
+        return new LinkedHashMap<>(nextFireTimes);
     }
 
     private void startAutoBackup() {
@@ -39,39 +132,166 @@ public class BackupScheduler {
         }
         
         nextBackupTime = System.currentTimeMillis() + config.getBackupIntervalMillis();
+        deferredSince = 0;
         backupTask = scheduler.scheduleAtFixedRate(() -> {
-            nextBackupTime = System.currentTimeMillis() + config.getBackupIntervalMillis();
-            if (backupManager.isBackingUp()) {
+            try {
+                evaluate();
+            } catch (Exception e) {
+                LOGGER.error("Auto backup evaluation failed", e);
+            }
+        }, EVALUATE_INTERVAL_SECONDS, EVALUATE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void evaluate() {
+        long now = System.currentTimeMillis();
+        ActivityTracker activity = backupManager.getActivityTracker();
+
+        if (!config.isActivityAwareScheduling()) {
+            if (now >= nextBackupTime) {
+                nextBackupTime = now + config.getBackupIntervalMillis();
+                submitAutoBackup("auto", null);
+            }
+            return;
+        }
+
+        if (now < nextBackupTime) {
+            long sinceLast = now - activity.getLastBackupTime();
+            if (sinceLast < TimeUnit.MINUTES.toMillis(config.getMinBackupIntervalMinutes())) {
                 return;
             }
-            
-            if (!listener.onBackupStart("auto")) {
-                listener.onBackupFailed("World save failed, backup cancelled");
+            String burst = detectBurst(activity);
+            if (burst == null) {
                 return;
             }
-            backupManager.createBackup("auto")
-                .thenAccept(result -> {
-                    if (result.isSuccess()) {
-                        listener.onBackupComplete(result);
-                        if (config.isAutoCleanupEnabled()) {
-                            doCleanup();
-                        }
-                    } else {
-                        listener.onBackupFailed(result.getMessage());
-                    }
-                });
-        }, config.getBackupIntervalMillis(), config.getBackupIntervalMillis(), TimeUnit.MILLISECONDS);
+            recordDecision(ScheduleDecision.Action.ADVANCED, burst);
+            nextBackupTime = now;
+        }
+
+        if (config.isSkipWhenIdle() && deferredSince == 0) {
+            ActivityTracker.WorldChanges changes = activity.getWorldChanges(true);
+            if (activity.getPlayerSeconds() == 0 && activity.getPeakPlayers() == 0
+                && changes.getChangedBytes() < config.getIdleChangeThresholdBytes()) {
+                recordDecision(ScheduleDecision.Action.SKIPPED, String.format(
+                    "no players since last backup, %s changed in %d file(s)",
+                    BackupManager.formatSize(changes.getChangedBytes()), changes.getChangedFiles()));
+                nextBackupTime = now + config.getBackupIntervalMillis();
+                return;
+            }
+        }
+
+        if (config.getQuietWindowMinutes() > 0 && activity.getOnlinePlayers() > config.getQuietPlayerThreshold()) {
+            if (deferredSince == 0) {
+                deferredSince = now;
+                recordDecision(ScheduleDecision.Action.DEFERRED, String.format(
+                    "%d player(s) online, waiting up to %d minute(s) for a quiet moment",
+                    activity.getOnlinePlayers(), config.getQuietWindowMinutes()));
+            }
+            if (now - deferredSince < TimeUnit.MINUTES.toMillis(config.getQuietWindowMinutes())) {
+                return;
+            }
+        }
+
+        recordDecision(ScheduleDecision.Action.RAN, deferredSince > 0
+            ? String.format("after waiting %ds, %d player(s) online", (now - deferredSince) / 1000, activity.getOnlinePlayers())
+            : "scheduled");
+        deferredSince = 0;
+        nextBackupTime = now + config.getBackupIntervalMillis();
+        submitAutoBackup("auto", null);
+    }
+
+    private String detectBurst(ActivityTracker activity) {
+        if (config.getBurstPlayerCount() > 0 && activity.getPeakPlayers() >= config.getBurstPlayerCount()) {
+            return String.format("burst: %d players online since last backup", activity.getPeakPlayers());
+        }
+        if (config.getBurstChunkCount() > 0) {
+            ActivityTracker.WorldChanges changes = activity.getWorldChanges(false);
+            if (changes.getChunksSaved() >= config.getBurstChunkCount()) {
+                return String.format("burst: %d chunks saved since last backup", changes.getChunksSaved());
+            }
+        }
+        return null;
+    }
+
+    private void recordDecision(ScheduleDecision.Action action, String reason) {
+        ScheduleDecision decision = new ScheduleDecision(System.currentTimeMillis(), action, reason);
+        synchronized (decisions) {
+            decisions.addLast(decision);
+            while (decisions.size() > MAX_DECISIONS) {
+                decisions.removeFirst();
+            }
+        }
+        if (action == ScheduleDecision.Action.SKIPPED) {
+            skippedCount++;
+        } else if (action == ScheduleDecision.Action.RAN) {
+            skippedCount = 0;
+        }
+        LOGGER.info("Auto backup {}: {}", action.name().toLowerCase(), reason);
+    }
+
+    public List<ScheduleDecision> getRecentDecisions() {
+        synchronized (decisions) {
+            return new ArrayList<>(decisions);
+        }
+    }
+
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    private void submitAutoBackup(String label, BackupProfile profile) {
+        submitAutoBackup(label, profile, null);
+    }
+
+    private void submitAutoBackup(String label, BackupProfile profile, List<String> units) {
+        BackupJob<BackupManager.BackupResult> job;
+        try {
+            job = backupManager.submitBackup(BackupJobQueue.JobType.AUTO, label, profile, units,
+                () -> listener.onBackupStart(label));
+        } catch (IllegalStateException e) {
+            listener.onBackupFailed(e.getMessage());
+            return;
+        }
+        if (lastAutoJobs.put(label, job) == job) {
+            return;
+        }
+        job.getFuture().thenAccept(result -> {
+            if (result.isSuccess()) {
+                listener.onBackupComplete(result);
+                if (config.isAutoCleanupEnabled()) {
+                    doCleanup();
+                }
+            } else {
+                listener.onBackupFailed(result.getMessage());
+            }
+        });
     }
 
     private void doCleanup() {
-        BackupCleaner cleaner = new BackupCleaner(
-            backupManager.getBackupDir(),
-            config.getMaxBackups(),
-            config.getMaxBackupAgeDays()
-        );
-        int deleted = cleaner.cleanup();
-        if (deleted > 0) {
-            listener.onCleanupComplete(deleted);
+        try {
+            backupManager.submitCleanup().getFuture().thenAccept(deleted -> {
+                if (deleted > 0) {
+                    listener.onCleanupComplete(deleted);
+                }
+            });
+        } catch (IllegalStateException e) {
+            // Queue is full or shutting down, the next cleanup run will catch up
+        }
+    }
+
+    private void doMaintenance() {
+        BackupJobQueue queue = backupManager.getJobQueue();
+        if (backupManager.getActivityTracker().getOnlinePlayers() > 0 || queue.getCurrent() != null
+            || queue.getPendingCount() > 0) {
+            return;
+        }
+        try {
+            backupManager.submitRecompression(true).getFuture().thenAccept(result -> {
+                if (result.getArchives() > 0 || result.isInterrupted()) {
+                    LOGGER.info(result.getMessage());
+                }
+            });
+        } catch (IllegalStateException e) {
+            // Queue is full or shutting down, the next idle check will retry
         }
     }
 
@@ -80,17 +300,7 @@ public class BackupScheduler {
             cleanupTask.cancel(false);
         }
         
-        cleanupTask = scheduler.scheduleAtFixedRate(() -> {
-            BackupCleaner cleaner = new BackupCleaner(
-                backupManager.getBackupDir(),
-                config.getMaxBackups(),
-                config.getMaxBackupAgeDays()
-            );
-            int deleted = cleaner.cleanup();
-            if (deleted > 0) {
-                listener.onCleanupComplete(deleted);
-            }
-        }, 1, 1, TimeUnit.HOURS);
+        cleanupTask = scheduler.scheduleAtFixedRate(this::doCleanup, 1, 1, TimeUnit.HOURS);
     }
 
     public void stop() {
@@ -98,10 +308,18 @@ public class BackupScheduler {
             backupTask.cancel(false);
             backupTask = null;
         }
+        if (wheel != null) {
+            wheel.clear();
+        }
+        nextFireTimes.clear();
         if (cleanupTask != null) {
             cleanupTask.cancel(false);
             cleanupTask = null;
         }
+        if (maintenanceTask != null) {
+            maintenanceTask.cancel(false);
+            maintenanceTask = null;
+        }
     }
 
     public void shutdown() {
@@ -148,6 +366,31 @@ public class BackupScheduler {
         return String.format("%s (in %dm %ds)", timeStr, minutes, seconds);
     }
 
+    public static class ScheduleDecision {
+        private final long time;
+        private final Action action;
+        private final String reason;
+
+        public ScheduleDecision(long time, Action action, String reason) {
+            this.time = time;
+            this.action = action;
+            this.reason = reason;
+        }
+
+        public long getTime() { return time; }
+        public Action getAction() { return action; }
+        public String getReason() { return reason; }
+
+        public String getFormattedTime() {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault())
+                .format(DateTimeFormatter.ofPattern("HH:mm:ss"));
+        }
+
+        public enum Action {
+            RAN, SKIPPED, DEFERRED, ADVANCED
+        }
+    }
+
     public interface BackupListener {
         boolean onBackupStart(String label);
         void onBackupComplete(BackupManager.BackupResult result);
@@ -0,0 +1,75 @@
+package top.cacl2.backup;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class BackupVolumes {
+    private static final String VOLUME_INFIX = ".v";
+
+    private BackupVolumes() {
+    }
+
+    public static String volumeName(String backupName, int volume) {
+        return volume <= 1 ? backupName : String.format("%s%s%03d", backupName, VOLUME_INFIX, volume);
+    }
+
+    public static Path volumeFile(Path backupFile, int volume) {
+        return backupFile.resolveSibling(volumeName(backupFile.getFileName().toString(), volume));
+    }
+
+    public static boolean isExtraVolume(String fileName) {
+        int index = fileName.lastIndexOf(VOLUME_INFIX);
+        if (index < 0 || !fileName.substring(0, index).endsWith(".zip")) {
+            return false;
+        }
+        String number = fileName.substring(index + VOLUME_INFIX.length());
+        return !number.isEmpty() && number.chars().allMatch(Character::isDigit);
+    }
+
+    public static String mainName(String volumeName) {
+        return volumeName.substring(0, volumeName.lastIndexOf(VOLUME_INFIX));
+    }
+
+    public static List<Path> list(Path backupFile) {
+        List<Path> volumes = new ArrayList<>();
+        if (Files.exists(backupFile)) {
+            volumes.add(backupFile);
+        }
+        for (int volume = 2; ; volume++) {
+            Path file = volumeFile(backupFile, volume);
+            if (!Files.exists(file)) {
+                break;
+            }
+            volumes.add(file);
+        }
+        return volumes;
+    }
+
+    public static long totalSize(Path backupFile) throws IOException {
+        long total = Files.size(backupFile);
+        for (int volume = 2; ; volume++) {
+            Path file = volumeFile(backupFile, volume);
+            if (!Files.exists(file)) {
+                return total;
+            }
+            total += Files.size(file);
+        }
+    }
+
+    public static boolean delete(Path backupFile) throws IOException {
+        boolean deleted = Files.deleteIfExists(backupFile);
+        String glob = backupFile.getFileName().toString().replace("[", "\\[").replace("{", "\\{") + VOLUME_INFIX + "*";
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(backupFile.toAbsolutePath().getParent(), glob)) {
+            for (Path file : stream) {
+                if (isExtraVolume(file.getFileName().toString())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,244 @@
+package top.cacl2.backup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.cacl2.config.BackupProfile;
+import top.cacl2.config.ColdStorage;
+import top.cacl2.metrics.BackupDeleteEvent;
+import top.cacl2.metrics.Phase;
+import top.cacl2.metrics.RunMetrics;
+import top.cacl2.storage.StorageBackend;
+import top.cacl2.storage.StorageUpload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+public class ColdTierMigrator {
+    private static final Logger LOGGER = LoggerFactory.getLogger("cacl2backup");
+
+    private final Path backupDir;
+    private final StorageBackend cold;
+    private final ColdStorage settings;
+    private final RunMetrics metrics;
+
+    public ColdTierMigrator(Path backupDir, StorageBackend cold, ColdStorage settings, RunMetrics metrics) {
+        this.backupDir = backupDir;
+        this.cold = cold;
+        this.settings = settings;
+        this.metrics = metrics != null ? metrics : new RunMetrics();
+    }
+
+    public int migrate(boolean idle) {
+        boolean recompress = settings.getRecompressLevel() > 0;
+        if (recompress && settings.isRecompressWhenIdle() && !idle) {
+            LOGGER.debug("Server is busy, deferring cold tier migration");
+            return 0;
+        }
+
+        List<HotBackup> backups = listBackups();
+        long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(settings.getAfterDays());
+        List<HotBackup> candidates = new ArrayList<>();
+        Set<String> neededBases = new HashSet<>();
+        for (HotBackup backup : backups) {
+            if (backup.createdAt < cutoff) {
+                candidates.add(backup);
+            } else if (backup.base != null) {
+                neededBases.add(backup.base);
+            }
+        }
+        candidates.removeIf(backup -> neededBases.contains(backup.name));
+
+        int migrated = 0;
+        for (HotBackup backup : candidates) {
+            if (move(backup, recompress)) {
+                migrated++;
+            }
+        }
+        return migrated;
+    }
+
+    public long migrateForSpace(long bytesNeeded, int minKeep, Set<String> protectedNames) {
+        if (bytesNeeded <= 0) {
+            return 0;
+        }
+        List<HotBackup> backups = listBackups();
+        long freed = 0;
+        Map<String, Integer> remaining = new HashMap<>();
+        for (HotBackup backup : backups) {
+            remaining.merge(backup.group, 1, Integer::sum);
+        }
+        for (int i = backups.size() - 1; i >= 0; i--) {
+            HotBackup backup = backups.get(i);
+            if (freed >= bytesNeeded) {
+                break;
+            }
+            if (remaining.get(backup.group) <= minKeep || isBaseOfAny(backup, backups.subList(0, i))
+                    || protectedNames.contains(backup.name) || !move(backup, false)) {
+                continue;
+            }
+            freed += backup.size;
+            remaining.merge(backup.group, -1, Integer::sum);
+        }
+        return freed;
+    }
+
+    private boolean move(HotBackup backup, boolean recompress) {
+        BackupDeleteEvent event = new BackupDeleteEvent();
+        event.begin();
+        try (RunMetrics.Span span = metrics.start(Phase.UPLOAD)) {
+            Path sidecar = BackupManifest.sidecarOf(backup.file);
+            String sidecarName = sidecar.getFileName().toString();
+            boolean hasSidecar = Files.exists(sidecar);
+            List<Path> volumes = BackupVolumes.list(backup.file);
+            Map<String, Long> stored = storedSizes();
+            // The sidecar is uploaded last, so finding it in the cold tier means every volume made it there first.
+            boolean committed = hasSidecar && stored.containsKey(sidecarName);
+            boolean recompressed = false;
+            if (!committed) {
+                BackupManifest manifest = BackupManifest.read(backup.file);
+                int level = settings.getRecompressLevel();
+                if (recompress && volumes.size() == 1 && (manifest == null || manifest.getLevel() < level)) {
+                    recompress(backup.file, level);
+                    recompressed = true;
+                    if (manifest != null) {
+                        manifest.setLevel(level);
+                        manifest.write(backup.file);
+                    }
+                } else {
+                    for (Path volume : volumes) {
+                        String name = volume.getFileName().toString();
+                        if (!Objects.equals(stored.get(name), Files.size(volume))) {
+                            cold.uploadFile(volume, name);
+                        }
+                    }
+                }
+                if (hasSidecar) {
+                    cold.uploadFile(sidecar, sidecarName);
+                }
+                stored = storedSizes();
+            }
+            for (Path volume : volumes) {
+                Long size = stored.get(volume.getFileName().toString());
+                if (size == null || !committed && !recompressed && size != Files.size(volume)) {
+                    throw new IOException(volume.getFileName() + " is missing or incomplete in the cold tier");
+                }
+            }
+            if (hasSidecar && !stored.containsKey(sidecarName)) {
+                throw new IOException(sidecarName + " is missing in the cold tier");
+            }
+            BackupVolumes.delete(backup.file);
+            BackupManifest.deleteSidecar(backup.file);
+            metrics.addBytes(backup.size);
+            metrics.addFiles(1);
+            if (event.shouldCommit()) {
+                event.backup = backup.name;
+                event.bytes = backup.size;
+                event.reason = "cold";
+                event.commit();
+            }
+            LOGGER.info("Moved {} to cold tier {}", backup.name, cold.getName());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to move {} to cold tier {}", backup.name, cold.getName(), e);
+            return false;
+        }
+    }
+
+    private Map<String, Long> storedSizes() throws IOException {
+        Map<String, Long> sizes = new HashMap<>();
+        for (StorageBackend.StoredObject object : cold.list()) {
+            sizes.put(object.getName(), object.getSize());
+        }
+        return sizes;
+    }
+
+    private void recompress(Path backupFile, int level) throws IOException {
+        StorageUpload upload = cold.openUpload(backupFile.getFileName().toString());
+        try (upload;
+             ZipInputStream zis = new ZipInputStream(Files.newInputStream(backupFile));
+             ZipOutputStream zos = new ZipOutputStream(upload)) {
+            zos.setLevel(level);
+            byte[] buffer = new byte[65536];
+            ZipEntry source;
+            while ((source = zis.getNextEntry()) != null) {
+                ZipEntry entry = new ZipEntry(source.getName());
+                if (source.getLastModifiedTime() != null) {
+                    entry.setLastModifiedTime(source.getLastModifiedTime());
+                }
+                zos.putNextEntry(entry);
+                int len;
+                while ((len = zis.read(buffer)) > 0) {
+                    zos.write(buffer, 0, len);
+                }
+                zos.closeEntry();
+            }
+            zos.finish();
+            upload.complete();
+        }
+    }
+
+    private static boolean isBaseOfAny(HotBackup candidate, List<HotBackup> newer) {
+        for (HotBackup backup : newer) {
+            if (candidate.name.equals(backup.base)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<HotBackup> listBackups() {
+        List<HotBackup> backups = new ArrayList<>();
+        try (var stream = Files.list(backupDir)) {
+            for (Path file : (Iterable<Path>) stream::iterator) {
+                if (!file.toString().endsWith(".zip")) {
+                    continue;
+                }
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                BackupManifest header = BackupManifest.readHeader(file);
+                long createdAt = header != null && header.getCreatedAt() > 0
+                    ? header.getCreatedAt() : attrs.creationTime().toMillis();
+                backups.add(new HotBackup(file, BackupVolumes.totalSize(file), createdAt, header));
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to list backups for cold tier migration", e);
+        }
+        backups.sort(Comparator.comparingLong((HotBackup backup) -> backup.createdAt).reversed());
+        return backups;
+    }
+
+    private static class HotBackup {
+        private final Path file;
+        private final String name;
+        private final long size;
+        private final long createdAt;
+        private final String base;
+        private final String group;
+
+        HotBackup(Path file, long size, long createdAt, BackupManifest header) {
+            this.file = file;
+            this.name = file.getFileName().toString();
+            this.size = size;
+            this.createdAt = createdAt;
+            this.base = header != null ? header.getBase() : null;
+            String unit = header != null && header.getUnit() != null ? header.getUnit() : "";
+            String tier = header != null && header.getTier() != null ? header.getTier() : BackupProfile.DEFAULT_TIER;
+            this.group = unit + "/" + tier;
+        }
+    }
+}
@@ -1,72 +1,246 @@
 package top.cacl2.backup;
 
+import top.cacl2.metrics.ArchiveFinalizeEvent;
+import top.cacl2.metrics.CompressEntryEvent;
+import top.cacl2.metrics.Phase;
+import top.cacl2.metrics.RunMetrics;
+import top.cacl2.metrics.TimedOutputStream;
+import top.cacl2.storage.Replication;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
 import java.util.zip.*;
 
 public class CompressionUtil {
-    private final int compressionLevel;
-    private final int threadCount;
-    private final ExecutorService executor;
+    private volatile int compressionLevel;
+    private volatile int threadCount;
+    private final ThreadPoolExecutor executor;
+    private volatile DurableOutputStream.Settings writeSettings = DurableOutputStream.Settings.DEFAULT;
+    private volatile StagingPool staging = new StagingPool(64L * 1024 * 1024, 8L * 1024 * 1024, true);
 
     public CompressionUtil(int compressionLevel, int threadCount) {
         this.compressionLevel = compressionLevel;
         this.threadCount = Math.max(1, threadCount);
-        this.executor = Executors.newFixedThreadPool(this.threadCount);
+        this.executor = new ThreadPoolExecutor(this.threadCount, this.threadCount, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>());
+    }
+
+    // Running jobs keep the level and thread share they started with; surplus workers exit after their current task.
+    public synchronized boolean reconfigure(int compressionLevel, int threadCount) {
+        int threads = Math.max(1, threadCount);
+        boolean changed = compressionLevel != this.compressionLevel || threads != this.threadCount;
+        if (threads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        } else if (threads < executor.getMaximumPoolSize()) {
+            executor.setCorePoolSize(threads);
+            executor.setMaximumPoolSize(threads);
+        }
+        this.compressionLevel = compressionLevel;
+        this.threadCount = threads;
+        return changed;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
     }
 
     public CompressionResult compressDirectory(Path sourceDir, Path outputFile) throws Exception {
+        return compressDirectory(sourceDir, outputFile, null);
+    }
+
+    public CompressionResult compressDirectory(Path sourceDir, Path outputFile, BackupJob<?> job) throws Exception {
+        return compressDirectory(sourceDir, outputFile, job, PathFilter.NONE);
+    }
+
+    public CompressionResult compressDirectory(Path sourceDir, Path outputFile, BackupJob<?> job,
+                                               PathFilter filter) throws Exception {
+        return compressFiles(sourceDir, listFiles(sourceDir, filter, null), outputFile, job, compressionLevel, threadCount);
+    }
+
+    public static List<Path> listFiles(Path sourceDir) throws IOException {
+        try (var stream = Files.walk(sourceDir)) {
+            return stream.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+    }
+
+    public static List<Path> listFiles(Path sourceDir, PathFilter filter, PathFilter.Stats stats) throws IOException {
+        return filter.isEmpty() ? listFiles(sourceDir) : filter.walk(sourceDir, sourceDir, List.of(), stats);
+    }
+
+    public CompressionResult compressFiles(Path sourceDir, List<Path> files, Path outputFile, BackupJob<?> job,
+                                           int level, int maxThreads) throws Exception {
+        return compressFiles(sourceDir, files, outputFile, job, level, maxThreads, null, 0, 0);
+    }
+
+    public CompressionResult compressFiles(Path sourceDir, List<Path> files, Path outputFile, BackupJob<?> job,
+                                           int level, int maxThreads, Replication replication,
+                                           long expectedSize, long volumeBytes) throws Exception {
+        if (volumeBytes > 0) {
+            return compressVolumes(sourceDir, files, outputFile, job, level, maxThreads, replication, volumeBytes);
+        }
         long startTime = System.currentTimeMillis();
+        RunMetrics metrics = job != null ? job.getMetrics() : new RunMetrics();
+        ProgressTracker tracker = job != null ? job.getTracker() : new ProgressTracker();
+        tracker.joinPhase("compressing", files.size(), totalSize(files));
+        RunMetrics.Span compressSpan = metrics.start(Phase.COMPRESS);
+        AtomicLong workerCpuNanos = new AtomicLong(0);
         AtomicLong totalBytes = new AtomicLong(0);
-        AtomicLong compressedBytes = new AtomicLong(0);
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        ConcurrentLinkedQueue<BackupManifest.Entry> entries = new ConcurrentLinkedQueue<>();
+        int threadsUsed = Math.max(1, Math.min(maxThreads, threadCount));
+        Semaphore permits = new Semaphore(threadsUsed);
+        metrics.setWorkerThreads(threadsUsed);
 
-        try (OutputStream fos = Files.newOutputStream(outputFile);
-             ZipOutputStream zos = new ZipOutputStream(fos)) {
-            
-            zos.setLevel(compressionLevel);
+        StagingPool pool = staging;
+        AtomicInteger spillIds = new AtomicInteger();
+        DurableOutputStream archive = new DurableOutputStream(outputFile, writeSettings, metrics);
+        OutputStream local = new TimedOutputStream(archive, metrics, Phase.WRITE);
+        try (StagingPool.Session session = pool.open();
+             archive;
+             OutputStream fos = replication != null ? replication.wrap(local) : local) {
             
-            ConcurrentLinkedQueue<Path> filesToCompress = new ConcurrentLinkedQueue<>();
-            try (var stream = Files.walk(sourceDir)) {
-                stream.filter(Files::isRegularFile)
-                      .forEach(filesToCompress::add);
-            }
+            ZipArchiveWriter writer = new ZipArchiveWriter(fos);
+            archive.preallocate(expectedSize);
 
-            int totalFiles = filesToCompress.size();
+            int totalFiles = files.size();
             CountDownLatch latch = new CountDownLatch(totalFiles);
 
-            for (Path file : filesToCompress) {
+            for (Path file : files) {
+                permits.acquire();
                 executor.submit(() -> {
+                    if (failure.get() != null || (job != null && job.isCancelRequested())) {
+                        permits.release();
+                        latch.countDown();
+                        return;
+                    }
+                    long taskStart = System.nanoTime();
+                    long cpuStart = RunMetrics.threadCpuNanos();
                     try {
                         Path relativePath = sourceDir.relativize(file);
                         String entryName = relativePath.toString().replace('\\', '/');
-                        
-                        synchronized (zos) {
-                            ZipEntry entry = new ZipEntry(entryName);
-                            zos.putNextEntry(entry);
-                            
+                        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                        long modified = attrs.lastModifiedTime().toMillis();
+                        CompressEntryEvent event = new CompressEntryEvent();
+                        event.begin();
+
+                        try (StagingPool.Staged staged = pool.stage(attrs.size(),
+                                spillFile(outputFile, spillIds.incrementAndGet()), metrics)) {
+                            long deflateStart = System.nanoTime();
+                            CRC32 crc = new CRC32();
+                            long size = 0;
+                            long readNanos = 0;
+                            Deflater deflater = new Deflater(level, true);
+                            RegionFiles.TimestampCapture timestamps = RegionFiles.isRegionFile(file)
+                                ? new RegionFiles.TimestampCapture() : null;
                             try (InputStream fis = Files.newInputStream(file)) {
+                                DeflaterOutputStream dos = new DeflaterOutputStream(staged, deflater, 8192);
                                 byte[] buffer = new byte[8192];
                                 int len;
-                                while ((len = fis.read(buffer)) > 0) {
-                                    zos.write(buffer, 0, len);
-                                    totalBytes.addAndGet(len);
+                                while (true) {
+                                    long readStart = System.nanoTime();
+                                    len = fis.read(buffer);
+                                    readNanos += System.nanoTime() - readStart;
+                                    if (len <= 0) {
+                                        break;
+                                    }
+                                    crc.update(buffer, 0, len);
+                                    if (timestamps != null) {
+                                        timestamps.update(buffer, 0, len);
+                                    }
+                                    dos.write(buffer, 0, len);
+                                    size += len;
+                                    tracker.addBytes(len);
+                                }
+                                dos.finish();
+                            } finally {
+                                deflater.end();
+                            }
+                            metrics.addTime(Phase.READ, readNanos, 0);
+                            metrics.addTime(Phase.DEFLATE, System.nanoTime() - deflateStart - readNanos, 0);
+
+                            long lockRequested = System.nanoTime();
+                            long lockAcquired;
+                            synchronized (writer) {
+                                lockAcquired = System.nanoTime();
+                                metrics.addTime(Phase.LOCK_WAIT, lockAcquired - lockRequested, 0);
+                                try (InputStream data = staged.openInput()) {
+                                    writer.writeDeflated(entryName, modified, crc.getValue(), size, staged.size(), data);
                                 }
                             }
-                            zos.closeEntry();
+                            entries.add(new BackupManifest.Entry(entryName, size, modified, crc.getValue(), true)
+                                .withChunks(timestamps != null ? timestamps.encode() : null));
+                            if (event.shouldCommit()) {
+                                event.entry = entryName;
+                                event.bytes = size;
+                                event.compressedBytes = staged.size();
+                                event.level = level;
+                                event.lockWait = lockAcquired - lockRequested;
+                                event.commit();
+                            }
+                            totalBytes.addAndGet(size);
+                            metrics.addBytes(size);
                         }
+                        metrics.addFiles(1);
+                        tracker.addFile();
                     } catch (IOException e) {
-                        throw new RuntimeException("Failed to compress file: " + file, e);
+                        failure.compareAndSet(null, new IOException("Failed to compress file: " + file, e));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        failure.compareAndSet(null, new IOException("Interrupted while compressing " + file, e));
                     } finally {
+                        metrics.addWorkerBusy(System.nanoTime() - taskStart);
+                        workerCpuNanos.addAndGet(RunMetrics.threadCpuNanos() - cpuStart);
+                        permits.release();
                         latch.countDown();
                     }
                 });
             }
 
             latch.await();
+            if (job != null) {
+                job.checkCancelled();
+            }
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            ArchiveFinalizeEvent finalizeEvent = new ArchiveFinalizeEvent();
+            finalizeEvent.begin();
+            try (RunMetrics.Span span = metrics.start(Phase.FINALIZE)) {
+                writer.finish();
+                archive.publish();
+            }
+            if (finalizeEvent.shouldCommit()) {
+                finalizeEvent.archive = outputFile.getFileName().toString();
+                finalizeEvent.entries = entries.size();
+                finalizeEvent.bytes = totalBytes.get();
+                finalizeEvent.commit();
+            }
+        } finally {
+            compressSpan.close();
+            metrics.addTime(Phase.COMPRESS, 0, workerCpuNanos.get());
         }
 
         long endTime = System.currentTimeMillis();
@@ -77,10 +251,287 @@ public class CompressionUtil {
             totalBytes.get(),
             compressedSize,
             endTime - startTime,
-            threadCount
+            threadsUsed,
+            new ArrayList<>(entries)
         );
     }
 
+    private CompressionResult compressVolumes(Path sourceDir, List<Path> files, Path outputFile, BackupJob<?> job,
+                                              int level, int maxThreads, Replication replication,
+                                              long volumeBytes) throws Exception {
+        long startTime = System.currentTimeMillis();
+        RunMetrics metrics = job != null ? job.getMetrics() : new RunMetrics();
+        ProgressTracker tracker = job != null ? job.getTracker() : new ProgressTracker();
+        tracker.joinPhase("compressing", files.size(), totalSize(files));
+        int writers = Math.max(1, Math.min(maxThreads, threadCount));
+        metrics.setWorkerThreads(writers);
+        ConcurrentLinkedQueue<Path> queue = new ConcurrentLinkedQueue<>(files);
+        ConcurrentLinkedQueue<BackupManifest.Entry> entries = new ConcurrentLinkedQueue<>();
+        AtomicInteger nextVolume = new AtomicInteger(2);
+        AtomicLong totalBytes = new AtomicLong(0);
+        AtomicLong compressedBytes = new AtomicLong(0);
+        AtomicLong workerCpuNanos = new AtomicLong(0);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+
+        List<Future<?>> futures = new ArrayList<>();
+        try (RunMetrics.Span span = metrics.start(Phase.COMPRESS)) {
+            for (int i = 0; i < writers; i++) {
+                boolean primary = i == 0;
+                futures.add(executor.submit(() -> {
+                    long taskStart = System.nanoTime();
+                    long cpuStart = RunMetrics.threadCpuNanos();
+                    VolumeWriter volume = null;
+                    try {
+                        if (primary) {
+                            volume = new VolumeWriter(outputFile, 1, level, replication, metrics);
+                        }
+                        Path file;
+                        while (failure.get() == null && (job == null || !job.isCancelRequested())
+                                && (file = queue.poll()) != null) {
+                            long size = Files.size(file);
+                            if (volume != null && volume.entries > 0
+                                    && volume.archive.getBytesWritten() + size + size / 100 + 65536 > volumeBytes) {
+                                compressedBytes.addAndGet(volume.publish());
+                                volume = null;
+                            }
+                            if (volume == null) {
+                                volume = new VolumeWriter(outputFile, nextVolume.getAndIncrement(), level,
+                                    replication, metrics);
+                            }
+                            entries.add(volume.add(sourceDir, file, tracker));
+                            totalBytes.addAndGet(size);
+                            metrics.addBytes(size);
+                            metrics.addFiles(1);
+                            tracker.addFile();
+                        }
+                        if (volume != null && failure.get() == null && (job == null || !job.isCancelRequested())) {
+                            compressedBytes.addAndGet(volume.publish());
+                        }
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        if (volume != null) {
+                            volume.abort();
+                        }
+                        metrics.addWorkerBusy(System.nanoTime() - taskStart);
+                        workerCpuNanos.addAndGet(RunMetrics.threadCpuNanos() - cpuStart);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            metrics.addTime(Phase.COMPRESS, 0, workerCpuNanos.get());
+        }
+        if (job != null) {
+            job.checkCancelled();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        return new CompressionResult(
+            outputFile,
+            totalBytes.get(),
+            compressedBytes.get(),
+            System.currentTimeMillis() - startTime,
+            writers,
+            new ArrayList<>(entries),
+            nextVolume.get() - 1
+        );
+    }
+
+    public static long totalSize(List<Path> files) {
+        long total = 0;
+        for (Path file : files) {
+            try {
+                total += Files.size(file);
+            } catch (IOException e) {
+                // Missing files are reported when they are compressed
+            }
+        }
+        return total;
+    }
+
+    // Returns the new size, or -1 when the result was not smaller and the original archive was kept.
+    public long recompress(Path backupFile, BackupManifest manifest, int level, BooleanSupplier interrupted,
+                           BackupJob<?> job) throws IOException {
+        RunMetrics metrics = job.getMetrics();
+        Map<String, BackupManifest.Entry> expected = new HashMap<>();
+        long totalBytes = 0;
+        for (BackupManifest.Entry entry : manifest.getEntries()) {
+            if (entry.isStored()) {
+                expected.put(entry.getPath(), entry);
+                totalBytes += entry.getSize();
+            }
+        }
+        job.getTracker().startPhase("recompressing " + backupFile.getFileName(), expected.size(), totalBytes);
+
+        StagingPool pool = staging;
+        Deque<Pending> window = new ArrayDeque<>();
+        try (RunMetrics.Span span = metrics.start(Phase.COMPRESS);
+             StagingPool.Session session = pool.open();
+             ZipFile source = new ZipFile(backupFile.toFile());
+             DurableOutputStream archive = new DurableOutputStream(backupFile, writeSettings, metrics)) {
+            try {
+                ZipArchiveWriter writer = new ZipArchiveWriter(new TimedOutputStream(archive, metrics, Phase.WRITE));
+                Enumeration<? extends ZipEntry> entries = source.entries();
+                ZipEntry next = null;
+                int spillId = 0;
+                while (true) {
+                    if (interrupted.getAsBoolean()) {
+                        throw new CancellationException("Recompression interrupted");
+                    }
+                    if (next == null && entries.hasMoreElements()) {
+                        next = entries.nextElement();
+                        if (next.isDirectory()) {
+                            next = null;
+                            continue;
+                        }
+                    }
+                    if (next != null && window.size() < threadCount * 2) {
+                        Path spill = spillFile(backupFile, ++spillId);
+                        StagingPool.Staged staged = pool.tryStage(next.getCompressedSize(), spill, metrics);
+                        if (staged == null && window.isEmpty()) {
+                            staged = stageBlocking(pool, next.getCompressedSize(), spill, metrics);
+                        }
+                        if (staged != null) {
+                            ZipEntry entry = next;
+                            StagingPool.Staged output = staged;
+                            window.add(new Pending(executor.submit(
+                                () -> transcode(source, entry, level, interrupted, metrics, output)), output));
+                            next = null;
+                            continue;
+                        }
+                    }
+                    if (window.isEmpty()) {
+                        break;
+                    }
+                    Pending head = window.poll();
+                    try (StagingPool.Staged staged = head.staged) {
+                        Transcoded done = await(head.future);
+                        BackupManifest.Entry reference = expected.get(done.name);
+                        if (reference == null || reference.getCrc() != done.crc || reference.getSize() != done.size) {
+                            throw new IOException("Entry " + done.name + " in " + backupFile.getFileName()
+                                + " does not match the manifest");
+                        }
+                        try (InputStream data = staged.openInput()) {
+                            writer.writeDeflated(done.name, done.mtime, done.crc, done.size, staged.size(), data);
+                        }
+                        job.getTracker().addBytes(done.size);
+                        job.getTracker().addFile();
+                    }
+                }
+                if (writer.getEntryCount() != expected.size()) {
+                    throw new IOException("Archive " + backupFile.getFileName() + " has " + writer.getEntryCount()
+                        + " entries, manifest lists " + expected.size());
+                }
+                try (RunMetrics.Span finalize = metrics.start(Phase.FINALIZE)) {
+                    writer.finish();
+                }
+            } catch (IOException | RuntimeException e) {
+                for (Pending pending : window) {
+                    pending.discard();
+                }
+                throw e;
+            }
+            long newSize = archive.finish();
+            try (ZipFile result = new ZipFile(archive.getPartialFile().toFile())) {
+                for (BackupManifest.Entry entry : expected.values()) {
+                    ZipEntry written = result.getEntry(entry.getPath());
+                    if (written == null || written.getCrc() != entry.getCrc() || written.getSize() != entry.getSize()) {
+                        throw new IOException("Recompressed archive failed verification at " + entry.getPath());
+                    }
+                }
+            }
+            if (newSize >= Files.size(backupFile)) {
+                return -1;
+            }
+            archive.publish();
+            return newSize;
+        }
+    }
+
+    private static Transcoded transcode(ZipFile source, ZipEntry entry, int level, BooleanSupplier interrupted,
+                                        RunMetrics metrics, OutputStream output) throws IOException {
+        long start = System.nanoTime();
+        long cpuStart = RunMetrics.threadCpuNanos();
+        Deflater deflater = new Deflater(level, true);
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[65536];
+        long size = 0;
+        try (InputStream in = source.getInputStream(entry)) {
+            DeflaterOutputStream out = new DeflaterOutputStream(output, deflater, 65536);
+            int len;
+            while ((len = in.read(buffer)) > 0) {
+                if (interrupted.getAsBoolean()) {
+                    throw new CancellationException("Recompression interrupted");
+                }
+                crc.update(buffer, 0, len);
+                size += len;
+                out.write(buffer, 0, len);
+            }
+            out.finish();
+        } finally {
+            deflater.end();
+        }
+        metrics.addTime(Phase.DEFLATE, System.nanoTime() - start, RunMetrics.threadCpuNanos() - cpuStart);
+        metrics.addWorkerBusy(System.nanoTime() - start);
+        metrics.addBytes(size);
+        metrics.addFiles(1);
+        long mtime = entry.getLastModifiedTime() != null ? entry.getLastModifiedTime().toMillis() : entry.getTime();
+        return new Transcoded(entry.getName(), mtime, crc.getValue(), size);
+    }
+
+    private static StagingPool.Staged stageBlocking(StagingPool pool, long expectedBytes, Path spill,
+                                                    RunMetrics metrics) {
+        try {
+            return pool.stage(expectedBytes, spill, metrics);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Recompression interrupted");
+        }
+    }
+
+    private static Transcoded await(Future<Transcoded> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Recompression interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    public void setWriteSettings(DurableOutputStream.Settings writeSettings) {
+        this.writeSettings = writeSettings;
+    }
+
+    public void setMemoryBudget(long budgetBytes, long spillBytes, boolean offHeap) {
+        StagingPool current = staging;
+        if (current.getBudgetBytes() != budgetBytes || current.getSpillBytes() != spillBytes
+                || current.isOffHeap() != offHeap) {
+            staging = new StagingPool(budgetBytes, spillBytes, offHeap);
+        }
+    }
+
+    public StagingPool getStagingPool() {
+        return staging;
+    }
+
+    private static Path spillFile(Path archive, int id) {
+        return archive.resolveSibling(archive.getFileName() + ".spill" + id + DurableOutputStream.PARTIAL_SUFFIX);
+    }
+
     public void decompressArchive(Path zipFile, Path targetDir) throws Exception {
         Files.createDirectories(targetDir);
         
@@ -114,20 +565,179 @@ public class CompressionUtil {
         }
     }
 
+    private static class Transcoded {
+        private final String name;
+        private final long mtime;
+        private final long crc;
+        private final long size;
+
+        Transcoded(String name, long mtime, long crc, long size) {
+            this.name = name;
+            this.mtime = mtime;
+            this.crc = crc;
+            this.size = size;
+        }
+    }
+
+    private static class Pending {
+        private final Future<Transcoded> future;
+        private final StagingPool.Staged staged;
+
+        Pending(Future<Transcoded> future, StagingPool.Staged staged) {
+            this.future = future;
+            this.staged = staged;
+        }
+
+        void discard() {
+            if (!future.cancel(false)) {
+                try {
+                    future.get();
+                } catch (Exception e) {
+                    // The failure that triggered the discard is already being reported
+                }
+            }
+            try {
+                staged.close();
+            } catch (IOException e) {
+                // A leftover spill file is removed on the next start
+            }
+        }
+    }
+
+    private class VolumeWriter {
+        private final Path file;
+        private final int volume;
+        private final int level;
+        private final RunMetrics metrics;
+        private final DurableOutputStream archive;
+        private final Replication replication;
+        private final ZipOutputStream zos;
+        private final byte[] buffer = new byte[8192];
+        private int entries;
+        private boolean published;
+
+        VolumeWriter(Path outputFile, int volume, int level, Replication main, RunMetrics metrics) throws IOException {
+            this.volume = volume;
+            this.level = level;
+            this.metrics = metrics;
+            this.file = BackupVolumes.volumeFile(outputFile, volume);
+            this.archive = new DurableOutputStream(file, writeSettings, metrics);
+            this.replication = main == null || volume == 1 ? main : main.forObject(file.getFileName().toString());
+            OutputStream local = new TimedOutputStream(archive, metrics, Phase.WRITE);
+            this.zos = new ZipOutputStream(replication != null ? replication.wrap(local) : local);
+            zos.setLevel(level);
+        }
+
+        BackupManifest.Entry add(Path sourceDir, Path source, ProgressTracker tracker) throws IOException {
+            String entryName = sourceDir.relativize(source).toString().replace('\\', '/');
+            FileTime modified = Files.getLastModifiedTime(source);
+            CompressEntryEvent event = new CompressEntryEvent();
+            event.begin();
+            long start = System.nanoTime();
+            long readNanos = 0;
+            long size = 0;
+            ZipEntry entry = new ZipEntry(entryName);
+            entry.setLastModifiedTime(modified);
+            RegionFiles.TimestampCapture timestamps = RegionFiles.isRegionFile(source)
+                ? new RegionFiles.TimestampCapture() : null;
+            try {
+                zos.putNextEntry(entry);
+                try (InputStream fis = Files.newInputStream(source)) {
+                    while (true) {
+                        long readStart = System.nanoTime();
+                        int len = fis.read(buffer);
+                        readNanos += System.nanoTime() - readStart;
+                        if (len <= 0) {
+                            break;
+                        }
+                        if (timestamps != null) {
+                            timestamps.update(buffer, 0, len);
+                        }
+                        zos.write(buffer, 0, len);
+                        size += len;
+                        tracker.addBytes(len);
+                    }
+                }
+                zos.closeEntry();
+            } catch (IOException e) {
+                throw new IOException("Failed to compress file: " + source, e);
+            }
+            entries++;
+            metrics.addTime(Phase.READ, readNanos, 0);
+            metrics.addTime(Phase.DEFLATE, System.nanoTime() - start - readNanos, 0);
+            if (event.shouldCommit()) {
+                event.entry = entryName;
+                event.bytes = size;
+                event.compressedBytes = entry.getCompressedSize();
+                event.level = level;
+                event.commit();
+            }
+            return new BackupManifest.Entry(entryName, size, modified.toMillis(), entry.getCrc(), true, volume)
+                .withChunks(timestamps != null ? timestamps.encode() : null);
+        }
+
+        long publish() throws IOException {
+            ArchiveFinalizeEvent event = new ArchiveFinalizeEvent();
+            event.begin();
+            try (RunMetrics.Span span = metrics.start(Phase.FINALIZE)) {
+                zos.finish();
+                archive.publish();
+                published = true;
+            }
+            if (replication != null && volume != 1) {
+                replication.finish(null);
+            }
+            if (event.shouldCommit()) {
+                event.archive = file.getFileName().toString();
+                event.entries = entries;
+                event.commit();
+            }
+            return archive.getBytesWritten();
+        }
+
+        void abort() {
+            if (published) {
+                return;
+            }
+            try {
+                archive.close();
+            } catch (IOException e) {
+                // The partial file is removed on the next start
+            }
+            if (replication != null && volume != 1) {
+                replication.abort();
+            }
+        }
+    }
+
     public static class CompressionResult {
         private final Path outputFile;
         private final long originalSize;
         private final long compressedSize;
         private final long durationMs;
         private final int threadsUsed;
+        private final List<BackupManifest.Entry> entries;
+        private final int volumes;
 
         public CompressionResult(Path outputFile, long originalSize, long compressedSize, 
                                  long durationMs, int threadsUsed) {
+            this(outputFile, originalSize, compressedSize, durationMs, threadsUsed, Collections.emptyList());
+        }
+
+        public CompressionResult(Path outputFile, long originalSize, long compressedSize,
+                                 long durationMs, int threadsUsed, List<BackupManifest.Entry> entries) {
+            this(outputFile, originalSize, compressedSize, durationMs, threadsUsed, entries, 1);
+        }
+
+        public CompressionResult(Path outputFile, long originalSize, long compressedSize, long durationMs,
+                                 int threadsUsed, List<BackupManifest.Entry> entries, int volumes) {
             this.outputFile = outputFile;
             this.originalSize = originalSize;
             this.compressedSize = compressedSize;
             this.durationMs = durationMs;
             this.threadsUsed = threadsUsed;
+            this.entries = entries;
+            this.volumes = volumes;
         }
 
         public Path getOutputFile() { return outputFile; }
@@ -135,6 +745,8 @@ public class CompressionUtil {
         public long getCompressedSize() { return compressedSize; }
         public long getDurationMs() { return durationMs; }
         public int getThreadsUsed() { return threadsUsed; }
+        public List<BackupManifest.Entry> getEntries() { return entries; }
+        public int getVolumes() { return volumes; }
         
         public double getCompressionRatio() {
             return originalSize > 0 ? (double) compressedSize / originalSize : 0;
@@ -0,0 +1,155 @@
+package top.cacl2.backup;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+
+public class CronExpression {
+    private static final int MAX_SEARCH_YEARS = 5;
+
+    private final String expression;
+    private final BitSet minutes;
+    private final BitSet hours;
+    private final BitSet daysOfMonth;
+    private final BitSet months;
+    private final BitSet daysOfWeek;
+    private final boolean anyDayOfMonth;
+    private final boolean anyDayOfWeek;
+
+    private CronExpression(String expression, String[] fields) {
+        this.expression = expression;
+        this.minutes = parseField(fields[0], 0, 59);
+        this.hours = parseField(fields[1], 0, 23);
+        this.daysOfMonth = parseField(fields[2], 1, 31);
+        this.months = parseField(fields[3], 1, 12);
+        this.daysOfWeek = parseField(fields[4], 0, 7);
+        if (daysOfWeek.get(7)) {
+            daysOfWeek.set(0);
+        }
+        this.anyDayOfMonth = fields[2].equals("*") || fields[2].equals("?");
+        this.anyDayOfWeek = fields[4].equals("*") || fields[4].equals("?");
+    }
+
+    public static CronExpression parse(String expression) {
+        if (expression == null) {
+            throw new IllegalArgumentException("Cron expression is empty");
+        }
+        String trimmed = expression.trim();
+        switch (trimmed) {
+            case "@hourly":
+                trimmed = "0 * * * *";
+                break;
+            case "@daily":
+            case "@midnight":
+                trimmed = "0 0 * * *";
+                break;
+            case "@weekly":
+                trimmed = "0 0 * * 0";
+                break;
+            case "@monthly":
+                trimmed = "0 0 1 * *";
+                break;
+            default:
+                break;
+        }
+        String[] fields = trimmed.split("\\s+");
+        if (fields.length != 5) {
+            throw new IllegalArgumentException("Cron expression must have 5 fields (minute hour day month weekday): " + expression);
+        }
+        return new CronExpression(expression.trim(), fields);
+    }
+
+    private static BitSet parseField(String field, int min, int max) {
+        BitSet bits = new BitSet(max + 1);
+        for (String part : field.split(",")) {
+            int step = 1;
+            String range = part;
+            int slash = part.indexOf('/');
+            if (slash >= 0) {
+                step = parseNumber(part.substring(slash + 1), 1, max, part);
+                range = part.substring(0, slash);
+            }
+
+            int start;
+            int end;
+            if (range.equals("*") || range.equals("?")) {
+                start = min;
+                end = max;
+            } else if (range.contains("-")) {
+                String[] bounds = range.split("-", 2);
+                start = parseNumber(bounds[0], min, max, part);
+                end = parseNumber(bounds[1], min, max, part);
+                if (end < start) {
+                    throw new IllegalArgumentException("Invalid cron range: " + part);
+                }
+            } else {
+                start = parseNumber(range, min, max, part);
+                end = slash >= 0 ? max : start;
+            }
+
+            for (int i = start; i <= end; i += step) {
+                bits.set(i);
+            }
+        }
+        return bits;
+    }
+
+    private static int parseNumber(String value, int min, int max, String part) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number < min || number > max) {
+                throw new IllegalArgumentException("Cron value out of range [" + min + "-" + max + "]: " + part);
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cron value: " + part);
+        }
+    }
+
+    public boolean matches(LocalDateTime time) {
+        return minutes.get(time.getMinute())
+            && hours.get(time.getHour())
+            && months.get(time.getMonthValue())
+            && dayMatches(time);
+    }
+
+    private boolean dayMatches(LocalDateTime time) {
+        boolean domMatch = daysOfMonth.get(time.getDayOfMonth());
+        boolean dowMatch = daysOfWeek.get(time.getDayOfWeek().getValue() % 7);
+        if (anyDayOfMonth || anyDayOfWeek) {
+            return domMatch && dowMatch;
+        }
+        return domMatch || dowMatch;
+    }
+
+    public LocalDateTime next(LocalDateTime after) {
+        LocalDateTime time = after.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        LocalDateTime limit = after.plusYears(MAX_SEARCH_YEARS);
+
+        while (time.isBefore(limit)) {
+            if (!months.get(time.getMonthValue())) {
+                time = time.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS).plusMonths(1);
+                continue;
+            }
+            if (!dayMatches(time)) {
+                time = time.truncatedTo(ChronoUnit.DAYS).plusDays(1);
+                continue;
+            }
+            if (!hours.get(time.getHour())) {
+                time = time.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+                continue;
+            }
+            if (!minutes.get(time.getMinute())) {
+                time = time.plusMinutes(1);
+                continue;
+            }
+            return time;
+        }
+        throw new IllegalStateException("Cron expression never fires: " + expression);
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
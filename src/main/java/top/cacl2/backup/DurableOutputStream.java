@@ -0,0 +1,232 @@
+package top.cacl2.backup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.cacl2.config.Durability;
+import top.cacl2.metrics.Phase;
+import top.cacl2.metrics.RunMetrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.foreign.Arena;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+public class DurableOutputStream extends OutputStream {
+    private static final Logger LOGGER = LoggerFactory.getLogger("cacl2backup");
+    public static final String PARTIAL_SUFFIX = ".partial";
+    private static final int PREALLOCATE_BLOCK = 256 * 1024;
+
+    private final Path target;
+    private final Path partial;
+    private final Settings settings;
+    private final RunMetrics metrics;
+    private final FileChannel channel;
+    private final Arena arena;
+    private final ByteBuffer buffer;
+    private long position;
+    private long unsynced;
+    private long preallocated;
+    private boolean finished;
+    private boolean closed;
+
+    public DurableOutputStream(Path target, Settings settings, RunMetrics metrics) throws IOException {
+        this.target = target;
+        this.partial = target.resolveSibling(target.getFileName() + PARTIAL_SUFFIX);
+        this.settings = settings;
+        this.metrics = metrics != null ? metrics : new RunMetrics();
+        this.channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        // A heap buffer this size is a humongous allocation under G1; keep it off-heap and free it on close.
+        this.arena = settings.isOffHeap() ? Arena.ofShared() : null;
+        this.buffer = arena != null ? arena.allocate(settings.getBufferBytes()).asByteBuffer()
+            : ByteBuffer.allocate(settings.getBufferBytes());
+    }
+
+    public void preallocate(long bytes) throws IOException {
+        if (!settings.isPreallocate() || bytes <= position) {
+            return;
+        }
+        // Java has no fallocate and a write past the end only makes a sparse file, so the blocks are zero-filled.
+        ByteBuffer zeros = ByteBuffer.allocate(PREALLOCATE_BLOCK);
+        for (long offset = Math.max(position, channel.size()); offset < bytes; ) {
+            zeros.clear().limit((int) Math.min(PREALLOCATE_BLOCK, bytes - offset));
+            offset += channel.write(zeros, offset);
+        }
+        preallocated = bytes;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len >= buffer.capacity()) {
+            drain();
+            writeFully(ByteBuffer.wrap(b, off, len));
+            return;
+        }
+        if (len > buffer.remaining()) {
+            drain();
+        }
+        buffer.put(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (!closed) {
+            drain();
+        }
+    }
+
+    public long finish() throws IOException {
+        if (!finished) {
+            drain();
+            if (preallocated > position) {
+                channel.truncate(position);
+            }
+            if (settings.getMode() != Durability.NONE) {
+                sync(true);
+            }
+            finished = true;
+        }
+        return position;
+    }
+
+    public void publish() throws IOException {
+        finish();
+        closed = true;
+        try {
+            channel.close();
+        } finally {
+            freeBuffer();
+        }
+        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (settings.getMode() == Durability.FSYNC_DIR) {
+            syncDirectory(target.toAbsolutePath().getParent(), metrics);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            channel.close();
+        } finally {
+            freeBuffer();
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    public long getBytesWritten() {
+        return closed ? position : position + buffer.position();
+    }
+
+    public Path getPartialFile() {
+        return partial;
+    }
+
+    private void freeBuffer() {
+        if (arena != null) {
+            arena.close();
+        }
+    }
+
+    private void drain() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer data) throws IOException {
+        int len = data.remaining();
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+        position += len;
+        unsynced += len;
+        if (settings.getMode() == Durability.PERIODIC && unsynced >= settings.getSyncIntervalBytes()) {
+            sync(false);
+        }
+    }
+
+    private void sync(boolean metadata) throws IOException {
+        long start = System.nanoTime();
+        channel.force(metadata);
+        metrics.addTime(Phase.FSYNC, System.nanoTime() - start, 0);
+        unsynced = 0;
+    }
+
+    public static void syncDirectory(Path dir, RunMetrics metrics) {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            LOGGER.debug("Directory fsync is not supported for {}", dir, e);
+        }
+        if (metrics != null) {
+            metrics.addTime(Phase.FSYNC, System.nanoTime() - start, 0);
+        }
+    }
+
+    public static void deletePartials(Path dir) {
+        try (var stream = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) stream::iterator) {
+                if (file.getFileName().toString().endsWith(PARTIAL_SUFFIX)) {
+                    LOGGER.info("Removing incomplete file {}", file.getFileName());
+                    if (Files.isDirectory(file)) {
+                        LinkTree.delete(file, LinkTree.DELETE_THREADS);
+                    } else {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to clean up incomplete files in {}", dir, e);
+        }
+    }
+
+    public static class Settings {
+        public static final Settings DEFAULT = new Settings(Durability.NONE, 64 * 1024, 0, false);
+
+        private final Durability mode;
+        private final int bufferBytes;
+        private final long syncIntervalBytes;
+        private final boolean preallocate;
+        private final boolean offHeap;
+
+        public Settings(Durability mode, int bufferBytes, long syncIntervalBytes, boolean preallocate) {
+            this(mode, bufferBytes, syncIntervalBytes, preallocate, false);
+        }
+
+        public Settings(Durability mode, int bufferBytes, long syncIntervalBytes, boolean preallocate,
+                        boolean offHeap) {
+            this.mode = mode != null ? mode : Durability.NONE;
+            this.bufferBytes = Math.max(8192, bufferBytes);
+            this.syncIntervalBytes = Math.max(1024 * 1024, syncIntervalBytes);
+            this.preallocate = preallocate;
+            this.offHeap = offHeap;
+        }
+
+        public Durability getMode() { return mode; }
+        public int getBufferBytes() { return bufferBytes; }
+        public long getSyncIntervalBytes() { return syncIntervalBytes; }
+        public boolean isPreallocate() { return preallocate; }
+        public boolean isOffHeap() { return offHeap; }
+    }
+}
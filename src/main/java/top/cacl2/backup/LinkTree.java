@@ -0,0 +1,297 @@
+package top.cacl2.backup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.cacl2.metrics.Phase;
+import top.cacl2.metrics.RunMetrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+public class LinkTree {
+    private static final Logger LOGGER = LoggerFactory.getLogger("cacl2backup");
+    public static final String SUFFIX = ".tree";
+    public static final int DELETE_THREADS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    private static final int PARALLEL_DELETE_THRESHOLD = 256;
+
+    private final Path worldDir;
+    private final Path previousTree;
+    private final Map<String, BackupManifest.Entry> previous;
+    private final boolean verifyHash;
+
+    public LinkTree(Path worldDir, Path previousTree, Map<String, BackupManifest.Entry> previous, boolean verifyHash) {
+        this.worldDir = worldDir;
+        this.previousTree = previousTree;
+        this.previous = previousTree != null ? previous : Map.of();
+        this.verifyHash = verifyHash;
+    }
+
+    public static boolean isTree(Path path) {
+        return path.getFileName().toString().endsWith(SUFFIX) && Files.isDirectory(path);
+    }
+
+    // Bytes that will be copied rather than linked, judged by size and mtime only.
+    public long estimateCopyBytes(List<Path> files) throws IOException {
+        long bytes = 0;
+        for (Path file : files) {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!matches(previous.get(entryName(file)), attrs)) {
+                bytes += attrs.size();
+            }
+        }
+        return bytes;
+    }
+
+    public Result create(List<Path> files, Path target, int threads, BackupJob<?> job) throws IOException {
+        Path partial = target.resolveSibling(target.getFileName() + DurableOutputStream.PARTIAL_SUFFIX);
+        delete(partial, DELETE_THREADS);
+        Files.createDirectories(partial);
+        Result result = new Result();
+        job.getTracker().startPhase("linking", files.size(), CompressionUtil.totalSize(files));
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "cacl2backup-tree");
+            t.setDaemon(true);
+            return t;
+        });
+        try (RunMetrics.Span span = job.getMetrics().start(Phase.COPY)) {
+            List<Future<BackupManifest.Entry>> futures = new ArrayList<>();
+            for (Path file : files) {
+                futures.add(pool.submit(() -> {
+                    job.checkCancelled();
+                    return place(file, partial, result, job);
+                }));
+            }
+            for (Future<BackupManifest.Entry> future : futures) {
+                result.entries.add(future.get());
+            }
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (ExecutionException e) {
+            delete(partial, DELETE_THREADS);
+            if (e.getCause() instanceof CancellationException cancelled) {
+                throw cancelled;
+            }
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            delete(partial, DELETE_THREADS);
+            throw new IOException("Interrupted while writing " + target.getFileName(), e);
+        } catch (IOException | RuntimeException e) {
+            delete(partial, DELETE_THREADS);
+            throw e;
+        } finally {
+            pool.shutdownNow();
+        }
+        job.getMetrics().addBytes(result.copiedBytes.get());
+        job.getMetrics().addFiles(files.size());
+        return result;
+    }
+
+    private BackupManifest.Entry place(Path file, Path treeDir, Result result, BackupJob<?> job) throws IOException {
+        String name = entryName(file);
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        long mtime = attrs.lastModifiedTime().toMillis();
+        Path target = treeDir.resolve(name);
+        Files.createDirectories(target.getParent());
+        BackupManifest.Entry before = previous.get(name);
+        long crc = verifyHash ? crc(file) : 0;
+        if (matches(before, attrs) && (!verifyHash || before.getCrc() == 0 || before.getCrc() == crc)) {
+            try {
+                Files.createLink(target, previousTree.resolve(name));
+                result.linkedFiles.incrementAndGet();
+                job.getTracker().addBytes(attrs.size());
+                job.getTracker().addFile();
+                return new BackupManifest.Entry(name, before.getSize(), mtime, verifyHash ? crc : before.getCrc(), true)
+                    .withChunks(before.getChunks());
+            } catch (IOException | UnsupportedOperationException e) {
+                // The previous tree lost the file or sits on another file system; copy it instead.
+                Files.deleteIfExists(target);
+            }
+        }
+        long size = copy(file, target);
+        Files.setLastModifiedTime(target, attrs.lastModifiedTime());
+        result.copiedFiles.incrementAndGet();
+        result.copiedBytes.addAndGet(size);
+        job.getTracker().addBytes(size);
+        job.getTracker().addFile();
+        String chunks = RegionFiles.isRegionFile(file) ? RegionFiles.encodeTimestamps(target) : null;
+        return new BackupManifest.Entry(name, size, mtime, crc, true).withChunks(chunks);
+    }
+
+    private static boolean matches(BackupManifest.Entry before, BasicFileAttributes attrs) {
+        return before != null && before.getSize() == attrs.size()
+            && before.getMtime() == attrs.lastModifiedTime().toMillis();
+    }
+
+    private String entryName(Path file) {
+        return worldDir.relativize(file).toString().replace('\\', '/');
+    }
+
+    // Copies in the kernel; on file systems with reflinks this shares blocks instead of duplicating them.
+    private static long copy(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                long n = in.transferTo(position, size - position, out);
+                if (n <= 0) {
+                    break;
+                }
+                position += n;
+            }
+            return position;
+        }
+    }
+
+    private static long crc(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    // Restores never link into the world: the server rewrites region files in place, which would alter every backup sharing them.
+    public static void copyOut(Path tree, Path targetDir, Predicate<String> paths, BackupJob<?> job) throws IOException {
+        List<Path> files = new ArrayList<>();
+        long totalBytes = 0;
+        try (var stream = Files.walk(tree)) {
+            for (Path file : (Iterable<Path>) stream.filter(Files::isRegularFile)::iterator) {
+                String name = tree.relativize(file).toString().replace('\\', '/');
+                if (paths == null || paths.test(name)) {
+                    files.add(file);
+                    totalBytes += Files.size(file);
+                }
+            }
+        }
+        job.getTracker().startPhase("copying " + tree.getFileName(), files.size(), totalBytes);
+        try (RunMetrics.Span span = job.getMetrics().start(Phase.COPY)) {
+            for (Path file : files) {
+                job.checkCancelled();
+                Path target = targetDir.resolve(tree.relativize(file).toString());
+                Files.createDirectories(target.getParent());
+                Files.deleteIfExists(target);
+                long size = copy(file, target);
+                Files.setLastModifiedTime(target, Files.getLastModifiedTime(file));
+                job.getTracker().addBytes(size);
+                job.getTracker().addFile();
+            }
+        }
+        LOGGER.info("Copied {} files from {}", files.size(), tree.getFileName());
+    }
+
+    // Returns the bytes actually released, which excludes files still linked from other trees, or -1 if absent.
+    public static long delete(Path dir, int threads) throws IOException {
+        if (!Files.exists(dir)) {
+            return -1;
+        }
+        List<Path> files = new ArrayList<>();
+        List<Path> dirs = new ArrayList<>();
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                files.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path directory, IOException exc) {
+                dirs.add(directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        AtomicLong freed = new AtomicLong();
+        if (threads <= 1 || files.size() < PARALLEL_DELETE_THRESHOLD) {
+            for (Path file : files) {
+                freed.addAndGet(release(file));
+            }
+        } else {
+            ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "cacl2backup-delete");
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                int batch = (files.size() + threads * 4 - 1) / (threads * 4);
+                List<Future<?>> futures = new ArrayList<>();
+                for (int from = 0; from < files.size(); from += batch) {
+                    List<Path> slice = files.subList(from, Math.min(files.size(), from + batch));
+                    futures.add(pool.submit(() -> {
+                        for (Path file : slice) {
+                            try {
+                                freed.addAndGet(release(file));
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof UncheckedIOException unchecked ? unchecked.getCause()
+                    : new IOException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while deleting " + dir.getFileName(), e);
+            } finally {
+                pool.shutdown();
+            }
+        }
+        for (Path directory : dirs) {
+            Files.delete(directory);
+        }
+        return freed.get();
+    }
+
+    private static long release(Path file) throws IOException {
+        long size;
+        try {
+            Map<String, Object> attrs = Files.readAttributes(file, "unix:size,nlink", LinkOption.NOFOLLOW_LINKS);
+            size = ((Number) attrs.get("nlink")).intValue() <= 1 ? ((Number) attrs.get("size")).longValue() : 0;
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            size = Files.size(file);
+        }
+        Files.delete(file);
+        return size;
+    }
+
+    public static class Result {
+        private final List<BackupManifest.Entry> entries = new ArrayList<>();
+        private final AtomicInteger copiedFiles = new AtomicInteger();
+        private final AtomicInteger linkedFiles = new AtomicInteger();
+        private final AtomicLong copiedBytes = new AtomicLong();
+
+        public List<BackupManifest.Entry> getEntries() { return entries; }
+        public int getCopiedFiles() { return copiedFiles.get(); }
+        public int getLinkedFiles() { return linkedFiles.get(); }
+        public long getCopiedBytes() { return copiedBytes.get(); }
+
+        public long getTotalBytes() {
+            return entries.stream().mapToLong(BackupManifest.Entry::getSize).sum();
+        }
+    }
+}
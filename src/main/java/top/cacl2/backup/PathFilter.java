@@ -0,0 +1,455 @@
+package top.cacl2.backup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.cacl2.config.FilterRule;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+public class PathFilter {
+    private static final Logger LOGGER = LoggerFactory.getLogger("cacl2backup");
+    private static final int NO_RULE = Integer.MAX_VALUE;
+    private static final int[] NO_RULES = new int[0];
+
+    public static final PathFilter NONE = new PathFilter(new ArrayList<>());
+
+    private final List<CompiledRule> rules;
+    private final Node trie = new Node();
+
+    private PathFilter(List<CompiledRule> rules) {
+        this.rules = rules;
+        for (CompiledRule rule : rules) {
+            Node node = trie;
+            for (String segment : rule.prefix) {
+                node = node.children.computeIfAbsent(segment, key -> new Node());
+            }
+            node.rules = Arrays.copyOf(node.rules, node.rules.length + 1);
+            node.rules[node.rules.length - 1] = rule.index;
+        }
+        trie.seal(rules);
+    }
+
+    public static PathFilter compile(List<FilterRule> configured) {
+        List<CompiledRule> rules = new ArrayList<>();
+        if (configured != null) {
+            for (FilterRule rule : configured) {
+                if (rule == null || rule.getGlob().isEmpty() && rule.getRegex().isEmpty()) {
+                    continue;
+                }
+                try {
+                    rules.add(new CompiledRule(rules.size(), rule));
+                } catch (PatternSyntaxException e) {
+                    LOGGER.warn("Ignoring filter rule {}: {}", rule.getName(), e.getDescription());
+                }
+            }
+        }
+        return rules.isEmpty() ? NONE : new PathFilter(rules);
+    }
+
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    public int getRuleCount() {
+        return rules.size();
+    }
+
+    public Stats newStats() {
+        return new Stats(rules);
+    }
+
+    public List<Path> walk(Path root, Path dir, Collection<String> skipped, Stats stats) throws IOException {
+        List<Path> files = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        Deque<DirState> stack = new ArrayDeque<>();
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attrs) {
+                String relative = relativize(root, directory);
+                if (skipped.contains(relative)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                DirState state = stack.isEmpty() ? enter(relative) : stack.peek().child(relative);
+                CompiledRule covering = state.inherited != NO_RULE ? rules.get(state.inherited) : null;
+                if (covering != null && covering.action == FilterRule.Action.EXCLUDE
+                        && state.minInclude() > covering.index) {
+                    if (stats != null) {
+                        stats.prune(covering.index);
+                    }
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                stack.push(state);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (!attrs.isRegularFile()) {
+                    return FileVisitResult.CONTINUE;
+                }
+                DirState parent = stack.isEmpty() ? enter("") : stack.peek();
+                String relative = relativize(root, file);
+                CompiledRule matched = match(parent, relative, attrs, now);
+                if (matched == null || matched.action == FilterRule.Action.INCLUDE) {
+                    files.add(file);
+                }
+                if (matched != null && stats != null) {
+                    stats.hit(matched, attrs.size());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path directory, IOException exc) throws IOException {
+                if (exc != null) {
+                    throw exc;
+                }
+                stack.pop();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    private CompiledRule match(DirState parent, String relative, BasicFileAttributes attrs, long now) {
+        Node own = parent.node != null ? parent.node.children.get(name(relative)) : null;
+        int[] candidates = own != null ? merge(parent.candidates, own.rules) : parent.candidates;
+        for (int index : candidates) {
+            if (index > parent.inherited) {
+                break;
+            }
+            CompiledRule rule = rules.get(index);
+            if (rule.matchesFile(relative, attrs, now)) {
+                return rule;
+            }
+        }
+        return parent.inherited != NO_RULE ? rules.get(parent.inherited) : null;
+    }
+
+    private DirState enter(String relative) {
+        DirState state = new DirState(trie, trie.rules, NO_RULE);
+        if (relative.isEmpty()) {
+            return state.cover("");
+        }
+        int start = 0;
+        while (true) {
+            int end = relative.indexOf('/', start);
+            state = state.child(end < 0 ? relative : relative.substring(0, end));
+            if (end < 0) {
+                return state;
+            }
+            start = end + 1;
+        }
+    }
+
+    private static String relativize(Path root, Path path) {
+        return root.relativize(path).toString().replace('\\', '/');
+    }
+
+    private static String name(String relative) {
+        return relative.substring(relative.lastIndexOf('/') + 1);
+    }
+
+    private static int[] merge(int[] a, int[] b) {
+        if (b.length == 0) {
+            return a;
+        }
+        if (a.length == 0) {
+            return b;
+        }
+        int[] merged = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length || j < b.length) {
+            merged[k++] = j >= b.length || i < a.length && a[i] < b[j] ? a[i++] : b[j++];
+        }
+        return merged;
+    }
+
+    private class DirState {
+        private final Node node;
+        private final int[] candidates;
+        private final int inherited;
+
+        DirState(Node node, int[] candidates, int inherited) {
+            this.node = node;
+            this.candidates = candidates;
+            this.inherited = inherited;
+        }
+
+        DirState child(String relative) {
+            Node next = node != null ? node.children.get(name(relative)) : null;
+            int[] nextCandidates = next != null ? merge(candidates, next.rules) : candidates;
+            return new DirState(next, nextCandidates, inherited).cover(relative);
+        }
+
+        DirState cover(String relative) {
+            for (int index : candidates) {
+                if (index >= inherited) {
+                    break;
+                }
+                if (rules.get(index).coversDirectory(relative)) {
+                    return new DirState(node, candidates, index);
+                }
+            }
+            return this;
+        }
+
+        int minInclude() {
+            int min = node != null ? node.minInclude : NO_RULE;
+            for (int index : candidates) {
+                if (index >= min) {
+                    break;
+                }
+                if (rules.get(index).action == FilterRule.Action.INCLUDE) {
+                    return index;
+                }
+            }
+            return min;
+        }
+    }
+
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private int[] rules = NO_RULES;
+        private int minInclude = NO_RULE;
+
+        int seal(List<CompiledRule> compiled) {
+            for (int index : rules) {
+                if (compiled.get(index).action == FilterRule.Action.INCLUDE) {
+                    minInclude = Math.min(minInclude, index);
+                }
+            }
+            for (Node child : children.values()) {
+                minInclude = Math.min(minInclude, child.seal(compiled));
+            }
+            return minInclude;
+        }
+    }
+
+    private static class CompiledRule {
+        private final int index;
+        private final String name;
+        private final FilterRule.Action action;
+        private final List<String> prefix;
+        private final Pattern pattern;
+        private final Pattern directoryPattern;
+        private final boolean regex;
+        private final boolean predicates;
+        private final long minSize;
+        private final long maxSize;
+        private final long olderThanMillis;
+        private final long newerThanMillis;
+
+        CompiledRule(int index, FilterRule rule) {
+            this.index = index;
+            this.name = rule.getName();
+            this.action = rule.getAction();
+            this.predicates = rule.hasFilePredicates();
+            this.minSize = rule.getMinSizeKB() * 1024;
+            this.maxSize = rule.getMaxSizeKB() * 1024;
+            this.olderThanMillis = TimeUnit.DAYS.toMillis(rule.getOlderThanDays());
+            this.newerThanMillis = TimeUnit.DAYS.toMillis(rule.getNewerThanDays());
+            this.prefix = new ArrayList<>();
+            if (!rule.getGlob().isEmpty()) {
+                String glob = rule.getGlob().replace('\\', '/');
+                while (glob.startsWith("/")) {
+                    glob = glob.substring(1);
+                }
+                for (String segment : glob.split("/")) {
+                    if (segment.chars().anyMatch(c -> "*?[{".indexOf(c) >= 0)) {
+                        break;
+                    }
+                    prefix.add(segment);
+                }
+                this.regex = false;
+                this.pattern = Pattern.compile(globToRegex(glob));
+                this.directoryPattern = glob.endsWith("/**")
+                    ? Pattern.compile(globToRegex(glob.substring(0, glob.length() - 3))) : null;
+            } else {
+                this.regex = true;
+                this.pattern = Pattern.compile(rule.getRegex());
+                this.directoryPattern = null;
+            }
+        }
+
+        boolean coversDirectory(String relative) {
+            if (predicates || relative.isEmpty()) {
+                return false;
+            }
+            return matches(pattern, relative) || directoryPattern != null && directoryPattern.matcher(relative).matches();
+        }
+
+        boolean matchesFile(String relative, BasicFileAttributes attrs, long now) {
+            if (!matches(pattern, relative)) {
+                return false;
+            }
+            long size = attrs.size();
+            long age = now - attrs.lastModifiedTime().toMillis();
+            return (minSize <= 0 || size >= minSize)
+                && (maxSize <= 0 || size <= maxSize)
+                && (olderThanMillis <= 0 || age >= olderThanMillis)
+                && (newerThanMillis <= 0 || age < newerThanMillis);
+        }
+
+        private boolean matches(Pattern compiled, String relative) {
+            return regex ? compiled.matcher(relative).find() : compiled.matcher(relative).matches();
+        }
+
+        static String globToRegex(String glob) {
+            StringBuilder regex = new StringBuilder();
+            boolean inClass = false;
+            int alternatives = 0;
+            for (int i = 0; i < glob.length(); i++) {
+                char c = glob.charAt(i);
+                if (inClass) {
+                    if (c == ']') {
+                        inClass = false;
+                    } else if (c == '\\' || c == '[' || c == '&') {
+                        regex.append('\\');
+                    }
+                    regex.append(c);
+                    continue;
+                }
+                switch (c) {
+                    case '*' -> {
+                        if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                            boolean slash = i + 2 < glob.length() && glob.charAt(i + 2) == '/';
+                            regex.append(slash ? "(?:.*/)?" : ".*");
+                            i += slash ? 2 : 1;
+                        } else {
+                            regex.append("[^/]*");
+                        }
+                    }
+                    case '?' -> regex.append("[^/]");
+                    case '[' -> {
+                        inClass = true;
+                        regex.append('[');
+                        if (i + 1 < glob.length() && glob.charAt(i + 1) == '!') {
+                            regex.append('^');
+                            i++;
+                        }
+                    }
+                    case '{' -> {
+                        alternatives++;
+                        regex.append("(?:");
+                    }
+                    case '}' -> {
+                        if (alternatives > 0) {
+                            alternatives--;
+                            regex.append(')');
+                        } else {
+                            regex.append("\\}");
+                        }
+                    }
+                    case ',' -> regex.append(alternatives > 0 ? "|" : ",");
+                    case '\\' -> {
+                        if (i + 1 < glob.length()) {
+                            regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+                        }
+                    }
+                    default -> regex.append(Character.isLetterOrDigit(c) || c == '/' || c == '_' || c == '-'
+                        ? String.valueOf(c) : "\\" + c);
+                }
+            }
+            if (inClass || alternatives > 0) {
+                throw new PatternSyntaxException("Unclosed group", glob, glob.length());
+            }
+            return regex.toString();
+        }
+    }
+
+    public static class Stats {
+        private final List<String> names = new ArrayList<>();
+        private final List<FilterRule.Action> actions = new ArrayList<>();
+        private final AtomicLongArray files;
+        private final AtomicLongArray bytes;
+        private final AtomicLongArray directories;
+
+        Stats(List<CompiledRule> rules) {
+            for (CompiledRule rule : rules) {
+                names.add(rule.name);
+                actions.add(rule.action);
+            }
+            this.files = new AtomicLongArray(rules.size());
+            this.bytes = new AtomicLongArray(rules.size());
+            this.directories = new AtomicLongArray(rules.size());
+        }
+
+        void hit(CompiledRule rule, long size) {
+            files.incrementAndGet(rule.index);
+            bytes.addAndGet(rule.index, size);
+        }
+
+        void prune(int rule) {
+            directories.incrementAndGet(rule);
+        }
+
+        public long getExcludedFiles() {
+            return sum(files, FilterRule.Action.EXCLUDE);
+        }
+
+        public long getExcludedBytes() {
+            return sum(bytes, FilterRule.Action.EXCLUDE);
+        }
+
+        public long getPrunedDirectories() {
+            return sum(directories, FilterRule.Action.EXCLUDE);
+        }
+
+        public boolean isEmpty() {
+            return getExcludedFiles() == 0 && getPrunedDirectories() == 0;
+        }
+
+        private long sum(AtomicLongArray values, FilterRule.Action action) {
+            long total = 0;
+            for (int i = 0; i < values.length(); i++) {
+                if (actions.get(i) == action) {
+                    total += values.get(i);
+                }
+            }
+            return total;
+        }
+
+        public List<String> describe() {
+            List<String> lines = new ArrayList<>();
+            for (int i = 0; i < names.size(); i++) {
+                if (files.get(i) == 0 && directories.get(i) == 0) {
+                    continue;
+                }
+                if (actions.get(i) == FilterRule.Action.INCLUDE) {
+                    lines.add(String.format("%s: kept %d file(s)", names.get(i), files.get(i)));
+                } else {
+                    lines.add(String.format("%s: skipped %d file(s), %s, %d director%s pruned", names.get(i),
+                        files.get(i), BackupManager.formatSize(bytes.get(i)), directories.get(i),
+                        directories.get(i) == 1 ? "y" : "ies"));
+                }
+            }
+            return lines;
+        }
+
+        public String getSummary() {
+            return String.format("%d file(s) (%s) and %d director%s excluded by filters", getExcludedFiles(),
+                BackupManager.formatSize(getExcludedBytes()), getPrunedDirectories(),
+                getPrunedDirectories() == 1 ? "y" : "ies");
+        }
+    }
+}
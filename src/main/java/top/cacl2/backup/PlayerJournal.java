@@ -0,0 +1,571 @@
+package top.cacl2.backup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+public class PlayerJournal {
+    private static final Logger LOGGER = LoggerFactory.getLogger("cacl2backup");
+    private static final int MAGIC = 0x43504A31;
+    private static final List<String> FOLDERS = List.of("playerdata", "advancements", "stats");
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final Path file;
+    private final Map<String, List<Version>> versions = new HashMap<>();
+    private final Map<String, Long> seen = new ConcurrentHashMap<>();
+    private final Map<UUID, Long> pendingRestores = new ConcurrentHashMap<>();
+    private final Set<UUID> staging = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, StagedRestore> staged = new ConcurrentHashMap<>();
+    private final ExecutorService writer;
+    private final LongSupplier clock;
+    private volatile long maxBytes = 64L * 1024 * 1024;
+    private volatile long retentionMillis = TimeUnit.HOURS.toMillis(48);
+
+    public PlayerJournal(Path backupDir) {
+        this(backupDir, System::currentTimeMillis);
+    }
+
+    PlayerJournal(Path backupDir, LongSupplier clock) {
+        this.file = backupDir.resolve(".player_journal");
+        this.clock = clock;
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "cacl2backup-journal");
+            t.setDaemon(true);
+            return t;
+        });
+        load();
+    }
+
+    public void configure(long maxBytes, long retentionMillis) {
+        this.maxBytes = Math.max(1024 * 1024, maxBytes);
+        this.retentionMillis = Math.max(TimeUnit.MINUTES.toMillis(10), retentionMillis);
+    }
+
+    // Called on the server thread right after PlayerList.saveAll; the changed files are read on the journal thread.
+    public void capture(Path worldDir, Map<UUID, String> names) {
+        long time = clock.getAsLong();
+        writer.execute(() -> {
+            List<Capture> captures = collect(worldDir, names);
+            if (!captures.isEmpty()) {
+                append(time, captures);
+            }
+        });
+    }
+
+    public synchronized List<Long> getHistory(UUID player) {
+        TreeSet<Long> times = new TreeSet<>();
+        for (String entry : entriesOf(player)) {
+            for (Version version : versions.get(entry)) {
+                times.add(version.time);
+            }
+        }
+        return new ArrayList<>(times.descendingSet());
+    }
+
+    public synchronized UUID findPlayer(String name) {
+        UUID found = null;
+        long latest = -1;
+        for (List<Version> list : versions.values()) {
+            Version last = list.get(list.size() - 1);
+            if (last.name.equalsIgnoreCase(name) && last.time > latest) {
+                found = last.player;
+                latest = last.time;
+            }
+        }
+        return found;
+    }
+
+    public synchronized String getName(UUID player) {
+        String name = "";
+        long latest = -1;
+        for (String entry : entriesOf(player)) {
+            Version last = versions.get(entry).get(versions.get(entry).size() - 1);
+            if (!last.name.isEmpty() && last.time > latest) {
+                name = last.name;
+                latest = last.time;
+            }
+        }
+        return name.isEmpty() ? player.toString() : name;
+    }
+
+    public void requestRestore(UUID player, long time) {
+        pendingRestores.put(player, time);
+    }
+
+    public boolean hasPendingRestores() {
+        return !pendingRestores.isEmpty() || !staging.isEmpty() || !staged.isEmpty();
+    }
+
+    // Called every tick on the server thread. The player must be offline, otherwise their next save overwrites the
+    // restored files, so the journal thread only writes the files next to the originals and the swap happens here.
+    public void applyPendingRestores(Path worldDir, Predicate<UUID> online) {
+        for (Map.Entry<UUID, Long> request : pendingRestores.entrySet()) {
+            UUID player = request.getKey();
+            if (online.test(player) || staging.contains(player) || staged.containsKey(player)) {
+                continue;
+            }
+            long time = request.getValue();
+            pendingRestores.remove(player);
+            staging.add(player);
+            writer.execute(() -> {
+                try {
+                    staged.put(player, stage(player, time, worldDir));
+                } catch (IOException e) {
+                    LOGGER.error("Failed to restore player data of {}", player, e);
+                } finally {
+                    staging.remove(player);
+                }
+            });
+        }
+        for (Map.Entry<UUID, StagedRestore> entry : staged.entrySet()) {
+            UUID player = entry.getKey();
+            StagedRestore restore = entry.getValue();
+            staged.remove(player);
+            if (online.test(player)) {
+                // They joined while the files were being written, try again once they leave.
+                pendingRestores.putIfAbsent(player, restore.time);
+                writer.execute(() -> discard(restore));
+                continue;
+            }
+            try {
+                int files = commit(restore);
+                LOGGER.info("Restored {} player file(s) of {} as of {}", files, getName(player),
+                    formatTime(restore.time));
+            } catch (IOException e) {
+                LOGGER.error("Failed to restore player data of {}", player, e);
+            }
+        }
+    }
+
+    public int restore(UUID player, long time, Path worldDir) throws IOException {
+        return commit(stage(player, time, worldDir));
+    }
+
+    public synchronized long getSizeBytes() {
+        try {
+            return Files.exists(file) ? Files.size(file) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    public synchronized int getVersionCount() {
+        int count = 0;
+        for (List<Version> list : versions.values()) {
+            count += list.size();
+        }
+        return count;
+    }
+
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static long parseTime(String text, long now) {
+        String value = text.trim();
+        try {
+            if (value.matches("\\d+[smhd]")) {
+                long amount = Long.parseLong(value.substring(0, value.length() - 1));
+                Duration ago = switch (value.charAt(value.length() - 1)) {
+                    case 's' -> Duration.ofSeconds(amount);
+                    case 'm' -> Duration.ofMinutes(amount);
+                    case 'h' -> Duration.ofHours(amount);
+                    default -> Duration.ofDays(amount);
+                };
+                return now - ago.toMillis();
+            }
+            if (value.matches("\\d{1,2}:\\d{2}(:\\d{2})?")) {
+                LocalDateTime at = LocalDate.now().atTime(LocalTime.parse(value.length() < 5 ? "0" + value : value));
+                return at.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            }
+            String full = value.replace('T', ' ').replace('_', ' ');
+            LocalDateTime at = LocalDateTime.parse(full.length() == 16 ? full + ":00" : full, TIME_FORMAT);
+            return at.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Unrecognised time '" + text
+                + "', use 30m, 2h, 14:05 or 2025-01-31 14:05");
+        }
+    }
+
+    public static String formatTime(long time) {
+        return TIME_FORMAT.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault()));
+    }
+
+    private synchronized void append(long time, List<Capture> captures) {
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        List<Version> added = new ArrayList<>();
+        try {
+            long offset = Files.exists(file) ? Files.size(file) : 0;
+            DataOutputStream out = new DataOutputStream(batch);
+            if (offset == 0) {
+                out.writeInt(MAGIC);
+            }
+            for (Capture capture : captures) {
+                CRC32 crc = new CRC32();
+                crc.update(capture.data);
+                List<Version> list = versions.get(capture.entry);
+                Version last = list != null ? list.get(list.size() - 1) : null;
+                if (last != null && last.crc == (int) crc.getValue() && last.size == capture.data.length) {
+                    continue;
+                }
+                byte[] compressed = deflate(capture.data);
+                writeString(out, capture.entry);
+                writeString(out, capture.name);
+                out.writeLong(time);
+                out.writeInt((int) crc.getValue());
+                out.writeInt(capture.data.length);
+                out.writeInt(compressed.length);
+                long dataOffset = offset + out.size();
+                out.write(compressed);
+                added.add(new Version(capture.entry, capture.name, time, (int) crc.getValue(), capture.data.length,
+                    dataOffset, compressed.length));
+            }
+            if (added.isEmpty()) {
+                return;
+            }
+            out.flush();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND)) {
+                ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            for (Version version : added) {
+                versions.computeIfAbsent(version.entry, e -> new ArrayList<>()).add(version);
+            }
+            LOGGER.debug("Journaled {} changed player file(s)", added.size());
+            if (offset + batch.size() > maxBytes) {
+                compact();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to append to player journal", e);
+            for (Capture capture : captures) {
+                seen.remove(capture.entry);
+            }
+        }
+    }
+
+    // Keeps every version inside the retention window plus the last one before it, so any time in the window restores.
+    private void compact() throws IOException {
+        long cutoff = clock.getAsLong() - retentionMillis;
+        List<Version> kept = new ArrayList<>();
+        for (List<Version> list : versions.values()) {
+            for (int i = 0; i < list.size(); i++) {
+                Version version = list.get(i);
+                if (version.time >= cutoff || i == list.size() - 1 || list.get(i + 1).time > cutoff) {
+                    kept.add(version);
+                }
+            }
+        }
+        if (kept.size() == getVersionCount()) {
+            return;
+        }
+        kept.sort(Comparator.comparingLong((Version v) -> v.time).thenComparing(v -> v.entry));
+        long before = Files.size(file);
+        try (DurableOutputStream archive = new DurableOutputStream(file, DurableOutputStream.Settings.DEFAULT, null)) {
+            DataOutputStream out = new DataOutputStream(archive);
+            out.writeInt(MAGIC);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                for (Version version : kept) {
+                    writeString(out, version.entry);
+                    writeString(out, version.name);
+                    out.writeLong(version.time);
+                    out.writeInt(version.crc);
+                    out.writeInt(version.size);
+                    out.writeInt(version.length);
+                    out.write(readRaw(channel, version));
+                }
+            }
+            out.flush();
+            archive.publish();
+        }
+        versions.clear();
+        load();
+        LOGGER.info("Compacted player journal: {} -> {}, {} version(s) kept", BackupManager.formatSize(before),
+            BackupManager.formatSize(Files.size(file)), kept.size());
+    }
+
+    private synchronized void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        long good = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a player journal");
+            }
+            long offset = 4;
+            good = offset;
+            while (true) {
+                String entry;
+                try {
+                    entry = readString(in);
+                } catch (EOFException e) {
+                    break;
+                }
+                String name = readString(in);
+                long time = in.readLong();
+                int crc = in.readInt();
+                int size = in.readInt();
+                int length = in.readInt();
+                offset += 2 + utf8Length(entry) + 2 + utf8Length(name) + 8 + 4 + 4 + 4;
+                in.readFully(new byte[length]);
+                versions.computeIfAbsent(entry, e -> new ArrayList<>())
+                    .add(new Version(entry, name, time, crc, size, offset, length));
+                offset += length;
+                good = offset;
+            }
+        } catch (EOFException e) {
+            LOGGER.warn("Player journal ends in a partial record, truncating to {} bytes", good);
+            truncate(good);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read player journal {}, starting a new one", file, e);
+            versions.clear();
+            truncate(0);
+        }
+    }
+
+    private List<Capture> collect(Path worldDir, Map<UUID, String> names) {
+        List<Capture> captures = new ArrayList<>();
+        for (String folder : FOLDERS) {
+            Path dir = worldDir.resolve(folder);
+            if (!Files.isDirectory(dir)) {
+                continue;
+            }
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path path : stream) {
+                    UUID player = playerOf(path);
+                    if (player == null) {
+                        continue;
+                    }
+                    String entry = folder + "/" + path.getFileName();
+                    long stamp = stampOf(path);
+                    if (Objects.equals(seen.get(entry), stamp)) {
+                        continue;
+                    }
+                    byte[] data = Files.readAllBytes(path);
+                    // Saved again while it was read, the next interval picks up the finished file.
+                    if (stampOf(path) != stamp) {
+                        continue;
+                    }
+                    captures.add(new Capture(entry, names.getOrDefault(player, ""), data));
+                    seen.put(entry, stamp);
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Failed to capture player data in {}", dir, e);
+            }
+        }
+        return captures;
+    }
+
+    private synchronized StagedRestore stage(UUID player, long time, Path worldDir) throws IOException {
+        StagedRestore restore = new StagedRestore(time, worldDir);
+        try {
+            for (String entry : entriesOf(player)) {
+                Version match = null;
+                for (Version version : versions.get(entry)) {
+                    if (version.time <= time) {
+                        match = version;
+                    }
+                }
+                if (match == null) {
+                    continue;
+                }
+                Path target = worldDir.resolve(entry);
+                Files.createDirectories(target.getParent());
+                Files.write(StagedRestore.tempOf(target), read(match));
+                restore.entries.add(entry);
+            }
+        } catch (IOException e) {
+            discard(restore);
+            throw e;
+        }
+        return restore;
+    }
+
+    private int commit(StagedRestore restore) throws IOException {
+        for (String entry : restore.entries) {
+            Path target = restore.worldDir.resolve(entry);
+            Files.move(StagedRestore.tempOf(target), target, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+            seen.remove(entry);
+        }
+        return restore.entries.size();
+    }
+
+    private static void discard(StagedRestore restore) {
+        for (String entry : restore.entries) {
+            try {
+                Files.deleteIfExists(StagedRestore.tempOf(restore.worldDir.resolve(entry)));
+            } catch (IOException e) {
+                LOGGER.warn("Failed to delete staged player file {}", entry, e);
+            }
+        }
+    }
+
+    private static long stampOf(Path path) throws IOException {
+        return Files.getLastModifiedTime(path).toMillis() * 31 + Files.size(path);
+    }
+
+    private void truncate(long size) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to truncate player journal", e);
+        }
+    }
+
+    private List<String> entriesOf(UUID player) {
+        List<String> entries = new ArrayList<>();
+        for (Map.Entry<String, List<Version>> entry : versions.entrySet()) {
+            if (player.equals(entry.getValue().get(0).player)) {
+                entries.add(entry.getKey());
+            }
+        }
+        return entries;
+    }
+
+    private byte[] read(Version version) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             InputStream in = new InflaterInputStream(new ByteArrayInputStream(readRaw(channel, version)))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] readRaw(FileChannel channel, Version version) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(version.length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, version.offset + buffer.position()) < 0) {
+                throw new EOFException("Player journal is shorter than its index");
+            }
+        }
+        return buffer.array();
+    }
+
+    private static byte[] deflate(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DeflaterOutputStream dos = new DeflaterOutputStream(out, deflater)) {
+            dos.write(data);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    private static UUID playerOf(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if (dot < 0 || !(name.endsWith(".dat") || name.endsWith(".json"))) {
+            return null;
+        }
+        try {
+            return UUID.fromString(name.substring(0, dot));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int utf8Length(String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static class Capture {
+        private final String entry;
+        private final String name;
+        private final byte[] data;
+
+        Capture(String entry, String name, byte[] data) {
+            this.entry = entry;
+            this.name = name;
+            this.data = data;
+        }
+    }
+
+    private static class StagedRestore {
+        private final long time;
+        private final Path worldDir;
+        private final List<String> entries = new ArrayList<>();
+
+        StagedRestore(long time, Path worldDir) {
+            this.time = time;
+            this.worldDir = worldDir;
+        }
+
+        static Path tempOf(Path target) {
+            return target.resolveSibling(target.getFileName() + ".restore");
+        }
+    }
+
+    private static class Version {
+        private final String entry;
+        private final UUID player;
+        private final String name;
+        private final long time;
+        private final int crc;
+        private final int size;
+        private final long offset;
+        private final int length;
+
+        Version(String entry, String name, long time, int crc, int size, long offset, int length) {
+            this.entry = entry;
+            this.player = playerOf(Path.of(entry));
+            this.name = name;
+            this.time = time;
+            this.crc = crc;
+            this.size = size;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
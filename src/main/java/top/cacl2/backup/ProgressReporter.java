@@ -0,0 +1,98 @@
+package top.cacl2.backup;
+
+import com.mojang.authlib.GameProfile;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerBossEvent;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.server.players.NameAndId;
+import net.minecraft.world.BossEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.cacl2.config.BackupConfig;
+
+import java.util.concurrent.TimeUnit;
+
+public class ProgressReporter {
+    private static final Logger LOGGER = LoggerFactory.getLogger("cacl2backup");
+
+    private final BackupJobQueue jobQueue;
+    private final BackupConfig config;
+    private ServerBossEvent bossBar;
+    private long bossBarJobId = -1;
+    private long lastLogTime = 0;
+    private long loggedJobId = -1;
+
+    public ProgressReporter(BackupJobQueue jobQueue, BackupConfig config) {
+        this.jobQueue = jobQueue;
+        this.config = config;
+    }
+
+    public void tick(MinecraftServer server) {
+        BackupJob<?> job = jobQueue.getCurrent();
+        if (job == null || job.getState() != BackupJob.State.RUNNING || !job.getTracker().isStarted()) {
+            hideBossBar();
+            loggedJobId = -1;
+            return;
+        }
+
+        if (config.isProgressBossBar()) {
+            updateBossBar(server, job);
+        } else {
+            hideBossBar();
+        }
+        logProgress(job);
+    }
+
+    private void updateBossBar(MinecraftServer server, BackupJob<?> job) {
+        ProgressTracker tracker = job.getTracker();
+        if (bossBar == null || bossBarJobId != job.getId()) {
+            hideBossBar();
+            BossEvent.BossBarColor color = job.getType() == BackupJobQueue.JobType.RESTORE
+                ? BossEvent.BossBarColor.RED
+                : BossEvent.BossBarColor.GREEN;
+            bossBar = new ServerBossEvent(Component.literal(""), color, BossEvent.BossBarOverlay.PROGRESS);
+            bossBarJobId = job.getId();
+        }
+
+        String title = job.getType() == BackupJobQueue.JobType.RESTORE ? "Restore" : "Backup";
+        long eta = tracker.getEtaSeconds();
+        bossBar.setName(Component.literal(String.format("[CaCl2Backup] %s %.0f%%%s", title, tracker.getFraction() * 100,
+            eta >= 0 ? " - ETA " + ProgressTracker.formatDuration(eta) : "")));
+        bossBar.setProgress((float) tracker.getFraction());
+
+        for (ServerPlayer player : server.getPlayerList().getPlayers()) {
+            GameProfile profile = player.getGameProfile();
+            if (server.getPlayerList().isOp(new NameAndId(profile.id(), profile.name()))) {
+                bossBar.addPlayer(player);
+            } else {
+                bossBar.removePlayer(player);
+            }
+        }
+    }
+
+    private void logProgress(BackupJob<?> job) {
+        int interval = config.getProgressLogIntervalSeconds();
+        if (interval <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (loggedJobId != job.getId()) {
+            loggedJobId = job.getId();
+            lastLogTime = now;
+            return;
+        }
+        if (now - lastLogTime >= TimeUnit.SECONDS.toMillis(interval)) {
+            lastLogTime = now;
+            LOGGER.info("Job {}", job.getSummary());
+        }
+    }
+
+    public void hideBossBar() {
+        if (bossBar != null) {
+            bossBar.removeAllPlayers();
+            bossBar = null;
+            bossBarJobId = -1;
+        }
+    }
+}
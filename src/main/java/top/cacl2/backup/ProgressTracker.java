@@ -0,0 +1,111 @@
+package top.cacl2.backup;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ProgressTracker {
+    private static final long MIN_RATE_NANOS = 1_000_000_000L;
+
+    private final AtomicLong bytesDone = new AtomicLong();
+    private final AtomicLong filesDone = new AtomicLong();
+    private volatile long totalBytes;
+    private volatile long totalFiles;
+    private volatile long phaseStartNanos;
+    private volatile String phase = "";
+
+    public synchronized void startPhase(String phase, long totalFiles, long totalBytes) {
+        this.phase = phase;
+        this.totalFiles = totalFiles;
+        this.totalBytes = totalBytes;
+        this.bytesDone.set(0);
+        this.filesDone.set(0);
+        this.phaseStartNanos = System.nanoTime();
+    }
+
+    public synchronized void joinPhase(String phase, long files, long bytes) {
+        if (!phase.equals(this.phase)) {
+            startPhase(phase, files, bytes);
+            return;
+        }
+        this.totalFiles += files;
+        this.totalBytes += bytes;
+    }
+
+    public void addBytes(long count) {
+        bytesDone.addAndGet(count);
+    }
+
+    public void addFile() {
+        filesDone.incrementAndGet();
+    }
+
+    public boolean isStarted() {
+        return phaseStartNanos != 0;
+    }
+
+    public String getPhase() { return phase; }
+    public long getBytesDone() { return bytesDone.get(); }
+    public long getFilesDone() { return filesDone.get(); }
+    public long getTotalBytes() { return totalBytes; }
+    public long getTotalFiles() { return totalFiles; }
+
+    public double getFraction() {
+        long total = totalBytes;
+        if (total > 0) {
+            return Math.min(1.0, (double) bytesDone.get() / total);
+        }
+        long files = totalFiles;
+        return files > 0 ? Math.min(1.0, (double) filesDone.get() / files) : 0;
+    }
+
+    public double getBytesPerSecond() {
+        long elapsed = System.nanoTime() - phaseStartNanos;
+        if (!isStarted() || elapsed < MIN_RATE_NANOS) {
+            return 0;
+        }
+        return bytesDone.get() * 1_000_000_000.0 / elapsed;
+    }
+
+    public long getEtaSeconds() {
+        long elapsed = System.nanoTime() - phaseStartNanos;
+        double fraction = getFraction();
+        if (!isStarted() || elapsed < MIN_RATE_NANOS || fraction <= 0) {
+            return -1;
+        }
+        double remaining = elapsed / fraction - elapsed;
+        return Math.max(0, Math.round(remaining / 1_000_000_000.0));
+    }
+
+    public String describe() {
+        StringBuilder sb = new StringBuilder(phase);
+        long files = totalFiles;
+        long bytes = totalBytes;
+        if (files > 0 || bytes > 0) {
+            sb.append(String.format(" %.0f%%", getFraction() * 100));
+        }
+        if (files > 0) {
+            sb.append(", ").append(filesDone.get()).append('/').append(files).append(" files");
+        }
+        if (bytes > 0) {
+            sb.append(", ").append(BackupManager.formatSize(bytesDone.get())).append('/').append(BackupManager.formatSize(bytes));
+        }
+        double rate = getBytesPerSecond();
+        if (rate > 0) {
+            sb.append(" at ").append(BackupManager.formatSize((long) rate)).append("/s");
+        }
+        long eta = getEtaSeconds();
+        if (eta >= 0) {
+            sb.append(", ETA ").append(formatDuration(eta));
+        }
+        return sb.toString();
+    }
+
+    public static String formatDuration(long seconds) {
+        if (seconds < 60) {
+            return seconds + "s";
+        }
+        if (seconds < 3600) {
+            return (seconds / 60) + "m " + (seconds % 60) + "s";
+        }
+        return (seconds / 3600) + "h " + (seconds % 3600 / 60) + "m";
+    }
+}
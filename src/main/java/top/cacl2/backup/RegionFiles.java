@@ -0,0 +1,186 @@
+package top.cacl2.backup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public final class RegionFiles {
+    public static final int CHUNKS_PER_REGION = 1024;
+    public static final int SECTOR_SIZE = 4096;
+    public static final int HEADER_SIZE = SECTOR_SIZE * 2;
+
+    private RegionFiles() {
+    }
+
+    public static boolean isRegionFile(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".mca") || name.endsWith(".mcr");
+    }
+
+    public static int[] readTimestamps(Path regionFile) throws IOException {
+        return Arrays.copyOfRange(readHeader(regionFile), CHUNKS_PER_REGION, CHUNKS_PER_REGION * 2);
+    }
+
+    // The location table followed by the timestamp table; all zero when the file has no complete header.
+    private static int[] readHeader(Path regionFile) throws IOException {
+        int[] header = new int[CHUNKS_PER_REGION * 2];
+        try (FileChannel channel = FileChannel.open(regionFile, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return header;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, buffer.position());
+                if (read < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            for (int i = 0; i < header.length && buffer.remaining() >= 4; i++) {
+                header[i] = buffer.getInt();
+            }
+        }
+        return header;
+    }
+
+    public static int countChunksSavedSince(Path regionFile, long sinceMillis) throws IOException {
+        return savedSince(regionFile, sinceMillis).getChunks();
+    }
+
+    // A saved chunk is rewritten whole, so its sectors plus the header approximate what changed in the file.
+    public static SavedChunks savedSince(Path regionFile, long sinceMillis) throws IOException {
+        long sinceSeconds = sinceMillis / 1000;
+        int[] header = readHeader(regionFile);
+        int chunks = 0;
+        long bytes = 0;
+        for (int i = 0; i < CHUNKS_PER_REGION; i++) {
+            int timestamp = header[CHUNKS_PER_REGION + i];
+            if (timestamp != 0 && Integer.toUnsignedLong(timestamp) >= sinceSeconds) {
+                chunks++;
+                bytes += (long) (header[i] & 0xFF) * SECTOR_SIZE;
+            }
+        }
+        return new SavedChunks(chunks, chunks > 0 ? bytes + HEADER_SIZE : 0);
+    }
+
+    public static String encodeTimestamps(Path regionFile) throws IOException {
+        TimestampCapture capture = new TimestampCapture();
+        try (InputStream in = Files.newInputStream(regionFile)) {
+            byte[] header = in.readNBytes(HEADER_SIZE);
+            capture.update(header, 0, header.length);
+        }
+        return capture.encode();
+    }
+
+    public static int[] decodeTimestamps(String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+        byte[] table = new byte[SECTOR_SIZE];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(Base64.getDecoder().decode(encoded));
+            int length = 0;
+            while (length < table.length && !inflater.finished()) {
+                int n = inflater.inflate(table, length, table.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != table.length) {
+                return null;
+            }
+        } catch (DataFormatException | IllegalArgumentException e) {
+            return null;
+        } finally {
+            inflater.end();
+        }
+        int[] timestamps = new int[CHUNKS_PER_REGION];
+        ByteBuffer.wrap(table).asIntBuffer().get(timestamps);
+        return timestamps;
+    }
+
+    // Chunk coordinates of the chunks whose save timestamps differ between two versions of a region file.
+    public static List<int[]> changedChunks(String entryName, int[] before, int[] after) {
+        int regionX = 0;
+        int regionZ = 0;
+        String[] parts = entryName.substring(entryName.lastIndexOf('/') + 1).split("\\.");
+        if (parts.length == 4) {
+            try {
+                regionX = Integer.parseInt(parts[1]);
+                regionZ = Integer.parseInt(parts[2]);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        List<int[]> changed = new ArrayList<>();
+        for (int i = 0; i < CHUNKS_PER_REGION; i++) {
+            if (before[i] != after[i]) {
+                changed.add(new int[]{regionX * 32 + (i & 31), regionZ * 32 + (i >> 5)});
+            }
+        }
+        return changed;
+    }
+
+    public static class SavedChunks {
+        private final int chunks;
+        private final long bytes;
+
+        public SavedChunks(int chunks, long bytes) {
+            this.chunks = chunks;
+            this.bytes = bytes;
+        }
+
+        public int getChunks() { return chunks; }
+        public long getBytes() { return bytes; }
+    }
+
+    // Collects the timestamp table of a region file from the buffers it is read in, so it costs no extra I/O.
+    public static class TimestampCapture {
+        private final byte[] table = new byte[SECTOR_SIZE];
+        private long position;
+        private int captured;
+
+        public void update(byte[] buffer, int off, int len) {
+            long start = Math.max(position, SECTOR_SIZE);
+            long end = Math.min(position + len, HEADER_SIZE);
+            if (start < end) {
+                System.arraycopy(buffer, off + (int) (start - position), table, (int) (start - SECTOR_SIZE),
+                    (int) (end - start));
+                captured += (int) (end - start);
+            }
+            position += len;
+        }
+
+        public String encode() {
+            if (captured < SECTOR_SIZE) {
+                return null;
+            }
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try {
+                deflater.setInput(table);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(SECTOR_SIZE / 4);
+                byte[] chunk = new byte[1024];
+                while (!deflater.finished()) {
+                    out.write(chunk, 0, deflater.deflate(chunk));
+                }
+                return Base64.getEncoder().encodeToString(out.toByteArray());
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+}
@@ -5,30 +5,50 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import top.cacl2.config.BackupConfig;
+import top.cacl2.config.BackupProfile;
+import top.cacl2.metrics.BackupMetrics;
+import top.cacl2.metrics.Phase;
+import top.cacl2.metrics.RestoreExtractEvent;
+import top.cacl2.metrics.RestoreSwapEvent;
+import top.cacl2.metrics.RunMetrics;
 
 public class RestoreManager {
     private static final Logger LOGGER = LoggerFactory.getLogger("cacl2backup");
     private final BackupManager backupManager;
     private final Path gameDir;
-    private final Path worldDir;
     private final Path pendingRestoreFile;
     private final ScheduledExecutorService scheduler;
-    private volatile boolean isRestoring = false;
 
     public RestoreManager(BackupManager backupManager, Path gameDir) {
         this.backupManager = backupManager;
         this.gameDir = gameDir;
-        this.worldDir = gameDir.resolve("world");
         this.pendingRestoreFile = gameDir.resolve(".pending_restore");
         this.scheduler = new ScheduledThreadPoolExecutor(1, r -> {
             Thread t = new Thread(r, "cacl2backup-restart-scheduler");
@@ -38,41 +58,54 @@ public class RestoreManager {
     }
 
     public CompletableFuture<RestoreResult> restoreBackup(MinecraftServer server, BackupConfig config, String backupName) {
-        if (isRestoring) {
+        return restoreBackup(server, config, backupName, null);
+    }
+
+    public CompletableFuture<RestoreResult> restoreBackup(MinecraftServer server, BackupConfig config, String backupName,
+                                                          String pathPrefix) {
+        if (isRestoring()) {
             return CompletableFuture.completedFuture(
                 new RestoreResult(false, "A restore is already in progress")
             );
         }
 
-        Path backupFile = backupManager.getBackupDir().resolve(backupName);
-        if (!backupName.endsWith(".zip")) {
-            backupFile = backupManager.getBackupDir().resolve(backupName + ".zip");
-        }
+        Path backupFile = backupManager.resolveBackupFile(backupName);
 
-        if (!Files.exists(backupFile)) {
+        if (!Files.exists(backupFile) && backupManager.getStorage().isEmpty()) {
             return CompletableFuture.completedFuture(
                 new RestoreResult(false, "Backup file not found: " + backupFile)
             );
         }
 
         final Path finalBackupFile = backupFile;
+        final Predicate<String> paths = pathFilter(pathPrefix);
         final boolean autoRestart = config.isAutoRestartAfterRestore();
         final int delaySeconds = config.getRestartDelaySeconds();
         final boolean broadcastMsg = config.isBroadcastRestoreMessage();
         final String msgTemplate = config.getRestoreRestartMessage();
 
-        return CompletableFuture.supplyAsync(() -> {
-            isRestoring = true;
+        BackupJobQueue jobQueue = backupManager.getJobQueue();
+        return jobQueue.<RestoreResult>submit(BackupJobQueue.JobType.RESTORE, "restore " + finalBackupFile.getFileName(), null, job -> {
             long startTime = System.currentTimeMillis();
+            Path tempWorldDir = getWorldDir().resolveSibling("world_temp_restore");
 
             try {
-                Path tempWorldDir = worldDir.resolveSibling("world_temp_restore");
-
+                if (!Files.isDirectory(finalBackupFile)
+                        && (!Files.exists(finalBackupFile) || !backupManager.getStorage().isEmpty())) {
+                    job.getTracker().startPhase("downloading", 0, 0);
+                    if (backupManager.getStorage().fetch(finalBackupFile.getFileName().toString(),
+                            backupManager.getBackupDir(), job.getMetrics(), paths) == null) {
+                        job.getMetrics().markFailed();
+                        return new RestoreResult(false, "Backup file not found locally or on any storage target: "
+                            + finalBackupFile.getFileName());
+                    }
+                }
                 deleteDirectory(tempWorldDir);
                 Files.createDirectories(tempWorldDir);
 
-                LOGGER.info("Starting restore from: {}", finalBackupFile);
-                decompressArchive(finalBackupFile, tempWorldDir);
+                LOGGER.info("Starting restore from: {}{}", finalBackupFile,
+                    paths != null ? " (only " + pathPrefix + ")" : "");
+                extractBackup(finalBackupFile, tempWorldDir, job, paths);
 
                 savePendingRestore(tempWorldDir, finalBackupFile.getFileName().toString());
 
@@ -104,13 +137,21 @@ public class RestoreManager {
                         "The world will be replaced when the server stops.");
                 }
 
+            } catch (CancellationException e) {
+                job.getMetrics().markFailed();
+                LOGGER.info("Restore from {} cancelled", finalBackupFile);
+                try {
+                    deleteDirectory(tempWorldDir);
+                } catch (IOException deleteError) {
+                    LOGGER.warn("Failed to remove partial restore {}", tempWorldDir, deleteError);
+                }
+                return new RestoreResult(false, "Restore cancelled");
             } catch (Exception e) {
+                job.getMetrics().markFailed();
                 LOGGER.error("Restore failed", e);
                 return new RestoreResult(false, "Restore failed: " + e.getMessage());
-            } finally {
-                isRestoring = false;
             }
-        });
+        }).getFuture();
     }
 
     private void savePendingRestore(Path tempWorldDir, String backupName) throws IOException {
@@ -151,11 +192,28 @@ public class RestoreManager {
                 return;
             }
 
-            LOGGER.info("Removing current world...");
-            deleteDirectory(worldDir);
-
-            LOGGER.info("Moving restored world from: {}", tempWorldDir);
-            Files.move(tempWorldDir, worldDir, StandardCopyOption.REPLACE_EXISTING);
+            Path worldDir = getWorldDir();
+            RunMetrics run = new RunMetrics();
+            run.begin(0, 0);
+            RestoreSwapEvent swapEvent = new RestoreSwapEvent();
+            swapEvent.begin();
+            boolean swapped = false;
+            try (RunMetrics.Span span = run.start(Phase.SWAP)) {
+                LOGGER.info("Removing current world...");
+                deleteDirectory(worldDir);
+
+                LOGGER.info("Moving restored world from: {}", tempWorldDir);
+                Files.move(tempWorldDir, worldDir, StandardCopyOption.REPLACE_EXISTING);
+                swapped = true;
+            } finally {
+                if (swapEvent.shouldCommit()) {
+                    swapEvent.backup = backupName;
+                    swapEvent.success = swapped;
+                    swapEvent.commit();
+                }
+            }
+            run.end();
+            backupManager.getMetrics().record(BackupMetrics.Operation.SWAP, run);
 
             Files.deleteIfExists(pendingRestoreFile);
 
@@ -166,13 +224,196 @@ public class RestoreManager {
         }
     }
 
-    private void decompressArchive(Path zipFile, Path targetDir) throws IOException {
-        try (InputStream fis = Files.newInputStream(zipFile);
+    private void extractBackup(Path backupFile, Path targetDir, BackupJob<?> job, Predicate<String> paths)
+            throws IOException {
+        BackupManifest manifest = BackupManifest.read(backupFile);
+        WorldUnit unit = WorldUnit.fromManifest(manifest, getWorldDir());
+        if (unit != null) {
+            LOGGER.info("Backup of world unit {}, leaving the rest of the world as it is", unit);
+            Predicate<String> requested = paths;
+            paths = requested == null ? unit::contains : name -> unit.contains(name) && requested.test(name);
+        }
+        if (paths != null || manifest != null && BackupProfile.Scope.PLAYERDATA.name().equals(manifest.getScope())) {
+            LOGGER.info("Partial restore, overlaying the backup onto a copy of the current world");
+            job.getTracker().startPhase("copying current world", 0, 0);
+            try (RunMetrics.Span span = job.getMetrics().start(Phase.COPY)) {
+                copyDirectory(getWorldDir(), targetDir);
+                if (paths != null) {
+                    deleteMatching(targetDir, paths);
+                }
+            }
+        }
+        if (Files.isDirectory(backupFile)) {
+            LinkTree.copyOut(backupFile, targetDir, paths, job);
+            return;
+        }
+        if (manifest == null) {
+            decompressArchive(backupFile, null, targetDir, job, paths);
+            return;
+        }
+
+        if (manifest.isIncremental()) {
+            Path baseFile = backupFile.resolveSibling(manifest.getBase());
+            if (!Files.exists(baseFile)) {
+                throw new IOException("Base backup of incremental backup is missing: " + manifest.getBase());
+            }
+            LOGGER.info("Incremental backup, extracting base {} first", manifest.getBase());
+            decompressArchive(baseFile, BackupManifest.read(baseFile), targetDir, job, paths);
+        }
+
+        decompressArchive(backupFile, manifest, targetDir, job, paths);
+
+        if (manifest.isIncremental()) {
+            Set<String> expected = manifest.toMap().keySet();
+            List<Path> extracted;
+            try (var stream = Files.walk(targetDir)) {
+                extracted = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+            }
+            for (Path file : extracted) {
+                String entryName = targetDir.relativize(file).toString().replace('\\', '/');
+                if (!expected.contains(entryName) && (paths == null || paths.test(entryName))) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private void copyDirectory(Path source, Path target) throws IOException {
+        if (!Files.exists(source)) {
+            return;
+        }
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (!file.getFileName().toString().equals("session.lock")) {
+                    Files.copy(file, target.resolve(source.relativize(file).toString()), StandardCopyOption.REPLACE_EXISTING);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    void decompressArchive(Path backupFile, BackupManifest manifest, Path targetDir, BackupJob<?> job,
+                           Predicate<String> paths) throws IOException {
+        List<Path> volumes = selectVolumes(backupFile, manifest, paths);
+        long totalEntries = 0;
+        long totalBytes = 0;
+        for (Path volume : volumes) {
+            try (ZipFile zip = new ZipFile(volume.toFile())) {
+                Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+                while (zipEntries.hasMoreElements()) {
+                    ZipEntry zipEntry = zipEntries.nextElement();
+                    if (paths == null || paths.test(zipEntry.getName())) {
+                        totalEntries++;
+                        totalBytes += Math.max(0, zipEntry.getSize());
+                    }
+                }
+            }
+        }
+        job.getTracker().startPhase("extracting " + backupFile.getFileName(), totalEntries, totalBytes);
+        try (RunMetrics.Span span = job.getMetrics().start(Phase.EXTRACT)) {
+            if (volumes.size() == 1) {
+                extractVolume(volumes.get(0), targetDir, job, paths);
+            } else {
+                extractVolumes(volumes, targetDir, job, paths);
+            }
+        }
+        LOGGER.info("Decompression completed to: {}", targetDir);
+    }
+
+    private static List<Path> selectVolumes(Path backupFile, BackupManifest manifest, Predicate<String> paths)
+            throws IOException {
+        if (manifest == null || manifest.getVolumes() <= 1) {
+            return List.of(backupFile);
+        }
+        Set<Integer> needed = new TreeSet<>();
+        for (BackupManifest.Entry entry : manifest.getEntries()) {
+            if (entry.isStored() && (paths == null || paths.test(entry.getPath()))) {
+                needed.add(entry.getVolume());
+            }
+        }
+        List<Path> volumes = new ArrayList<>();
+        for (int volume : needed) {
+            Path file = BackupVolumes.volumeFile(backupFile, volume);
+            if (!Files.exists(file)) {
+                throw new IOException("Backup volume is missing: " + file.getFileName());
+            }
+            volumes.add(file);
+        }
+        return volumes;
+    }
+
+    private void extractVolumes(List<Path> volumes, Path targetDir, BackupJob<?> job, Predicate<String> paths)
+            throws IOException {
+        int threads = Math.min(volumes.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "cacl2backup-restore");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Path volume : volumes) {
+                futures.add(pool.submit(() -> {
+                    extractVolume(volume, targetDir, job, paths);
+                    return null;
+                }));
+            }
+            Throwable failure = null;
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while extracting volumes", e);
+                }
+            }
+            if (failure instanceof IOException io) {
+                throw io;
+            }
+            if (failure instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (failure != null) {
+                throw new IOException("Failed to extract volumes", failure);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void extractVolume(Path zipFile, Path targetDir, BackupJob<?> job, Predicate<String> paths)
+            throws IOException {
+        int entries = 0;
+        long bytesWritten = 0;
+        RunMetrics metrics = job.getMetrics();
+        ProgressTracker tracker = job.getTracker();
+        RestoreExtractEvent event = new RestoreExtractEvent();
+        event.begin();
+        StagingPool staging = backupManager.getStagingPool();
+        try (StagingPool.Session session = staging.open();
+             StagingPool.Lease lease = staging.lease(metrics);
+             InputStream fis = Files.newInputStream(zipFile);
              ZipInputStream zis = new ZipInputStream(fis)) {
 
+            ReadableByteChannel source = Channels.newChannel(zis);
             ZipEntry entry;
             while ((entry = zis.getNextEntry()) != null) {
+                job.checkCancelled();
                 String entryName = entry.getName();
+                if (paths != null && !paths.test(entryName)) {
+                    continue;
+                }
                 Path targetPath = targetDir.resolve(entryName);
 
                 if (entry.isDirectory()) {
@@ -181,12 +422,78 @@ public class RestoreManager {
                     if (targetPath.getParent() != null) {
                         Files.createDirectories(targetPath.getParent());
                     }
-                    Files.copy(zis, targetPath, StandardCopyOption.REPLACE_EXISTING);
+                    long written = transfer(source, targetPath, lease.buffer());
+                    bytesWritten += written;
+                    metrics.addBytes(written);
+                    metrics.addFiles(1);
+                    tracker.addBytes(written);
                 }
                 zis.closeEntry();
+                entries++;
+                tracker.addFile();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a restore buffer", e);
         }
-        LOGGER.info("Decompression completed to: {}", targetDir);
+        if (event.shouldCommit()) {
+            event.archive = zipFile.getFileName().toString();
+            event.entries = entries;
+            event.bytes = bytesWritten;
+            event.commit();
+        }
+    }
+
+    private static long transfer(ReadableByteChannel source, Path target, ByteBuffer buffer) throws IOException {
+        long written = 0;
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.clear();
+            while (true) {
+                int read = source.read(buffer);
+                if (read < 0 || !buffer.hasRemaining()) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        written += out.write(buffer);
+                    }
+                    buffer.clear();
+                    if (read < 0) {
+                        return written;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void deleteMatching(Path dir, Predicate<String> paths) throws IOException {
+        List<Path> files;
+        try (var stream = Files.walk(dir)) {
+            files = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            if (paths.test(dir.relativize(file).toString().replace('\\', '/'))) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static Predicate<String> pathFilter(String pathPrefix) {
+        if (pathPrefix == null) {
+            return null;
+        }
+        String prefix = pathPrefix.trim().replace('\\', '/');
+        while (prefix.startsWith("/")) {
+            prefix = prefix.substring(1);
+        }
+        while (prefix.endsWith("/")) {
+            prefix = prefix.substring(0, prefix.length() - 1);
+        }
+        if (prefix.isEmpty()) {
+            return null;
+        }
+        String directory = prefix + "/";
+        String exact = prefix;
+        return name -> name.equals(exact) || name.startsWith(directory);
     }
 
     private void deleteDirectory(Path dir) throws IOException {
@@ -210,11 +517,11 @@ public class RestoreManager {
     }
 
     public boolean isRestoring() {
-        return isRestoring;
+        return backupManager.getJobQueue().isActive(BackupJobQueue.JobType.RESTORE);
     }
 
     public Path getWorldDir() {
-        return worldDir;
+        return backupManager.getWorldDir();
     }
 
     public static class RestoreResult {
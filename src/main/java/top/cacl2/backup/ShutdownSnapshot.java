@@ -0,0 +1,182 @@
+package top.cacl2.backup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+public class ShutdownSnapshot {
+    private static final Logger LOGGER = LoggerFactory.getLogger("cacl2backup");
+    private static final String DIR_NAME = ".shutdown_snapshot";
+    private static final String MARKER = "snapshot.properties";
+    private static final long COPY_CHUNK = 8L * 1024 * 1024;
+
+    private final Path dir;
+    private final long createdAt;
+    private final int files;
+
+    private ShutdownSnapshot(Path dir, long createdAt, int files) {
+        this.dir = dir;
+        this.createdAt = createdAt;
+        this.files = files;
+    }
+
+    // Region files are rewritten in place, so hardlinks are only a stable copy until the world is opened again.
+    public static ShutdownSnapshot take(Path backupDir, WorldUnit world, PathFilter filter, long deadlineNanos)
+            throws IOException {
+        Path dir = backupDir.resolve(DIR_NAME);
+        deleteDirectory(dir);
+        Path root = dir.resolve(WorldUnit.WHOLE_WORLD);
+        long createdAt = System.currentTimeMillis();
+        List<Path> files = world.listFiles(filter, null);
+        int linked = 0;
+        try {
+            for (Path file : files) {
+                if (System.nanoTime() > deadlineNanos) {
+                    throw new IOException("Ran out of time after " + linked + " of " + files.size() + " files");
+                }
+                Path target = root.resolve(world.getRoot().relativize(file).toString());
+                Files.createDirectories(target.getParent());
+                try {
+                    Files.createLink(target, file);
+                    linked++;
+                } catch (UnsupportedOperationException | IOException e) {
+                    copy(file, target, deadlineNanos);
+                }
+            }
+            Properties props = new Properties();
+            props.setProperty("createdAt", String.valueOf(createdAt));
+            props.setProperty("files", String.valueOf(files.size()));
+            props.setProperty("linked", String.valueOf(linked));
+            Path marker = dir.resolve(MARKER);
+            Path partial = dir.resolve(MARKER + DurableOutputStream.PARTIAL_SUFFIX);
+            try (OutputStream os = Files.newOutputStream(partial)) {
+                props.store(os, "Shutdown snapshot - compressed into a backup on the next start");
+            }
+            Files.move(partial, marker, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteDirectory(dir);
+            throw e;
+        }
+        LOGGER.info("Shutdown snapshot holds {} files ({} hardlinked, {} copied)", files.size(), linked,
+            files.size() - linked);
+        return new ShutdownSnapshot(dir, createdAt, files.size());
+    }
+
+    public static ShutdownSnapshot find(Path backupDir) {
+        Path dir = backupDir.resolve(DIR_NAME);
+        if (!Files.isDirectory(dir)) {
+            return null;
+        }
+        Path marker = dir.resolve(MARKER);
+        try {
+            if (Files.exists(marker)) {
+                Properties props = new Properties();
+                try (InputStream is = Files.newInputStream(marker)) {
+                    props.load(is);
+                }
+                return new ShutdownSnapshot(dir, Long.parseLong(props.getProperty("createdAt", "0")),
+                    Integer.parseInt(props.getProperty("files", "0")));
+            }
+            LOGGER.info("Removing incomplete shutdown snapshot");
+            deleteDirectory(dir);
+        } catch (IOException | NumberFormatException e) {
+            LOGGER.warn("Failed to read shutdown snapshot in {}", dir, e);
+        }
+        return null;
+    }
+
+    // Once the world is opened again it rewrites the linked region files, so the snapshot gets its own copies first.
+    public int detach() throws IOException {
+        List<Path> linked = new ArrayList<>();
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile() && isLinked(file)) {
+                    linked.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        for (Path file : linked) {
+            Path temp = file.resolveSibling(file.getFileName() + DurableOutputStream.PARTIAL_SUFFIX);
+            Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return linked.size();
+    }
+
+    public WorldUnit getWorld() {
+        return WorldUnit.wholeWorld(dir.resolve(WorldUnit.WHOLE_WORLD));
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public int getFiles() {
+        return files;
+    }
+
+    public void delete() {
+        try {
+            deleteDirectory(dir);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to remove shutdown snapshot {}", dir, e);
+        }
+    }
+
+    private static void copy(Path source, Path target, long deadlineNanos) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                if (System.nanoTime() > deadlineNanos) {
+                    throw new IOException("Ran out of time while copying " + source.getFileName());
+                }
+                long copied = in.transferTo(position, Math.min(COPY_CHUNK, size - position), out);
+                if (copied <= 0) {
+                    break;
+                }
+                position += copied;
+            }
+        }
+        Files.setLastModifiedTime(target, Files.getLastModifiedTime(source));
+    }
+
+    private static boolean isLinked(Path file) throws IOException {
+        try {
+            return ((Number) Files.getAttribute(file, "unix:nlink", LinkOption.NOFOLLOW_LINKS)).intValue() > 1;
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    private static void deleteDirectory(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,212 @@
+package top.cacl2.backup;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class SpaceForecaster {
+    private static final Logger LOGGER = LoggerFactory.getLogger("cacl2backup");
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final int MAX_RATIO_SAMPLES = 20;
+    private static final int MAX_SPACE_SAMPLES = 500;
+    private static final long MIN_SAMPLE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long TREND_WINDOW_MILLIS = TimeUnit.DAYS.toMillis(7);
+    private static final long MIN_TREND_SPAN_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final double DEFAULT_RATIO = 0.75;
+    private static final double SAFETY_MARGIN = 1.1;
+
+    private final Path backupDir;
+    private final Path historyFile;
+    private History history;
+
+    public SpaceForecaster(Path backupDir) {
+        this.backupDir = backupDir;
+        this.historyFile = backupDir.resolve(".space_history.json");
+        this.history = load();
+    }
+
+    public synchronized void recordCompression(long originalBytes, long compressedBytes) {
+        if (originalBytes <= 0) {
+            return;
+        }
+        history.ratios.add((double) compressedBytes / originalBytes);
+        while (history.ratios.size() > MAX_RATIO_SAMPLES) {
+            history.ratios.remove(0);
+        }
+        save();
+    }
+
+    public synchronized double getExpectedRatio() {
+        if (history.ratios.isEmpty()) {
+            return DEFAULT_RATIO;
+        }
+        double sum = 0;
+        for (double ratio : history.ratios) {
+            sum += ratio;
+        }
+        double mean = sum / history.ratios.size();
+        double variance = 0;
+        for (double ratio : history.ratios) {
+            variance += (ratio - mean) * (ratio - mean);
+        }
+        double stdDev = Math.sqrt(variance / history.ratios.size());
+        return Math.min(1.05, mean + stdDev);
+    }
+
+    public long estimateBackupSize(long worldBytes) {
+        return (long) Math.ceil(worldBytes * getExpectedRatio() * SAFETY_MARGIN);
+    }
+
+    public long getUsableSpace() {
+        try {
+            FileStore store = Files.getFileStore(backupDir);
+            return store.getUsableSpace();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to query usable space for {}", backupDir, e);
+            return -1;
+        }
+    }
+
+    public synchronized void sampleFreeSpace() {
+        long usable = getUsableSpace();
+        if (usable < 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (!history.samples.isEmpty()) {
+            SpaceSample last = history.samples.get(history.samples.size() - 1);
+            if (now - last.time < MIN_SAMPLE_INTERVAL_MILLIS) {
+                last.usable = usable;
+                save();
+                return;
+            }
+        }
+        history.samples.add(new SpaceSample(now, usable));
+        while (history.samples.size() > MAX_SPACE_SAMPLES) {
+            history.samples.remove(0);
+        }
+        save();
+    }
+
+    public synchronized double getTrendBytesPerDay() {
+        long now = System.currentTimeMillis();
+        List<SpaceSample> window = new ArrayList<>();
+        for (SpaceSample sample : history.samples) {
+            if (now - sample.time <= TREND_WINDOW_MILLIS) {
+                window.add(sample);
+            }
+        }
+        if (window.size() < 2 || window.get(window.size() - 1).time - window.get(0).time < MIN_TREND_SPAN_MILLIS) {
+            return Double.NaN;
+        }
+
+        double meanX = 0;
+        double meanY = 0;
+        for (SpaceSample sample : window) {
+            meanX += sample.time;
+            meanY += sample.usable;
+        }
+        meanX /= window.size();
+        meanY /= window.size();
+
+        double num = 0;
+        double den = 0;
+        for (SpaceSample sample : window) {
+            double dx = sample.time - meanX;
+            num += dx * (sample.usable - meanY);
+            den += dx * dx;
+        }
+        if (den == 0) {
+            return Double.NaN;
+        }
+        return num / den * TimeUnit.DAYS.toMillis(1);
+    }
+
+    public double getDaysUntilFull() {
+        double trend = getTrendBytesPerDay();
+        long usable = getUsableSpace();
+        if (Double.isNaN(trend) || trend >= 0 || usable < 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return usable / -trend;
+    }
+
+    public SpaceCheck check(long worldBytes, long reserveBytes) {
+        return check(worldBytes, reserveBytes, true);
+    }
+
+    public SpaceCheck check(long worldBytes, long reserveBytes, boolean compressed) {
+        long estimated = compressed ? estimateBackupSize(worldBytes) : worldBytes;
+        return new SpaceCheck(worldBytes, estimated, estimated + reserveBytes, getUsableSpace());
+    }
+
+    private History load() {
+        if (Files.exists(historyFile)) {
+            try {
+                History loaded = GSON.fromJson(Files.readString(historyFile), History.class);
+                if (loaded != null && loaded.ratios != null && loaded.samples != null) {
+                    return loaded;
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Failed to load space history, starting fresh", e);
+            }
+        }
+        return new History();
+    }
+
+    private void save() {
+        try {
+            Files.writeString(historyFile, GSON.toJson(history));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to save space history", e);
+        }
+    }
+
+    private static class History {
+        private List<Double> ratios = new ArrayList<>();
+        private List<SpaceSample> samples = new ArrayList<>();
+    }
+
+    private static class SpaceSample {
+        private long time;
+        private long usable;
+
+        SpaceSample(long time, long usable) {
+            this.time = time;
+            this.usable = usable;
+        }
+    }
+
+    public static class SpaceCheck {
+        private final long worldBytes;
+        private final long estimatedBytes;
+        private final long requiredBytes;
+        private final long usableBytes;
+
+        public SpaceCheck(long worldBytes, long estimatedBytes, long requiredBytes, long usableBytes) {
+            this.worldBytes = worldBytes;
+            this.estimatedBytes = estimatedBytes;
+            this.requiredBytes = requiredBytes;
+            this.usableBytes = usableBytes;
+        }
+
+        public long getWorldBytes() { return worldBytes; }
+        public long getEstimatedBytes() { return estimatedBytes; }
+        public long getRequiredBytes() { return requiredBytes; }
+        public long getUsableBytes() { return usableBytes; }
+        public long getShortfall() { return Math.max(0, requiredBytes - usableBytes); }
+
+        public boolean isSufficient() {
+            return usableBytes < 0 || usableBytes >= requiredBytes;
+        }
+    }
+}
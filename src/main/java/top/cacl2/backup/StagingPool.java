@@ -0,0 +1,307 @@
+package top.cacl2.backup;
+
+import top.cacl2.metrics.Phase;
+import top.cacl2.metrics.RunMetrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class StagingPool {
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    private final long budgetBytes;
+    private final long spillBytes;
+    private final boolean offHeap;
+    private final int totalChunks;
+    private final int spillChunks;
+    private final Semaphore permits;
+    private final ConcurrentLinkedQueue<MemorySegment> free = new ConcurrentLinkedQueue<>();
+    private final AtomicLong reserved = new AtomicLong();
+    private final AtomicLong peak = new AtomicLong();
+    private final AtomicInteger spills = new AtomicInteger();
+    private Arena arena;
+    private int sessions;
+
+    public StagingPool(long budgetBytes, long spillBytes, boolean offHeap) {
+        this.budgetBytes = budgetBytes;
+        this.spillBytes = spillBytes;
+        this.offHeap = offHeap;
+        this.totalChunks = (int) Math.max(1, Math.min(Integer.MAX_VALUE, budgetBytes / CHUNK_SIZE));
+        this.spillChunks = (int) Math.max(1, Math.min(totalChunks, (spillBytes + CHUNK_SIZE - 1) / CHUNK_SIZE));
+        this.permits = new Semaphore(totalChunks, true);
+    }
+
+    public synchronized Session open() {
+        sessions++;
+        if (offHeap && arena == null) {
+            arena = Arena.ofShared();
+        }
+        return new Session();
+    }
+
+    private synchronized void release() {
+        if (--sessions > 0) {
+            return;
+        }
+        free.clear();
+        if (arena != null) {
+            arena.close();
+            arena = null;
+        }
+    }
+
+    public Staged stage(long expectedBytes, Path spillFile, RunMetrics metrics) throws InterruptedException {
+        int chunks = chunksFor(expectedBytes);
+        acquire(chunks, metrics);
+        return new Staged(chunks, spillFile, metrics);
+    }
+
+    public Staged tryStage(long expectedBytes, Path spillFile, RunMetrics metrics) {
+        int chunks = chunksFor(expectedBytes);
+        return permits.tryAcquire(chunks) ? new Staged(chunks, spillFile, metrics) : null;
+    }
+
+    public Lease lease(RunMetrics metrics) throws InterruptedException {
+        acquire(1, metrics);
+        return new Lease(metrics);
+    }
+
+    private void acquire(int chunks, RunMetrics metrics) throws InterruptedException {
+        if (!permits.tryAcquire(chunks)) {
+            long waitStart = System.nanoTime();
+            permits.acquire(chunks);
+            metrics.addTime(Phase.STAGING_WAIT, System.nanoTime() - waitStart, 0);
+        }
+    }
+
+    private int chunksFor(long expectedBytes) {
+        long chunks = (expectedBytes + expectedBytes / 1000 + 1024 + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        return (int) Math.max(1, Math.min(spillChunks, chunks));
+    }
+
+    private void reserve(int chunks, RunMetrics metrics) {
+        long now = reserved.addAndGet((long) chunks * CHUNK_SIZE);
+        peak.accumulateAndGet(now, Math::max);
+        metrics.recordStagingBytes(now);
+    }
+
+    private void unreserve(int chunks) {
+        reserved.addAndGet(-(long) chunks * CHUNK_SIZE);
+        permits.release(chunks);
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public long getSpillBytes() {
+        return spillBytes;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public long getPeakBytes() {
+        return peak.get();
+    }
+
+    public int getSpilledEntries() {
+        return spills.get();
+    }
+
+    private MemorySegment take() {
+        MemorySegment chunk = free.poll();
+        if (chunk != null) {
+            return chunk;
+        }
+        synchronized (this) {
+            if (sessions == 0) {
+                throw new IllegalStateException("Staging pool used outside of a session");
+            }
+            return arena != null ? arena.allocate(CHUNK_SIZE) : MemorySegment.ofArray(new byte[CHUNK_SIZE]);
+        }
+    }
+
+    public class Session implements AutoCloseable {
+        private boolean closed;
+
+        private Session() {
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release();
+            }
+        }
+    }
+
+    public class Lease implements AutoCloseable {
+        private final MemorySegment chunk;
+        private final ByteBuffer buffer;
+        private boolean released;
+
+        private Lease(RunMetrics metrics) {
+            reserve(1, metrics);
+            this.chunk = take();
+            this.buffer = chunk.asByteBuffer();
+        }
+
+        public ByteBuffer buffer() {
+            return buffer;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                free.offer(chunk);
+                unreserve(1);
+            }
+        }
+    }
+
+    public class Staged extends OutputStream {
+        private final Path spillFile;
+        private final RunMetrics metrics;
+        private final List<MemorySegment> chunks = new ArrayList<>();
+        private int permitted;
+        private int position = CHUNK_SIZE;
+        private long size;
+        private OutputStream spill;
+        private boolean released;
+
+        private Staged(int permitted, Path spillFile, RunMetrics metrics) {
+            this.permitted = permitted;
+            this.spillFile = spillFile;
+            this.metrics = metrics;
+            reserve(permitted, metrics);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            size += len;
+            if (spill != null) {
+                spill.write(b, off, len);
+                return;
+            }
+            while (len > 0) {
+                if (position == CHUNK_SIZE) {
+                    if (chunks.size() == permitted) {
+                        spill(b, off, len);
+                        return;
+                    }
+                    chunks.add(take());
+                    position = 0;
+                }
+                int n = Math.min(len, CHUNK_SIZE - position);
+                MemorySegment.copy(b, off, chunks.get(chunks.size() - 1), ValueLayout.JAVA_BYTE, position, n);
+                position += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void spill(byte[] b, int off, int len) throws IOException {
+            spill = Files.newOutputStream(spillFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+            byte[] transfer = new byte[8192];
+            for (int i = 0; i < chunks.size(); i++) {
+                int length = i == chunks.size() - 1 ? position : CHUNK_SIZE;
+                for (int offset = 0; offset < length; offset += transfer.length) {
+                    int n = Math.min(transfer.length, length - offset);
+                    MemorySegment.copy(chunks.get(i), ValueLayout.JAVA_BYTE, offset, transfer, 0, n);
+                    spill.write(transfer, 0, n);
+                }
+            }
+            spill.write(b, off, len);
+            spills.incrementAndGet();
+            metrics.addSpilledEntry();
+            recycle();
+        }
+
+        public long size() {
+            return size;
+        }
+
+        public boolean isSpilled() {
+            return spill != null;
+        }
+
+        public InputStream openInput() throws IOException {
+            if (spill != null) {
+                spill.close();
+                return Files.newInputStream(spillFile);
+            }
+            return new InputStream() {
+                private int chunk;
+                private int offset;
+
+                @Override
+                public int read() {
+                    byte[] one = new byte[1];
+                    return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    int limit = chunk == chunks.size() - 1 ? position : CHUNK_SIZE;
+                    if (chunk >= chunks.size() || chunk == chunks.size() - 1 && offset >= limit) {
+                        return -1;
+                    }
+                    if (offset == CHUNK_SIZE) {
+                        chunk++;
+                        offset = 0;
+                        return read(b, off, len);
+                    }
+                    int n = Math.min(len, limit - offset);
+                    MemorySegment.copy(chunks.get(chunk), ValueLayout.JAVA_BYTE, offset, b, off, n);
+                    offset += n;
+                    return n;
+                }
+            };
+        }
+
+        private void recycle() {
+            free.addAll(chunks);
+            chunks.clear();
+            position = CHUNK_SIZE;
+            unreserve(permitted);
+            permitted = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (released) {
+                return;
+            }
+            released = true;
+            recycle();
+            if (spill != null) {
+                spill.close();
+                Files.deleteIfExists(spillFile);
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package top.cacl2.backup;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.cacl2.metrics.Phase;
+import top.cacl2.metrics.RunMetrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class ThreadTuner {
+    private static final Logger LOGGER = LoggerFactory.getLogger("cacl2backup");
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final long MIN_SAMPLE_BYTES = 32L * 1024 * 1024;
+    private static final double SMOOTHING = 0.3;
+    private static final int PROBE_INTERVAL = 5;
+    private static final double DISK_BOUND_SHARE = 0.6;
+
+    private final Path stateFile;
+    private State state;
+
+    public ThreadTuner(Path backupDir) {
+        this.stateFile = backupDir.resolve(".thread_tuning.json");
+        this.state = load();
+    }
+
+    public synchronized Choice next(int maxThreads, double tolerance) {
+        maxThreads = Math.max(1, maxThreads);
+        for (int rung : rungs(maxThreads)) {
+            Sample sample = state.samples.get(rung);
+            if (sample == null) {
+                return new Choice(rung, "calibrating: measuring " + rung + " thread(s)");
+            }
+            if (sample.bytesPerSecond < (1 - tolerance) * peak(maxThreads)) {
+                break;
+            }
+        }
+        int chosen = choose(maxThreads, tolerance);
+        if (state.runsSinceProbe >= PROBE_INTERVAL) {
+            int probe = probe(chosen, maxThreads);
+            if (probe != chosen) {
+                return new Choice(probe, "probing " + probe + " thread(s) next to the chosen " + chosen);
+            }
+        }
+        return new Choice(chosen, state.reason);
+    }
+
+    public synchronized void record(int threads, RunMetrics run, int maxThreads, double tolerance) {
+        long compressNanos = run.getWallNanos(Phase.COMPRESS);
+        if (run.getBytes() < MIN_SAMPLE_BYTES || compressNanos <= 0) {
+            return;
+        }
+        double bytesPerSecond = run.getBytes() * 1e9 / compressNanos;
+        long diskNanos = run.getWallNanos(Phase.READ) + run.getWallNanos(Phase.WRITE) + run.getWallNanos(Phase.FSYNC);
+        double diskShare = Math.min(1.0, (double) diskNanos / ((double) compressNanos * threads));
+        double activeWorkers = run.getWorkerUtilization() * threads;
+
+        Sample sample = state.samples.computeIfAbsent(threads, t -> new Sample());
+        if (sample.runs == 0) {
+            sample.bytesPerSecond = bytesPerSecond;
+            sample.diskShare = diskShare;
+            sample.activeWorkers = activeWorkers;
+        } else {
+            sample.bytesPerSecond += SMOOTHING * (bytesPerSecond - sample.bytesPerSecond);
+            sample.diskShare += SMOOTHING * (diskShare - sample.diskShare);
+            sample.activeWorkers += SMOOTHING * (activeWorkers - sample.activeWorkers);
+        }
+        sample.runs++;
+        sample.lastUsed = System.currentTimeMillis();
+
+        int previous = state.chosen;
+        if (threads == previous) {
+            state.runsSinceProbe++;
+        } else if (state.chosen > 0 && state.runsSinceProbe >= PROBE_INTERVAL) {
+            state.runsSinceProbe = 0;
+            state.probeUp = !state.probeUp;
+        }
+        int chosen = choose(Math.max(1, maxThreads), tolerance);
+        if (chosen != previous) {
+            state.runsSinceProbe = 0;
+            LOGGER.info("Thread tuning now uses {}", state.reason);
+        }
+        state.updatedAt = System.currentTimeMillis();
+        save();
+    }
+
+    public synchronized String getReason() {
+        return state.reason;
+    }
+
+    public synchronized List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        state.samples.forEach((threads, sample) -> lines.add(String.format(
+            "%d thread(s): %s/s, %.1f active workers, %.0f%% waiting on disk, %d run(s)%s",
+            threads, BackupManager.formatSize((long) sample.bytesPerSecond), sample.activeWorkers,
+            sample.diskShare * 100, sample.runs, threads == state.chosen ? " (chosen)" : "")));
+        return lines;
+    }
+
+    private int choose(int maxThreads, double tolerance) {
+        double peak = peak(maxThreads);
+        int peakThreads = 0;
+        int chosen = 0;
+        Sample best = null;
+        for (Map.Entry<Integer, Sample> entry : state.samples.entrySet()) {
+            if (entry.getKey() > maxThreads) {
+                continue;
+            }
+            if (entry.getValue().bytesPerSecond == peak) {
+                peakThreads = entry.getKey();
+            }
+            if (best == null && entry.getValue().bytesPerSecond >= (1 - tolerance) * peak) {
+                chosen = entry.getKey();
+                best = entry.getValue();
+            }
+        }
+        if (best == null) {
+            return maxThreads;
+        }
+        state.chosen = chosen;
+        state.reason = String.format("%d thread(s): %s/s, within %.0f%% of the %s/s peak at %d thread(s)%s",
+            chosen, BackupManager.formatSize((long) best.bytesPerSecond), tolerance * 100,
+            BackupManager.formatSize((long) peak), peakThreads,
+            best.diskShare >= DISK_BOUND_SHARE
+                ? String.format("; disk-bound, workers spend %.0f%% of their time on I/O", best.diskShare * 100) : "");
+        return chosen;
+    }
+
+    private int probe(int chosen, int maxThreads) {
+        int step = Math.max(1, chosen / 4);
+        Sample current = state.samples.get(chosen);
+        boolean canGoUp = chosen + step <= maxThreads && (current == null || current.diskShare < DISK_BOUND_SHARE);
+        boolean canGoDown = chosen - step >= 1;
+        if (state.probeUp && canGoUp || !canGoDown) {
+            return canGoUp ? chosen + step : chosen;
+        }
+        return chosen - step;
+    }
+
+    private double peak(int maxThreads) {
+        double peak = 0;
+        for (Map.Entry<Integer, Sample> entry : state.samples.entrySet()) {
+            if (entry.getKey() <= maxThreads) {
+                peak = Math.max(peak, entry.getValue().bytesPerSecond);
+            }
+        }
+        return peak;
+    }
+
+    private static List<Integer> rungs(int maxThreads) {
+        List<Integer> rungs = new ArrayList<>();
+        for (int threads = maxThreads; threads >= 1; threads /= 2) {
+            rungs.add(threads);
+        }
+        return rungs;
+    }
+
+    private State load() {
+        if (Files.exists(stateFile)) {
+            try {
+                State loaded = GSON.fromJson(Files.readString(stateFile), State.class);
+                if (loaded != null && loaded.samples != null) {
+                    return loaded;
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Failed to load thread tuning history, starting fresh", e);
+            }
+        }
+        return new State();
+    }
+
+    private void save() {
+        try {
+            Files.writeString(stateFile, GSON.toJson(state));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to save thread tuning history", e);
+        }
+    }
+
+    public static class Choice {
+        private final int threads;
+        private final String reason;
+
+        Choice(int threads, String reason) {
+            this.threads = threads;
+            this.reason = reason;
+        }
+
+        public int getThreads() { return threads; }
+        public String getReason() { return reason; }
+    }
+
+    private static class State {
+        private int chosen;
+        private String reason;
+        private int runsSinceProbe;
+        private boolean probeUp;
+        private long updatedAt;
+        private TreeMap<Integer, Sample> samples = new TreeMap<>();
+    }
+
+    private static class Sample {
+        private double bytesPerSecond;
+        private double diskShare;
+        private double activeWorkers;
+        private int runs;
+        private long lastUsed;
+    }
+}
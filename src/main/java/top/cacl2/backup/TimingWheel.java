@@ -0,0 +1,80 @@
+package top.cacl2.backup;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+public class TimingWheel<T> {
+    private final long tickMillis;
+    private final List<List<Entry<T>>> slots;
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(long tickMillis, int slotCount, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(new ArrayList<>());
+        }
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    public synchronized void schedule(T item, long deadlineMillis) {
+        long tick = Math.max(currentTick + 1, Math.floorDiv(deadlineMillis, tickMillis));
+        slots.get((int) Math.floorMod(tick, (long) slots.size())).add(new Entry<>(item, tick));
+        size++;
+    }
+
+    public synchronized List<T> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        List<T> due = new ArrayList<>();
+        if (targetTick <= currentTick) {
+            return due;
+        }
+
+        if (targetTick - currentTick >= slots.size()) {
+            for (List<Entry<T>> slot : slots) {
+                collectDue(slot, targetTick, due);
+            }
+        } else {
+            for (long tick = currentTick + 1; tick <= targetTick; tick++) {
+                collectDue(slots.get((int) Math.floorMod(tick, (long) slots.size())), targetTick, due);
+            }
+        }
+        currentTick = targetTick;
+        return due;
+    }
+
+    private void collectDue(List<Entry<T>> slot, long targetTick, List<T> due) {
+        Iterator<Entry<T>> iterator = slot.iterator();
+        while (iterator.hasNext()) {
+            Entry<T> entry = iterator.next();
+            if (entry.deadlineTick <= targetTick) {
+                due.add(entry.item);
+                iterator.remove();
+                size--;
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        for (List<Entry<T>> slot : slots) {
+            slot.clear();
+        }
+        size = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private static class Entry<T> {
+        private final T item;
+        private final long deadlineTick;
+
+        Entry(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package top.cacl2.backup;
+
+import net.minecraft.resources.Identifier;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.storage.LevelResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+public class WorldLayout {
+    private static final Logger LOGGER = LoggerFactory.getLogger("cacl2backup");
+    private static final String OVERWORLD = "overworld";
+
+    private final Path root;
+    private final List<WorldUnit> units;
+
+    private WorldLayout(Path root, List<WorldUnit> units) {
+        this.root = root;
+        this.units = units;
+    }
+
+    public static WorldLayout discover(MinecraftServer server) {
+        Path root = server.getWorldPath(LevelResource.ROOT).toAbsolutePath().normalize();
+        Map<String, String> dimensions = new LinkedHashMap<>();
+        for (ServerLevel level : server.getAllLevels()) {
+            Identifier id = level.dimension().identifier();
+            dimensions.put(unitName(id.getNamespace(), id.getPath()), storageFolder(root, id.getNamespace(), id.getPath()));
+        }
+        return build(root, dimensions);
+    }
+
+    public static WorldLayout fromDisk(Path gameDir) {
+        Path root = gameDir.resolve(levelName(gameDir)).toAbsolutePath().normalize();
+        Map<String, String> dimensions = new LinkedHashMap<>();
+        dimensions.put(OVERWORLD, "");
+        if (Files.isDirectory(root.resolve("DIM-1"))) {
+            dimensions.put("the_nether", "DIM-1");
+        }
+        if (Files.isDirectory(root.resolve("DIM1"))) {
+            dimensions.put("the_end", "DIM1");
+        }
+        Path custom = root.resolve("dimensions");
+        if (Files.isDirectory(custom)) {
+            try (var namespaces = Files.list(custom)) {
+                for (Path namespace : (Iterable<Path>) namespaces::iterator) {
+                    if (!Files.isDirectory(namespace)) {
+                        continue;
+                    }
+                    try (var ids = Files.list(namespace)) {
+                        for (Path id : (Iterable<Path>) ids::iterator) {
+                            if (Files.isDirectory(id)) {
+                                String ns = namespace.getFileName().toString();
+                                String path = id.getFileName().toString();
+                                dimensions.putIfAbsent(unitName(ns, path), root.relativize(id).toString().replace('\\', '/'));
+                            }
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Failed to scan dimensions in {}", custom, e);
+            }
+        }
+        return build(root, dimensions);
+    }
+
+    private static WorldLayout build(Path root, Map<String, String> dimensions) {
+        List<String> nested = new ArrayList<>();
+        dimensions.forEach((name, path) -> {
+            if (!path.isEmpty()) {
+                nested.add(path);
+            }
+        });
+        List<WorldUnit> units = new ArrayList<>();
+        dimensions.forEach((name, path) -> units.add(
+            new WorldUnit(name, root, path, path.isEmpty() ? nested : List.of())));
+        if (!dimensions.containsValue("")) {
+            units.add(0, new WorldUnit("root", root, "", nested));
+        }
+        return new WorldLayout(root, units);
+    }
+
+    private static String storageFolder(Path root, String namespace, String path) {
+        String folder = "dimensions/" + namespace + "/" + path;
+        if (!namespace.equals("minecraft") || Files.isDirectory(root.resolve(folder))) {
+            return folder;
+        }
+        return switch (path) {
+            case OVERWORLD -> "";
+            case "the_nether" -> "DIM-1";
+            case "the_end" -> "DIM1";
+            default -> folder;
+        };
+    }
+
+    private static String unitName(String namespace, String path) {
+        String id = path.replace('/', '_');
+        return namespace.equals("minecraft") ? id : namespace + "_" + id;
+    }
+
+    private static String levelName(Path gameDir) {
+        Path properties = gameDir.resolve("server.properties");
+        if (Files.exists(properties)) {
+            Properties props = new Properties();
+            try (InputStream in = Files.newInputStream(properties)) {
+                props.load(in);
+                String name = props.getProperty("level-name");
+                if (name != null && !name.isBlank()) {
+                    return name.trim();
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Failed to read level-name from {}", properties, e);
+            }
+        }
+        return "world";
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public List<WorldUnit> getUnits() {
+        return units;
+    }
+
+    public WorldUnit getWholeWorld() {
+        return WorldUnit.wholeWorld(root);
+    }
+
+    public List<WorldUnit> select(Collection<String> names) {
+        if (names == null || names.isEmpty()) {
+            return units;
+        }
+        List<WorldUnit> selected = new ArrayList<>();
+        for (WorldUnit unit : units) {
+            if (names.contains(unit.getName())) {
+                selected.add(unit);
+            }
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,106 @@
+package top.cacl2.backup;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+public class WorldUnit {
+    public static final String WHOLE_WORLD = "world";
+
+    private final String name;
+    private final Path root;
+    private final String path;
+    private final List<String> excludes;
+
+    public WorldUnit(String name, Path root, String path, List<String> excludes) {
+        this.name = name;
+        this.root = root;
+        this.path = path != null ? path : "";
+        this.excludes = excludes != null ? excludes : new ArrayList<>();
+    }
+
+    public static WorldUnit wholeWorld(Path root) {
+        return new WorldUnit(WHOLE_WORLD, root, "", List.of());
+    }
+
+    public static WorldUnit fromManifest(BackupManifest manifest, Path root) {
+        if (manifest == null || manifest.getUnit() == null) {
+            return null;
+        }
+        return new WorldUnit(manifest.getUnit(), root, manifest.getUnitPath(), manifest.getUnitExcludes());
+    }
+
+    public String getName() { return name; }
+    public Path getRoot() { return root; }
+    public String getPath() { return path; }
+    public List<String> getExcludes() { return excludes; }
+
+    public boolean isWholeWorld() {
+        return path.isEmpty() && excludes.isEmpty();
+    }
+
+    public Path getDir() {
+        return path.isEmpty() ? root : root.resolve(path);
+    }
+
+    public boolean contains(String entryName) {
+        if (!path.isEmpty() && !entryName.startsWith(path + "/")) {
+            return false;
+        }
+        for (String exclude : excludes) {
+            if (entryName.startsWith(exclude + "/")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Predicate<String> toFilter() {
+        return isWholeWorld() ? null : this::contains;
+    }
+
+    public List<Path> listFiles() throws IOException {
+        return listFiles(PathFilter.NONE, null);
+    }
+
+    public List<Path> listFiles(PathFilter filter, PathFilter.Stats stats) throws IOException {
+        Path dir = getDir();
+        if (!Files.isDirectory(dir)) {
+            return new ArrayList<>();
+        }
+        if (!filter.isEmpty()) {
+            return filter.walk(root, dir, excludes, stats);
+        }
+        if (excludes.isEmpty()) {
+            return CompressionUtil.listFiles(dir);
+        }
+        List<Path> files = new ArrayList<>();
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attrs) {
+                String relative = root.relativize(directory).toString().replace('\\', '/');
+                return excludes.contains(relative) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    @Override
+    public String toString() {
+        return name + (path.isEmpty() ? "" : " (" + path + ")");
+    }
+}
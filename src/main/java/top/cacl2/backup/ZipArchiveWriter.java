@@ -0,0 +1,241 @@
+package top.cacl2.backup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+class ZipArchiveWriter {
+    private static final long ZIP64_LIMIT = 0xFFFFFFFFL;
+    private static final int UTF8_FLAG = 0x0800;
+    private static final int DEFLATED = 8;
+
+    private final OutputStream out;
+    private final boolean forceZip64;
+    private final List<CentralEntry> central = new ArrayList<>();
+    private final byte[] header = new byte[128];
+    private long written;
+    private boolean finished;
+
+    ZipArchiveWriter(OutputStream out) {
+        this(out, false);
+    }
+
+    // Writes ZIP64 records even for small archives, so readers can be checked without 4 GiB of data.
+    ZipArchiveWriter(OutputStream out, boolean forceZip64) {
+        this.out = out;
+        this.forceZip64 = forceZip64;
+    }
+
+    void writeDeflated(String name, long mtime, long crc, long size, byte[] data, int off, int len) throws IOException {
+        writeHeader(name, mtime, crc, size, len);
+        emit(data, off, len);
+    }
+
+    void writeDeflated(String name, long mtime, long crc, long size, long len, InputStream data) throws IOException {
+        writeHeader(name, mtime, crc, size, len);
+        byte[] buffer = new byte[8192];
+        long remaining = len;
+        while (remaining > 0) {
+            int read = data.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                throw new IOException("Staged data for " + name + " ended " + remaining + " bytes early");
+            }
+            emit(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    private void writeHeader(String name, long mtime, long crc, long size, long len) throws IOException {
+        if (finished) {
+            throw new IOException("Archive already finished");
+        }
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        CentralEntry entry = new CentralEntry(nameBytes, mtime, crc, size, len, written);
+        boolean zip64 = forceZip64 || size >= ZIP64_LIMIT || len >= ZIP64_LIMIT;
+
+        int pos = 0;
+        pos = putInt(pos, 0x04034b50);
+        pos = putShort(pos, zip64 ? 45 : 20);
+        pos = putShort(pos, UTF8_FLAG);
+        pos = putShort(pos, DEFLATED);
+        pos = putInt(pos, entry.dosTime);
+        pos = putInt(pos, (int) crc);
+        pos = putInt(pos, zip64 ? (int) ZIP64_LIMIT : (int) len);
+        pos = putInt(pos, zip64 ? (int) ZIP64_LIMIT : (int) size);
+        pos = putShort(pos, nameBytes.length);
+        pos = putShort(pos, (zip64 ? 20 : 0) + (entry.unixTime != null ? 9 : 0));
+        emit(pos);
+        emit(nameBytes, 0, nameBytes.length);
+        pos = 0;
+        if (zip64) {
+            pos = putShort(pos, 0x0001);
+            pos = putShort(pos, 16);
+            pos = putLong(pos, size);
+            pos = putLong(pos, len);
+        }
+        pos = putTimestamp(pos, entry);
+        emit(pos);
+        central.add(entry);
+    }
+
+    void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        long centralOffset = written;
+        for (CentralEntry entry : central) {
+            boolean sizes64 = forceZip64 || entry.size >= ZIP64_LIMIT || entry.compressedSize >= ZIP64_LIMIT;
+            boolean offset64 = forceZip64 || entry.offset >= ZIP64_LIMIT;
+            int zip64Length = (sizes64 ? 16 : 0) + (offset64 ? 8 : 0);
+
+            int pos = 0;
+            pos = putInt(pos, 0x02014b50);
+            pos = putShort(pos, zip64Length > 0 ? 45 : 20);
+            pos = putShort(pos, zip64Length > 0 ? 45 : 20);
+            pos = putShort(pos, UTF8_FLAG);
+            pos = putShort(pos, DEFLATED);
+            pos = putInt(pos, entry.dosTime);
+            pos = putInt(pos, (int) entry.crc);
+            pos = putInt(pos, sizes64 ? (int) ZIP64_LIMIT : (int) entry.compressedSize);
+            pos = putInt(pos, sizes64 ? (int) ZIP64_LIMIT : (int) entry.size);
+            pos = putShort(pos, entry.name.length);
+            pos = putShort(pos, (zip64Length > 0 ? 4 + zip64Length : 0) + (entry.unixTime != null ? 9 : 0));
+            pos = putShort(pos, 0);
+            pos = putShort(pos, 0);
+            pos = putShort(pos, 0);
+            pos = putInt(pos, 0);
+            pos = putInt(pos, offset64 ? (int) ZIP64_LIMIT : (int) entry.offset);
+            emit(pos);
+            emit(entry.name, 0, entry.name.length);
+            pos = 0;
+            if (zip64Length > 0) {
+                pos = putShort(pos, 0x0001);
+                pos = putShort(pos, zip64Length);
+                if (sizes64) {
+                    pos = putLong(pos, entry.size);
+                    pos = putLong(pos, entry.compressedSize);
+                }
+                if (offset64) {
+                    pos = putLong(pos, entry.offset);
+                }
+            }
+            pos = putTimestamp(pos, entry);
+            emit(pos);
+        }
+        long centralSize = written - centralOffset;
+        int count = central.size();
+        boolean zip64 = forceZip64 || count >= 0xFFFF || centralOffset >= ZIP64_LIMIT || centralSize >= ZIP64_LIMIT;
+
+        int pos = 0;
+        if (zip64) {
+            long recordOffset = written;
+            pos = putInt(pos, 0x06064b50);
+            pos = putLong(pos, 44);
+            pos = putShort(pos, 45);
+            pos = putShort(pos, 45);
+            pos = putInt(pos, 0);
+            pos = putInt(pos, 0);
+            pos = putLong(pos, count);
+            pos = putLong(pos, count);
+            pos = putLong(pos, centralSize);
+            pos = putLong(pos, centralOffset);
+            pos = putInt(pos, 0x07064b50);
+            pos = putInt(pos, 0);
+            pos = putLong(pos, recordOffset);
+            pos = putInt(pos, 1);
+        }
+        pos = putInt(pos, 0x06054b50);
+        pos = putShort(pos, 0);
+        pos = putShort(pos, 0);
+        pos = putShort(pos, Math.min(count, 0xFFFF));
+        pos = putShort(pos, Math.min(count, 0xFFFF));
+        pos = putInt(pos, (int) Math.min(centralSize, ZIP64_LIMIT));
+        pos = putInt(pos, (int) Math.min(centralOffset, ZIP64_LIMIT));
+        pos = putShort(pos, 0);
+        emit(pos);
+        out.flush();
+    }
+
+    long getBytesWritten() {
+        return written;
+    }
+
+    int getEntryCount() {
+        return central.size();
+    }
+
+    private int putTimestamp(int pos, CentralEntry entry) {
+        if (entry.unixTime == null) {
+            return pos;
+        }
+        pos = putShort(pos, 0x5455);
+        pos = putShort(pos, 5);
+        header[pos++] = 1;
+        return putInt(pos, entry.unixTime);
+    }
+
+    private void emit(int len) throws IOException {
+        emit(header, 0, len);
+    }
+
+    private void emit(byte[] data, int off, int len) throws IOException {
+        out.write(data, off, len);
+        written += len;
+    }
+
+    private int putShort(int pos, int value) {
+        header[pos] = (byte) value;
+        header[pos + 1] = (byte) (value >>> 8);
+        return pos + 2;
+    }
+
+    private int putInt(int pos, long value) {
+        header[pos] = (byte) value;
+        header[pos + 1] = (byte) (value >>> 8);
+        header[pos + 2] = (byte) (value >>> 16);
+        header[pos + 3] = (byte) (value >>> 24);
+        return pos + 4;
+    }
+
+    private int putLong(int pos, long value) {
+        putInt(pos, value);
+        return putInt(pos + 4, value >>> 32);
+    }
+
+    private static int dosTime(long mtime) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(mtime), ZoneId.systemDefault());
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (time.getYear() - 1980) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16
+            | time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+    }
+
+    private static class CentralEntry {
+        private final byte[] name;
+        private final int dosTime;
+        private final Integer unixTime;
+        private final long crc;
+        private final long size;
+        private final long compressedSize;
+        private final long offset;
+
+        CentralEntry(byte[] name, long mtime, long crc, long size, long compressedSize, long offset) {
+            this.name = name;
+            this.dosTime = dosTime(mtime);
+            long seconds = Math.floorDiv(mtime, 1000);
+            this.unixTime = seconds >= Integer.MIN_VALUE && seconds <= Integer.MAX_VALUE ? (int) seconds : null;
+            this.crc = crc;
+            this.size = size;
+            this.compressedSize = compressedSize;
+            this.offset = offset;
+        }
+    }
+}
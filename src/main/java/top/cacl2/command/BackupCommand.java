@@ -7,13 +7,31 @@ import com.mojang.brigadier.context.CommandContext;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
 import top.cacl2.backup.*;
 import top.cacl2.config.BackupConfig;
+import top.cacl2.config.FilterRule;
+import top.cacl2.metrics.BackupMetrics;
+import top.cacl2.metrics.WorldSaveEvent;
+import top.cacl2.storage.StorageBackend;
+import top.cacl2.storage.StorageTargets;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class BackupCommand {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+        .withZone(ZoneId.systemDefault());
+
     private final BackupManager backupManager;
     private final RestoreManager restoreManager;
     private final BackupScheduler scheduler;
@@ -40,16 +58,46 @@ public class BackupCommand {
                     .executes(this::createBackupWithLabel)))
             .then(Commands.literal("list")
                 .executes(this::listBackups))
+            .then(Commands.literal("diff")
+                .then(Commands.argument("from", StringArgumentType.string())
+                    .then(Commands.argument("to", StringArgumentType.string())
+                        .executes(this::diffBackups))))
+            .then(Commands.literal("browse")
+                .then(Commands.argument("backup", StringArgumentType.string())
+                    .executes(this::browseBackup)
+                    .then(Commands.argument("path", StringArgumentType.greedyString())
+                        .executes(this::browseBackupPath))))
             .then(Commands.literal("restore")
-                .then(Commands.argument("backup", StringArgumentType.greedyString())
-                    .executes(this::restoreBackup)))
+                .then(Commands.argument("backup", StringArgumentType.string())
+                    .executes(this::restoreBackup)
+                    .then(Commands.argument("path", StringArgumentType.greedyString())
+                        .executes(this::restoreBackupPath))))
             .then(Commands.literal("delete")
                 .then(Commands.argument("backup", StringArgumentType.greedyString())
                     .executes(this::deleteBackup)))
             .then(Commands.literal("cleanup")
                 .executes(this::cleanupBackups))
+            .then(Commands.literal("recompress")
+                .executes(this::recompressBackups))
+            .then(Commands.literal("cancel")
+                .executes(this::cancelCurrentJob)
+                .then(Commands.argument("id", IntegerArgumentType.integer(1))
+                    .executes(this::cancelJob)))
             .then(Commands.literal("status")
                 .executes(this::showStatus))
+            .then(Commands.literal("metrics")
+                .executes(this::showMetrics))
+            .then(Commands.literal("remote")
+                .executes(this::listRemoteBackups))
+            .then(Commands.literal("worlds")
+                .executes(this::listWorldUnits))
+            .then(Commands.literal("filters")
+                .executes(this::showFilters))
+            .then(Commands.literal("player")
+                .then(Commands.argument("player", StringArgumentType.word())
+                    .executes(this::showPlayerHistory)
+                    .then(Commands.argument("time", StringArgumentType.greedyString())
+                        .executes(this::restorePlayer))))
             .then(Commands.literal("reload")
                 .executes(this::reloadConfig))
             .then(Commands.literal("config")
@@ -101,55 +149,33 @@ public class BackupCommand {
     }
 
     private int createBackup(CommandContext<CommandSourceStack> context) {
-        CommandSourceStack source = context.getSource();
-
-        if (backupManager.isBackingUp()) {
-            source.sendFailure(net.minecraft.network.chat.Component.literal("[CaCl2Backup] A backup is already in progress!"));
-            return 0;
-        }
-
-        if (config.isSaveOnBackup()) {
-            if (!saveWorld(source.getServer())) {
-                source.sendFailure(net.minecraft.network.chat.Component.literal("[CaCl2Backup] World save failed, backup cancelled"));
-                return 0;
-            }
-        }
-
-        source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] Starting backup..."), true);
-
-        backupManager.createBackup().thenAccept(result -> {
-            if (result.isSuccess()) {
-                source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] " + result.getMessage()), true);
-                if (config.isAutoCleanupEnabled()) {
-                    doCleanup(source);
-                }
-            } else {
-                source.sendFailure(net.minecraft.network.chat.Component.literal("[CaCl2Backup] " + result.getMessage()));
-            }
-        });
-
-        return 1;
+        return startBackup(context.getSource(), null);
     }
 
     private int createBackupWithLabel(CommandContext<CommandSourceStack> context) {
-        CommandSourceStack source = context.getSource();
-        String label = StringArgumentType.getString(context, "label");
+        return startBackup(context.getSource(), StringArgumentType.getString(context, "label"));
+    }
 
-        if (backupManager.isBackingUp()) {
-            source.sendFailure(net.minecraft.network.chat.Component.literal("[CaCl2Backup] A backup is already in progress!"));
+    private int startBackup(CommandSourceStack source, String label) {
+        MinecraftServer server = source.getServer();
+        BackupJob<BackupManager.BackupResult> job;
+        try {
+            job = backupManager.submitBackup(BackupJobQueue.JobType.MANUAL, label,
+                () -> !config.isSaveOnBackup() || saveWorld(server));
+        } catch (IllegalStateException e) {
+            source.sendFailure(net.minecraft.network.chat.Component.literal("[CaCl2Backup] Cannot queue backup: " + e.getMessage()));
             return 0;
         }
 
-        if (config.isSaveOnBackup()) {
-            if (!saveWorld(source.getServer())) {
-                source.sendFailure(net.minecraft.network.chat.Component.literal("[CaCl2Backup] World save failed, backup cancelled"));
-                return 0;
-            }
+        String labelText = label != null ? " with label: " + label : "...";
+        if (backupManager.getJobQueue().getCurrent() != null && backupManager.getJobQueue().getCurrent() != job) {
+            source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] Backup queued as job #" + job.getId()
+                + " (" + backupManager.getJobQueue().getPendingCount() + " job(s) pending)"), true);
+        } else {
+            source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] Starting backup" + labelText), true);
         }
 
-        source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] Starting backup with label: " + label), true);
-
-        backupManager.createBackup(label).thenAccept(result -> {
+        job.getFuture().thenAccept(result -> {
             if (result.isSuccess()) {
                 source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] " + result.getMessage()), true);
                 if (config.isAutoCleanupEnabled()) {
@@ -158,21 +184,23 @@ public class BackupCommand {
             } else {
                 source.sendFailure(net.minecraft.network.chat.Component.literal("[CaCl2Backup] " + result.getMessage()));
             }
+        }).exceptionally(e -> {
+            source.sendFailure(net.minecraft.network.chat.Component.literal("[CaCl2Backup] Backup job #" + job.getId() + " was cancelled"));
+            return null;
         });
 
         return 1;
     }
 
     private void doCleanup(CommandSourceStack source) {
-        BackupCleaner cleaner = new BackupCleaner(
-            backupManager.getBackupDir(),
-            config.getMaxBackups(),
-            config.getMaxBackupAgeDays()
-        );
-        int deleted = cleaner.cleanup();
-        if (deleted > 0) {
-            final int count = deleted;
-            source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] Auto cleaned up " + count + " old backup(s)"), false);
+        try {
+            backupManager.submitCleanup().getFuture().thenAccept(deleted -> {
+                if (deleted > 0) {
+                    source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] Auto cleaned up " + deleted + " old backup(s)"), false);
+                }
+            });
+        } catch (IllegalStateException e) {
+            // Queue is full or shutting down, the scheduled cleanup will catch up
         }
     }
 
@@ -180,12 +208,18 @@ public class BackupCommand {
         try {
             final boolean[] success = {false};
             server.executeBlocking(() -> {
+                WorldSaveEvent event = new WorldSaveEvent();
+                event.begin();
                 try {
                     server.saveEverything(true, true, true);
                     server.getPlayerList().saveAll();
                     success[0] = true;
                 } catch (Exception e) {
                     org.slf4j.LoggerFactory.getLogger("cacl2backup").error("Failed to save world before backup", e);
+                } finally {
+                    event.trigger = "command";
+                    event.success = success[0];
+                    event.commit();
                 }
             });
             return success[0];
@@ -208,7 +242,13 @@ public class BackupCommand {
 
         for (int i = 0; i < Math.min(backups.size(), 20); i++) {
             BackupManager.BackupInfo info = backups.get(i);
-            String label = info.getLabel().isEmpty() ? "" : " [" + info.getLabel() + "]";
+            BackupManifest header = BackupManifest.readHeader(info.getFile());
+            String scope = header != null && header.getScope() != null && !header.getScope().equals("FULL")
+                ? " (" + header.getScope().toLowerCase() + ")" : "";
+            if (header != null && header.isTree()) {
+                scope += " (tree)";
+            }
+            String label = (info.getLabel().isEmpty() ? "" : " [" + info.getLabel() + "]") + scope;
             final int index = i;
             source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(
                 String.format("%d. %s%s - %s",
@@ -225,7 +265,159 @@ public class BackupCommand {
         return backups.size();
     }
 
+    private int diffBackups(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+        Path from = resolveBackupFile(StringArgumentType.getString(context, "from"));
+        Path to = resolveBackupFile(StringArgumentType.getString(context, "to"));
+        if (from == null || to == null) {
+            source.sendFailure(net.minecraft.network.chat.Component.literal("[CaCl2Backup] Invalid backup number or name"));
+            return 0;
+        }
+
+        CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            BackupIndex before = loadIndex(from);
+            BackupIndex after = loadIndex(to);
+            BackupIndex.Diff diff = BackupIndex.diff(before, after);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+
+            List<String> lines = new ArrayList<>();
+            lines.add(String.format("[CaCl2Backup] %s -> %s: %d added, %d removed, %d changed, %d unchanged, %s (%d ms)",
+                before.getName(), after.getName(), diff.getAdded().size(), diff.getRemoved().size(),
+                diff.getChanged().size(), diff.getUnchanged(), signedSize(diff.getSizeDelta()), millis));
+            if (!Objects.equals(before.getUnit(), after.getUnit())) {
+                lines.add(" Note: the backups cover different world units");
+            }
+            addChanges(lines, "+", "added", diff.getAdded());
+            addChanges(lines, "-", "removed", diff.getRemoved());
+            addChanges(lines, "~", "changed", diff.getChanged());
+            return lines;
+        }).whenComplete((lines, error) -> {
+            if (error != null) {
+                source.sendFailure(net.minecraft.network.chat.Component.literal("[CaCl2Backup] Diff failed: "
+                    + (error.getCause() != null ? error.getCause().getMessage() : error.getMessage())));
+                return;
+            }
+            for (String line : lines) {
+                source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(line), false);
+            }
+        });
+        return 1;
+    }
+
+    private static void addChanges(List<String> lines, String marker, String kind, List<BackupIndex.Change> changes) {
+        for (int i = 0; i < Math.min(changes.size(), 10); i++) {
+            BackupIndex.Change change = changes.get(i);
+            StringBuilder line = new StringBuilder(" " + marker + " " + change.getPath() + " (");
+            if (change.getSizeBefore() > 0 && change.getSizeAfter() > 0) {
+                line.append(signedSize(change.getSizeDelta()));
+            } else {
+                line.append(BackupManager.formatSize(Math.max(change.getSizeBefore(), change.getSizeAfter())));
+            }
+            line.append(")");
+            if (marker.equals("~") && change.isRegion()) {
+                List<int[]> chunks = change.getChangedChunks();
+                if (chunks == null) {
+                    line.append(", chunk timestamps not recorded");
+                } else {
+                    line.append(", ").append(chunks.size()).append(" chunk(s)");
+                    for (int j = 0; j < Math.min(chunks.size(), 6); j++) {
+                        line.append(j == 0 ? ": " : " ").append(chunks.get(j)[0]).append(",").append(chunks.get(j)[1]);
+                    }
+                    if (chunks.size() > 6) {
+                        line.append(" ...");
+                    }
+                }
+            }
+            lines.add(line.toString());
+        }
+        if (changes.size() > 10) {
+            lines.add("  ... and " + (changes.size() - 10) + " more " + kind);
+        }
+    }
+
+    private int browseBackup(CommandContext<CommandSourceStack> context) {
+        return browseBackup(context, "");
+    }
+
+    private int browseBackupPath(CommandContext<CommandSourceStack> context) {
+        return browseBackup(context, StringArgumentType.getString(context, "path"));
+    }
+
+    private int browseBackup(CommandContext<CommandSourceStack> context, String path) {
+        CommandSourceStack source = context.getSource();
+        Path backupFile = resolveBackupFile(StringArgumentType.getString(context, "backup"));
+        if (backupFile == null) {
+            source.sendFailure(net.minecraft.network.chat.Component.literal("[CaCl2Backup] Invalid backup number or name"));
+            return 0;
+        }
+
+        CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            BackupIndex index = loadIndex(backupFile);
+            List<BackupIndex.Node> nodes = index.browse(path);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+
+            List<String> lines = new ArrayList<>();
+            if (nodes.isEmpty()) {
+                lines.add("[CaCl2Backup] Nothing under " + path + " in " + index.getName());
+                return lines;
+            }
+            int files = nodes.stream().mapToInt(BackupIndex.Node::getFiles).sum();
+            long size = nodes.stream().mapToLong(BackupIndex.Node::getSize).sum();
+            lines.add(String.format("[CaCl2Backup] %s:/%s - %d file(s), %s%s (%d ms)", index.getName(), path, files,
+                BackupManager.formatSize(size), index.hasManifest() ? "" : ", no manifest", millis));
+            for (int i = 0; i < Math.min(nodes.size(), 40); i++) {
+                BackupIndex.Node node = nodes.get(i);
+                if (node.isFolder()) {
+                    lines.add(" " + node.getName() + " - " + node.getFiles() + " file(s), "
+                        + BackupManager.formatSize(node.getSize()));
+                    continue;
+                }
+                lines.add(" " + node.getName() + " - " + BackupManager.formatSize(node.getSize())
+                    + (node.getCompressedSize() >= 0
+                        ? ", " + BackupManager.formatSize(node.getCompressedSize()) + " compressed" : ", in base backup")
+                    + (node.getChunks() >= 0 ? ", " + node.getChunks() + " chunk(s)" : "")
+                    + ", modified " + TIME_FORMAT.format(Instant.ofEpochMilli(node.getMtime())));
+            }
+            if (nodes.size() > 40) {
+                lines.add("... and " + (nodes.size() - 40) + " more");
+            }
+            return lines;
+        }).whenComplete((lines, error) -> {
+            if (error != null) {
+                source.sendFailure(net.minecraft.network.chat.Component.literal("[CaCl2Backup] Browse failed: "
+                    + (error.getCause() != null ? error.getCause().getMessage() : error.getMessage())));
+                return;
+            }
+            for (String line : lines) {
+                source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(line), false);
+            }
+        });
+        return 1;
+    }
+
+    private static BackupIndex loadIndex(Path backupFile) {
+        try {
+            return BackupIndex.load(backupFile);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static String signedSize(long delta) {
+        return (delta >= 0 ? "+" : "-") + BackupManager.formatSize(Math.abs(delta));
+    }
+
     private int restoreBackup(CommandContext<CommandSourceStack> context) {
+        return restoreBackup(context, null);
+    }
+
+    private int restoreBackupPath(CommandContext<CommandSourceStack> context) {
+        return restoreBackup(context, StringArgumentType.getString(context, "path"));
+    }
+
+    private int restoreBackup(CommandContext<CommandSourceStack> context, String path) {
         CommandSourceStack source = context.getSource();
         String input = StringArgumentType.getString(context, "backup");
 
@@ -245,10 +437,13 @@ public class BackupCommand {
             ? " (server will auto-restart in " + config.getRestartDelaySeconds() + " seconds)"
             : " (manual restart required)";
 
-        source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] WARNING: This will replace the current world!"), false);
-        source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] Preparing restore from: " + backupName + restartInfo), true);
+        String scope = path != null ? " (only " + path + ")" : "";
+        source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(path != null
+            ? "[CaCl2Backup] WARNING: This will replace " + path + " in the current world!"
+            : "[CaCl2Backup] WARNING: This will replace the current world!"), false);
+        source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] Preparing restore from: " + backupName + scope + restartInfo), true);
 
-        restoreManager.restoreBackup(source.getServer(), config, backupName).thenAccept(result -> {
+        restoreManager.restoreBackup(source.getServer(), config, backupName, path).thenAccept(result -> {
             if (result.isSuccess()) {
                 source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] " + result.getMessage()), true);
             } else {
@@ -269,11 +464,7 @@ public class BackupCommand {
             return 0;
         }
 
-        Path backupFile = backupManager.getBackupDir().resolve(backupName);
-        if (!backupName.endsWith(".zip")) {
-            backupFile = backupManager.getBackupDir().resolve(backupName + ".zip");
-        }
-
+        Path backupFile = backupManager.resolveBackupFile(backupName);
         if (backupManager.deleteBackup(backupFile)) {
             source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] Deleted backup: " + backupName), true);
             return 1;
@@ -283,6 +474,14 @@ public class BackupCommand {
         }
     }
 
+    private Path resolveBackupFile(String input) {
+        String backupName = resolveBackupName(input);
+        if (backupName == null) {
+            return null;
+        }
+        return backupManager.resolveBackupFile(backupName);
+    }
+
     private String resolveBackupName(String input) {
         try {
             int index = Integer.parseInt(input);
@@ -296,20 +495,58 @@ public class BackupCommand {
         }
     }
 
+    private int recompressBackups(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+
+        try {
+            backupManager.submitRecompression(false).getFuture().thenAccept(result ->
+                source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] " + result.getMessage()), true));
+        } catch (IllegalStateException e) {
+            source.sendFailure(net.minecraft.network.chat.Component.literal("[CaCl2Backup] Cannot queue recompression: " + e.getMessage()));
+            return 0;
+        }
+
+        return 1;
+    }
+
     private int cleanupBackups(CommandContext<CommandSourceStack> context) {
         CommandSourceStack source = context.getSource();
 
-        BackupCleaner cleaner = new BackupCleaner(
-            backupManager.getBackupDir(),
-            config.getMaxBackups(),
-            config.getMaxBackupAgeDays()
-        );
+        try {
+            backupManager.submitCleanup().getFuture().thenAccept(deleted ->
+                source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] Cleaned up " + deleted + " old backup(s)"), true));
+        } catch (IllegalStateException e) {
+            source.sendFailure(net.minecraft.network.chat.Component.literal("[CaCl2Backup] Cannot queue cleanup: " + e.getMessage()));
+            return 0;
+        }
+
+        return 1;
+    }
+
+    private int cancelCurrentJob(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+        BackupJob<?> current = backupManager.getJobQueue().getCurrent();
+
+        if (current == null || !backupManager.getJobQueue().cancelCurrent()) {
+            source.sendFailure(net.minecraft.network.chat.Component.literal("[CaCl2Backup] No job is running"));
+            return 0;
+        }
+
+        source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] Cancelling job #" + current.getId()), true);
+        return 1;
+    }
+
+    private int cancelJob(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+        int id = IntegerArgumentType.getInteger(context, "id");
 
-        int deleted = cleaner.cleanup();
-        final int count = deleted;
-        source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] Cleaned up " + count + " old backup(s)"), true);
+        if (!backupManager.getJobQueue().cancel(id)) {
+            source.sendFailure(net.minecraft.network.chat.Component.literal("[CaCl2Backup] No running or pending job #" + id));
+            return 0;
+        }
 
-        return deleted;
+        source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] Cancelled job #" + id), true);
+        return 1;
     }
 
     private int showStatus(CommandContext<CommandSourceStack> context) {
@@ -328,14 +565,230 @@ public class BackupCommand {
             source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(" Restart Delay: " + config.getRestartDelaySeconds() + " seconds"), false);
         }
         source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(" Currently Backing Up: " + (backupManager.isBackingUp() ? "Yes" : "No")), false);
+        BackupJob<?> currentJob = backupManager.getJobQueue().getCurrent();
+        source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(" Current Job: " + (currentJob != null ? currentJob.getSummary() : "None")), false);
+        List<BackupJob<?>> pendingJobs = backupManager.getJobQueue().getPending();
+        source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(" Queued Jobs: " + pendingJobs.size()), false);
+        for (BackupJob<?> pendingJob : pendingJobs) {
+            source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("  - " + pendingJob.getSummary()), false);
+        }
         source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(" Next Backup: " + scheduler.getNextBackupTimeFormatted()), false);
+        scheduler.getNextFireTimes().forEach((name, time) ->
+            source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("  Schedule " + name + ": "
+                + time.format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"))), false));
+        if (config.isActivityAwareScheduling()) {
+            ActivityTracker activity = backupManager.getActivityTracker();
+            ActivityTracker.WorldChanges changes = activity.getCachedWorldChanges();
+            String changeText = changes == null ? "world not scanned yet" : String.format("%d chunks saved, %s changed",
+                changes.getChunksSaved(), BackupManager.formatSize(changes.getChangedBytes()));
+            source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(String.format(
+                " Activity Since Last Backup: %d online (peak %d), %d player-minutes, %s",
+                activity.getOnlinePlayers(), activity.getPeakPlayers(), activity.getPlayerSeconds() / 60, changeText)), false);
+            source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(" Skipped Auto Backups: " + scheduler.getSkippedCount()), false);
+            List<BackupScheduler.ScheduleDecision> decisions = scheduler.getRecentDecisions();
+            for (int i = Math.max(0, decisions.size() - 3); i < decisions.size(); i++) {
+                BackupScheduler.ScheduleDecision decision = decisions.get(i);
+                source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("  " + decision.getFormattedTime() + " "
+                    + decision.getAction().name().toLowerCase() + ": " + decision.getReason()), false);
+            }
+        }
 
         List<BackupManager.BackupInfo> backups = backupManager.listBackups();
         source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(" Total Backups: " + backups.size()), false);
 
+        SpaceForecaster forecaster = backupManager.getSpaceForecaster();
+        forecaster.sampleFreeSpace();
+        long usable = forecaster.getUsableSpace();
+        double trend = forecaster.getTrendBytesPerDay();
+        double daysUntilFull = forecaster.getDaysUntilFull();
+        String trendText = Double.isNaN(trend)
+            ? "trend: collecting data"
+            : "trend: " + (trend < 0 ? "-" : "+") + BackupManager.formatSize((long) Math.abs(trend)) + "/day";
+        String fullText = Double.isInfinite(daysUntilFull)
+            ? ""
+            : String.format(", ~%.1f days until full", daysUntilFull);
+        source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(" Free Space: "
+            + (usable < 0 ? "unknown" : BackupManager.formatSize(usable)) + " (" + trendText + fullText + ")"), false);
+        source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(String.format(" Expected Compression Ratio: %.1f%%",
+            forecaster.getExpectedRatio() * 100)), false);
+
+        return 1;
+    }
+
+    private int showMetrics(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+        BackupMetrics metrics = backupManager.getMetrics();
+
+        source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] Metrics:"), false);
+        for (BackupMetrics.Operation operation : BackupMetrics.Operation.values()) {
+            BackupMetrics.OperationStats stats = metrics.getOperationStats(operation);
+            if (stats == null) {
+                continue;
+            }
+            source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(String.format(
+                " %s: %d runs (%d failed), p50 %.1fs, p95 %.1fs, max %.1fs, avg %s/s",
+                operation.getId(), stats.getCount(), stats.getFailedCount(),
+                stats.getP50DurationMillis() / 1000, stats.getP95DurationMillis() / 1000, stats.getMaxDurationMillis() / 1000,
+                BackupManager.formatSize((long) stats.getMeanBytesPerSecond()))), false);
+        }
+
+        BackupMetrics.RunRecord last = metrics.getLastRun(BackupMetrics.Operation.BACKUP);
+        if (last == null) {
+            source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(" No completed backup recorded yet."), false);
+            return 1;
+        }
+        source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(String.format(
+            " Last backup: %.1fs, %d files, %s/s, %.0f files/s, %d threads at %.0f%% utilization, waited %.1fs in queue",
+            last.getDurationMillis() / 1000, last.getFiles(), BackupManager.formatSize((long) last.getBytesPerSecond()),
+            last.getFilesPerSecond(), last.getThreads(), last.getUtilization() * 100, last.getQueueWaitMillis() / 1000.0)), false);
+        source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(String.format(
+            " Staging memory: peak %s of %s %s budget, %d entries spilled to disk",
+            BackupManager.formatSize(last.getPeakStagingBytes()), BackupManager.formatSize(config.getCompressionMemoryBytes()),
+            config.isOffHeapStaging() ? "off-heap" : "heap", last.getSpilledEntries())), false);
+        if (config.isAutoTuneThreads()) {
+            String reason = backupManager.getThreadTuner().getReason();
+            source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(
+                " Thread tuning: " + (reason != null ? reason : "calibrating")), false);
+            backupManager.getThreadTuner().describe().forEach(line -> source.sendSuccess(
+                () -> net.minecraft.network.chat.Component.literal("  " + line), false));
+        }
+        last.getWallMillis().forEach((phase, wall) -> {
+            Double cpu = last.getCpuMillis().get(phase);
+            source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(String.format(
+                "  %s: %.0fms%s", phase, wall, cpu != null && cpu > 0 ? String.format(" (cpu %.0fms)", cpu) : "")), false);
+        });
+        return 1;
+    }
+
+    private int listRemoteBackups(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+        StorageTargets storage = backupManager.getStorage();
+        if (storage.isEmpty()) {
+            source.sendFailure(net.minecraft.network.chat.Component.literal("[CaCl2Backup] No storage targets configured"));
+            return 0;
+        }
+
+        CompletableFuture.supplyAsync(storage::listBackups).thenAccept(targets -> targets.forEach((name, backups) -> {
+            if (backups == null) {
+                source.sendFailure(net.minecraft.network.chat.Component.literal("[CaCl2Backup] " + name + ": unreachable"));
+                return;
+            }
+            long total = backups.stream().mapToLong(StorageBackend.StoredObject::getSize).sum();
+            source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] " + name + ": "
+                + backups.size() + " backup(s), " + BackupManager.formatSize(total)), false);
+            for (int i = 0; i < Math.min(backups.size(), 10); i++) {
+                StorageBackend.StoredObject backup = backups.get(i);
+                source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(" " + backup.getName() + " - "
+                    + BackupManager.formatSize(backup.getSize())), false);
+            }
+        }));
+        return 1;
+    }
+
+    private int listWorldUnits(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+        WorldLayout layout = backupManager.getWorldLayout();
+        source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] World " + layout.getRoot()
+            + (config.isSplitDimensions() ? ", backed up per unit" : ", backed up as one archive")), false);
+        for (WorldUnit unit : layout.getUnits()) {
+            String path = unit.getPath().isEmpty() ? "(world folder)" : unit.getPath();
+            source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(" " + unit.getName() + " - " + path), false);
+        }
+        return layout.getUnits().size();
+    }
+
+    private int showFilters(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+        List<FilterRule> rules = config.getFilters();
+        source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] Filter rules ("
+            + backupManager.getFilter().getRuleCount() + " active):"), false);
+        for (FilterRule rule : rules) {
+            String pattern = !rule.getGlob().isEmpty() ? "glob " + rule.getGlob() : "regex " + rule.getRegex();
+            source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(" " + rule.getName() + " - "
+                + rule.getAction().name().toLowerCase() + " " + pattern
+                + (rule.hasFilePredicates() ? " (size/age limited)" : "")), false);
+        }
+
+        PathFilter.Stats stats = backupManager.getLastFilterStats();
+        if (stats == null) {
+            source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(" No backup since the rules were loaded."), false);
+            return rules.size();
+        }
+        source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(" Last backup: " + stats.getSummary()), false);
+        for (String line : stats.describe()) {
+            source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("  " + line), false);
+        }
+        return rules.size();
+    }
+
+    private int showPlayerHistory(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+        PlayerJournal journal = backupManager.getPlayerJournal();
+        UUID player = resolvePlayer(source.getServer(), journal, StringArgumentType.getString(context, "player"));
+        if (player == null) {
+            source.sendFailure(net.minecraft.network.chat.Component.literal("[CaCl2Backup] No journaled data for that player"));
+            return 0;
+        }
+        List<Long> history = journal.getHistory(player);
+        source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] " + journal.getName(player)
+            + " has " + history.size() + " journaled version(s)"
+            + (config.isPlayerJournalEnabled() ? "" : " (journal is disabled)") + ":"), false);
+        for (int i = 0; i < Math.min(history.size(), 20); i++) {
+            String time = PlayerJournal.formatTime(history.get(i));
+            source.sendSuccess(() -> net.minecraft.network.chat.Component.literal(" " + time), false);
+        }
+        if (history.size() > 20) {
+            source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("... and " + (history.size() - 20) + " more"), false);
+        }
+        return history.size();
+    }
+
+    private int restorePlayer(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+        MinecraftServer server = source.getServer();
+        PlayerJournal journal = backupManager.getPlayerJournal();
+        UUID player = resolvePlayer(server, journal, StringArgumentType.getString(context, "player"));
+        if (player == null) {
+            source.sendFailure(net.minecraft.network.chat.Component.literal("[CaCl2Backup] No journaled data for that player"));
+            return 0;
+        }
+        long time;
+        try {
+            time = PlayerJournal.parseTime(StringArgumentType.getString(context, "time"), System.currentTimeMillis());
+        } catch (IllegalArgumentException e) {
+            source.sendFailure(net.minecraft.network.chat.Component.literal("[CaCl2Backup] " + e.getMessage()));
+            return 0;
+        }
+        if (journal.getHistory(player).stream().noneMatch(t -> t <= time)) {
+            source.sendFailure(net.minecraft.network.chat.Component.literal("[CaCl2Backup] The journal has nothing for "
+                + journal.getName(player) + " at or before " + PlayerJournal.formatTime(time)));
+            return 0;
+        }
+
+        journal.requestRestore(player, time);
+        ServerPlayer online = server.getPlayerList().getPlayer(player);
+        if (online != null) {
+            online.connection.disconnect(net.minecraft.network.chat.Component.literal(
+                "Your player data is being restored to " + PlayerJournal.formatTime(time) + ", please rejoin"));
+        }
+        source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] Restoring "
+            + journal.getName(player) + " to " + PlayerJournal.formatTime(time)
+            + (online != null ? " once they are disconnected" : "")), true);
         return 1;
     }
 
+    private static UUID resolvePlayer(MinecraftServer server, PlayerJournal journal, String name) {
+        ServerPlayer online = server.getPlayerList().getPlayerByName(name);
+        if (online != null) {
+            return online.getGameProfile().id();
+        }
+        try {
+            return UUID.fromString(name);
+        } catch (IllegalArgumentException e) {
+            return journal.findPlayer(name);
+        }
+    }
+
     private int reloadConfig(CommandContext<CommandSourceStack> context) {
         CommandSourceStack source = context.getSource();
 
@@ -351,6 +804,53 @@ public class BackupCommand {
         config.setRestartDelaySeconds(newConfig.getRestartDelaySeconds());
         config.setRestoreRestartMessage(newConfig.getRestoreRestartMessage());
         config.setBroadcastRestoreMessage(newConfig.isBroadcastRestoreMessage());
+        config.setSpaceCheckEnabled(newConfig.isSpaceCheckEnabled());
+        config.setReservedFreeSpaceMB(newConfig.getReservedFreeSpaceMB());
+        config.setMinBackupsToKeep(newConfig.getMinBackupsToKeep());
+        config.setActivityAwareScheduling(newConfig.isActivityAwareScheduling());
+        config.setSkipWhenIdle(newConfig.isSkipWhenIdle());
+        config.setIdleChangeThresholdMB(newConfig.getIdleChangeThresholdMB());
+        config.setBurstPlayerCount(newConfig.getBurstPlayerCount());
+        config.setBurstChunkCount(newConfig.getBurstChunkCount());
+        config.setMinBackupIntervalMinutes(newConfig.getMinBackupIntervalMinutes());
+        config.setQuietWindowMinutes(newConfig.getQuietWindowMinutes());
+        config.setQuietPlayerThreshold(newConfig.getQuietPlayerThreshold());
+        config.setProfiles(newConfig.getProfiles());
+        config.setSchedules(newConfig.getSchedules());
+        config.setRetentionTiers(newConfig.getRetentionTiers());
+        config.setJmxEnabled(newConfig.isJmxEnabled());
+        config.setProgressBossBar(newConfig.isProgressBossBar());
+        config.setProgressLogIntervalSeconds(newConfig.getProgressLogIntervalSeconds());
+        config.setStorageTargets(newConfig.getStorageTargets());
+        config.setColdStorage(newConfig.getColdStorage());
+        config.setStandbyReceiver(newConfig.getStandbyReceiver());
+        config.setIdleRecompressEnabled(newConfig.isIdleRecompressEnabled());
+        config.setIdleRecompressLevel(newConfig.getIdleRecompressLevel());
+        config.setDurability(newConfig.getDurability());
+        config.setWriteBufferKB(newConfig.getWriteBufferKB());
+        config.setSyncIntervalMB(newConfig.getSyncIntervalMB());
+        config.setPreallocateArchives(newConfig.isPreallocateArchives());
+        config.setVolumeSizeMB(newConfig.getVolumeSizeMB());
+        config.setSplitDimensions(newConfig.isSplitDimensions());
+        config.setFilters(newConfig.getFilters());
+        config.setCompressionMemoryMB(newConfig.getCompressionMemoryMB());
+        config.setSpillThresholdMB(newConfig.getSpillThresholdMB());
+        config.setOffHeapStaging(newConfig.isOffHeapStaging());
+        config.setAutoTuneThreads(newConfig.isAutoTuneThreads());
+        config.setAutoTuneTolerancePercent(newConfig.getAutoTuneTolerancePercent());
+        config.setShutdownBackupEnabled(newConfig.isShutdownBackupEnabled());
+        config.setShutdownBackupMaxSeconds(newConfig.getShutdownBackupMaxSeconds());
+        config.setPlayerJournalEnabled(newConfig.isPlayerJournalEnabled());
+        config.setPlayerJournalIntervalSeconds(newConfig.getPlayerJournalIntervalSeconds());
+        config.setPlayerJournalRetentionHours(newConfig.getPlayerJournalRetentionHours());
+        config.setPlayerJournalMaxMB(newConfig.getPlayerJournalMaxMB());
+        backupManager.reloadFilters();
+        backupManager.configurePlayerJournal();
+        backupManager.reconfigureCompression();
+        backupManager.getMetrics().setJmxEnabled(config.isJmxEnabled());
+        backupManager.getStorage().configure(config.getStorageTargets());
+        backupManager.getStorage().configureCold(config.getColdStorage());
+        backupManager.configureStandbyReceiver();
 
         scheduler.restart();
 
@@ -424,6 +924,7 @@ public class BackupCommand {
 
         config.setCompressionThreads(count);
         config.save();
+        backupManager.reconfigureCompression();
 
         source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] Compression threads set to " + count), true);
         return 1;
@@ -435,6 +936,7 @@ public class BackupCommand {
 
         config.setCompressionLevel(level);
         config.save();
+        backupManager.reconfigureCompression();
 
         source.sendSuccess(() -> net.minecraft.network.chat.Component.literal("[CaCl2Backup] Compression level set to " + level), true);
         return 1;
@@ -9,12 +9,15 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 public class BackupConfig {
     private static final Logger LOGGER = LoggerFactory.getLogger("cacl2backup");
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
-    private static final Path CONFIG_PATH = FabricLoader.getInstance().getConfigDir().resolve("cacl2backup.json");
 
     private int backupIntervalMinutes = 30;
     private int maxBackups = 10;
@@ -30,16 +33,64 @@ private boolean broadcastBackupMessages = true;
     private int restartDelaySeconds = 60;
     private String restoreRestartMessage = "服务器将在 {seconds} 秒后重启以完成还原...";
     private boolean broadcastRestoreMessage = true;
+    private boolean spaceCheckEnabled = true;
+    private int reservedFreeSpaceMB = 1024;
+    private int minBackupsToKeep = 2;
+    private boolean activityAwareScheduling = true;
+    private boolean skipWhenIdle = true;
+    private int idleChangeThresholdMB = 4;
+    private int burstPlayerCount = 10;
+    private int burstChunkCount = 2000;
+    private int minBackupIntervalMinutes = 10;
+    private int quietWindowMinutes = 10;
+    private int quietPlayerThreshold = 1;
+    private boolean jmxEnabled = true;
+    private boolean progressBossBar = false;
+    private int progressLogIntervalSeconds = 15;
+    private List<BackupProfile> profiles = new ArrayList<>();
+    private List<BackupSchedule> schedules = new ArrayList<>();
+    private List<RetentionTier> retentionTiers = new ArrayList<>();
+    private List<StorageTarget> storageTargets = new ArrayList<>();
+    private ColdStorage coldStorage = new ColdStorage();
+    private StandbyReceiver standbyReceiver = new StandbyReceiver();
+    private boolean idleRecompressEnabled = false;
+    private Durability durability = Durability.NONE;
+    private int writeBufferKB = 1024;
+    private int syncIntervalMB = 64;
+    private boolean preallocateArchives = false;
+    private int idleRecompressLevel = 9;
+    private int volumeSizeMB = 0;
+    private boolean splitDimensions = false;
+    private int compressionMemoryMB = 64;
+    private int spillThresholdMB = 8;
+    private boolean offHeapStaging = true;
+    private boolean autoTuneThreads = false;
+    private int autoTuneTolerancePercent = 10;
+    private boolean shutdownBackupEnabled = false;
+    private int shutdownBackupMaxSeconds = 30;
+    private boolean playerJournalEnabled = false;
+    private int playerJournalIntervalSeconds = 120;
+    private int playerJournalRetentionHours = 48;
+    private int playerJournalMaxMB = 64;
+    private List<FilterRule> filters = new ArrayList<>(List.of(
+        new FilterRule("session-lock", FilterRule.Action.EXCLUDE, "session.lock"),
+        new FilterRule("region-backups", FilterRule.Action.EXCLUDE, "**/*.mca.bak")));
+
+    private static Path configPath() {
+        return FabricLoader.getInstance().getConfigDir().resolve("cacl2backup.json");
+    }
 
     public static BackupConfig load() {
         BackupConfig config = new BackupConfig();
-        if (Files.exists(CONFIG_PATH)) {
+        Path path = configPath();
+        if (Files.exists(path)) {
             try {
-                String json = Files.readString(CONFIG_PATH);
+                String json = Files.readString(path);
                 BackupConfig loaded = GSON.fromJson(json, BackupConfig.class);
                 if (loaded != null) {
                     config = loaded;
                 }
+                config.validSchedules(true);
             } catch (Exception e) {
                 LOGGER.warn("Failed to load config, using defaults", e);
             }
@@ -50,9 +101,10 @@ private boolean broadcastBackupMessages = true;
 
     public void save() {
         try {
-            Files.createDirectories(CONFIG_PATH.getParent());
+            Path path = configPath();
+            Files.createDirectories(path.getParent());
             String json = GSON.toJson(this);
-            Files.writeString(CONFIG_PATH, json);
+            Files.writeString(path, json);
         } catch (IOException e) {
             LOGGER.error("Failed to save config", e);
         }
@@ -173,4 +225,394 @@ private boolean broadcastBackupMessages = true;
     public void setBroadcastRestoreMessage(boolean broadcastRestoreMessage) {
         this.broadcastRestoreMessage = broadcastRestoreMessage;
     }
+
+    public boolean isSpaceCheckEnabled() {
+        return spaceCheckEnabled;
+    }
+
+    public void setSpaceCheckEnabled(boolean spaceCheckEnabled) {
+        this.spaceCheckEnabled = spaceCheckEnabled;
+    }
+
+    public int getReservedFreeSpaceMB() {
+        return reservedFreeSpaceMB;
+    }
+
+    public void setReservedFreeSpaceMB(int reservedFreeSpaceMB) {
+        this.reservedFreeSpaceMB = Math.max(0, reservedFreeSpaceMB);
+    }
+
+    public long getReservedFreeSpaceBytes() {
+        return reservedFreeSpaceMB * 1024L * 1024L;
+    }
+
+    public int getMinBackupsToKeep() {
+        return minBackupsToKeep;
+    }
+
+    public void setMinBackupsToKeep(int minBackupsToKeep) {
+        this.minBackupsToKeep = Math.max(0, minBackupsToKeep);
+    }
+
+    public boolean isActivityAwareScheduling() {
+        return activityAwareScheduling;
+    }
+
+    public void setActivityAwareScheduling(boolean activityAwareScheduling) {
+        this.activityAwareScheduling = activityAwareScheduling;
+    }
+
+    public boolean isSkipWhenIdle() {
+        return skipWhenIdle;
+    }
+
+    public void setSkipWhenIdle(boolean skipWhenIdle) {
+        this.skipWhenIdle = skipWhenIdle;
+    }
+
+    public int getIdleChangeThresholdMB() {
+        return idleChangeThresholdMB;
+    }
+
+    public void setIdleChangeThresholdMB(int idleChangeThresholdMB) {
+        this.idleChangeThresholdMB = Math.max(0, idleChangeThresholdMB);
+    }
+
+    public long getIdleChangeThresholdBytes() {
+        return idleChangeThresholdMB * 1024L * 1024L;
+    }
+
+    public int getBurstPlayerCount() {
+        return burstPlayerCount;
+    }
+
+    public void setBurstPlayerCount(int burstPlayerCount) {
+        this.burstPlayerCount = Math.max(0, burstPlayerCount);
+    }
+
+    public int getBurstChunkCount() {
+        return burstChunkCount;
+    }
+
+    public void setBurstChunkCount(int burstChunkCount) {
+        this.burstChunkCount = Math.max(0, burstChunkCount);
+    }
+
+    public int getMinBackupIntervalMinutes() {
+        return minBackupIntervalMinutes;
+    }
+
+    public void setMinBackupIntervalMinutes(int minBackupIntervalMinutes) {
+        this.minBackupIntervalMinutes = Math.max(1, minBackupIntervalMinutes);
+    }
+
+    public int getQuietWindowMinutes() {
+        return quietWindowMinutes;
+    }
+
+    public void setQuietWindowMinutes(int quietWindowMinutes) {
+        this.quietWindowMinutes = Math.max(0, quietWindowMinutes);
+    }
+
+    public int getQuietPlayerThreshold() {
+        return quietPlayerThreshold;
+    }
+
+    public void setQuietPlayerThreshold(int quietPlayerThreshold) {
+        this.quietPlayerThreshold = Math.max(0, quietPlayerThreshold);
+    }
+
+    public boolean isJmxEnabled() {
+        return jmxEnabled;
+    }
+
+    public void setJmxEnabled(boolean jmxEnabled) {
+        this.jmxEnabled = jmxEnabled;
+    }
+
+    public boolean isProgressBossBar() {
+        return progressBossBar;
+    }
+
+    public void setProgressBossBar(boolean progressBossBar) {
+        this.progressBossBar = progressBossBar;
+    }
+
+    public int getProgressLogIntervalSeconds() {
+        return progressLogIntervalSeconds;
+    }
+
+    public void setProgressLogIntervalSeconds(int progressLogIntervalSeconds) {
+        this.progressLogIntervalSeconds = Math.max(0, progressLogIntervalSeconds);
+    }
+
+    public List<BackupProfile> getProfiles() {
+        return profiles != null ? profiles : new ArrayList<>();
+    }
+
+    public void setProfiles(List<BackupProfile> profiles) {
+        this.profiles = profiles;
+    }
+
+    public BackupProfile getProfile(String name) {
+        for (BackupProfile profile : getProfiles()) {
+            if (profile.getName() != null && profile.getName().equals(name)) {
+                return profile;
+            }
+        }
+        return getDefaultProfile();
+    }
+
+    public BackupProfile getDefaultProfile() {
+        return new BackupProfile(BackupProfile.DEFAULT_NAME, BackupProfile.Scope.FULL, "deflate",
+            compressionLevel, compressionThreads, BackupProfile.DEFAULT_TIER);
+    }
+
+    public List<BackupSchedule> getSchedules() {
+        return validSchedules(false);
+    }
+
+    // The scheduler keys schedules by name, so entries without a name or reusing an earlier one are left out.
+    private List<BackupSchedule> validSchedules(boolean log) {
+        List<BackupSchedule> valid = new ArrayList<>();
+        if (schedules == null) {
+            return valid;
+        }
+        Set<String> names = new HashSet<>();
+        for (BackupSchedule schedule : schedules) {
+            if (schedule == null) {
+                continue;
+            }
+            if (schedule.getName() == null || schedule.getName().isBlank()) {
+                if (log) {
+                    LOGGER.error("Ignoring schedule '{}' without a name", schedule.getCron());
+                }
+            } else if (!names.add(schedule.getName())) {
+                if (log) {
+                    LOGGER.error("Ignoring schedule '{}' ({}): another schedule already uses that name",
+                        schedule.getName(), schedule.getCron());
+                }
+            } else {
+                valid.add(schedule);
+            }
+        }
+        return valid;
+    }
+
+    public void setSchedules(List<BackupSchedule> schedules) {
+        this.schedules = schedules;
+    }
+
+    public List<RetentionTier> getRetentionTiers() {
+        return retentionTiers != null ? retentionTiers : new ArrayList<>();
+    }
+
+    public void setRetentionTiers(List<RetentionTier> retentionTiers) {
+        this.retentionTiers = retentionTiers;
+    }
+
+    public List<StorageTarget> getStorageTargets() {
+        return storageTargets != null ? storageTargets : new ArrayList<>();
+    }
+
+    public void setStorageTargets(List<StorageTarget> storageTargets) {
+        this.storageTargets = storageTargets;
+    }
+
+    public Durability getDurability() {
+        return durability != null ? durability : Durability.NONE;
+    }
+
+    public void setDurability(Durability durability) {
+        this.durability = durability;
+    }
+
+    public int getWriteBufferKB() {
+        return writeBufferKB;
+    }
+
+    public void setWriteBufferKB(int writeBufferKB) {
+        this.writeBufferKB = Math.max(8, writeBufferKB);
+    }
+
+    public int getSyncIntervalMB() {
+        return syncIntervalMB;
+    }
+
+    public void setSyncIntervalMB(int syncIntervalMB) {
+        this.syncIntervalMB = Math.max(1, syncIntervalMB);
+    }
+
+    public boolean isPreallocateArchives() {
+        return preallocateArchives;
+    }
+
+    public void setPreallocateArchives(boolean preallocateArchives) {
+        this.preallocateArchives = preallocateArchives;
+    }
+
+    public int getVolumeSizeMB() {
+        return volumeSizeMB;
+    }
+
+    public void setVolumeSizeMB(int volumeSizeMB) {
+        this.volumeSizeMB = Math.max(0, volumeSizeMB);
+    }
+
+    public boolean isSplitDimensions() {
+        return splitDimensions;
+    }
+
+    public void setSplitDimensions(boolean splitDimensions) {
+        this.splitDimensions = splitDimensions;
+    }
+
+    public int getCompressionMemoryMB() {
+        return compressionMemoryMB;
+    }
+
+    public void setCompressionMemoryMB(int compressionMemoryMB) {
+        this.compressionMemoryMB = Math.max(1, compressionMemoryMB);
+    }
+
+    public long getCompressionMemoryBytes() {
+        return Math.max(1, compressionMemoryMB) * 1024L * 1024L;
+    }
+
+    public int getSpillThresholdMB() {
+        return spillThresholdMB;
+    }
+
+    public void setSpillThresholdMB(int spillThresholdMB) {
+        this.spillThresholdMB = Math.max(1, spillThresholdMB);
+    }
+
+    public long getSpillThresholdBytes() {
+        return Math.max(1, spillThresholdMB) * 1024L * 1024L;
+    }
+
+    public boolean isOffHeapStaging() {
+        return offHeapStaging;
+    }
+
+    public void setOffHeapStaging(boolean offHeapStaging) {
+        this.offHeapStaging = offHeapStaging;
+    }
+
+    public boolean isAutoTuneThreads() {
+        return autoTuneThreads;
+    }
+
+    public void setAutoTuneThreads(boolean autoTuneThreads) {
+        this.autoTuneThreads = autoTuneThreads;
+    }
+
+    public int getAutoTuneTolerancePercent() {
+        return autoTuneTolerancePercent;
+    }
+
+    public void setAutoTuneTolerancePercent(int autoTuneTolerancePercent) {
+        this.autoTuneTolerancePercent = Math.max(0, Math.min(50, autoTuneTolerancePercent));
+    }
+
+    public double getAutoTuneTolerance() {
+        return Math.max(0, Math.min(50, autoTuneTolerancePercent)) / 100.0;
+    }
+
+    public boolean isShutdownBackupEnabled() {
+        return shutdownBackupEnabled;
+    }
+
+    public void setShutdownBackupEnabled(boolean shutdownBackupEnabled) {
+        this.shutdownBackupEnabled = shutdownBackupEnabled;
+    }
+
+    public int getShutdownBackupMaxSeconds() {
+        return Math.max(1, shutdownBackupMaxSeconds);
+    }
+
+    public void setShutdownBackupMaxSeconds(int shutdownBackupMaxSeconds) {
+        this.shutdownBackupMaxSeconds = Math.max(1, shutdownBackupMaxSeconds);
+    }
+
+    public boolean isPlayerJournalEnabled() {
+        return playerJournalEnabled;
+    }
+
+    public void setPlayerJournalEnabled(boolean playerJournalEnabled) {
+        this.playerJournalEnabled = playerJournalEnabled;
+    }
+
+    public int getPlayerJournalIntervalSeconds() {
+        return Math.max(30, playerJournalIntervalSeconds);
+    }
+
+    public void setPlayerJournalIntervalSeconds(int playerJournalIntervalSeconds) {
+        this.playerJournalIntervalSeconds = Math.max(30, playerJournalIntervalSeconds);
+    }
+
+    public int getPlayerJournalRetentionHours() {
+        return Math.max(1, playerJournalRetentionHours);
+    }
+
+    public void setPlayerJournalRetentionHours(int playerJournalRetentionHours) {
+        this.playerJournalRetentionHours = Math.max(1, playerJournalRetentionHours);
+    }
+
+    public int getPlayerJournalMaxMB() {
+        return Math.max(1, playerJournalMaxMB);
+    }
+
+    public void setPlayerJournalMaxMB(int playerJournalMaxMB) {
+        this.playerJournalMaxMB = Math.max(1, playerJournalMaxMB);
+    }
+
+    public List<FilterRule> getFilters() {
+        return filters != null ? filters : new ArrayList<>();
+    }
+
+    public void setFilters(List<FilterRule> filters) {
+        this.filters = filters;
+    }
+
+    public boolean isIdleRecompressEnabled() {
+        return idleRecompressEnabled;
+    }
+
+    public void setIdleRecompressEnabled(boolean idleRecompressEnabled) {
+        this.idleRecompressEnabled = idleRecompressEnabled;
+    }
+
+    public int getIdleRecompressLevel() {
+        return idleRecompressLevel;
+    }
+
+    public void setIdleRecompressLevel(int idleRecompressLevel) {
+        this.idleRecompressLevel = Math.max(1, Math.min(9, idleRecompressLevel));
+    }
+
+    public ColdStorage getColdStorage() {
+        return coldStorage != null ? coldStorage : new ColdStorage();
+    }
+
+    public void setColdStorage(ColdStorage coldStorage) {
+        this.coldStorage = coldStorage;
+    }
+
+    public StandbyReceiver getStandbyReceiver() {
+        return standbyReceiver != null ? standbyReceiver : new StandbyReceiver();
+    }
+
+    public void setStandbyReceiver(StandbyReceiver standbyReceiver) {
+        this.standbyReceiver = standbyReceiver;
+    }
+
+    public RetentionTier getRetentionTier(String name) {
+        for (RetentionTier tier : getRetentionTiers()) {
+            if (tier.getName() != null && tier.getName().equals(name)) {
+                return tier;
+            }
+        }
+        return new RetentionTier(BackupProfile.DEFAULT_TIER, maxBackups, maxBackupAgeDays);
+    }
 }
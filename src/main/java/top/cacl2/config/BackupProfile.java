@@ -0,0 +1,81 @@
+package top.cacl2.config;
+
+public class BackupProfile {
+    public static final String DEFAULT_NAME = "default";
+    public static final String DEFAULT_TIER = "default";
+
+    private String name = DEFAULT_NAME;
+    private Scope scope = Scope.FULL;
+    private Format format = Format.ZIP;
+    private boolean verifyHash = false;
+    private String codec = "deflate";
+    private int level = -1;
+    private int threads = 0;
+    private String retentionTier = DEFAULT_TIER;
+
+    public BackupProfile() {
+    }
+
+    public BackupProfile(String name, Scope scope, String codec, int level, int threads, String retentionTier) {
+        this.name = name;
+        this.scope = scope;
+        this.codec = codec;
+        this.level = level;
+        this.threads = threads;
+        this.retentionTier = retentionTier;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Scope getScope() {
+        return scope != null ? scope : Scope.FULL;
+    }
+
+    public Format getFormat() {
+        return format != null ? format : Format.ZIP;
+    }
+
+    public boolean isVerifyHash() {
+        return verifyHash;
+    }
+
+    public String getCodec() {
+        return codec != null ? codec : "deflate";
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public String getRetentionTier() {
+        return retentionTier != null && !retentionTier.isEmpty() ? retentionTier : DEFAULT_TIER;
+    }
+
+    public int resolveLevel(int defaultLevel) {
+        if ("store".equalsIgnoreCase(getCodec())) {
+            return 0;
+        }
+        return level >= 0 ? Math.min(9, level) : defaultLevel;
+    }
+
+    public int resolveThreads(int defaultThreads) {
+        return threads > 0 ? threads : defaultThreads;
+    }
+
+    public enum Scope {
+        FULL,
+        PLAYERDATA,
+        INCREMENTAL
+    }
+
+    public enum Format {
+        ZIP,
+        TREE
+    }
+}
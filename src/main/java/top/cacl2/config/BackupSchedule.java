@@ -0,0 +1,41 @@
+package top.cacl2.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BackupSchedule {
+    private String name = "";
+    private String cron = "";
+    private String profile = BackupProfile.DEFAULT_NAME;
+    private List<String> units = new ArrayList<>();
+    private boolean enabled = true;
+
+    public BackupSchedule() {
+    }
+
+    public BackupSchedule(String name, String cron, String profile) {
+        this.name = name;
+        this.cron = cron;
+        this.profile = profile;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getCron() {
+        return cron;
+    }
+
+    public String getProfile() {
+        return profile != null ? profile : BackupProfile.DEFAULT_NAME;
+    }
+
+    public List<String> getUnits() {
+        return units != null ? units : new ArrayList<>();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+}
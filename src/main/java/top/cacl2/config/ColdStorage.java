@@ -0,0 +1,29 @@
+package top.cacl2.config;
+
+public class ColdStorage {
+    private boolean enabled = false;
+    private int afterDays = 14;
+    private int recompressLevel = 9;
+    private boolean recompressWhenIdle = true;
+    private StorageTarget target = new StorageTarget("cold", "local", "backups_cold");
+
+    public boolean isEnabled() {
+        return enabled && target != null && target.isEnabled();
+    }
+
+    public int getAfterDays() {
+        return Math.max(1, afterDays);
+    }
+
+    public int getRecompressLevel() {
+        return Math.min(9, recompressLevel);
+    }
+
+    public boolean isRecompressWhenIdle() {
+        return recompressWhenIdle;
+    }
+
+    public StorageTarget getTarget() {
+        return target;
+    }
+}
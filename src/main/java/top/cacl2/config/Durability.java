@@ -0,0 +1,8 @@
+package top.cacl2.config;
+
+public enum Durability {
+    NONE,
+    FSYNC,
+    PERIODIC,
+    FSYNC_DIR
+}
@@ -0,0 +1,65 @@
+package top.cacl2.config;
+
+public class FilterRule {
+    private String name = "";
+    private Action action = Action.EXCLUDE;
+    private String glob = "";
+    private String regex = "";
+    private long minSizeKB = 0;
+    private long maxSizeKB = 0;
+    private int olderThanDays = 0;
+    private int newerThanDays = 0;
+
+    public FilterRule() {
+    }
+
+    public FilterRule(String name, Action action, String glob) {
+        this.name = name;
+        this.action = action;
+        this.glob = glob;
+    }
+
+    public String getName() {
+        if (name != null && !name.isEmpty()) {
+            return name;
+        }
+        return !getGlob().isEmpty() ? getGlob() : getRegex();
+    }
+
+    public Action getAction() {
+        return action != null ? action : Action.EXCLUDE;
+    }
+
+    public String getGlob() {
+        return glob != null ? glob : "";
+    }
+
+    public String getRegex() {
+        return regex != null ? regex : "";
+    }
+
+    public long getMinSizeKB() {
+        return minSizeKB;
+    }
+
+    public long getMaxSizeKB() {
+        return maxSizeKB;
+    }
+
+    public int getOlderThanDays() {
+        return olderThanDays;
+    }
+
+    public int getNewerThanDays() {
+        return newerThanDays;
+    }
+
+    public boolean hasFilePredicates() {
+        return minSizeKB > 0 || maxSizeKB > 0 || olderThanDays > 0 || newerThanDays > 0;
+    }
+
+    public enum Action {
+        INCLUDE,
+        EXCLUDE
+    }
+}
@@ -0,0 +1,28 @@
+package top.cacl2.config;
+
+public class RetentionTier {
+    private String name = BackupProfile.DEFAULT_TIER;
+    private int maxBackups = 10;
+    private int maxAgeDays = 7;
+
+    public RetentionTier() {
+    }
+
+    public RetentionTier(String name, int maxBackups, int maxAgeDays) {
+        this.name = name;
+        this.maxBackups = maxBackups;
+        this.maxAgeDays = maxAgeDays;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxBackups() {
+        return Math.max(1, maxBackups);
+    }
+
+    public int getMaxAgeDays() {
+        return Math.max(1, maxAgeDays);
+    }
+}
@@ -0,0 +1,35 @@
+package top.cacl2.config;
+
+public class StandbyReceiver {
+    private boolean enabled = false;
+    private String bindAddress = "";
+    private int port = 25590;
+    private String token = "";
+    private String path = "";
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getBindAddress() {
+        return bindAddress != null ? bindAddress : "";
+    }
+
+    public int getPort() {
+        return port > 0 && port < 65536 ? port : 25590;
+    }
+
+    public String getToken() {
+        return token != null && !token.isEmpty() ? token : System.getenv().getOrDefault("CACL2_STANDBY_TOKEN", "");
+    }
+
+    public String getPath() {
+        return path != null ? path : "";
+    }
+
+    public boolean sameAs(StandbyReceiver other) {
+        return other != null && enabled == other.enabled && getPort() == other.getPort()
+            && getBindAddress().equals(other.getBindAddress()) && getToken().equals(other.getToken())
+            && getPath().equals(other.getPath());
+    }
+}
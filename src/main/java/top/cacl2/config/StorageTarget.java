@@ -0,0 +1,113 @@
+package top.cacl2.config;
+
+public class StorageTarget {
+    private String name = "offsite";
+    private String type = "local";
+    private boolean enabled = true;
+    private String path = "";
+    private String endpoint = "";
+    private String region = "us-east-1";
+    private String bucket = "";
+    private String prefix = "";
+    private String accessKey = "";
+    private String secretKey = "";
+    private boolean pathStyle = true;
+    private int partSizeMB = 16;
+    private int maxInFlightParts = 4;
+    private int maxRetries = 5;
+    private int maxBackups = 0;
+    private String host = "";
+    private int port = 25590;
+    private String token = "";
+    private int maxKBps = 0;
+    private int bufferMB = 64;
+
+    public StorageTarget() {
+    }
+
+    public StorageTarget(String name, String type, String path) {
+        this.name = name;
+        this.type = type;
+        this.path = path;
+    }
+
+    public String getName() {
+        return name != null && !name.isEmpty() ? name : getType();
+    }
+
+    public String getType() {
+        return type != null ? type.toLowerCase() : "local";
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getPath() {
+        return path != null ? path : "";
+    }
+
+    public String getEndpoint() {
+        return endpoint != null ? endpoint : "";
+    }
+
+    public String getRegion() {
+        return region != null && !region.isEmpty() ? region : "us-east-1";
+    }
+
+    public String getBucket() {
+        return bucket != null ? bucket : "";
+    }
+
+    public String getPrefix() {
+        return prefix != null ? prefix : "";
+    }
+
+    public String getAccessKey() {
+        return accessKey != null && !accessKey.isEmpty() ? accessKey : System.getenv().getOrDefault("AWS_ACCESS_KEY_ID", "");
+    }
+
+    public String getSecretKey() {
+        return secretKey != null && !secretKey.isEmpty() ? secretKey : System.getenv().getOrDefault("AWS_SECRET_ACCESS_KEY", "");
+    }
+
+    public boolean isPathStyle() {
+        return pathStyle;
+    }
+
+    public int getPartSizeMB() {
+        return Math.max(5, partSizeMB);
+    }
+
+    public int getMaxInFlightParts() {
+        return Math.max(1, maxInFlightParts);
+    }
+
+    public int getMaxRetries() {
+        return Math.max(0, maxRetries);
+    }
+
+    public int getMaxBackups() {
+        return Math.max(0, maxBackups);
+    }
+
+    public String getHost() {
+        return host != null ? host : "";
+    }
+
+    public int getPort() {
+        return port > 0 && port < 65536 ? port : 25590;
+    }
+
+    public String getToken() {
+        return token != null && !token.isEmpty() ? token : System.getenv().getOrDefault("CACL2_STANDBY_TOKEN", "");
+    }
+
+    public int getMaxKBps() {
+        return Math.max(0, maxKBps);
+    }
+
+    public int getBufferMB() {
+        return Math.max(1, bufferMB);
+    }
+}
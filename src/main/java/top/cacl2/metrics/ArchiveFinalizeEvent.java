@@ -0,0 +1,26 @@
+package top.cacl2.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("cacl2backup.ArchiveFinalize")
+@Label("Archive Finalize")
+@Description("Writing the central directory of a backup archive")
+@Category({"CaCl2Backup", "Backup"})
+@StackTrace(false)
+public class ArchiveFinalizeEvent extends Event {
+    @Label("Archive")
+    public String archive;
+
+    @Label("Entries")
+    public long entries;
+
+    @Label("Uncompressed Bytes")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,26 @@
+package top.cacl2.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("cacl2backup.BackupDelete")
+@Label("Backup Delete")
+@Description("Deletion of an old backup by retention or to free space")
+@Category({"CaCl2Backup", "Cleanup"})
+@StackTrace(false)
+public class BackupDeleteEvent extends Event {
+    @Label("Backup")
+    public String backup;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Reason")
+    public String reason;
+}
@@ -0,0 +1,351 @@
+package top.cacl2.metrics;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+public class BackupMetrics implements BackupMetricsMXBean {
+    private static final Logger LOGGER = LoggerFactory.getLogger("cacl2backup");
+    private static final Gson GSON = new GsonBuilder().create();
+    private static final String DOMAIN = "cacl2backup";
+    private static final int HISTOGRAM_SIZE = 100;
+    private static final int MAX_HISTORY = 200;
+
+    private final Path historyFile;
+    private final IntSupplier queueDepth;
+    private final Supplier<String> currentJob;
+    private final Map<Operation, OperationStats> operations = new ConcurrentHashMap<>();
+    private final Map<String, PhaseStats> phases = new ConcurrentHashMap<>();
+    private final List<RunRecord> history;
+    private volatile boolean jmxRegistered = false;
+    private long totalRuns;
+    private long failedRuns;
+
+    public BackupMetrics(Path historyFile, IntSupplier queueDepth, Supplier<String> currentJob) {
+        this.historyFile = historyFile;
+        this.queueDepth = queueDepth;
+        this.currentJob = currentJob;
+        this.history = load();
+        for (RunRecord record : history) {
+            apply(record);
+        }
+    }
+
+    public synchronized void record(Operation operation, RunMetrics run) {
+        RunRecord record = new RunRecord();
+        record.operation = operation.name();
+        record.time = System.currentTimeMillis();
+        record.failed = run.isFailed();
+        record.durationMillis = run.getDurationNanos() / 1_000_000.0;
+        record.bytes = run.getBytes();
+        record.files = run.getFiles();
+        record.threads = run.getWorkerThreads();
+        record.queueDepth = run.getQueueDepth();
+        record.queueWaitMillis = run.getQueueWaitMillis();
+        record.utilization = run.getWorkerUtilization();
+        record.peakStagingBytes = run.getPeakStagingBytes();
+        record.spilledEntries = run.getSpilledEntries();
+        for (Phase phase : Phase.values()) {
+            long wall = run.getWallNanos(phase);
+            if (wall > 0) {
+                record.wallMillis.put(phase.getId(), wall / 1_000_000.0);
+                record.cpuMillis.put(phase.getId(), run.getCpuNanos(phase) / 1_000_000.0);
+            }
+        }
+
+        apply(record);
+        history.add(record);
+        while (history.size() > MAX_HISTORY) {
+            history.remove(0);
+        }
+        save();
+
+        LOGGER.debug("{} metrics: {}", operation.getId(), record.wallMillis);
+    }
+
+    private void apply(RunRecord record) {
+        Operation operation;
+        try {
+            operation = Operation.valueOf(record.operation);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return;
+        }
+        totalRuns++;
+        if (record.failed) {
+            failedRuns++;
+        }
+        operations.computeIfAbsent(operation, this::newOperationStats).record(record);
+        if (record.failed) {
+            return;
+        }
+        for (Map.Entry<String, Double> entry : record.wallMillis.entrySet()) {
+            String key = operation.getId() + "/" + entry.getKey();
+            Double cpu = record.cpuMillis.get(entry.getKey());
+            phases.computeIfAbsent(key, k -> newPhaseStats(operation, entry.getKey()))
+                .record(entry.getValue(), cpu != null ? cpu : 0);
+        }
+    }
+
+    private OperationStats newOperationStats(Operation operation) {
+        OperationStats stats = new OperationStats();
+        if (jmxRegistered) {
+            registerBean(stats, "type=Operation,name=" + operation.getId());
+        }
+        return stats;
+    }
+
+    private PhaseStats newPhaseStats(Operation operation, String phase) {
+        PhaseStats stats = new PhaseStats();
+        if (jmxRegistered) {
+            registerBean(stats, "type=Phase,operation=" + operation.getId() + ",name=" + phase);
+        }
+        return stats;
+    }
+
+    public synchronized void setJmxEnabled(boolean enabled) {
+        if (enabled == jmxRegistered) {
+            return;
+        }
+        if (enabled) {
+            jmxRegistered = true;
+            registerBean(this, "type=Backup");
+            operations.forEach((operation, stats) -> registerBean(stats, "type=Operation,name=" + operation.getId()));
+            phases.forEach((key, stats) -> {
+                String[] parts = key.split("/", 2);
+                registerBean(stats, "type=Phase,operation=" + parts[0] + ",name=" + parts[1]);
+            });
+        } else {
+            jmxRegistered = false;
+            unregisterAll();
+        }
+    }
+
+    private void registerBean(Object bean, String properties) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(bean, name);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to register MBean {}", properties, e);
+        }
+    }
+
+    private void unregisterAll() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            for (ObjectName name : server.queryNames(new ObjectName(DOMAIN + ":*"), null)) {
+                server.unregisterMBean(name);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Failed to unregister MBeans", e);
+        }
+    }
+
+    public OperationStats getOperationStats(Operation operation) {
+        return operations.get(operation);
+    }
+
+    public synchronized RunRecord getLastRun(Operation operation) {
+        for (int i = history.size() - 1; i >= 0; i--) {
+            if (operation.name().equals(history.get(i).operation) && !history.get(i).failed) {
+                return history.get(i);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    @Override
+    public String getCurrentJob() {
+        String job = currentJob.get();
+        return job != null ? job : "";
+    }
+
+    @Override
+    public synchronized long getTotalRuns() {
+        return totalRuns;
+    }
+
+    @Override
+    public synchronized long getFailedRuns() {
+        return failedRuns;
+    }
+
+    private List<RunRecord> load() {
+        if (Files.exists(historyFile)) {
+            try (Reader reader = Files.newBufferedReader(historyFile, StandardCharsets.UTF_8)) {
+                List<RunRecord> loaded = GSON.fromJson(reader, new TypeToken<List<RunRecord>>() {}.getType());
+                if (loaded != null) {
+                    loaded.removeIf(record -> record == null || record.wallMillis == null || record.cpuMillis == null);
+                    return new ArrayList<>(loaded);
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Failed to load metrics history, starting fresh", e);
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    private void save() {
+        Path temp = historyFile.resolveSibling(historyFile.getFileName() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                GSON.toJson(history, writer);
+            }
+            Files.move(temp, historyFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to save metrics history", e);
+        }
+    }
+
+    public enum Operation {
+        BACKUP("backup"),
+        RESTORE("restore"),
+        CLEANUP("cleanup"),
+        SWAP("swap"),
+        RECOMPRESS("recompress");
+
+        private final String id;
+
+        Operation(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+    }
+
+    public static class RunRecord {
+        private String operation;
+        private long time;
+        private boolean failed;
+        private double durationMillis;
+        private long bytes;
+        private long files;
+        private int threads;
+        private int queueDepth;
+        private long queueWaitMillis;
+        private double utilization;
+        private long peakStagingBytes;
+        private long spilledEntries;
+        private Map<String, Double> wallMillis = new LinkedHashMap<>();
+        private Map<String, Double> cpuMillis = new LinkedHashMap<>();
+
+        public String getOperation() { return operation; }
+        public long getTime() { return time; }
+        public boolean isFailed() { return failed; }
+        public double getDurationMillis() { return durationMillis; }
+        public long getBytes() { return bytes; }
+        public long getFiles() { return files; }
+        public int getThreads() { return threads; }
+        public int getQueueDepth() { return queueDepth; }
+        public long getQueueWaitMillis() { return queueWaitMillis; }
+        public double getUtilization() { return utilization; }
+        public long getPeakStagingBytes() { return peakStagingBytes; }
+        public long getSpilledEntries() { return spilledEntries; }
+        public Map<String, Double> getWallMillis() { return wallMillis; }
+        public Map<String, Double> getCpuMillis() { return cpuMillis; }
+
+        public double getBytesPerSecond() {
+            return durationMillis > 0 ? bytes * 1000.0 / durationMillis : 0;
+        }
+
+        public double getFilesPerSecond() {
+            return durationMillis > 0 ? files * 1000.0 / durationMillis : 0;
+        }
+    }
+
+    public static class OperationStats implements OperationMetricsMXBean {
+        private final RollingHistogram duration = new RollingHistogram(HISTOGRAM_SIZE);
+        private final RollingHistogram bytesPerSecond = new RollingHistogram(HISTOGRAM_SIZE);
+        private final RollingHistogram filesPerSecond = new RollingHistogram(HISTOGRAM_SIZE);
+        private final RollingHistogram utilization = new RollingHistogram(HISTOGRAM_SIZE);
+        private volatile long count;
+        private volatile long failedCount;
+        private volatile double lastQueueWaitMillis;
+        private volatile int lastQueueDepth;
+        private volatile long maxPeakStagingBytes;
+        private volatile long lastSpilledEntries;
+
+        synchronized void record(RunRecord record) {
+            count++;
+            lastQueueWaitMillis = record.queueWaitMillis;
+            lastQueueDepth = record.queueDepth;
+            if (record.failed) {
+                failedCount++;
+                return;
+            }
+            duration.record(record.durationMillis);
+            bytesPerSecond.record(record.getBytesPerSecond());
+            filesPerSecond.record(record.getFilesPerSecond());
+            utilization.record(record.utilization);
+            maxPeakStagingBytes = Math.max(maxPeakStagingBytes, record.peakStagingBytes);
+            lastSpilledEntries = record.spilledEntries;
+        }
+
+        @Override public long getCount() { return count; }
+        @Override public long getFailedCount() { return failedCount; }
+        @Override public double getLastDurationMillis() { return duration.getLast(); }
+        @Override public double getMeanDurationMillis() { return duration.getMean(); }
+        @Override public double getP50DurationMillis() { return duration.getPercentile(50); }
+        @Override public double getP95DurationMillis() { return duration.getPercentile(95); }
+        @Override public double getMaxDurationMillis() { return duration.getMax(); }
+        @Override public double getLastBytesPerSecond() { return bytesPerSecond.getLast(); }
+        @Override public double getMeanBytesPerSecond() { return bytesPerSecond.getMean(); }
+        @Override public double getLastFilesPerSecond() { return filesPerSecond.getLast(); }
+        @Override public double getMeanFilesPerSecond() { return filesPerSecond.getMean(); }
+        @Override public double getLastWorkerUtilization() { return utilization.getLast(); }
+        @Override public double getMeanWorkerUtilization() { return utilization.getMean(); }
+        @Override public double getLastQueueWaitMillis() { return lastQueueWaitMillis; }
+        @Override public int getLastQueueDepth() { return lastQueueDepth; }
+        @Override public long getMaxPeakStagingBytes() { return maxPeakStagingBytes; }
+        @Override public long getLastSpilledEntries() { return lastSpilledEntries; }
+    }
+
+    public static class PhaseStats implements PhaseMetricsMXBean {
+        private final RollingHistogram wall = new RollingHistogram(HISTOGRAM_SIZE);
+        private final RollingHistogram cpu = new RollingHistogram(HISTOGRAM_SIZE);
+
+        void record(double wallMillis, double cpuMillis) {
+            wall.record(wallMillis);
+            cpu.record(cpuMillis);
+        }
+
+        @Override public long getCount() { return wall.getTotalCount(); }
+        @Override public double getLastWallMillis() { return wall.getLast(); }
+        @Override public double getMeanWallMillis() { return wall.getMean(); }
+        @Override public double getP50WallMillis() { return wall.getPercentile(50); }
+        @Override public double getP95WallMillis() { return wall.getPercentile(95); }
+        @Override public double getMaxWallMillis() { return wall.getMax(); }
+        @Override public double getLastCpuMillis() { return cpu.getLast(); }
+        @Override public double getMeanCpuMillis() { return cpu.getMean(); }
+    }
+}
@@ -0,0 +1,11 @@
+package top.cacl2.metrics;
+
+public interface BackupMetricsMXBean {
+    int getQueueDepth();
+
+    String getCurrentJob();
+
+    long getTotalRuns();
+
+    long getFailedRuns();
+}
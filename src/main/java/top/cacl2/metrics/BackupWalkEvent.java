@@ -0,0 +1,29 @@
+package top.cacl2.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("cacl2backup.BackupWalk")
+@Label("Backup Walk")
+@Description("Listing the world directory and diffing it against the base backup")
+@Category({"CaCl2Backup", "Backup"})
+@StackTrace(false)
+public class BackupWalkEvent extends Event {
+    @Label("Scope")
+    public String scope;
+
+    @Label("Files Found")
+    public long files;
+
+    @Label("Files To Archive")
+    public long archived;
+
+    @Label("Bytes To Archive")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,37 @@
+package top.cacl2.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("cacl2backup.CompressEntry")
+@Label("Compress Entry")
+@Description("One file written into a backup archive, excluding the wait for the archive lock")
+@Category({"CaCl2Backup", "Backup"})
+@Enabled(false)
+@StackTrace(false)
+public class CompressEntryEvent extends Event {
+    @Label("Entry")
+    public String entry;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Compressed Bytes")
+    @DataAmount
+    public long compressedBytes;
+
+    @Label("Level")
+    public int level;
+
+    @Label("Lock Wait")
+    @Timespan
+    public long lockWait;
+}
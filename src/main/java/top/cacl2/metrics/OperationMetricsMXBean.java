@@ -0,0 +1,37 @@
+package top.cacl2.metrics;
+
+public interface OperationMetricsMXBean {
+    long getCount();
+
+    long getFailedCount();
+
+    double getLastDurationMillis();
+
+    double getMeanDurationMillis();
+
+    double getP50DurationMillis();
+
+    double getP95DurationMillis();
+
+    double getMaxDurationMillis();
+
+    double getLastBytesPerSecond();
+
+    double getMeanBytesPerSecond();
+
+    double getLastFilesPerSecond();
+
+    double getMeanFilesPerSecond();
+
+    double getLastWorkerUtilization();
+
+    double getMeanWorkerUtilization();
+
+    double getLastQueueWaitMillis();
+
+    int getLastQueueDepth();
+
+    long getMaxPeakStagingBytes();
+
+    long getLastSpilledEntries();
+}
@@ -0,0 +1,33 @@
+package top.cacl2.metrics;
+
+public enum Phase {
+    SAVE("save"),
+    WALK("walk"),
+    SNAPSHOT("snapshot"),
+    SPACE_CHECK("space_check"),
+    COMPRESS("compress"),
+    READ("read"),
+    DEFLATE("deflate"),
+    WRITE("write"),
+    LOCK_WAIT("lock_wait"),
+    STAGING_WAIT("staging_wait"),
+    FINALIZE("finalize"),
+    MANIFEST("manifest"),
+    COPY("copy"),
+    EXTRACT("extract"),
+    SWAP("swap"),
+    DELETE("delete"),
+    UPLOAD("upload"),
+    DOWNLOAD("download"),
+    FSYNC("fsync");
+
+    private final String id;
+
+    Phase(String id) {
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+}
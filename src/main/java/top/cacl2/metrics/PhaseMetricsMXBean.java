@@ -0,0 +1,19 @@
+package top.cacl2.metrics;
+
+public interface PhaseMetricsMXBean {
+    long getCount();
+
+    double getLastWallMillis();
+
+    double getMeanWallMillis();
+
+    double getP50WallMillis();
+
+    double getP95WallMillis();
+
+    double getMaxWallMillis();
+
+    double getLastCpuMillis();
+
+    double getMeanCpuMillis();
+}
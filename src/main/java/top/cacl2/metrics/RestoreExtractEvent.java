@@ -0,0 +1,26 @@
+package top.cacl2.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("cacl2backup.RestoreExtract")
+@Label("Restore Extract")
+@Description("Extracting one backup archive into the restore staging directory")
+@Category({"CaCl2Backup", "Restore"})
+@StackTrace(false)
+public class RestoreExtractEvent extends Event {
+    @Label("Archive")
+    public String archive;
+
+    @Label("Entries")
+    public long entries;
+
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytes;
+}
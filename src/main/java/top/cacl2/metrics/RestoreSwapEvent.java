@@ -0,0 +1,21 @@
+package top.cacl2.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("cacl2backup.RestoreSwap")
+@Label("Restore Swap")
+@Description("Replacing the world directory with a restored copy at server start")
+@Category({"CaCl2Backup", "Restore"})
+@StackTrace(false)
+public class RestoreSwapEvent extends Event {
+    @Label("Backup")
+    public String backup;
+
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,60 @@
+package top.cacl2.metrics;
+
+import java.util.Arrays;
+
+public class RollingHistogram {
+    private final double[] samples;
+    private int next;
+    private int count;
+    private long total;
+
+    public RollingHistogram(int capacity) {
+        this.samples = new double[Math.max(1, capacity)];
+    }
+
+    public synchronized void record(double value) {
+        samples[next] = value;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        total++;
+    }
+
+    public synchronized long getTotalCount() {
+        return total;
+    }
+
+    public synchronized double getLast() {
+        return count == 0 ? 0 : samples[(next - 1 + samples.length) % samples.length];
+    }
+
+    public synchronized double getMean() {
+        if (count == 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += samples[i];
+        }
+        return sum / count;
+    }
+
+    public double getPercentile(double percentile) {
+        double[] sorted = snapshot();
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    public double getMax() {
+        double[] sorted = snapshot();
+        return sorted.length == 0 ? 0 : sorted[sorted.length - 1];
+    }
+
+    private synchronized double[] snapshot() {
+        double[] copy = Arrays.copyOf(samples, count);
+        Arrays.sort(copy);
+        return copy;
+    }
+}
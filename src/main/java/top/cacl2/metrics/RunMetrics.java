@@ -0,0 +1,122 @@
+package top.cacl2.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class RunMetrics {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME_SUPPORTED = THREADS.isCurrentThreadCpuTimeSupported();
+
+    private final AtomicLongArray wallNanos = new AtomicLongArray(Phase.values().length);
+    private final AtomicLongArray cpuNanos = new AtomicLongArray(Phase.values().length);
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder workerBusyNanos = new LongAdder();
+    private final LongAdder spilledEntries = new LongAdder();
+    private final AtomicLong peakStagingBytes = new AtomicLong();
+    private volatile int workerThreads = 1;
+    private volatile int queueDepth;
+    private volatile long queueWaitMillis;
+    private volatile long startNanos;
+    private volatile long endNanos;
+    private volatile boolean failed;
+
+    public static long threadCpuNanos() {
+        return CPU_TIME_SUPPORTED ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    public void begin(int queueDepth, long queueWaitMillis) {
+        this.queueDepth = queueDepth;
+        this.queueWaitMillis = queueWaitMillis;
+        this.startNanos = System.nanoTime();
+    }
+
+    public void end() {
+        this.endNanos = System.nanoTime();
+    }
+
+    public Span start(Phase phase) {
+        return new Span(phase);
+    }
+
+    public void addTime(Phase phase, long wall, long cpu) {
+        wallNanos.addAndGet(phase.ordinal(), wall);
+        if (cpu > 0) {
+            cpuNanos.addAndGet(phase.ordinal(), cpu);
+        }
+    }
+
+    public void addBytes(long count) {
+        bytes.add(count);
+    }
+
+    public void addFiles(long count) {
+        files.add(count);
+    }
+
+    public void addWorkerBusy(long nanos) {
+        workerBusyNanos.add(nanos);
+    }
+
+    public void recordStagingBytes(long inUse) {
+        peakStagingBytes.accumulateAndGet(inUse, Math::max);
+    }
+
+    public void addSpilledEntry() {
+        spilledEntries.increment();
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = Math.max(1, workerThreads);
+    }
+
+    public void markFailed() {
+        this.failed = true;
+    }
+
+    public long getWallNanos(Phase phase) { return wallNanos.get(phase.ordinal()); }
+    public long getCpuNanos(Phase phase) { return cpuNanos.get(phase.ordinal()); }
+    public long getBytes() { return bytes.sum(); }
+    public long getFiles() { return files.sum(); }
+    public int getWorkerThreads() { return workerThreads; }
+    public long getPeakStagingBytes() { return peakStagingBytes.get(); }
+    public long getSpilledEntries() { return spilledEntries.sum(); }
+    public int getQueueDepth() { return queueDepth; }
+    public long getQueueWaitMillis() { return queueWaitMillis; }
+    public boolean isFailed() { return failed; }
+
+    public long getDurationNanos() {
+        if (startNanos == 0) {
+            return 0;
+        }
+        return (endNanos > 0 ? endNanos : System.nanoTime()) - startNanos;
+    }
+
+    public double getWorkerUtilization() {
+        long compressWall = getWallNanos(Phase.COMPRESS);
+        if (compressWall <= 0) {
+            return 0;
+        }
+        return Math.min(1.0, (double) workerBusyNanos.sum() / ((double) compressWall * workerThreads));
+    }
+
+    public class Span implements AutoCloseable {
+        private final Phase phase;
+        private final long wallStart;
+        private final long cpuStart;
+
+        private Span(Phase phase) {
+            this.phase = phase;
+            this.wallStart = System.nanoTime();
+            this.cpuStart = threadCpuNanos();
+        }
+
+        @Override
+        public void close() {
+            addTime(phase, System.nanoTime() - wallStart, threadCpuNanos() - cpuStart);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package top.cacl2.metrics;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class TimedOutputStream extends FilterOutputStream {
+    private final RunMetrics metrics;
+    private final Phase phase;
+
+    public TimedOutputStream(OutputStream out, RunMetrics metrics, Phase phase) {
+        super(out);
+        this.metrics = metrics;
+        this.phase = phase;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        long start = System.nanoTime();
+        out.write(b);
+        metrics.addTime(phase, System.nanoTime() - start, 0);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        out.write(b, off, len);
+        metrics.addTime(phase, System.nanoTime() - start, 0);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        long start = System.nanoTime();
+        out.flush();
+        metrics.addTime(phase, System.nanoTime() - start, 0);
+    }
+}
@@ -0,0 +1,21 @@
+package top.cacl2.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("cacl2backup.WorldSave")
+@Label("World Save")
+@Description("Blocking world save on the server thread before a backup")
+@Category({"CaCl2Backup", "Backup"})
+@StackTrace(false)
+public class WorldSaveEvent extends Event {
+    @Label("Trigger")
+    public String trigger;
+
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,140 @@
+package top.cacl2.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LocalStorageBackend implements StorageBackend {
+    private static final String PART_SUFFIX = ".part";
+
+    private final String name;
+    private final Path dir;
+    private final boolean mount;
+
+    public LocalStorageBackend(String name, Path dir, boolean mount) {
+        this.name = name;
+        this.dir = dir;
+        this.mount = mount;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String describe() {
+        return (mount ? "mount " : "local ") + dir;
+    }
+
+    private Path root() throws IOException {
+        if (mount) {
+            if (!Files.isDirectory(dir)) {
+                throw new IOException("Mount point is not available: " + dir);
+            }
+        } else {
+            Files.createDirectories(dir);
+        }
+        return dir;
+    }
+
+    private Path resolve(String objectName) throws IOException {
+        Path file = root().resolve(objectName).normalize();
+        if (!file.getParent().equals(dir.normalize())) {
+            throw new IOException("Invalid object name: " + objectName);
+        }
+        return file;
+    }
+
+    @Override
+    public StorageUpload openUpload(String objectName) throws IOException {
+        Path target = resolve(objectName);
+        Path temp = target.resolveSibling(objectName + PART_SUFFIX);
+        FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        return new StorageUpload() {
+            private long written;
+            private boolean finished;
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                written += len;
+            }
+
+            @Override
+            public void complete() throws IOException {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+                try (channel) {
+                    channel.force(true);
+                }
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+
+            @Override
+            public void abort() {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+                try {
+                    channel.close();
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+
+            @Override
+            public long getBytesWritten() {
+                return written;
+            }
+        };
+    }
+
+    @Override
+    public InputStream openRead(String objectName) throws IOException {
+        return Files.newInputStream(resolve(objectName));
+    }
+
+    @Override
+    public List<StoredObject> list() throws IOException {
+        List<StoredObject> objects = new ArrayList<>();
+        try (var stream = Files.list(root())) {
+            for (Path file : (Iterable<Path>) stream::iterator) {
+                String fileName = file.getFileName().toString();
+                if (fileName.endsWith(PART_SUFFIX)) {
+                    continue;
+                }
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                if (attrs.isRegularFile()) {
+                    objects.add(new StoredObject(fileName, attrs.size(), attrs.lastModifiedTime().toMillis()));
+                }
+            }
+        }
+        return objects;
+    }
+
+    @Override
+    public boolean exists(String objectName) throws IOException {
+        return Files.exists(resolve(objectName));
+    }
+
+    @Override
+    public boolean delete(String objectName) throws IOException {
+        return Files.deleteIfExists(resolve(objectName));
+    }
+}
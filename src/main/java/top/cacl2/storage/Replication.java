@@ -0,0 +1,174 @@
+package top.cacl2.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.cacl2.metrics.Phase;
+import top.cacl2.metrics.RunMetrics;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class Replication {
+    private static final Logger LOGGER = LoggerFactory.getLogger("cacl2backup");
+
+    private final String objectName;
+    private final RunMetrics metrics;
+    private final List<StorageBackend> backends;
+    private final List<Target> targets = new ArrayList<>();
+    private final List<String> failed = new CopyOnWriteArrayList<>();
+    private final Replication parent;
+    private final int total;
+
+    Replication(String objectName, List<StorageBackend> backends, RunMetrics metrics) {
+        this(objectName, backends, metrics, null);
+    }
+
+    private Replication(String objectName, List<StorageBackend> backends, RunMetrics metrics, Replication parent) {
+        this.objectName = objectName;
+        this.metrics = metrics;
+        this.backends = backends;
+        this.parent = parent;
+        this.total = backends.size();
+        for (StorageBackend backend : backends) {
+            if (parent != null && parent.failed.contains(backend.getName())) {
+                continue;
+            }
+            try {
+                targets.add(new Target(backend, backend.openUpload(objectName)));
+            } catch (IOException | RuntimeException e) {
+                fail(backend, e);
+            }
+        }
+    }
+
+    public Replication forObject(String name) {
+        return new Replication(name, backends, metrics, this);
+    }
+
+    public boolean isEmpty() {
+        return total == 0;
+    }
+
+    public OutputStream wrap(OutputStream local) {
+        if (targets.isEmpty()) {
+            return local;
+        }
+        return new FilterOutputStream(local) {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                long start = System.nanoTime();
+                for (Target target : targets) {
+                    if (target.upload == null || abortIfDropped(target)) {
+                        continue;
+                    }
+                    try {
+                        target.upload.write(b, off, len);
+                    } catch (IOException | RuntimeException e) {
+                        target.upload.abort();
+                        target.upload = null;
+                        fail(target.backend, e);
+                    }
+                }
+                metrics.addTime(Phase.UPLOAD, System.nanoTime() - start, 0);
+            }
+        };
+    }
+
+    public void finish(Path sidecar) {
+        try (RunMetrics.Span span = metrics.start(Phase.UPLOAD)) {
+            for (Target target : targets) {
+                if (target.upload == null || abortIfDropped(target)) {
+                    continue;
+                }
+                try {
+                    target.upload.complete();
+                    target.upload = null;
+                    if (sidecar != null) {
+                        target.backend.uploadFile(sidecar, sidecar.getFileName().toString());
+                    }
+                    target.done = true;
+                } catch (IOException | RuntimeException e) {
+                    target.upload = null;
+                    fail(target.backend, e);
+                }
+            }
+        }
+    }
+
+    public void abort() {
+        for (Target target : targets) {
+            if (target.upload != null) {
+                target.upload.abort();
+                target.upload = null;
+            }
+        }
+    }
+
+    private void fail(StorageBackend backend, Exception e) {
+        LOGGER.warn("Replicating {} to storage target {} failed", objectName, backend.getName(), e);
+        failed.add(backend.getName());
+        if (parent != null) {
+            parent.dropTarget(backend);
+        }
+    }
+
+    private void dropTarget(StorageBackend backend) {
+        for (Target target : targets) {
+            if (target.backend == backend) {
+                target.dropped = true;
+            }
+        }
+    }
+
+    private boolean abortIfDropped(Target target) {
+        if (!target.dropped) {
+            return false;
+        }
+        target.upload.abort();
+        target.upload = null;
+        failed.add(target.backend.getName());
+        return true;
+    }
+
+    public int getSucceeded() {
+        int count = 0;
+        for (Target target : targets) {
+            if (target.done) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public List<String> getFailed() {
+        return failed;
+    }
+
+    public String describe() {
+        return "replicated to " + getSucceeded() + "/" + total + " target(s)"
+            + (failed.isEmpty() ? "" : ", failed: " + String.join(", ", failed));
+    }
+
+    private static class Target {
+        private final StorageBackend backend;
+        private StorageUpload upload;
+        private boolean done;
+        private volatile boolean dropped;
+
+        Target(StorageBackend backend, StorageUpload upload) {
+            this.backend = backend;
+            this.upload = upload;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package top.cacl2.storage;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+class S3Signer {
+    static final String EMPTY_SHA256 = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String accessKey;
+    private final String secretKey;
+    private final String region;
+
+    S3Signer(String accessKey, String secretKey, String region) {
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.region = region;
+    }
+
+    Map<String, String> sign(String method, String host, String path, Map<String, String> query,
+                             Map<String, String> headers, String payloadHash, Instant now) {
+        String amzDate = AMZ_DATE.format(now);
+        String date = amzDate.substring(0, 8);
+
+        Map<String, String> canonicalHeaders = canonicalHeaders(host, headers, payloadHash, amzDate);
+        String signedHeaders = String.join(";", canonicalHeaders.keySet());
+        String canonicalRequest = canonicalRequest(method, path, query, canonicalHeaders, payloadHash);
+
+        String scope = date + "/" + region + "/s3/aws4_request";
+        String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + '\n' + scope + '\n'
+            + hex(sha256(canonicalRequest.getBytes(StandardCharsets.UTF_8)));
+        String signature = hex(hmac(signingKey(secretKey, date, region, "s3"), stringToSign));
+
+        Map<String, String> result = new LinkedHashMap<>();
+        result.put("x-amz-date", amzDate);
+        result.put("x-amz-content-sha256", payloadHash);
+        result.put("Authorization", "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" + scope
+            + ", SignedHeaders=" + signedHeaders + ", Signature=" + signature);
+        return result;
+    }
+
+    static Map<String, String> canonicalHeaders(String host, Map<String, String> headers, String payloadHash,
+                                                String amzDate) {
+        Map<String, String> canonicalHeaders = new TreeMap<>();
+        headers.forEach((name, value) -> canonicalHeaders.put(name.toLowerCase(), value.trim()));
+        canonicalHeaders.put("host", host);
+        canonicalHeaders.put("x-amz-content-sha256", payloadHash);
+        canonicalHeaders.put("x-amz-date", amzDate);
+        return canonicalHeaders;
+    }
+
+    static String canonicalRequest(String method, String path, Map<String, String> query,
+                                   Map<String, String> canonicalHeaders, String payloadHash) {
+        StringBuilder headerBlock = new StringBuilder();
+        canonicalHeaders.forEach((name, value) -> headerBlock.append(name).append(':').append(value).append('\n'));
+        return method + '\n'
+            + encode(path, false) + '\n'
+            + canonicalQuery(query) + '\n'
+            + headerBlock + '\n'
+            + String.join(";", canonicalHeaders.keySet()) + '\n'
+            + payloadHash;
+    }
+
+    static byte[] signingKey(String secretKey, String date, String region, String service) {
+        byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+        key = hmac(key, region);
+        key = hmac(key, service);
+        return hmac(key, "aws4_request");
+    }
+
+    static String canonicalQuery(Map<String, String> query) {
+        Map<String, String> sorted = new TreeMap<>();
+        query.forEach((name, value) -> sorted.put(encode(name, true), encode(value, true)));
+        StringBuilder sb = new StringBuilder();
+        sorted.forEach((name, value) -> {
+            if (sb.length() > 0) {
+                sb.append('&');
+            }
+            sb.append(name).append('=').append(value);
+        });
+        return sb.toString();
+    }
+
+    static String encode(String value, boolean encodeSlash) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '_' || c == '.' || c == '~' || (c == '/' && !encodeSlash)) {
+                sb.append(c);
+            } else {
+                sb.append('%').append(Character.toUpperCase(HEX[(b >> 4) & 0xF])).append(Character.toUpperCase(HEX[b & 0xF]));
+            }
+        }
+        return sb.toString();
+    }
+
+    static byte[] sha256(byte[] data) {
+        return sha256(data, 0, data.length);
+    }
+
+    static byte[] sha256(byte[] data, int offset, int length) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(data, offset, length);
+            return digest.digest();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
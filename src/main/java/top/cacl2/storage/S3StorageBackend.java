@@ -0,0 +1,411 @@
+package top.cacl2.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import top.cacl2.config.StorageTarget;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class S3StorageBackend implements StorageBackend {
+    private static final Logger LOGGER = LoggerFactory.getLogger("cacl2backup");
+    private static final Set<String> UNSIGNED_HEADERS = Set.of("content-length");
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final String name;
+    private final URI endpoint;
+    private final String bucket;
+    private final String prefix;
+    private final boolean pathStyle;
+    private final int partSize;
+    private final int maxInFlight;
+    private final int maxRetries;
+    private final S3Signer signer;
+    private final HttpClient client;
+    private final ExecutorService uploadExecutor;
+
+    public S3StorageBackend(StorageTarget target) {
+        if (target.getEndpoint().isEmpty() || target.getBucket().isEmpty()) {
+            throw new IllegalArgumentException("S3 target " + target.getName() + " needs an endpoint and a bucket");
+        }
+        this.name = target.getName();
+        this.endpoint = URI.create(target.getEndpoint().replaceAll("/+$", ""));
+        this.bucket = target.getBucket();
+        String configuredPrefix = target.getPrefix().replaceAll("^/+", "");
+        this.prefix = configuredPrefix.isEmpty() || configuredPrefix.endsWith("/") ? configuredPrefix : configuredPrefix + "/";
+        this.pathStyle = target.isPathStyle();
+        this.partSize = target.getPartSizeMB() * 1024 * 1024;
+        this.maxInFlight = target.getMaxInFlightParts();
+        this.maxRetries = target.getMaxRetries();
+        this.signer = new S3Signer(target.getAccessKey(), target.getSecretKey(), target.getRegion());
+        this.client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(15))
+            .build();
+        this.uploadExecutor = Executors.newFixedThreadPool(maxInFlight, r -> {
+            Thread t = new Thread(r, "cacl2backup-s3-upload-" + THREAD_COUNTER.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String describe() {
+        return "s3 " + endpoint + "/" + bucket + "/" + prefix;
+    }
+
+    @Override
+    public StorageUpload openUpload(String objectName) {
+        return new MultipartUpload(prefix + objectName);
+    }
+
+    @Override
+    public InputStream openRead(String objectName) throws IOException {
+        HttpResponse<InputStream> response = execute("GET", prefix + objectName, Collections.emptyMap(),
+            null, 0, 0, Collections.emptyMap(), HttpResponse.BodyHandlers.ofInputStream());
+        return response.body();
+    }
+
+    @Override
+    public boolean exists(String objectName) throws IOException {
+        return send("HEAD", prefix + objectName, Collections.emptyMap(), null, 0, 0, Collections.emptyMap())
+            .statusCode() != 404;
+    }
+
+    @Override
+    public List<StoredObject> list() throws IOException {
+        List<StoredObject> objects = new ArrayList<>();
+        String continuation = null;
+        do {
+            Map<String, String> query = new LinkedHashMap<>();
+            query.put("list-type", "2");
+            query.put("prefix", prefix);
+            if (continuation != null) {
+                query.put("continuation-token", continuation);
+            }
+            Document document = parseXml(send("GET", "", query, null, 0, 0, Collections.emptyMap()).body());
+            NodeList contents = document.getElementsByTagName("Contents");
+            for (int i = 0; i < contents.getLength(); i++) {
+                Element content = (Element) contents.item(i);
+                String key = text(content, "Key");
+                String objectName = key.substring(prefix.length());
+                if (objectName.isEmpty() || objectName.contains("/")) {
+                    continue;
+                }
+                long lastModified = 0;
+                try {
+                    lastModified = Instant.parse(text(content, "LastModified")).toEpochMilli();
+                } catch (RuntimeException ignored) {
+                }
+                objects.add(new StoredObject(objectName, Long.parseLong(text(content, "Size")), lastModified));
+            }
+            continuation = "true".equals(text(document.getDocumentElement(), "IsTruncated"))
+                ? text(document.getDocumentElement(), "NextContinuationToken") : null;
+        } while (continuation != null && !continuation.isEmpty());
+        return objects;
+    }
+
+    @Override
+    public boolean delete(String objectName) throws IOException {
+        send("DELETE", prefix + objectName, Collections.emptyMap(), null, 0, 0, Collections.emptyMap());
+        return true;
+    }
+
+    @Override
+    public void close() {
+        uploadExecutor.shutdownNow();
+    }
+
+    private HttpResponse<byte[]> send(String method, String key, Map<String, String> query, byte[] body, int offset,
+                                      int length, Map<String, String> headers) throws IOException {
+        return execute(method, key, query, body, offset, length, headers, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private <T> HttpResponse<T> execute(String method, String key, Map<String, String> query, byte[] body, int offset,
+                                        int length, Map<String, String> headers, HttpResponse.BodyHandler<T> handler)
+            throws IOException {
+        String payloadHash = body != null ? S3Signer.hex(S3Signer.sha256(body, offset, length)) : S3Signer.EMPTY_SHA256;
+        String host = pathStyle ? endpoint.getHost() : bucket + "." + endpoint.getHost();
+        if (endpoint.getPort() != -1) {
+            host += ":" + endpoint.getPort();
+        }
+        String basePath = endpoint.getRawPath() != null ? endpoint.getRawPath() : "";
+        String path = basePath + (pathStyle ? "/" + bucket : "") + "/" + key;
+        String queryString = S3Signer.canonicalQuery(query);
+        URI uri = URI.create(endpoint.getScheme() + "://" + host + S3Signer.encode(path, false)
+            + (queryString.isEmpty() ? "" : "?" + queryString));
+
+        IOException lastError = null;
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            if (attempt > 0) {
+                backoff(attempt);
+            }
+            Map<String, String> signedHeaders = new LinkedHashMap<>();
+            headers.forEach((header, value) -> {
+                if (!UNSIGNED_HEADERS.contains(header.toLowerCase())) {
+                    signedHeaders.put(header, value);
+                }
+            });
+            Map<String, String> auth = signer.sign(method, host, path, query, signedHeaders, payloadHash, Instant.now());
+            HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMinutes(5))
+                .method(method, body != null
+                    ? HttpRequest.BodyPublishers.ofByteArray(body, offset, length)
+                    : HttpRequest.BodyPublishers.noBody());
+            signedHeaders.forEach(request::header);
+            auth.forEach(request::header);
+
+            try {
+                HttpResponse<T> response = client.send(request.build(), handler);
+                int status = response.statusCode();
+                if (status / 100 == 2 || (status == 404 && method.equals("HEAD"))) {
+                    return response;
+                }
+                String error = drain(response.body());
+                lastError = new IOException(method + " " + key + " returned HTTP " + status + ": " + error);
+                if (status != 429 && status < 500) {
+                    throw lastError;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted during " + method + " " + key, e);
+            } catch (IOException e) {
+                if (e == lastError) {
+                    throw e;
+                }
+                lastError = e;
+            }
+            LOGGER.debug("Retrying {} {} on {} after: {}", method, key, name, lastError.getMessage());
+        }
+        throw lastError;
+    }
+
+    private static void backoff(int attempt) throws IOException {
+        long delay = Math.min(30_000L, 250L << Math.min(attempt, 7));
+        try {
+            Thread.sleep(delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to retry", e);
+        }
+    }
+
+    private static String drain(Object body) {
+        try {
+            if (body instanceof byte[] bytes) {
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+            if (body instanceof InputStream in) {
+                try (in) {
+                    return new String(in.readNBytes(4096), StandardCharsets.UTF_8);
+                }
+            }
+        } catch (IOException ignored) {
+        }
+        return "";
+    }
+
+    private static Document parseXml(byte[] xml) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setExpandEntityReferences(false);
+            return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+        } catch (Exception e) {
+            throw new IOException("Failed to parse S3 response", e);
+        }
+    }
+
+    private static String text(Element parent, String tag) {
+        NodeList nodes = parent.getElementsByTagName(tag);
+        return nodes.getLength() > 0 ? nodes.item(0).getTextContent() : "";
+    }
+
+    private static String escapeXml(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private class MultipartUpload extends StorageUpload {
+        private final String key;
+        private final Semaphore inFlight = new Semaphore(maxInFlight);
+        private final BlockingQueue<byte[]> buffers = new ArrayBlockingQueue<>(maxInFlight + 1);
+        private final List<CompletableFuture<String>> parts = new ArrayList<>();
+        private final AtomicReference<IOException> failure = new AtomicReference<>();
+        private byte[] current;
+        private int position;
+        private long written;
+        private String uploadId;
+        private boolean finished;
+
+        MultipartUpload(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            checkFailure();
+            while (len > 0) {
+                if (current == null) {
+                    current = takeBuffer();
+                    position = 0;
+                }
+                int count = Math.min(len, partSize - position);
+                System.arraycopy(b, off, current, position, count);
+                position += count;
+                off += count;
+                len -= count;
+                written += count;
+                if (position == partSize) {
+                    submitPart();
+                }
+            }
+        }
+
+        private byte[] takeBuffer() {
+            byte[] buffer = buffers.poll();
+            return buffer != null ? buffer : new byte[partSize];
+        }
+
+        private void submitPart() throws IOException {
+            if (uploadId == null) {
+                Map<String, String> query = Map.of("uploads", "");
+                Document document = parseXml(send("POST", key, query, null, 0, 0, Collections.emptyMap()).body());
+                uploadId = text(document.getDocumentElement(), "UploadId");
+                if (uploadId.isEmpty()) {
+                    throw new IOException("S3 did not return an upload id for " + key);
+                }
+            }
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for an upload slot", e);
+            }
+            checkFailure();
+
+            byte[] buffer = current;
+            int length = position;
+            int partNumber = parts.size() + 1;
+            current = null;
+            position = 0;
+            parts.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    Map<String, String> query = new LinkedHashMap<>();
+                    query.put("partNumber", String.valueOf(partNumber));
+                    query.put("uploadId", uploadId);
+                    HttpResponse<byte[]> response = send("PUT", key, query, buffer, 0, length, Collections.emptyMap());
+                    return response.headers().firstValue("ETag").orElse("");
+                } catch (IOException e) {
+                    failure.compareAndSet(null, e);
+                    return null;
+                } finally {
+                    buffers.offer(buffer);
+                    inFlight.release();
+                }
+            }, uploadExecutor));
+        }
+
+        private void checkFailure() throws IOException {
+            IOException error = failure.get();
+            if (error != null) {
+                throw new IOException("Upload of " + key + " to " + name + " failed", error);
+            }
+        }
+
+        @Override
+        public void complete() throws IOException {
+            if (finished) {
+                return;
+            }
+            try {
+                if (uploadId == null) {
+                    send("PUT", key, Collections.emptyMap(), current != null ? current : new byte[0], 0, position,
+                        Collections.emptyMap());
+                    finished = true;
+                    return;
+                }
+                if (position > 0) {
+                    submitPart();
+                }
+                CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0])).join();
+                checkFailure();
+
+                StringBuilder xml = new StringBuilder("<CompleteMultipartUpload>");
+                for (int i = 0; i < parts.size(); i++) {
+                    xml.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+                        .append(escapeXml(parts.get(i).join())).append("</ETag></Part>");
+                }
+                xml.append("</CompleteMultipartUpload>");
+                byte[] body = xml.toString().getBytes(StandardCharsets.UTF_8);
+                HttpResponse<byte[]> response = send("POST", key, Map.of("uploadId", uploadId), body, 0, body.length,
+                    Map.of("Content-Type", "application/xml"));
+                String result = new String(response.body(), StandardCharsets.UTF_8);
+                if (result.contains("<Error>")) {
+                    throw new IOException("S3 rejected completion of " + key + ": " + result);
+                }
+                finished = true;
+            } catch (IOException | RuntimeException e) {
+                abort();
+                throw e;
+            } finally {
+                current = null;
+                buffers.clear();
+            }
+        }
+
+        @Override
+        public void abort() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            failure.compareAndSet(null, new IOException("Upload aborted"));
+            parts.forEach(part -> part.cancel(false));
+            current = null;
+            buffers.clear();
+            if (uploadId != null) {
+                try {
+                    send("DELETE", key, Map.of("uploadId", uploadId), null, 0, 0, Collections.emptyMap());
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to abort multipart upload of {} on {}", key, name, e);
+                }
+            }
+        }
+
+        @Override
+        public long getBytesWritten() {
+            return written;
+        }
+    }
+}
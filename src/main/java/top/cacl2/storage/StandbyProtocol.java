@@ -0,0 +1,65 @@
+package top.cacl2.storage;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+// One connection carries one command at a time; DATA frames are not acknowledged, the COMMIT reply covers them.
+final class StandbyProtocol {
+    static final int MAGIC = 0x43534231;
+    static final int DEFAULT_PORT = 25590;
+    static final String PART_SUFFIX = ".part";
+
+    static final byte LIST = 1;
+    static final byte OPEN = 2;
+    static final byte DATA = 3;
+    static final byte COMMIT = 4;
+    static final byte ABORT = 5;
+    static final byte READ = 6;
+    static final byte DELETE = 7;
+
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+    static final byte REJECTED = 2;
+
+    // Sent as the OPEN offset to continue from whatever the receiver already holds.
+    static final long RESUME = Long.MAX_VALUE;
+
+    private StandbyProtocol() {
+    }
+
+    static void expectOk(DataInputStream in) throws IOException {
+        byte status = in.readByte();
+        if (status == REJECTED) {
+            throw new Rejected(in.readUTF());
+        }
+        if (status != OK) {
+            throw new IOException("Standby: " + in.readUTF());
+        }
+    }
+
+    static void ok(DataOutputStream out) throws IOException {
+        out.writeByte(OK);
+    }
+
+    static void error(DataOutputStream out, String message) throws IOException {
+        reply(out, ERROR, message);
+    }
+
+    static void reject(DataOutputStream out, String message) throws IOException {
+        reply(out, REJECTED, message);
+    }
+
+    private static void reply(DataOutputStream out, byte status, String message) throws IOException {
+        out.writeByte(status);
+        out.writeUTF(message);
+        out.flush();
+    }
+
+    // The receiver removed the whole backup; sending the same object again cannot fix it.
+    static class Rejected extends IOException {
+        Rejected(String message) {
+            super("Standby rejected " + message);
+        }
+    }
+}
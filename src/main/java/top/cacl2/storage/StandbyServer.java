@@ -0,0 +1,418 @@
+package top.cacl2.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.cacl2.backup.BackupManager;
+import top.cacl2.backup.BackupManifest;
+import top.cacl2.backup.BackupVolumes;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+public class StandbyServer implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger("cacl2backup");
+    private static final int IDLE_TIMEOUT_MS = 10 * 60_000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path dir;
+    private final String token;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+    private final Map<String, Incoming> receiving = new ConcurrentHashMap<>();
+    private final Thread acceptor;
+    private volatile boolean closed;
+
+    public StandbyServer(Path dir, String bindAddress, int port, String token) throws IOException {
+        Files.createDirectories(dir);
+        this.dir = dir.toAbsolutePath().normalize();
+        this.token = token;
+        this.serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(bindAddress.isEmpty() ? new InetSocketAddress(port) : new InetSocketAddress(bindAddress, port));
+        this.connections = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "cacl2backup-standby-receive");
+            t.setDaemon(true);
+            return t;
+        });
+        this.acceptor = new Thread(this::accept, "cacl2backup-standby-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        LOGGER.info("Standby receiver listening on {}, storing backups in {}", serverSocket.getLocalSocketAddress(),
+            this.dir);
+        if (token.isEmpty()) {
+            LOGGER.warn("Standby receiver has no token; anyone who can reach port {} can write backups", port);
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                sockets.add(socket);
+                connections.execute(() -> serve(socket));
+            } catch (RejectedExecutionException e) {
+                return;
+            } catch (IOException e) {
+                if (!closed) {
+                    LOGGER.warn("Standby receiver stopped accepting connections", e);
+                }
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        Incoming incoming = null;
+        try (socket) {
+            socket.setSoTimeout(IDLE_TIMEOUT_MS);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+            if (in.readInt() != StandbyProtocol.MAGIC) {
+                return;
+            }
+            if (!MessageDigest.isEqual(in.readUTF().getBytes(StandardCharsets.UTF_8),
+                    token.getBytes(StandardCharsets.UTF_8))) {
+                LOGGER.warn("Rejected standby connection from {}: invalid token", socket.getRemoteSocketAddress());
+                StandbyProtocol.reject(out, "the connection: invalid token");
+                return;
+            }
+            StandbyProtocol.ok(out);
+            out.flush();
+
+            while (!closed) {
+                int command = in.read();
+                if (command < 0) {
+                    return;
+                }
+                switch ((byte) command) {
+                    case StandbyProtocol.LIST -> list(out);
+                    case StandbyProtocol.OPEN -> {
+                        String name = in.readUTF();
+                        long offset = in.readLong();
+                        release(incoming);
+                        incoming = null;
+                        try {
+                            incoming = open(name, offset);
+                        } catch (IOException e) {
+                            StandbyProtocol.error(out, e.getMessage());
+                            continue;
+                        }
+                        StandbyProtocol.ok(out);
+                        out.writeLong(incoming.offset);
+                    }
+                    case StandbyProtocol.DATA -> {
+                        int length = in.readInt();
+                        if (incoming == null) {
+                            throw new IOException("data without an open object");
+                        }
+                        incoming.write(in, length);
+                        continue;
+                    }
+                    case StandbyProtocol.COMMIT -> {
+                        long length = in.readLong();
+                        long crc = in.readLong();
+                        if (incoming == null) {
+                            throw new IOException("commit without an open object");
+                        }
+                        Incoming committed = incoming;
+                        incoming = null;
+                        if (!commit(committed, length, crc, out)) {
+                            continue;
+                        }
+                        StandbyProtocol.ok(out);
+                    }
+                    case StandbyProtocol.ABORT -> {
+                        discard(in.readUTF());
+                        StandbyProtocol.ok(out);
+                    }
+                    case StandbyProtocol.READ -> {
+                        Path file = resolve(in.readUTF());
+                        if (!Files.isRegularFile(file)) {
+                            StandbyProtocol.error(out, file.getFileName() + " does not exist");
+                            continue;
+                        }
+                        StandbyProtocol.ok(out);
+                        out.writeLong(Files.size(file));
+                        Files.copy(file, out);
+                    }
+                    case StandbyProtocol.DELETE -> {
+                        boolean deleted = Files.deleteIfExists(resolve(in.readUTF()));
+                        StandbyProtocol.ok(out);
+                        out.writeBoolean(deleted);
+                    }
+                    default -> throw new IOException("unknown command " + command);
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Standby connection from {} ended: {}", socket.getRemoteSocketAddress(), e.getMessage());
+        } finally {
+            release(incoming);
+            sockets.remove(socket);
+        }
+    }
+
+    private Path resolve(String name) throws IOException {
+        Path file = dir.resolve(name).normalize();
+        if (!dir.equals(file.getParent())) {
+            throw new IOException("Invalid object name: " + name);
+        }
+        return file;
+    }
+
+    private void list(DataOutputStream out) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (var stream = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) stream::iterator) {
+                String name = file.getFileName().toString();
+                if (!name.startsWith(".") && !name.endsWith(StandbyProtocol.PART_SUFFIX) && Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        StandbyProtocol.ok(out);
+        out.writeInt(files.size());
+        for (Path file : files) {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            out.writeUTF(file.getFileName().toString());
+            out.writeLong(attrs.size());
+            out.writeLong(attrs.lastModifiedTime().toMillis());
+        }
+    }
+
+    private Incoming open(String name, long requested) throws IOException {
+        Path target = resolve(name);
+        Incoming incoming = new Incoming(name, target, target.resolveSibling(name + StandbyProtocol.PART_SUFFIX));
+        if (receiving.putIfAbsent(name, incoming) != null) {
+            throw new IOException(name + " is already being received");
+        }
+        try {
+            incoming.start(requested);
+        } catch (IOException e) {
+            release(incoming);
+            throw e;
+        }
+        return incoming;
+    }
+
+    // Replies with an error when the object must be sent again, or a rejection when its backup was removed.
+    private boolean commit(Incoming incoming, long length, long crc, DataOutputStream out) throws IOException {
+        try {
+            long received = incoming.channel.position();
+            if (received != length || incoming.crc.getValue() != crc) {
+                incoming.discarded = true;
+                LOGGER.warn("Standby discarded {}: received {} of {} bytes, checksum {}", incoming.name, received,
+                    length, incoming.crc.getValue() == crc ? "matches" : "differs");
+                StandbyProtocol.error(out, incoming.name + " failed its checksum, send it again from the start");
+                return false;
+            }
+            incoming.channel.force(true);
+            incoming.channel.close();
+            Files.move(incoming.part, incoming.target, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            release(incoming);
+        }
+
+        String mismatch = verify(incoming.name);
+        if (mismatch != null) {
+            LOGGER.warn("Standby discarded {}", mismatch);
+            StandbyProtocol.reject(out, mismatch);
+            return false;
+        }
+        LOGGER.info("Standby received {} ({})", incoming.name, BackupManager.formatSize(length));
+        return true;
+    }
+
+    // Runs once an archive, its volumes and its manifest have all arrived; a mismatch removes the whole backup.
+    private String verify(String name) throws IOException {
+        String archiveName = name.endsWith(BackupManifest.SUFFIX)
+            ? name.substring(0, name.length() - BackupManifest.SUFFIX.length())
+            : BackupVolumes.isExtraVolume(name) ? BackupVolumes.mainName(name) : name;
+        Path archive = dir.resolve(archiveName);
+        if (!archiveName.endsWith(".zip") || !Files.exists(archive)
+                || !Files.exists(BackupManifest.sidecarOf(archive))) {
+            return null;
+        }
+        BackupManifest manifest = BackupManifest.read(archive);
+        if (manifest != null) {
+            for (int volume = 2; volume <= manifest.getVolumes(); volume++) {
+                if (!Files.exists(BackupVolumes.volumeFile(archive, volume))) {
+                    return null;
+                }
+            }
+        }
+        String mismatch = manifest != null ? compare(archive, manifest) : "its manifest is unreadable";
+        if (mismatch != null) {
+            BackupVolumes.delete(archive);
+            BackupManifest.deleteSidecar(archive);
+            return archiveName + " " + mismatch;
+        }
+        LOGGER.info("Standby verified {} against its manifest", archiveName);
+        return null;
+    }
+
+    // Reads only the central directories; the entry CRCs there were computed while the primary wrote the archive.
+    private static String compare(Path archive, BackupManifest manifest) throws IOException {
+        Map<String, ZipEntry> stored = new HashMap<>();
+        for (Path volume : BackupVolumes.list(archive)) {
+            try (ZipFile zip = new ZipFile(volume.toFile())) {
+                zip.stream().forEach(entry -> stored.put(entry.getName(), entry));
+            } catch (ZipException e) {
+                return "has an unreadable volume " + volume.getFileName() + ": " + e.getMessage();
+            }
+        }
+        for (BackupManifest.Entry entry : manifest.getEntries()) {
+            if (!entry.isStored()) {
+                continue;
+            }
+            ZipEntry zipEntry = stored.get(entry.getPath());
+            if (zipEntry == null) {
+                return "is missing " + entry.getPath();
+            }
+            if (zipEntry.getSize() != entry.getSize() || entry.getCrc() != 0 && zipEntry.getCrc() != entry.getCrc()) {
+                return "does not match its manifest at " + entry.getPath();
+            }
+        }
+        return null;
+    }
+
+    private void discard(String name) throws IOException {
+        Incoming incoming = receiving.get(name);
+        if (incoming != null) {
+            incoming.discarded = true;
+        } else {
+            Files.deleteIfExists(resolve(name + StandbyProtocol.PART_SUFFIX));
+        }
+    }
+
+    private void release(Incoming incoming) {
+        if (incoming == null) {
+            return;
+        }
+        receiving.remove(incoming.name, incoming);
+        try {
+            if (incoming.channel != null) {
+                incoming.channel.close();
+            }
+            if (incoming.discarded) {
+                Files.deleteIfExists(incoming.part);
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Failed to release {}: {}", incoming.part, e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+        for (Socket socket : sockets) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+        connections.shutdownNow();
+    }
+
+    // Runs a receiver without a Minecraft server; needs Gson and the SLF4J API next to the mod jar on the class path.
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java -cp <classpath> top.cacl2.storage.StandbyServer <directory> [port] [token]");
+            System.exit(2);
+        }
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : StandbyProtocol.DEFAULT_PORT;
+        String token = args.length > 2 ? args[2] : System.getenv().getOrDefault("CACL2_STANDBY_TOKEN", "");
+        StandbyServer server = new StandbyServer(Path.of(args[0]), "", port, token);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.out.println("Receiving backups into " + server.dir + " on port " + port);
+        server.acceptor.join();
+    }
+
+    private static class Incoming {
+        private final String name;
+        private final Path target;
+        private final Path part;
+        private final CRC32 crc = new CRC32();
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private FileChannel channel;
+        private long offset;
+        private volatile boolean discarded;
+
+        Incoming(String name, Path target, Path part) {
+            this.name = name;
+            this.target = target;
+            this.part = part;
+        }
+
+        // Keeps what an earlier connection delivered, up to the offset the sender asked for.
+        void start(long requested) throws IOException {
+            channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            offset = Math.max(0, Math.min(requested, channel.size()));
+            ByteBuffer view = ByteBuffer.wrap(buffer);
+            long position = 0;
+            while (position < offset) {
+                view.clear().limit((int) Math.min(buffer.length, offset - position));
+                int n = channel.read(view, position);
+                if (n < 0) {
+                    break;
+                }
+                crc.update(buffer, 0, n);
+                position += n;
+            }
+            channel.truncate(offset);
+            channel.position(offset);
+        }
+
+        void write(DataInputStream in, int length) throws IOException {
+            while (length > 0) {
+                int n = Math.min(length, buffer.length);
+                in.readFully(buffer, 0, n);
+                crc.update(buffer, 0, n);
+                ByteBuffer view = ByteBuffer.wrap(buffer, 0, n);
+                while (view.hasRemaining()) {
+                    channel.write(view);
+                }
+                length -= n;
+            }
+        }
+    }
+}
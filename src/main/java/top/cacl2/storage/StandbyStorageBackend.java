@@ -0,0 +1,598 @@
+package top.cacl2.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.cacl2.backup.BackupManager;
+import top.cacl2.backup.BackupManifest;
+import top.cacl2.backup.BackupVolumes;
+import top.cacl2.config.StorageTarget;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+public class StandbyStorageBackend implements StorageBackend {
+    private static final Logger LOGGER = LoggerFactory.getLogger("cacl2backup");
+    private static final int BLOCK_SIZE = 256 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 5_000;
+    private static final int READ_TIMEOUT_MS = 120_000;
+    private static final long CATCH_UP_DELAY_MS = 10_000;
+    private static final long MAX_CATCH_UP_DELAY_MS = 10 * 60_000;
+    private static final byte[] END = new byte[0];
+
+    private final String name;
+    private final String host;
+    private final int port;
+    private final String token;
+    private final int maxRetries;
+    private final long bufferBytes;
+    private final long bytesPerSecond;
+    private final Path backupDir;
+    private final Set<String> active = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean catchUpPending = new AtomicBoolean();
+    private final ScheduledExecutorService background;
+    private long nextSendNanos;
+    private long catchUpDelay = CATCH_UP_DELAY_MS;
+    private volatile boolean closed;
+
+    public StandbyStorageBackend(StorageTarget target, Path backupDir) {
+        if (target.getHost().isEmpty()) {
+            throw new IllegalArgumentException("standby target needs a host");
+        }
+        this.name = target.getName();
+        this.host = target.getHost();
+        this.port = target.getPort();
+        this.token = target.getToken();
+        this.maxRetries = target.getMaxRetries();
+        this.bufferBytes = target.getBufferMB() * 1024L * 1024;
+        this.bytesPerSecond = target.getMaxKBps() * 1024L;
+        this.backupDir = backupDir;
+        this.background = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cacl2backup-standby");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduleCatchUp(CATCH_UP_DELAY_MS);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String describe() {
+        return "standby " + host + ":" + port
+            + (bytesPerSecond > 0 ? ", limited to " + BackupManager.formatSize(bytesPerSecond) + "/s" : "");
+    }
+
+    @Override
+    public StorageUpload openUpload(String objectName) throws IOException {
+        if (closed) {
+            throw new IOException("Storage target " + name + " is closed");
+        }
+        claim(objectName);
+        return new StandbyUpload(objectName);
+    }
+
+    @Override
+    public void uploadFile(Path file, String objectName) throws IOException {
+        claim(objectName);
+        try {
+            sendFile(file, objectName);
+        } finally {
+            active.remove(objectName);
+        }
+    }
+
+    @Override
+    public InputStream openRead(String objectName) throws IOException {
+        Connection connection = new Connection();
+        try {
+            long size = connection.read(objectName);
+            return new FilterInputStream(connection.in) {
+                private long remaining = size;
+
+                @Override
+                public int read() throws IOException {
+                    byte[] one = new byte[1];
+                    return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (remaining <= 0) {
+                        return -1;
+                    }
+                    int n = in.read(b, off, (int) Math.min(len, remaining));
+                    if (n < 0) {
+                        throw new IOException("Standby " + name + " closed the connection with "
+                            + remaining + " bytes of " + objectName + " left");
+                    }
+                    remaining -= n;
+                    return n;
+                }
+
+                @Override
+                public void close() {
+                    connection.close();
+                }
+            };
+        } catch (IOException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public List<StoredObject> list() throws IOException {
+        try (Connection connection = new Connection()) {
+            return connection.list();
+        }
+    }
+
+    @Override
+    public boolean delete(String objectName) throws IOException {
+        try (Connection connection = new Connection()) {
+            return connection.delete(objectName);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        background.shutdownNow();
+    }
+
+    private void claim(String objectName) throws IOException {
+        while (!active.add(objectName)) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to send " + objectName);
+            }
+        }
+    }
+
+    // Resumes from whatever the standby already holds; a stale prefix fails the checksum and is sent again from the start.
+    private void sendFile(Path file, String objectName) throws IOException {
+        IOException lastError = null;
+        for (int attempt = 0; attempt <= maxRetries && !closed; attempt++) {
+            if (attempt > 0) {
+                backoff(attempt);
+            }
+            try (Connection connection = new Connection();
+                 FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                long offset = connection.open(objectName, StandbyProtocol.RESUME);
+                if (offset > size) {
+                    offset = connection.open(objectName, 0);
+                }
+                CRC32 crc = new CRC32();
+                ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+                long position = 0;
+                while (position < size) {
+                    buffer.clear();
+                    int n = channel.read(buffer, position);
+                    if (n < 0) {
+                        break;
+                    }
+                    crc.update(buffer.array(), 0, n);
+                    int skip = (int) Math.max(0, Math.min(n, offset - position));
+                    if (n > skip) {
+                        throttle(n - skip);
+                        connection.data(buffer.array(), skip, n - skip);
+                    }
+                    position += n;
+                }
+                connection.commit(position, crc.getValue());
+                if (offset > 0) {
+                    LOGGER.info("Resumed {} on standby {} at {} of {}", objectName, name,
+                        BackupManager.formatSize(offset), BackupManager.formatSize(size));
+                }
+                return;
+            } catch (StandbyProtocol.Rejected e) {
+                scheduleCatchUp(CATCH_UP_DELAY_MS);
+                throw e;
+            } catch (IOException e) {
+                lastError = e;
+                LOGGER.debug("Retrying {} on standby {} after: {}", objectName, name, e.getMessage());
+            }
+        }
+        scheduleCatchUp(CATCH_UP_DELAY_MS);
+        throw lastError != null ? lastError : new IOException("Storage target " + name + " is closed");
+    }
+
+    private static void backoff(int attempt) throws IOException {
+        long delay = Math.min(30_000L, 250L << Math.min(attempt, 7));
+        try {
+            Thread.sleep(delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to retry", e);
+        }
+    }
+
+    // Paces all transfers to this target together, so concurrent units share the limit.
+    private void throttle(int bytes) throws IOException {
+        if (bytesPerSecond <= 0) {
+            return;
+        }
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long start = Math.max(nextSendNanos, now);
+            nextSendNanos = start + bytes * 1_000_000_000L / bytesPerSecond;
+            wait = start - now;
+        }
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while pacing the transfer to " + name);
+            }
+        }
+    }
+
+    private void scheduleCatchUp(long delayMs) {
+        if (closed || !catchUpPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            background.schedule(this::catchUp, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            catchUpPending.set(false);
+        }
+    }
+
+    private void catchUp() {
+        catchUpPending.set(false);
+        if (closed) {
+            return;
+        }
+        try {
+            int sent = synchronize();
+            catchUpDelay = CATCH_UP_DELAY_MS;
+            if (sent > 0) {
+                LOGGER.info("Standby {} caught up on {} file(s)", name, sent);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Standby {} is unreachable, retrying in {}s: {}", name, catchUpDelay / 1000, e.getMessage());
+            scheduleCatchUp(catchUpDelay);
+            catchUpDelay = Math.min(MAX_CATCH_UP_DELAY_MS, catchUpDelay * 2);
+        }
+    }
+
+    // Sends local archives at least as new as the newest one on the standby, and the full backups they build on.
+    private int synchronize() throws IOException {
+        Map<String, Long> remote = new HashMap<>();
+        String newest = "";
+        for (StoredObject object : list()) {
+            remote.put(object.getName(), object.getSize());
+            if (object.getName().endsWith(".zip") && object.getName().compareTo(newest) > 0) {
+                newest = object.getName();
+            }
+        }
+        List<Path> archives = new ArrayList<>();
+        try (var stream = Files.list(backupDir)) {
+            for (Path file : (Iterable<Path>) stream::iterator) {
+                String fileName = file.getFileName().toString();
+                if (fileName.endsWith(".zip") && fileName.compareTo(newest) >= 0 && Files.isRegularFile(file)) {
+                    archives.add(file);
+                }
+            }
+        }
+        Set<Path> wanted = new TreeSet<>(archives);
+        for (Path archive : archives) {
+            BackupManifest header = BackupManifest.readHeader(archive);
+            if (header != null && header.isIncremental() && Files.exists(backupDir.resolve(header.getBase()))) {
+                wanted.add(backupDir.resolve(header.getBase()));
+            }
+        }
+
+        int sent = 0;
+        for (Path archive : wanted) {
+            List<Path> files = new ArrayList<>(BackupVolumes.list(archive));
+            Path sidecar = BackupManifest.sidecarOf(archive);
+            if (Files.exists(sidecar)) {
+                files.add(sidecar);
+            }
+            for (Path file : files) {
+                String objectName = file.getFileName().toString();
+                Long size = remote.get(objectName);
+                if (closed) {
+                    return sent;
+                }
+                if (size != null && size == Files.size(file) || !active.add(objectName)) {
+                    continue;
+                }
+                try {
+                    sendFile(file, objectName);
+                    sent++;
+                } finally {
+                    active.remove(objectName);
+                }
+            }
+        }
+        return sent;
+    }
+
+    // Streams alongside the local archive; if the link falls behind by more than the buffer, the rest is sent from the local file.
+    private class StandbyUpload extends StorageUpload {
+        private final String objectName;
+        private final CRC32 crc = new CRC32();
+        private final LinkedBlockingQueue<byte[]> queue = new LinkedBlockingQueue<>();
+        private final AtomicLong queuedBytes = new AtomicLong();
+        private final Thread sender;
+        private byte[] block = new byte[BLOCK_SIZE];
+        private int blockFill;
+        private long written;
+        private boolean finished;
+        private volatile long finalCrc;
+        private volatile boolean detached;
+        private volatile boolean aborted;
+        private volatile boolean connected;
+        private volatile boolean committed;
+        private volatile IOException failure;
+        private volatile Connection connection;
+
+        StandbyUpload(String objectName) {
+            this.objectName = objectName;
+            this.sender = new Thread(this::stream, "cacl2backup-standby-send");
+            sender.setDaemon(true);
+            sender.start();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            written += len;
+            crc.update(b, off, len);
+            while (len > 0 && !detached) {
+                int n = Math.min(len, BLOCK_SIZE - blockFill);
+                System.arraycopy(b, off, block, blockFill, n);
+                blockFill += n;
+                off += n;
+                len -= n;
+                if (blockFill == BLOCK_SIZE) {
+                    flushBlock();
+                }
+            }
+        }
+
+        private void flushBlock() {
+            if (blockFill == 0 || detached) {
+                return;
+            }
+            if (queuedBytes.get() + blockFill > bufferBytes) {
+                detached = true;
+                LOGGER.info("Standby {} fell more than {} behind on {}, sending the rest once the archive is written",
+                    name, BackupManager.formatSize(bufferBytes), objectName);
+                return;
+            }
+            queuedBytes.addAndGet(blockFill);
+            queue.add(blockFill == BLOCK_SIZE ? block : Arrays.copyOf(block, blockFill));
+            block = new byte[BLOCK_SIZE];
+            blockFill = 0;
+        }
+
+        private void stream() {
+            try (Connection c = new Connection()) {
+                connection = c;
+                c.open(objectName, 0);
+                connected = true;
+                while (true) {
+                    byte[] data = queue.take();
+                    if (data == END) {
+                        break;
+                    }
+                    throttle(data.length);
+                    c.data(data, 0, data.length);
+                    queuedBytes.addAndGet(-data.length);
+                }
+                if (!detached && !aborted) {
+                    c.commit(written, finalCrc);
+                    committed = true;
+                }
+            } catch (InterruptedException | InterruptedIOException e) {
+                detached = true;
+            } catch (IOException e) {
+                detached = true;
+                failure = e;
+                queue.clear();
+            } finally {
+                connection = null;
+            }
+        }
+
+        @Override
+        public void complete() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            try {
+                flushBlock();
+                finalCrc = crc.getValue();
+                queue.add(END);
+                sender.join();
+                if (committed) {
+                    return;
+                }
+                if (!connected && failure != null) {
+                    // Unreachable from the start; the catch-up pass sends it once the standby is back
+                    scheduleCatchUp(CATCH_UP_DELAY_MS);
+                    throw failure;
+                }
+                if (failure != null) {
+                    LOGGER.info("Standby {} lost the stream of {} ({}), resuming from the local file", name,
+                        objectName, failure.getMessage());
+                }
+                Path file = backupDir.resolve(objectName);
+                if (!Files.isRegularFile(file)) {
+                    throw new IOException("Cannot resume " + objectName + " on standby " + name + ": no local copy");
+                }
+                sendFile(file, objectName);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while sending " + objectName + " to " + name);
+            } finally {
+                active.remove(objectName);
+            }
+        }
+
+        @Override
+        public void abort() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            aborted = true;
+            detached = true;
+            queue.clear();
+            queue.add(END);
+            Connection current = connection;
+            if (current != null) {
+                current.close();
+            }
+            sender.interrupt();
+            active.remove(objectName);
+            try {
+                background.execute(() -> {
+                    try (Connection c = new Connection()) {
+                        c.abort(objectName);
+                    } catch (IOException e) {
+                        LOGGER.debug("Failed to discard {} on standby {}: {}", objectName, name, e.getMessage());
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Closed; the receiver keeps the partial file until the object is sent again
+            }
+        }
+
+        @Override
+        public long getBytesWritten() {
+            return written;
+        }
+    }
+
+    private class Connection implements Closeable {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        Connection() throws IOException {
+            socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+                socket.setSoTimeout(READ_TIMEOUT_MS);
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+                out.writeInt(StandbyProtocol.MAGIC);
+                out.writeUTF(token);
+                out.flush();
+                StandbyProtocol.expectOk(in);
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        long open(String objectName, long offset) throws IOException {
+            out.writeByte(StandbyProtocol.OPEN);
+            out.writeUTF(objectName);
+            out.writeLong(offset);
+            out.flush();
+            StandbyProtocol.expectOk(in);
+            return in.readLong();
+        }
+
+        void data(byte[] b, int off, int len) throws IOException {
+            out.writeByte(StandbyProtocol.DATA);
+            out.writeInt(len);
+            out.write(b, off, len);
+        }
+
+        void commit(long length, long crc) throws IOException {
+            out.writeByte(StandbyProtocol.COMMIT);
+            out.writeLong(length);
+            out.writeLong(crc);
+            out.flush();
+            StandbyProtocol.expectOk(in);
+        }
+
+        void abort(String objectName) throws IOException {
+            out.writeByte(StandbyProtocol.ABORT);
+            out.writeUTF(objectName);
+            out.flush();
+            StandbyProtocol.expectOk(in);
+        }
+
+        long read(String objectName) throws IOException {
+            out.writeByte(StandbyProtocol.READ);
+            out.writeUTF(objectName);
+            out.flush();
+            StandbyProtocol.expectOk(in);
+            return in.readLong();
+        }
+
+        boolean delete(String objectName) throws IOException {
+            out.writeByte(StandbyProtocol.DELETE);
+            out.writeUTF(objectName);
+            out.flush();
+            StandbyProtocol.expectOk(in);
+            return in.readBoolean();
+        }
+
+        List<StoredObject> list() throws IOException {
+            out.writeByte(StandbyProtocol.LIST);
+            out.flush();
+            StandbyProtocol.expectOk(in);
+            int count = in.readInt();
+            List<StoredObject> objects = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                objects.add(new StoredObject(in.readUTF(), in.readLong(), in.readLong()));
+            }
+            return objects;
+        }
+
+        @Override
+        public void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package top.cacl2.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+public interface StorageBackend extends AutoCloseable {
+    String getName();
+
+    String describe();
+
+    StorageUpload openUpload(String name) throws IOException;
+
+    InputStream openRead(String name) throws IOException;
+
+    List<StoredObject> list() throws IOException;
+
+    boolean delete(String name) throws IOException;
+
+    default boolean exists(String name) throws IOException {
+        for (StoredObject object : list()) {
+            if (object.getName().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    default void uploadFile(Path file, String name) throws IOException {
+        StorageUpload upload = openUpload(name);
+        try {
+            Files.copy(file, upload);
+            upload.complete();
+        } catch (IOException | RuntimeException e) {
+            upload.abort();
+            throw e;
+        }
+    }
+
+    default void download(String name, Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".download");
+        try (InputStream in = openRead(name); OutputStream out = Files.newOutputStream(temp)) {
+            in.transferTo(out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    default void close() {
+    }
+
+    class StoredObject {
+        private final String name;
+        private final long size;
+        private final long lastModified;
+
+        public StoredObject(String name, long size, long lastModified) {
+            this.name = name;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public String getName() { return name; }
+        public long getSize() { return size; }
+        public long getLastModified() { return lastModified; }
+    }
+}
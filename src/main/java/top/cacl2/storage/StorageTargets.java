@@ -0,0 +1,337 @@
+package top.cacl2.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.cacl2.backup.BackupManifest;
+import top.cacl2.backup.BackupVolumes;
+import top.cacl2.config.ColdStorage;
+import top.cacl2.config.StorageTarget;
+import top.cacl2.metrics.Phase;
+import top.cacl2.metrics.RunMetrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+public class StorageTargets {
+    private static final Logger LOGGER = LoggerFactory.getLogger("cacl2backup");
+
+    private final Path gameDir;
+    private final Path backupDir;
+    private volatile List<Target> targets = new ArrayList<>();
+    private volatile Target cold;
+
+    public StorageTargets(Path gameDir, Path backupDir, List<StorageTarget> configured, ColdStorage coldStorage) {
+        this.gameDir = gameDir;
+        this.backupDir = backupDir;
+        configure(configured);
+        configureCold(coldStorage);
+    }
+
+    public synchronized void configure(List<StorageTarget> configured) {
+        List<Target> created = new ArrayList<>();
+        for (StorageTarget target : configured) {
+            if (!target.isEnabled()) {
+                continue;
+            }
+            Target built = create(target);
+            if (built != null) {
+                created.add(built);
+            }
+        }
+        List<Target> previous = targets;
+        targets = created;
+        previous.forEach(target -> target.backend.close());
+    }
+
+    public synchronized void configureCold(ColdStorage coldStorage) {
+        Target previous = cold;
+        cold = coldStorage.isEnabled() ? create(coldStorage.getTarget()) : null;
+        if (previous != null) {
+            previous.backend.close();
+        }
+    }
+
+    private Target create(StorageTarget target) {
+        try {
+            StorageBackend backend = switch (target.getType()) {
+                case "local" -> new LocalStorageBackend(target.getName(), gameDir.resolve(target.getPath()), false);
+                case "mount" -> new LocalStorageBackend(target.getName(), gameDir.resolve(target.getPath()), true);
+                case "s3" -> new S3StorageBackend(target);
+                case "standby" -> new StandbyStorageBackend(target, backupDir);
+                default -> throw new IllegalArgumentException("unsupported storage type '" + target.getType() + "'");
+            };
+            LOGGER.info("Storage target {}: {}", target.getName(), backend.describe());
+            return new Target(backend, target);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Skipping storage target {}: {}", target.getName(), e.getMessage());
+            return null;
+        }
+    }
+
+    public List<StorageBackend> getBackends() {
+        List<StorageBackend> backends = new ArrayList<>();
+        for (Target target : targets) {
+            backends.add(target.backend);
+        }
+        return backends;
+    }
+
+    public StorageBackend getColdTier() {
+        Target current = cold;
+        return current != null ? current.backend : null;
+    }
+
+    public boolean isEmpty() {
+        return targets.isEmpty() && cold == null;
+    }
+
+    public Replication beginReplication(String backupName, RunMetrics metrics) {
+        return new Replication(backupName, getBackends(), metrics);
+    }
+
+    public StorageBackend find(String backupName) {
+        for (Target target : withCold()) {
+            try {
+                if (target.backend.exists(backupName)) {
+                    return target.backend;
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Failed to query storage target {}", target.backend.getName(), e);
+            }
+        }
+        return null;
+    }
+
+    public Path fetch(String backupName, Path backupDir, RunMetrics metrics) throws IOException {
+        return fetch(backupName, backupDir, metrics, null);
+    }
+
+    public Path fetch(String backupName, Path backupDir, RunMetrics metrics, Predicate<String> paths)
+            throws IOException {
+        Path local = backupDir.resolve(backupName);
+        StorageBackend backend = null;
+        if (!Files.exists(local)) {
+            backend = find(backupName);
+            if (backend == null) {
+                return null;
+            }
+            try (RunMetrics.Span span = metrics.start(Phase.DOWNLOAD)) {
+                LOGGER.info("Downloading {} from storage target {}", backupName, backend.getName());
+                String sidecarName = backupName + BackupManifest.SUFFIX;
+                if (backend.exists(sidecarName)) {
+                    backend.download(sidecarName, BackupManifest.sidecarOf(local));
+                }
+                download(backend, backupName, local, metrics);
+            }
+        }
+        BackupManifest header = BackupManifest.readHeader(local);
+        if (header != null && header.getVolumes() > 1) {
+            Set<Integer> needed = neededVolumes(local, header.getVolumes(), paths);
+            for (int volume = 2; volume <= header.getVolumes(); volume++) {
+                Path file = BackupVolumes.volumeFile(local, volume);
+                if (!needed.contains(volume) || Files.exists(file)) {
+                    continue;
+                }
+                String volumeName = file.getFileName().toString();
+                StorageBackend source = backend != null ? backend : find(volumeName);
+                if (source == null) {
+                    throw new IOException("Volume " + volumeName + " is neither local nor on any storage target");
+                }
+                try (RunMetrics.Span span = metrics.start(Phase.DOWNLOAD)) {
+                    LOGGER.info("Downloading {} from storage target {}", volumeName, source.getName());
+                    download(source, volumeName, file, metrics);
+                }
+            }
+        }
+        if (header != null && header.isIncremental() && fetch(header.getBase(), backupDir, metrics, paths) == null) {
+            throw new IOException("Base backup " + header.getBase() + " is neither local nor on any storage target");
+        }
+        return local;
+    }
+
+    private static Set<Integer> neededVolumes(Path local, int volumes, Predicate<String> paths) {
+        Set<Integer> needed = new HashSet<>();
+        BackupManifest manifest = paths != null ? BackupManifest.read(local) : null;
+        if (manifest == null) {
+            for (int volume = 1; volume <= volumes; volume++) {
+                needed.add(volume);
+            }
+            return needed;
+        }
+        for (BackupManifest.Entry entry : manifest.getEntries()) {
+            if (entry.isStored() && paths.test(entry.getPath())) {
+                needed.add(entry.getVolume());
+            }
+        }
+        return needed;
+    }
+
+    private static void download(StorageBackend backend, String name, Path target, RunMetrics metrics)
+            throws IOException {
+        backend.download(name, target);
+        metrics.addBytes(Files.size(target));
+        metrics.addFiles(1);
+    }
+
+    public Map<String, List<StorageBackend.StoredObject>> listBackups() {
+        Map<String, List<StorageBackend.StoredObject>> result = new LinkedHashMap<>();
+        for (Target target : withCold()) {
+            try {
+                result.put(target.backend.getName(), listArchives(target.backend));
+            } catch (IOException e) {
+                LOGGER.warn("Failed to list storage target {}", target.backend.getName(), e);
+                result.put(target.backend.getName(), null);
+            }
+        }
+        return result;
+    }
+
+    public int applyRetention(List<String> deletedLocally, RunMetrics metrics) {
+        int deleted = 0;
+        try (RunMetrics.Span span = metrics.start(Phase.DELETE)) {
+            for (Target target : targets) {
+                try {
+                    List<String> toDelete = target.config.getMaxBackups() == 0
+                        ? deletedLocally
+                        : selectForDeletion(target.backend, target.config.getMaxBackups());
+                    for (String name : toDelete) {
+                        if (deleteWithSidecar(target.backend, name)) {
+                            deleted++;
+                        }
+                    }
+                } catch (IOException e) {
+                    LOGGER.warn("Retention on storage target {} failed", target.backend.getName(), e);
+                }
+            }
+            Target coldTarget = cold;
+            if (coldTarget != null && coldTarget.config.getMaxBackups() > 0) {
+                try {
+                    for (String name : selectForDeletion(coldTarget.backend, coldTarget.config.getMaxBackups())) {
+                        if (deleteWithSidecar(coldTarget.backend, name)) {
+                            deleted++;
+                        }
+                    }
+                } catch (IOException e) {
+                    LOGGER.warn("Retention on cold tier {} failed", coldTarget.backend.getName(), e);
+                }
+            }
+        }
+        return deleted;
+    }
+
+    public void deleteMirrored(String backupName) {
+        for (Target target : targets) {
+            if (target.config.getMaxBackups() != 0) {
+                continue;
+            }
+            try {
+                deleteWithSidecar(target.backend, backupName);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to delete {} from storage target {}", backupName, target.backend.getName(), e);
+            }
+        }
+    }
+
+    public void close() {
+        targets.forEach(target -> target.backend.close());
+        targets = new ArrayList<>();
+        configureCold(new ColdStorage());
+    }
+
+    private List<Target> withCold() {
+        List<Target> all = new ArrayList<>(targets);
+        Target coldTarget = cold;
+        if (coldTarget != null) {
+            all.add(coldTarget);
+        }
+        return all;
+    }
+
+    private static boolean deleteWithSidecar(StorageBackend backend, String backupName) throws IOException {
+        BackupManifest header = readHeader(backend, backupName);
+        int volumes = header != null ? header.getVolumes() : 1;
+        for (int volume = 2; volume <= volumes; volume++) {
+            backend.delete(BackupVolumes.volumeName(backupName, volume));
+        }
+        boolean deleted = backend.delete(backupName);
+        backend.delete(backupName + BackupManifest.SUFFIX);
+        return deleted;
+    }
+
+    private static List<StorageBackend.StoredObject> listArchives(StorageBackend backend) throws IOException {
+        Map<String, StorageBackend.StoredObject> byName = new LinkedHashMap<>();
+        Map<String, Long> volumeBytes = new HashMap<>();
+        for (StorageBackend.StoredObject object : backend.list()) {
+            if (object.getName().endsWith(".zip")) {
+                byName.put(object.getName(), object);
+            } else if (BackupVolumes.isExtraVolume(object.getName())) {
+                volumeBytes.merge(BackupVolumes.mainName(object.getName()), object.getSize(), Long::sum);
+            }
+        }
+        List<StorageBackend.StoredObject> archives = new ArrayList<>();
+        for (StorageBackend.StoredObject object : byName.values()) {
+            long extra = volumeBytes.getOrDefault(object.getName(), 0L);
+            archives.add(extra == 0 ? object : new StorageBackend.StoredObject(object.getName(),
+                object.getSize() + extra, object.getLastModified()));
+        }
+        archives.sort(Comparator.comparing(StorageBackend.StoredObject::getName).reversed());
+        return archives;
+    }
+
+    private static List<String> selectForDeletion(StorageBackend backend, int keep) throws IOException {
+        List<StorageBackend.StoredObject> archives = listArchives(backend);
+        Set<String> needed = new HashSet<>();
+        List<String> toDelete = new ArrayList<>();
+        for (int i = 0; i < archives.size(); i++) {
+            String name = archives.get(i).getName();
+            if (i < keep || needed.contains(name)) {
+                String base = readBase(backend, name);
+                if (base != null) {
+                    needed.add(base);
+                }
+            } else {
+                toDelete.add(name);
+            }
+        }
+        toDelete.removeIf(needed::contains);
+        return toDelete;
+    }
+
+    private static String readBase(StorageBackend backend, String backupName) {
+        BackupManifest header = readHeader(backend, backupName);
+        return header != null && header.isIncremental() ? header.getBase() : null;
+    }
+
+    private static BackupManifest readHeader(StorageBackend backend, String backupName) {
+        try (InputStream in = backend.openRead(backupName + BackupManifest.SUFFIX);
+             Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return BackupManifest.readHeader(reader);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static class Target {
+        private final StorageBackend backend;
+        private final StorageTarget config;
+
+        Target(StorageBackend backend, StorageTarget config) {
+            this.backend = backend;
+            this.config = config;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package top.cacl2.storage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public abstract class StorageUpload extends OutputStream {
+    public abstract void complete() throws IOException;
+
+    public abstract void abort();
+
+    public abstract long getBytesWritten();
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        abort();
+    }
+}
@@ -0,0 +1,68 @@
+package top.cacl2.backup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ActivityTrackerTest {
+    private static final long SINCE = 1_750_000_000_000L;
+    private static final int OLD = (int) (SINCE / 1000 - 3600);
+    private static final int NEW = (int) (SINCE / 1000 + 60);
+
+    @TempDir
+    Path world;
+
+    @Test
+    void savedSinceCountsSectorsOfRewrittenChunks() throws IOException {
+        Path region = writeRegion("r.0.0.mca", new int[][] {{2, 3, NEW}, {5, 1, OLD}, {6, 8, NEW}}, 64);
+
+        RegionFiles.SavedChunks saved = RegionFiles.savedSince(region, SINCE);
+        assertEquals(2, saved.getChunks());
+        assertEquals(11L * RegionFiles.SECTOR_SIZE + RegionFiles.HEADER_SIZE, saved.getBytes());
+        assertEquals(2, RegionFiles.countChunksSavedSince(region, SINCE));
+    }
+
+    @Test
+    void regionWithoutNewChunksAddsNothing() throws IOException {
+        Path region = writeRegion("r.1.0.mca", new int[][] {{2, 4, OLD}}, 16);
+
+        assertEquals(0, RegionFiles.savedSince(region, SINCE).getBytes());
+    }
+
+    @Test
+    void changedBytesUseRewrittenChunksInsteadOfWholeRegions() throws IOException {
+        Path region = writeRegion("region/r.0.0.mca", new int[][] {{2, 2, NEW}, {4, 200, OLD}}, 256);
+        Path level = world.resolve("level.dat");
+        Files.write(level, new byte[1000]);
+        Path stale = world.resolve("session.lock");
+        Files.write(stale, new byte[50]);
+        Files.setLastModifiedTime(region, FileTime.fromMillis(SINCE + 1000));
+        Files.setLastModifiedTime(level, FileTime.fromMillis(SINCE + 1000));
+        Files.setLastModifiedTime(stale, FileTime.fromMillis(SINCE - 1000));
+
+        ActivityTracker.WorldChanges changes = new ActivityTracker(world, SINCE).getWorldChanges(true);
+        assertEquals(2, changes.getChangedFiles());
+        assertEquals(1, changes.getChunksSaved());
+        assertEquals(1000 + 2L * RegionFiles.SECTOR_SIZE + RegionFiles.HEADER_SIZE, changes.getChangedBytes());
+    }
+
+    // Each chunk is {sector offset, sector count, timestamp}, stored at consecutive header slots.
+    private Path writeRegion(String name, int[][] chunks, int sectors) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(sectors * RegionFiles.SECTOR_SIZE);
+        for (int i = 0; i < chunks.length; i++) {
+            data.putInt(i * 4, chunks[i][0] << 8 | chunks[i][1]);
+            data.putInt(RegionFiles.SECTOR_SIZE + i * 4, chunks[i][2]);
+        }
+        Path file = world.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, data.array());
+        return file;
+    }
+}
@@ -0,0 +1,34 @@
+package top.cacl2.backup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import top.cacl2.config.BackupConfig;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BackupManagerTest {
+    @TempDir
+    Path game;
+
+    @Test
+    void syncBackupFromInsideAJobRunsInline() throws Exception {
+        Files.createDirectories(game.resolve("world/region"));
+        Files.writeString(game.resolve("world/level.dat"), "level");
+        Files.write(game.resolve("world/region/r.0.0.mca"), new byte[8192]);
+        BackupManager manager = new BackupManager(game, new BackupConfig());
+        try {
+            BackupJob<BackupManager.BackupResult> outer = manager.getJobQueue().submit(
+                BackupJobQueue.JobType.MAINTENANCE, "nested", null, job -> manager.createBackupSync("nested"));
+
+            BackupManager.BackupResult result = outer.getFuture().get(30, TimeUnit.SECONDS);
+            assertTrue(result.isSuccess(), result.getMessage());
+            assertTrue(Files.exists(result.getBackupFile()));
+        } finally {
+            manager.shutdown();
+        }
+    }
+}
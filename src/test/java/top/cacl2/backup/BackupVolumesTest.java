@@ -0,0 +1,124 @@
+package top.cacl2.backup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import top.cacl2.config.BackupConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BackupVolumesTest {
+    private static final long VOLUME_BYTES = 256 * 1024;
+    private static final int FILE_BYTES = 40 * 1024;
+    private static final int FILES = 10;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void volumeNames() {
+        assertEquals("backup.zip", BackupVolumes.volumeName("backup.zip", 1));
+        assertEquals("backup.zip.v002", BackupVolumes.volumeName("backup.zip", 2));
+        assertEquals("backup.zip.v123", BackupVolumes.volumeName("backup.zip", 123));
+        assertTrue(BackupVolumes.isExtraVolume("backup.zip.v002"));
+        assertFalse(BackupVolumes.isExtraVolume("backup.zip"));
+        assertFalse(BackupVolumes.isExtraVolume("backup.zip.v"));
+        assertFalse(BackupVolumes.isExtraVolume("backup.tar.v002"));
+        assertEquals("backup.zip", BackupVolumes.mainName("backup.zip.v002"));
+    }
+
+    @Test
+    void volumesRollOverAtTheCapAndReadBackTogether() throws Exception {
+        Path world = writeWorld();
+        Path archive = dir.resolve("backups/backup.zip");
+        Files.createDirectories(archive.getParent());
+
+        BackupManifest manifest;
+        CompressionUtil util = new CompressionUtil(1, 1);
+        try {
+            CompressionUtil.CompressionResult result = util.compressFiles(world, CompressionUtil.listFiles(world),
+                archive, null, 1, 1, null, 0, VOLUME_BYTES);
+            manifest = new BackupManifest(archive.getFileName().toString(), System.currentTimeMillis(), "FULL",
+                "default", "default", null, 1);
+            result.getEntries().forEach(manifest::addEntry);
+            manifest.setVolumes(result.getVolumes());
+        } finally {
+            util.shutdown();
+        }
+
+        // Each random file stays about 40 KiB, and a volume closes once the next file could push it past the cap.
+        List<Path> volumes = BackupVolumes.list(archive);
+        assertEquals(3, manifest.getVolumes());
+        assertEquals(List.of(archive, dir.resolve("backups/backup.zip.v002"), dir.resolve("backups/backup.zip.v003")),
+            volumes);
+        long total = 0;
+        int entries = 0;
+        for (Path volume : volumes) {
+            assertTrue(Files.size(volume) <= VOLUME_BYTES);
+            total += Files.size(volume);
+            try (ZipFile zip = new ZipFile(volume.toFile())) {
+                entries += zip.size();
+            }
+        }
+        assertEquals(FILES, entries);
+        assertEquals(total, BackupVolumes.totalSize(archive));
+        for (BackupManifest.Entry entry : manifest.getEntries()) {
+            try (ZipFile zip = new ZipFile(BackupVolumes.volumeFile(archive, entry.getVolume()).toFile())) {
+                assertTrue(zip.getEntry(entry.getPath()) != null);
+            }
+        }
+
+        BackupManager manager = new BackupManager(dir.resolve("game"), new BackupConfig());
+        try {
+            RestoreManager restore = new RestoreManager(manager, dir.resolve("game"));
+            Path target = dir.resolve("restored");
+            restore.decompressArchive(archive, manifest, target, newJob(), null);
+            for (Path file : CompressionUtil.listFiles(world)) {
+                assertArrayEquals(Files.readAllBytes(file), Files.readAllBytes(target.resolve(world.relativize(file))));
+            }
+
+            // A partial restore only opens the volumes holding the selected files.
+            BackupManifest.Entry last = manifest.getEntries().stream()
+                .filter(entry -> entry.getVolume() == 3).findFirst().orElseThrow();
+            Files.move(BackupVolumes.volumeFile(archive, 2), dir.resolve("moved"));
+            Path partial = dir.resolve("partial");
+            restore.decompressArchive(archive, manifest, partial, newJob(), last.getPath()::equals);
+            assertArrayEquals(Files.readAllBytes(world.resolve(last.getPath())),
+                Files.readAllBytes(partial.resolve(last.getPath())));
+            assertThrows(IOException.class, () -> restore.decompressArchive(archive, manifest, dir.resolve("all"),
+                newJob(), null));
+        } finally {
+            manager.shutdown();
+        }
+
+        assertTrue(BackupVolumes.delete(archive));
+        assertTrue(BackupVolumes.list(archive).isEmpty());
+    }
+
+    private Path writeWorld() throws IOException {
+        Path world = dir.resolve("world");
+        Random random = new Random(7);
+        for (int i = 0; i < FILES; i++) {
+            byte[] data = new byte[FILE_BYTES];
+            random.nextBytes(data);
+            Path file = world.resolve("region/r." + i + ".0.mca");
+            Files.createDirectories(file.getParent());
+            Files.write(file, data);
+        }
+        return world;
+    }
+
+    private static BackupJob<Void> newJob() {
+        return new BackupJob<>(1, BackupJobQueue.JobType.RESTORE, "restore", null, job -> null);
+    }
+}
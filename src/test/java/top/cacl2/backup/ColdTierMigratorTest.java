@@ -0,0 +1,88 @@
+package top.cacl2.backup;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import top.cacl2.config.ColdStorage;
+import top.cacl2.storage.LocalStorageBackend;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColdTierMigratorTest {
+    @TempDir
+    Path dir;
+
+    private Path hot;
+    private Path cold;
+    private Path backup;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        hot = Files.createDirectories(dir.resolve("backups"));
+        cold = Files.createDirectories(dir.resolve("cold"));
+        backup = hot.resolve("backup_2026-01-01_00-00-00.zip");
+        Files.write(backup, new byte[3000]);
+        Files.write(BackupVolumes.volumeFile(backup, 2), new byte[2000]);
+        new BackupManifest(backup.getFileName().toString(), 1, "FULL", "default", "default", null, 6).write(backup);
+    }
+
+    @Test
+    void uploadsMissingVolumesBeforeDeletingLocalCopy() throws IOException {
+        // An earlier run got as far as the first volume.
+        Files.copy(backup, cold.resolve(backup.getFileName()));
+
+        long freed = migrator(new LocalStorageBackend("cold", cold, false)).migrateForSpace(1, 0, Set.of());
+
+        assertEquals(5000, freed);
+        assertFalse(Files.exists(backup));
+        assertFalse(Files.exists(BackupVolumes.volumeFile(backup, 2)));
+        assertEquals(2000, Files.size(cold.resolve(BackupVolumes.volumeName(backup.getFileName().toString(), 2))));
+        assertTrue(Files.exists(cold.resolve(BackupManifest.sidecarOf(backup).getFileName())));
+    }
+
+    @Test
+    void reuploadsVolumeWithWrongSize() throws IOException {
+        Files.write(cold.resolve(backup.getFileName()), new byte[10]);
+
+        migrator(new LocalStorageBackend("cold", cold, false)).migrateForSpace(1, 0, Set.of());
+
+        assertArrayEquals(new byte[3000], Files.readAllBytes(cold.resolve(backup.getFileName())));
+        assertFalse(Files.exists(backup));
+    }
+
+    @Test
+    void keepsLocalCopyWhenAnUploadFails() throws IOException {
+        LocalStorageBackend failing = new LocalStorageBackend("cold", cold, false) {
+            @Override
+            public void uploadFile(Path file, String name) throws IOException {
+                if (BackupVolumes.isExtraVolume(name)) {
+                    throw new IOException("connection reset");
+                }
+                super.uploadFile(file, name);
+            }
+        };
+
+        assertEquals(0, migrator(failing).migrateForSpace(1, 0, Set.of()));
+        assertTrue(Files.exists(backup));
+        assertTrue(Files.exists(BackupVolumes.volumeFile(backup, 2)));
+        assertTrue(Files.exists(BackupManifest.sidecarOf(backup)));
+        assertFalse(Files.exists(cold.resolve(BackupManifest.sidecarOf(backup).getFileName())));
+
+        // The retry finds the first volume in place and only sends what is missing.
+        migrator(new LocalStorageBackend("cold", cold, false)).migrateForSpace(1, 0, Set.of());
+        assertFalse(Files.exists(backup));
+        assertTrue(Files.exists(cold.resolve(BackupVolumes.volumeName(backup.getFileName().toString(), 2))));
+    }
+
+    private ColdTierMigrator migrator(LocalStorageBackend target) {
+        return new ColdTierMigrator(hot, target, new ColdStorage(), null);
+    }
+}
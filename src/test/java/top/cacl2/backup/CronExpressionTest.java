@@ -0,0 +1,136 @@
+package top.cacl2.backup;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CronExpressionTest {
+    @Test
+    void stepFiresEveryQuarterHour() {
+        CronExpression cron = CronExpression.parse("*/15 * * * *");
+
+        assertEquals(at(2026, 10, 18, 10, 15), cron.next(at(2026, 10, 18, 10, 7)));
+        assertEquals(at(2026, 10, 18, 11, 0), cron.next(at(2026, 10, 18, 10, 45)));
+        assertEquals(at(2026, 10, 18, 10, 15), cron.next(LocalDateTime.of(2026, 10, 18, 10, 14, 59)));
+    }
+
+    @Test
+    void nextIsStrictlyAfterTheGivenTime() {
+        CronExpression cron = CronExpression.parse("*/15 * * * *");
+
+        assertEquals(at(2026, 10, 18, 10, 30), cron.next(at(2026, 10, 18, 10, 15)));
+        assertEquals(at(2026, 10, 18, 10, 30), cron.next(LocalDateTime.of(2026, 10, 18, 10, 15, 30)));
+    }
+
+    @Test
+    void rangesSkipToTheNextWorkingDay() {
+        CronExpression cron = CronExpression.parse("0 9-17 * * 1-5");
+
+        assertEquals(at(2026, 10, 16, 17, 0), cron.next(at(2026, 10, 16, 16, 30)));
+        assertEquals(at(2026, 10, 19, 9, 0), cron.next(at(2026, 10, 16, 17, 30)));
+    }
+
+    @Test
+    void rangeWithStepAndLists() {
+        CronExpression range = CronExpression.parse("10-40/10 3 * * *");
+        assertEquals(at(2026, 10, 18, 3, 10), range.next(at(2026, 10, 18, 0, 0)));
+        assertEquals(at(2026, 10, 18, 3, 40), range.next(at(2026, 10, 18, 3, 30)));
+        assertEquals(at(2026, 10, 19, 3, 10), range.next(at(2026, 10, 18, 3, 40)));
+
+        CronExpression list = CronExpression.parse("0,30 8,20 * * *");
+        assertEquals(at(2026, 10, 18, 8, 30), list.next(at(2026, 10, 18, 8, 0)));
+        assertEquals(at(2026, 10, 18, 20, 0), list.next(at(2026, 10, 18, 8, 30)));
+        assertEquals(at(2026, 10, 19, 8, 0), list.next(at(2026, 10, 18, 20, 30)));
+    }
+
+    @Test
+    void dayOfMonthAndDayOfWeekMatchEitherWhenBothAreRestricted() {
+        CronExpression cron = CronExpression.parse("0 0 13 * 5");
+
+        assertEquals(at(2026, 10, 2, 0, 0), cron.next(at(2026, 10, 1, 12, 0)));
+        assertEquals(at(2026, 10, 13, 0, 0), cron.next(at(2026, 10, 9, 12, 0)));
+        assertTrue(cron.matches(at(2026, 10, 13, 0, 0)));
+        assertTrue(cron.matches(at(2026, 10, 16, 0, 0)));
+        assertFalse(cron.matches(at(2026, 10, 14, 0, 0)));
+    }
+
+    @Test
+    void wildcardDayOfWeekOnlyUsesDayOfMonth() {
+        CronExpression cron = CronExpression.parse("0 0 13 * *");
+
+        assertEquals(at(2026, 11, 13, 0, 0), cron.next(at(2026, 10, 13, 0, 0)));
+        assertFalse(cron.matches(at(2026, 10, 16, 0, 0)));
+    }
+
+    @Test
+    void sundayIsZeroOrSeven() {
+        assertEquals(at(2026, 10, 18, 6, 0), CronExpression.parse("0 6 * * 0").next(at(2026, 10, 16, 0, 0)));
+        assertEquals(at(2026, 10, 18, 6, 0), CronExpression.parse("0 6 * * 7").next(at(2026, 10, 16, 0, 0)));
+    }
+
+    @Test
+    void macros() {
+        LocalDateTime now = at(2026, 10, 18, 15, 20);
+
+        assertEquals(at(2026, 10, 19, 0, 0), CronExpression.parse("@daily").next(now));
+        assertEquals(at(2026, 10, 19, 0, 0), CronExpression.parse("@midnight").next(now));
+        assertEquals(at(2026, 10, 18, 16, 0), CronExpression.parse("@hourly").next(now));
+        assertEquals(at(2026, 10, 25, 0, 0), CronExpression.parse("@weekly").next(now));
+        assertEquals(at(2026, 11, 1, 0, 0), CronExpression.parse(" @monthly ").next(now));
+        assertEquals("@daily", CronExpression.parse("@daily").toString());
+    }
+
+    @Test
+    void monthAndYearBoundaries() {
+        CronExpression lastDay = CronExpression.parse("0 0 31 * *");
+        assertEquals(at(2026, 5, 31, 0, 0), lastDay.next(at(2026, 4, 1, 0, 0)));
+        assertEquals(at(2027, 1, 31, 0, 0), lastDay.next(at(2026, 12, 31, 0, 0)));
+
+        CronExpression newYear = CronExpression.parse("0 0 1 1 *");
+        assertEquals(at(2027, 1, 1, 0, 0), newYear.next(LocalDateTime.of(2026, 12, 31, 23, 59, 59)));
+
+        CronExpression winter = CronExpression.parse("30 2 * 12,1 *");
+        assertEquals(at(2026, 12, 1, 2, 30), winter.next(at(2026, 10, 18, 0, 0)));
+        assertEquals(at(2027, 1, 1, 2, 30), winter.next(at(2026, 12, 31, 2, 30)));
+    }
+
+    @Test
+    void leapDay() {
+        CronExpression cron = CronExpression.parse("0 12 29 2 *");
+
+        assertEquals(at(2028, 2, 29, 12, 0), cron.next(at(2025, 3, 1, 0, 0)));
+        assertEquals(at(2032, 2, 29, 12, 0), cron.next(at(2028, 2, 29, 12, 0)));
+    }
+
+    @Test
+    void impossibleDateNeverFires() {
+        CronExpression cron = CronExpression.parse("0 0 30 2 *");
+
+        assertThrows(IllegalStateException.class, () -> cron.next(at(2026, 1, 1, 0, 0)));
+    }
+
+    @Test
+    void rejectsMalformedExpressions() {
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.parse(null));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.parse("* * * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.parse("* * * * * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.parse("60 * * * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.parse("* 24 * * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.parse("* * 0 * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.parse("* * * 13 *"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.parse("* * * * 8"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.parse("30-10 * * * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.parse("*/0 * * * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.parse("abc * * * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.parse("@yearly"));
+    }
+
+    private static LocalDateTime at(int year, int month, int day, int hour, int minute) {
+        return LocalDateTime.of(year, month, day, hour, minute);
+    }
+}
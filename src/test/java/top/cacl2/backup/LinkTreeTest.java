@@ -0,0 +1,133 @@
+package top.cacl2.backup;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class LinkTreeTest {
+    private static final long MTIME = 1_750_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private Path world;
+    private Path backups;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        world = Files.createDirectories(dir.resolve("world"));
+        backups = Files.createDirectories(dir.resolve("backups"));
+        write("level.dat", 1000, 1);
+        write("region/r.0.0.mca", 2000, 2);
+        write("data/raids.dat", 3000, 3);
+    }
+
+    @Test
+    void unchangedFilesAreLinkedAndTheRestCopied() throws IOException {
+        Path first = backups.resolve("first" + LinkTree.SUFFIX);
+        LinkTree.Result initial = new LinkTree(world, null, Map.of(), false).create(files(), first, 2, newJob());
+        assertEquals(3, initial.getCopiedFiles());
+        assertEquals(0, initial.getLinkedFiles());
+        assertEquals(6000, initial.getCopiedBytes());
+
+        write("region/r.0.0.mca", 2500, 4);
+        // The previous tree lost this file, so it is copied although the world copy is unchanged.
+        Files.delete(first.resolve("data/raids.dat"));
+
+        LinkTree next = new LinkTree(world, first, byName(initial), false);
+        assertEquals(2500, next.estimateCopyBytes(files()));
+        Path second = backups.resolve("second" + LinkTree.SUFFIX);
+        LinkTree.Result result = next.create(files(), second, 2, newJob());
+
+        assertEquals(1, result.getLinkedFiles());
+        assertEquals(2, result.getCopiedFiles());
+        assertEquals(5500, result.getCopiedBytes());
+        assertEquals(6500, result.getTotalBytes());
+        assertEquals(2, nlink(second.resolve("level.dat")));
+        assertEquals(1, nlink(second.resolve("data/raids.dat")));
+        for (Path file : files()) {
+            Path copy = second.resolve(world.relativize(file).toString());
+            assertArrayEquals(Files.readAllBytes(file), Files.readAllBytes(copy));
+            assertEquals(Files.getLastModifiedTime(file), Files.getLastModifiedTime(copy));
+        }
+        assertFalse(Files.exists(backups.resolve("second" + LinkTree.SUFFIX + DurableOutputStream.PARTIAL_SUFFIX)));
+    }
+
+    @Test
+    void hashCheckCopiesFilesThatChangedWithoutNewSizeOrTime() throws IOException {
+        Path first = backups.resolve("first" + LinkTree.SUFFIX);
+        LinkTree.Result initial = new LinkTree(world, null, Map.of(), true).create(files(), first, 1, newJob());
+
+        // Same size and mtime as before, only the content differs.
+        write("level.dat", 1000, 9);
+        Files.setLastModifiedTime(world.resolve("level.dat"), FileTime.fromMillis(MTIME + 1000));
+
+        LinkTree.Result result = new LinkTree(world, first, byName(initial), true)
+            .create(files(), backups.resolve("second" + LinkTree.SUFFIX), 1, newJob());
+        assertEquals(2, result.getLinkedFiles());
+        assertEquals(1, result.getCopiedFiles());
+        assertEquals(1000, result.getCopiedBytes());
+
+        LinkTree.Result unchecked = new LinkTree(world, first, byName(initial), false)
+            .create(files(), backups.resolve("third" + LinkTree.SUFFIX), 1, newJob());
+        assertEquals(3, unchecked.getLinkedFiles());
+    }
+
+    @Test
+    void deleteOnlyCountsBytesNoOtherTreeStillLinks() throws IOException {
+        Path first = backups.resolve("first" + LinkTree.SUFFIX);
+        LinkTree.Result initial = new LinkTree(world, null, Map.of(), false).create(files(), first, 1, newJob());
+        write("region/r.0.0.mca", 2500, 4);
+        Path second = backups.resolve("second" + LinkTree.SUFFIX);
+        new LinkTree(world, first, byName(initial), false).create(files(), second, 1, newJob());
+
+        assertEquals(2000, LinkTree.delete(first, 1));
+        assertFalse(Files.exists(first));
+        assertEquals(1, nlink(second.resolve("level.dat")));
+        assertEquals(6500, LinkTree.delete(second, LinkTree.DELETE_THREADS));
+        assertEquals(-1, LinkTree.delete(second, 1));
+    }
+
+    private void write(String name, int size, int fill) throws IOException {
+        Path file = world.resolve(name);
+        Files.createDirectories(file.getParent());
+        byte[] data = new byte[size];
+        Arrays.fill(data, (byte) fill);
+        Files.write(file, data);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(MTIME + fill * 1000L));
+    }
+
+    private List<Path> files() throws IOException {
+        return CompressionUtil.listFiles(world);
+    }
+
+    private static Map<String, BackupManifest.Entry> byName(LinkTree.Result result) {
+        Map<String, BackupManifest.Entry> entries = new HashMap<>();
+        for (BackupManifest.Entry entry : result.getEntries()) {
+            entries.put(entry.getPath(), entry);
+        }
+        return entries;
+    }
+
+    private static int nlink(Path file) throws IOException {
+        return ((Number) Files.getAttribute(file, "unix:nlink", LinkOption.NOFOLLOW_LINKS)).intValue();
+    }
+
+    private static BackupJob<Void> newJob() {
+        return new BackupJob<>(1, BackupJobQueue.JobType.MANUAL, "tree", null, job -> null);
+    }
+}
@@ -0,0 +1,109 @@
+package top.cacl2.backup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import top.cacl2.config.FilterRule;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PathFilterTest {
+    @TempDir
+    Path world;
+
+    @Test
+    void firstMatchingRuleWins() throws IOException {
+        files("logs/keep.log", "logs/latest.log", "level.dat");
+
+        assertEquals(Set.of("logs/keep.log", "level.dat"),
+            walk(filter(include("logs/keep.log"), exclude("logs/*.log")), null));
+        assertEquals(Set.of("level.dat"), walk(filter(exclude("logs/*.log"), include("logs/keep.log")), null));
+    }
+
+    @Test
+    void excludedDirectoryIsPrunedWithoutAnEarlierIncludeInside() throws IOException {
+        files("cache/a.bin", "cache/deep/b.bin", "cache/keep/c.bin", "level.dat");
+
+        PathFilter pruned = filter(exclude("cache/**"), include("cache/keep/*"));
+        PathFilter.Stats stats = pruned.newStats();
+        assertEquals(Set.of("level.dat"), walk(pruned, stats));
+        assertEquals(1, stats.getPrunedDirectories());
+        assertEquals(0, stats.getExcludedFiles());
+
+        PathFilter descended = filter(include("cache/keep/*"), exclude("cache/**"));
+        stats = descended.newStats();
+        assertEquals(Set.of("cache/keep/c.bin", "level.dat"), walk(descended, stats));
+        assertEquals(1, stats.getPrunedDirectories());
+        assertEquals(1, stats.getExcludedFiles());
+    }
+
+    @Test
+    void doubleStarSlashAlsoMatchesAtTheRoot() throws IOException {
+        files("a.tmp", "x/b.tmp", "x/y/c.tmp", "x/y/c.dat");
+
+        assertEquals(Set.of("x/y/c.dat"), walk(filter(exclude("**/*.tmp")), null));
+    }
+
+    @Test
+    void bracesAndNegatedClasses() throws IOException {
+        files("a.log", "a.tmp", "a.txt", "region/r.0.mca", "region/r.1.mca", "region/r.2.mca");
+
+        assertEquals(Set.of("a.txt", "region/r.0.mca"),
+            walk(filter(exclude("*.{log,tmp}"), exclude("region/r.[!0].mca")), null));
+    }
+
+    @Test
+    void unclosedGroupsAreRejected() {
+        assertTrue(filter(exclude("*.{log,tmp")).isEmpty());
+        assertTrue(filter(exclude("region/r.[0-9.mca")).isEmpty());
+        assertEquals(1, filter(exclude("*.{log,tmp"), exclude("*.bak")).getRuleCount());
+        assertFalse(filter(exclude("odd}.txt")).isEmpty());
+    }
+
+    @Test
+    void literalPrefixOnlyAppliesUnderItsDirectory() throws IOException {
+        files("world/region/r.0.mca", "world/region/sub/r.1.mca", "other/region/r.2.mca", "region/r.3.mca");
+
+        assertEquals(Set.of("world/region/sub/r.1.mca", "other/region/r.2.mca", "region/r.3.mca"),
+            walk(filter(exclude("world/region/*.mca")), null));
+        assertEquals(Set.of("world/region/r.0.mca", "world/region/sub/r.1.mca", "region/r.3.mca"),
+            walk(filter(exclude("/other/**")), null));
+    }
+
+    private void files(String... paths) throws IOException {
+        for (String path : paths) {
+            Path file = world.resolve(path);
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, path);
+        }
+    }
+
+    private Set<String> walk(PathFilter filter, PathFilter.Stats stats) throws IOException {
+        Set<String> kept = new TreeSet<>();
+        for (Path file : filter.walk(world, world, List.of(), stats)) {
+            kept.add(world.relativize(file).toString().replace('\\', '/'));
+        }
+        return kept;
+    }
+
+    private static PathFilter filter(FilterRule... rules) {
+        return PathFilter.compile(new ArrayList<>(List.of(rules)));
+    }
+
+    private static FilterRule include(String glob) {
+        return new FilterRule(glob, FilterRule.Action.INCLUDE, glob);
+    }
+
+    private static FilterRule exclude(String glob) {
+        return new FilterRule(glob, FilterRule.Action.EXCLUDE, glob);
+    }
+}
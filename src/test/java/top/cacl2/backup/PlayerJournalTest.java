@@ -0,0 +1,155 @@
+package top.cacl2.backup;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlayerJournalTest {
+    private static final UUID PLAYER = UUID.fromString("069a79f4-44e9-4726-a5be-fca90e38aaf5");
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @TempDir
+    Path dir;
+
+    private final AtomicLong clock = new AtomicLong(1_750_000_000_000L);
+    private Path world;
+    private Path backups;
+    private PlayerJournal journal;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        world = Files.createDirectories(dir.resolve("world"));
+        backups = Files.createDirectories(dir.resolve("backups"));
+        journal = new PlayerJournal(backups, clock::get);
+    }
+
+    @AfterEach
+    void tearDown() {
+        journal.shutdown();
+    }
+
+    @Test
+    void capturedVersionsSurviveReloadAndRestore() throws Exception {
+        long first = clock.get();
+        save("playerdata/" + PLAYER + ".dat", "inventory v1");
+        save("advancements/" + PLAYER + ".json", "{\"story/root\":true}");
+        capture();
+        clock.addAndGet(HOUR);
+        save("playerdata/" + PLAYER + ".dat", "inventory v2 with more items");
+        capture();
+
+        assertEquals(List.of(first + HOUR, first), journal.getHistory(PLAYER));
+        assertEquals(3, journal.getVersionCount());
+        assertEquals(PLAYER, journal.findPlayer("notch"));
+        assertEquals("Notch", journal.getName(PLAYER));
+
+        assertEquals(2, journal.restore(PLAYER, first + HOUR / 2, world));
+        assertEquals("inventory v1", Files.readString(world.resolve("playerdata/" + PLAYER + ".dat")));
+        assertEquals("{\"story/root\":true}", Files.readString(world.resolve("advancements/" + PLAYER + ".json")));
+        assertFalse(Files.exists(world.resolve("playerdata/" + PLAYER + ".dat.restore")));
+    }
+
+    @Test
+    void pendingRestoreWaitsUntilThePlayerIsOffline() throws Exception {
+        long first = clock.get();
+        save("playerdata/" + PLAYER + ".dat", "inventory v1");
+        capture();
+        save("playerdata/" + PLAYER + ".dat", "inventory lost");
+
+        journal.requestRestore(PLAYER, first);
+        journal.applyPendingRestores(world, player -> true);
+        assertTrue(journal.hasPendingRestores());
+        assertEquals("inventory lost", Files.readString(world.resolve("playerdata/" + PLAYER + ".dat")));
+
+        // The server thread calls this every tick; the files are staged in the background and swapped in here.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (journal.hasPendingRestores() && System.nanoTime() < deadline) {
+            journal.applyPendingRestores(world, player -> false);
+            Thread.sleep(1);
+        }
+        assertFalse(journal.hasPendingRestores());
+        assertEquals("inventory v1", Files.readString(world.resolve("playerdata/" + PLAYER + ".dat")));
+    }
+
+    @Test
+    void partialTailRecordIsTruncatedOnLoad() throws Exception {
+        long first = clock.get();
+        save("playerdata/" + PLAYER + ".dat", "inventory v1");
+        capture();
+        long firstRecordEnd = journal.getSizeBytes();
+        clock.addAndGet(HOUR);
+        save("playerdata/" + PLAYER + ".dat", "inventory v2 with more items");
+        capture();
+        journal.shutdown();
+
+        try (FileChannel channel = FileChannel.open(backups.resolve(".player_journal"), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+        journal = new PlayerJournal(backups, clock::get);
+        assertEquals(List.of(first), journal.getHistory(PLAYER));
+        assertEquals(firstRecordEnd, journal.getSizeBytes());
+
+        // Records appended after the repair are readable again.
+        clock.addAndGet(HOUR);
+        save("playerdata/" + PLAYER + ".dat", "inventory v3");
+        capture();
+        assertEquals(List.of(first + 2 * HOUR, first), journal.getHistory(PLAYER));
+    }
+
+    @Test
+    void compactionKeepsTheNewestVersions() throws Exception {
+        journal.configure(1024 * 1024, 0);
+        long start = clock.get();
+        Random random = new Random(3);
+        byte[][] versions = new byte[3][400 * 1024];
+        for (int i = 0; i < versions.length; i++) {
+            random.nextBytes(versions[i]);
+            Path file = world.resolve("playerdata/" + PLAYER + ".dat");
+            Files.createDirectories(file.getParent());
+            Files.write(file, versions[i]);
+            capture();
+            clock.addAndGet(HOUR);
+        }
+
+        // The first version is past the ten minute minimum retention and is not needed to restore inside it.
+        assertEquals(List.of(start + 2 * HOUR, start + HOUR), journal.getHistory(PLAYER));
+        assertTrue(journal.getSizeBytes() < 1024 * 1024);
+        assertEquals(0, journal.restore(PLAYER, start + HOUR / 2, world));
+        assertEquals(1, journal.restore(PLAYER, start + HOUR, world));
+        assertArrayEquals(versions[1], Files.readAllBytes(world.resolve("playerdata/" + PLAYER + ".dat")));
+        assertEquals(1, journal.restore(PLAYER, start + 5 * HOUR, world));
+        assertArrayEquals(versions[2], Files.readAllBytes(world.resolve("playerdata/" + PLAYER + ".dat")));
+    }
+
+    private void save(String path, String content) throws IOException {
+        Path file = world.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+
+    // Waits for the journal thread by reopening the journal, which also reloads it from disk.
+    private void capture() {
+        journal.capture(world, Map.of(PLAYER, "Notch"));
+        journal.shutdown();
+        journal = new PlayerJournal(backups, clock::get);
+        journal.configure(1024 * 1024, 0);
+    }
+}
@@ -0,0 +1,55 @@
+package top.cacl2.backup;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+    private static final long TICK = 60_000;
+
+    @Test
+    void firesOnlyOnceTheDeadlineTickIsReached() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 60, 0);
+        wheel.schedule("a", 5 * TICK);
+
+        assertTrue(wheel.advance(4 * TICK + 59_999).isEmpty());
+        assertEquals(List.of("a"), wheel.advance(5 * TICK));
+        assertEquals(0, wheel.size());
+        assertTrue(wheel.advance(6 * TICK).isEmpty());
+    }
+
+    @Test
+    void deadlinesBeyondOneRevolutionWaitForTheirTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 60, 0);
+        wheel.schedule("later", 65 * TICK);
+
+        assertTrue(wheel.advance(5 * TICK).isEmpty());
+        assertTrue(wheel.advance(64 * TICK).isEmpty());
+        assertEquals(List.of("later"), wheel.advance(65 * TICK));
+    }
+
+    @Test
+    void largeJumpCollectsEverythingDue() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 60, 0);
+        wheel.schedule("a", 10 * TICK);
+        wheel.schedule("b", 70 * TICK);
+        wheel.schedule("c", 500 * TICK);
+
+        List<String> due = wheel.advance(200 * TICK);
+        assertEquals(2, due.size());
+        assertTrue(due.containsAll(List.of("a", "b")));
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    void pastDeadlinesFireOnTheNextTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 60, 10 * TICK);
+        wheel.schedule("late", 3 * TICK);
+
+        assertTrue(wheel.advance(10 * TICK + 1).isEmpty());
+        assertEquals(List.of("late"), wheel.advance(11 * TICK));
+    }
+}
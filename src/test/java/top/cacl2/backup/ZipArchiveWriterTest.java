@@ -0,0 +1,345 @@
+package top.cacl2.backup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ZipArchiveWriterTest {
+    private static final long MTIME = LocalDateTime.of(2024, 5, 17, 13, 45, 31)
+        .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    private static final long FOUR_GIB = 1L << 32;
+    private static final String UNICODE_NAME = "存档/玩家.dat";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsThroughZipFileAndZipInputStream() throws Exception {
+        Map<String, byte[]> contents = sampleContents();
+        Path archive = write(contents, false);
+
+        assertReadable(archive, contents);
+    }
+
+    @Test
+    void forcedZip64IsReadable() throws Exception {
+        Map<String, byte[]> contents = sampleContents();
+        Path archive = write(contents, true);
+
+        assertReadable(archive, contents);
+    }
+
+    @Test
+    void timestampExtraKeepsExactAndPre1980Times() throws Exception {
+        long pre1980 = LocalDateTime.of(1975, 6, 1, 8, 30, 15).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long preEpoch = LocalDateTime.of(1965, 1, 2, 3, 4, 5).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        Path archive = dir.resolve("times.zip");
+        try (OutputStream out = Files.newOutputStream(archive)) {
+            ZipArchiveWriter writer = new ZipArchiveWriter(out);
+            writeEntry(writer, "odd-second", MTIME, "a".getBytes(StandardCharsets.UTF_8));
+            writeEntry(writer, "pre-1980", pre1980, "b".getBytes(StandardCharsets.UTF_8));
+            writeEntry(writer, "pre-epoch", preEpoch, "c".getBytes(StandardCharsets.UTF_8));
+            writer.finish();
+        }
+
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            assertEquals(MTIME, zip.getEntry("odd-second").getLastModifiedTime().toMillis());
+            assertEquals(pre1980, zip.getEntry("pre-1980").getLastModifiedTime().toMillis());
+            assertEquals(preEpoch, zip.getEntry("pre-epoch").getLastModifiedTime().toMillis());
+        }
+        try (ZipInputStream zis = new ZipInputStream(Files.newInputStream(archive))) {
+            assertEquals(MTIME, zis.getNextEntry().getLastModifiedTime().toMillis());
+            assertEquals(pre1980, zis.getNextEntry().getLastModifiedTime().toMillis());
+        }
+    }
+
+    @Test
+    void moreThan65535EntriesUseZip64EndRecord() throws Exception {
+        int count = 70_000;
+        byte[] data = "x".getBytes(StandardCharsets.UTF_8);
+        byte[] deflated = deflate(data);
+        long crc = crc(data);
+        Path archive = dir.resolve("many.zip");
+        try (OutputStream out = Files.newOutputStream(archive)) {
+            ZipArchiveWriter writer = new ZipArchiveWriter(out);
+            for (int i = 0; i < count; i++) {
+                writer.writeDeflated("f/" + i, MTIME, crc, data.length, deflated, 0, deflated.length);
+            }
+            writer.finish();
+            assertEquals(count, writer.getEntryCount());
+        }
+
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            assertEquals(count, zip.size());
+            assertArrayEquals(data, zip.getInputStream(zip.getEntry("f/" + (count - 1))).readAllBytes());
+        }
+        int read = 0;
+        try (ZipInputStream zis = new ZipInputStream(Files.newInputStream(archive))) {
+            while (zis.getNextEntry() != null) {
+                read++;
+            }
+        }
+        assertEquals(count, read);
+    }
+
+    // The filler entry is written as a hole, so the archive passes 4 GiB without using that much disk.
+    @Test
+    void entriesAndOffsetsBeyond4GiB() throws Exception {
+        long fillerSize = FOUR_GIB + 4096;
+        byte[] tail = "after the filler".getBytes(StandardCharsets.UTF_8);
+        byte[] deflated = deflate(tail);
+        Path archive = dir.resolve("large.zip");
+        long written;
+        try (SparseOutputStream out = new SparseOutputStream(archive)) {
+            ZipArchiveWriter writer = new ZipArchiveWriter(out);
+            writer.writeDeflated("filler", MTIME, 0, fillerSize, fillerSize, new ZeroInputStream());
+            writer.writeDeflated("tail", MTIME, crc(tail), tail.length, deflated, 0, deflated.length);
+            writer.finish();
+            written = writer.getBytesWritten();
+        }
+
+        assertEquals(written, Files.size(archive));
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            assertEquals(2, zip.size());
+            ZipEntry filler = zip.getEntry("filler");
+            assertEquals(fillerSize, filler.getSize());
+            assertEquals(fillerSize, filler.getCompressedSize());
+            ZipEntry entry = zip.getEntry("tail");
+            assertNotNull(entry);
+            assertArrayEquals(tail, zip.getInputStream(entry).readAllBytes());
+            assertEquals(MTIME, entry.getLastModifiedTime().toMillis());
+        }
+    }
+
+    @Test
+    void decompressArchiveRestoresFiles() throws Exception {
+        Map<String, byte[]> contents = sampleContents();
+        // Test machines running with a POSIX locale cannot create non-ASCII file names.
+        contents.remove(UNICODE_NAME);
+        Path archive = write(contents, true);
+        Path target = dir.resolve("restored");
+
+        CompressionUtil util = new CompressionUtil(6, 1);
+        try {
+            util.decompressArchive(archive, target);
+        } finally {
+            util.shutdown();
+        }
+
+        for (Map.Entry<String, byte[]> entry : contents.entrySet()) {
+            assertArrayEquals(entry.getValue(), Files.readAllBytes(target.resolve(entry.getKey())));
+        }
+    }
+
+    @Test
+    void recompressKeepsArchiveWhenThereIsNoGain() throws Exception {
+        Path world = dir.resolve("world");
+        Files.createDirectories(world.resolve("region"));
+        byte[] random = new byte[256 * 1024];
+        new Random(42).nextBytes(random);
+        Files.write(world.resolve("region/r.0.0.mca"), random);
+        Files.writeString(world.resolve("level.dat"), "level ".repeat(1000));
+
+        CompressionUtil util = new CompressionUtil(6, 2);
+        try {
+            Path archive = dir.resolve("backup.zip");
+            BackupManifest manifest = compress(util, world, archive, 6);
+            byte[] before = Files.readAllBytes(archive);
+
+            assertEquals(-1, util.recompress(archive, manifest, 6, () -> false, newJob()));
+            assertArrayEquals(before, Files.readAllBytes(archive));
+            try (var files = Files.list(dir)) {
+                assertTrue(files.noneMatch(path -> path.getFileName().toString().endsWith(DurableOutputStream.PARTIAL_SUFFIX)));
+            }
+        } finally {
+            util.shutdown();
+        }
+    }
+
+    @Test
+    void recompressPublishesSmallerArchive() throws Exception {
+        Path world = dir.resolve("world");
+        Files.createDirectories(world);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            text.append("chunk ").append(i % 97).append(" section ").append(i % 13).append('\n');
+        }
+        Files.writeString(world.resolve("level.dat"), text);
+
+        CompressionUtil util = new CompressionUtil(1, 2);
+        try {
+            Path archive = dir.resolve("backup.zip");
+            BackupManifest manifest = compress(util, world, archive, 1);
+            long before = Files.size(archive);
+
+            long after = util.recompress(archive, manifest, 9, () -> false, newJob());
+            assertTrue(after > 0 && after < before);
+            assertEquals(after, Files.size(archive));
+            try (ZipFile zip = new ZipFile(archive.toFile())) {
+                assertEquals(text.toString(), new String(zip.getInputStream(zip.getEntry("level.dat")).readAllBytes(),
+                    StandardCharsets.UTF_8));
+            }
+        } finally {
+            util.shutdown();
+        }
+    }
+
+    private Path write(Map<String, byte[]> contents, boolean forceZip64) throws IOException {
+        Path archive = dir.resolve(forceZip64 ? "zip64.zip" : "plain.zip");
+        try (OutputStream out = Files.newOutputStream(archive)) {
+            ZipArchiveWriter writer = new ZipArchiveWriter(out, forceZip64);
+            for (Map.Entry<String, byte[]> entry : contents.entrySet()) {
+                writeEntry(writer, entry.getKey(), MTIME, entry.getValue());
+            }
+            writer.finish();
+            assertEquals(Files.size(archive), writer.getBytesWritten());
+        }
+        return archive;
+    }
+
+    private static void assertReadable(Path archive, Map<String, byte[]> contents) throws IOException {
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            assertEquals(contents.size(), zip.size());
+            for (Map.Entry<String, byte[]> expected : contents.entrySet()) {
+                ZipEntry entry = zip.getEntry(expected.getKey());
+                assertNotNull(entry, expected.getKey());
+                assertEquals(expected.getValue().length, entry.getSize());
+                assertEquals(crc(expected.getValue()), entry.getCrc());
+                assertEquals(MTIME, entry.getLastModifiedTime().toMillis());
+                assertArrayEquals(expected.getValue(), zip.getInputStream(entry).readAllBytes());
+            }
+        }
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream zis = new ZipInputStream(Files.newInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                names.add(entry.getName());
+                assertArrayEquals(contents.get(entry.getName()), zis.readAllBytes());
+            }
+        }
+        assertEquals(new ArrayList<>(contents.keySet()), names);
+    }
+
+    private static Map<String, byte[]> sampleContents() {
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        contents.put("level.dat", "level data ".repeat(200).getBytes(StandardCharsets.UTF_8));
+        contents.put("region/r.0.0.mca", new byte[0]);
+        contents.put(UNICODE_NAME, "玩家数据".getBytes(StandardCharsets.UTF_8));
+        byte[] random = new byte[100_000];
+        new Random(7).nextBytes(random);
+        contents.put("region/r.1.-1.mca", random);
+        return contents;
+    }
+
+    private static void writeEntry(ZipArchiveWriter writer, String name, long mtime, byte[] data) throws IOException {
+        byte[] deflated = deflate(data);
+        writer.writeDeflated(name, mtime, crc(data), data.length, deflated, 0, deflated.length);
+    }
+
+    private static BackupManifest compress(CompressionUtil util, Path world, Path archive, int level) throws Exception {
+        List<Path> files = CompressionUtil.listFiles(world);
+        CompressionUtil.CompressionResult result = util.compressFiles(world, files, archive, null, level, 2);
+        BackupManifest manifest = new BackupManifest(archive.getFileName().toString(), System.currentTimeMillis(),
+            "FULL", "default", "default", null, level);
+        result.getEntries().forEach(manifest::addEntry);
+        return manifest;
+    }
+
+    private static BackupJob<Void> newJob() {
+        return new BackupJob<>(1, BackupJobQueue.JobType.MAINTENANCE, "recompress", null, job -> null);
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            int len = deflater.deflate(buffer);
+            out.write(buffer, 0, len);
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    private static long crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    private static class ZeroInputStream extends InputStream {
+        @Override
+        public int read() {
+            return 0;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            Arrays.fill(b, off, off + len, (byte) 0);
+            return len;
+        }
+    }
+
+    // Skips runs of zeros instead of writing them, leaving holes in the file.
+    private static class SparseOutputStream extends OutputStream {
+        private static final byte[] ZEROS = new byte[65536];
+
+        private final FileChannel channel;
+
+        SparseOutputStream(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len <= ZEROS.length && Arrays.equals(b, off, off + len, ZEROS, 0, len)) {
+                channel.position(channel.position() + len);
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package top.cacl2.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BackupConfigTest {
+    @Test
+    void schedulesWithoutNameOrWithRepeatedNameAreIgnored() {
+        List<BackupSchedule> schedules = new ArrayList<>();
+        schedules.add(new BackupSchedule("hourly", "0 * * * *", "default"));
+        schedules.add(new BackupSchedule("", "*/5 * * * *", "default"));
+        schedules.add(new BackupSchedule("  ", "*/10 * * * *", "default"));
+        schedules.add(new BackupSchedule(null, "*/20 * * * *", "default"));
+        schedules.add(new BackupSchedule("nightly", "@daily", "default"));
+        schedules.add(new BackupSchedule("hourly", "30 * * * *", "default"));
+        schedules.add(null);
+        BackupConfig config = new BackupConfig();
+        config.setSchedules(schedules);
+
+        List<BackupSchedule> valid = config.getSchedules();
+        assertEquals(2, valid.size());
+        assertEquals("hourly", valid.get(0).getName());
+        assertEquals("0 * * * *", valid.get(0).getCron());
+        assertEquals("nightly", valid.get(1).getName());
+    }
+
+    @Test
+    void missingScheduleListIsEmpty() {
+        BackupConfig config = new BackupConfig();
+        config.setSchedules(null);
+
+        assertTrue(config.getSchedules().isEmpty());
+    }
+}
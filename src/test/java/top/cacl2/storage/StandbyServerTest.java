@@ -0,0 +1,193 @@
+package top.cacl2.storage;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import top.cacl2.backup.BackupManifest;
+import top.cacl2.config.StorageTarget;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StandbyServerTest {
+    private static final String TOKEN = "secret";
+
+    @TempDir
+    Path dir;
+
+    private Path received;
+    private Path local;
+    private StandbyServer server;
+    private StandbyStorageBackend backend;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        received = dir.resolve("standby");
+        local = Files.createDirectories(dir.resolve("backups"));
+        server = new StandbyServer(received, "127.0.0.1", 0, TOKEN);
+        StorageTarget target = new Gson().fromJson("{\"name\":\"standby\",\"type\":\"standby\",\"host\":\"127.0.0.1\","
+            + "\"port\":" + server.getPort() + ",\"token\":\"" + TOKEN + "\",\"maxRetries\":2}", StorageTarget.class);
+        backend = new StandbyStorageBackend(target, local);
+    }
+
+    @AfterEach
+    void tearDown() {
+        backend.close();
+        server.close();
+    }
+
+    @Test
+    void openResumesFromThePartialFile() throws IOException {
+        byte[] data = random(5000);
+        Files.write(received.resolve("backup.zip" + StandbyProtocol.PART_SUFFIX), Arrays.copyOf(data, 1200));
+
+        try (Socket socket = connect()) {
+            DataOutputStream out = output(socket);
+            DataInputStream in = input(socket);
+            handshake(out, in);
+            out.writeByte(StandbyProtocol.OPEN);
+            out.writeUTF("backup.zip");
+            out.writeLong(StandbyProtocol.RESUME);
+            out.flush();
+            StandbyProtocol.expectOk(in);
+            assertEquals(1200, in.readLong());
+
+            out.writeByte(StandbyProtocol.DATA);
+            out.writeInt(data.length - 1200);
+            out.write(data, 1200, data.length - 1200);
+            out.writeByte(StandbyProtocol.COMMIT);
+            out.writeLong(data.length);
+            out.writeLong(crc(data));
+            out.flush();
+            StandbyProtocol.expectOk(in);
+        }
+
+        assertArrayEquals(data, Files.readAllBytes(received.resolve("backup.zip")));
+        assertFalse(Files.exists(received.resolve("backup.zip" + StandbyProtocol.PART_SUFFIX)));
+    }
+
+    @Test
+    void stalePartialFileFailsTheChecksumAndIsSentAgain() throws IOException {
+        byte[] data = random(700 * 1024);
+        Path file = local.resolve("backup.zip");
+        Files.write(file, data);
+        // Same length as a real prefix, but left over from a different archive.
+        Files.write(received.resolve("backup.zip" + StandbyProtocol.PART_SUFFIX), new byte[300 * 1024]);
+
+        backend.uploadFile(file, "backup.zip");
+
+        assertArrayEquals(data, Files.readAllBytes(received.resolve("backup.zip")));
+        assertFalse(Files.exists(received.resolve("backup.zip" + StandbyProtocol.PART_SUFFIX)));
+        try (var in = backend.openRead("backup.zip")) {
+            assertArrayEquals(data, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void namesOutsideTheDirectoryAreRefused() throws IOException {
+        try (Socket socket = connect()) {
+            DataOutputStream out = output(socket);
+            DataInputStream in = input(socket);
+            handshake(out, in);
+            for (String name : new String[] {"../escape.zip", "nested/escape.zip", "/tmp/escape.zip"}) {
+                out.writeByte(StandbyProtocol.OPEN);
+                out.writeUTF(name);
+                out.writeLong(0);
+                out.flush();
+                IOException refused = assertThrows(IOException.class, () -> StandbyProtocol.expectOk(in));
+                assertTrue(refused.getMessage().contains("Invalid object name"), refused.getMessage());
+            }
+        }
+        assertFalse(Files.exists(dir.resolve("escape.zip" + StandbyProtocol.PART_SUFFIX)));
+        assertFalse(Files.exists(received.resolve("nested")));
+
+        Files.write(dir.resolve("outside.zip"), new byte[10]);
+        assertThrows(IOException.class, () -> backend.delete("../outside.zip"));
+        assertTrue(Files.exists(dir.resolve("outside.zip")));
+    }
+
+    @Test
+    void backupThatDoesNotMatchItsManifestIsRemoved() throws IOException {
+        byte[] level = random(4096);
+        Path good = writeBackup("backup_good.zip", level, level.length);
+        Path bad = writeBackup("backup_bad.zip", level, level.length - 1);
+
+        backend.uploadFile(good, good.getFileName().toString());
+        backend.uploadFile(BackupManifest.sidecarOf(good), BackupManifest.sidecarOf(good).getFileName().toString());
+        assertTrue(Files.exists(received.resolve("backup_good.zip")));
+        assertTrue(Files.exists(BackupManifest.sidecarOf(received.resolve("backup_good.zip"))));
+
+        backend.uploadFile(bad, bad.getFileName().toString());
+        assertThrows(StandbyProtocol.Rejected.class, () -> backend.uploadFile(BackupManifest.sidecarOf(bad),
+            BackupManifest.sidecarOf(bad).getFileName().toString()));
+        assertFalse(Files.exists(received.resolve("backup_bad.zip")));
+        assertFalse(Files.exists(BackupManifest.sidecarOf(received.resolve("backup_bad.zip"))));
+        assertEquals(2, backend.list().size());
+    }
+
+    private Path writeBackup(String name, byte[] level, long manifestSize) throws IOException {
+        Path archive = local.resolve(name);
+        try (OutputStream file = Files.newOutputStream(archive); ZipOutputStream zip = new ZipOutputStream(file)) {
+            zip.putNextEntry(new ZipEntry("level.dat"));
+            zip.write(level);
+            zip.closeEntry();
+        }
+        BackupManifest manifest = new BackupManifest(name, 1, "FULL", "default", "default", null, 6);
+        manifest.addEntry(new BackupManifest.Entry("level.dat", manifestSize, 1, crc(level), true));
+        manifest.write(archive);
+        return archive;
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket("127.0.0.1", server.getPort());
+        socket.setSoTimeout(10_000);
+        return socket;
+    }
+
+    private static void handshake(DataOutputStream out, DataInputStream in) throws IOException {
+        out.writeInt(StandbyProtocol.MAGIC);
+        out.writeUTF(TOKEN);
+        out.flush();
+        StandbyProtocol.expectOk(in);
+    }
+
+    private static DataOutputStream output(Socket socket) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    private static DataInputStream input(Socket socket) throws IOException {
+        return new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    }
+
+    private static byte[] random(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static long crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,275 @@
+package top.cacl2.tools;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import top.cacl2.backup.BackupJobQueue;
+import top.cacl2.backup.BackupManager;
+import top.cacl2.backup.CompressionUtil;
+import top.cacl2.backup.RestoreManager;
+import top.cacl2.config.BackupConfig;
+import top.cacl2.config.BackupProfile;
+import top.cacl2.metrics.BackupMetrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+public class BackupDriver {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private final Path gameDir;
+    private final Path worldDir;
+    private final BackupConfig config;
+    private final JsonObject report = new JsonObject();
+    private final JsonArray steps = new JsonArray();
+    private BackupManager backupManager;
+
+    public BackupDriver(Path gameDir, BackupConfig config) {
+        this.gameDir = gameDir;
+        this.worldDir = gameDir.resolve("world");
+        this.config = config;
+        report.add("steps", steps);
+    }
+
+    public JsonObject run(SyntheticWorldGenerator generator, long worldBytes, int players, int cycles, double churn)
+            throws IOException {
+        long start = System.nanoTime();
+        SyntheticWorldGenerator.Summary generated = generator.generate(worldDir, worldBytes, players);
+        JsonObject world = new JsonObject();
+        world.addProperty("files", generated.getFiles());
+        world.addProperty("bytes", generated.getBytes());
+        world.addProperty("regions", generated.getRegions());
+        world.addProperty("chunks", generated.getChunks());
+        world.addProperty("generateMillis", (System.nanoTime() - start) / 1_000_000.0);
+        report.add("world", world);
+
+        backupManager = new BackupManager(gameDir, config);
+        try {
+            String latest = backup("full", BackupProfile.Scope.FULL);
+            for (int cycle = 1; cycle <= cycles; cycle++) {
+                long mutateStart = System.nanoTime();
+                SyntheticWorldGenerator.Summary mutated = generator.mutate(worldDir, churn, cycle);
+                System.out.printf("Cycle %d: rewrote %d files (%.1f MB) in %.0f ms%n", cycle, mutated.getFiles(),
+                    mutated.getBytes() / (1024.0 * 1024), (System.nanoTime() - mutateStart) / 1_000_000.0);
+                latest = backup("incremental-" + cycle, BackupProfile.Scope.INCREMENTAL);
+            }
+            restore(latest);
+            cleanup();
+        } finally {
+            backupManager.shutdown();
+        }
+        report.addProperty("totalMillis", (System.nanoTime() - start) / 1_000_000.0);
+        return report;
+    }
+
+    private String backup(String label, BackupProfile.Scope scope) {
+        BackupProfile profile = new BackupProfile(label, scope, "deflate", -1, 0, BackupProfile.DEFAULT_TIER);
+        long start = System.nanoTime();
+        BackupManager.BackupResult result = backupManager
+            .submitBackup(BackupJobQueue.JobType.MANUAL, label, profile, null).getFuture().join();
+        if (!result.isSuccess()) {
+            throw new IllegalStateException("Backup " + label + " failed: " + result.getMessage());
+        }
+        JsonObject step = step(label, "backup", start, BackupMetrics.Operation.BACKUP);
+        try {
+            step.addProperty("archiveBytes", Files.size(result.getBackupFile()));
+        } catch (IOException e) {
+            step.addProperty("archiveBytes", -1);
+        }
+        return result.getBackupFile().getFileName().toString();
+    }
+
+    private void restore(String backupName) throws IOException {
+        Map<String, String> expected = snapshot(worldDir);
+        RestoreManager restoreManager = new RestoreManager(backupManager, gameDir);
+
+        long start = System.nanoTime();
+        RestoreManager.RestoreResult result = restoreManager.restoreBackup(null, config, backupName).join();
+        if (!result.isSuccess()) {
+            throw new IllegalStateException("Restore failed: " + result.getMessage());
+        }
+        step("restore", "restore", start, BackupMetrics.Operation.RESTORE);
+
+        start = System.nanoTime();
+        restoreManager.executePendingRestore();
+        step("swap", "swap", start, BackupMetrics.Operation.SWAP);
+
+        Map<String, String> actual = snapshot(worldDir);
+        List<String> mismatches = new ArrayList<>();
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            String found = actual.remove(entry.getKey());
+            if (!entry.getValue().equals(found)) {
+                mismatches.add(entry.getKey() + (found == null ? " missing" : " differs"));
+            }
+        }
+        for (String extra : actual.keySet()) {
+            mismatches.add(extra + " unexpected");
+        }
+        report.addProperty("verifiedFiles", expected.size());
+        if (!mismatches.isEmpty()) {
+            throw new VerificationException(mismatches);
+        }
+    }
+
+    private void cleanup() {
+        config.setMaxBackups(1);
+        long start = System.nanoTime();
+        int deleted = backupManager.submitCleanup().getFuture().join();
+        step("cleanup", "cleanup", start, BackupMetrics.Operation.CLEANUP).addProperty("deleted", deleted);
+    }
+
+    private JsonObject step(String name, String kind, long startNanos, BackupMetrics.Operation operation) {
+        double millis = (System.nanoTime() - startNanos) / 1_000_000.0;
+        JsonObject step = new JsonObject();
+        step.addProperty("name", name);
+        step.addProperty("kind", kind);
+        step.addProperty("millis", millis);
+        BackupMetrics.RunRecord run = backupManager.getMetrics().getLastRun(operation);
+        if (run != null) {
+            step.addProperty("bytes", run.getBytes());
+            step.addProperty("files", run.getFiles());
+            step.addProperty("utilization", run.getUtilization());
+            step.add("wallMillis", GSON.toJsonTree(run.getWallMillis()));
+            step.add("cpuMillis", GSON.toJsonTree(run.getCpuMillis()));
+        }
+        steps.add(step);
+        System.out.printf("%-16s %10.0f ms%s%n", name, millis,
+            run != null ? "  " + BackupManager.formatSize(run.getBytes()) + " " + run.getWallMillis() : "");
+        return step;
+    }
+
+    private static Map<String, String> snapshot(Path dir) throws IOException {
+        Map<String, String> files = new TreeMap<>();
+        byte[] buffer = new byte[64 * 1024];
+        for (Path file : CompressionUtil.listFiles(dir)) {
+            CRC32 crc = new CRC32();
+            try (InputStream in = Files.newInputStream(file)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    crc.update(buffer, 0, read);
+                }
+            }
+            files.put(dir.relativize(file).toString().replace('\\', '/'), Files.size(file) + ":" + Long.toHexString(crc.getValue()));
+        }
+        return files;
+    }
+
+    static List<String> compare(JsonObject baseline, JsonObject current, double tolerance, double minMillis) {
+        Map<String, Double> before = timings(baseline);
+        Map<String, Double> after = timings(current);
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, Double> entry : after.entrySet()) {
+            Double previous = before.get(entry.getKey());
+            if (previous != null && previous >= minMillis && entry.getValue() > previous * (1 + tolerance)) {
+                regressions.add(String.format("%s: %.0f ms -> %.0f ms (+%.0f%%)", entry.getKey(), previous,
+                    entry.getValue(), (entry.getValue() / previous - 1) * 100));
+            }
+        }
+        return regressions;
+    }
+
+    private static Map<String, Double> timings(JsonObject report) {
+        Map<String, Double> timings = new TreeMap<>();
+        for (JsonElement element : report.getAsJsonArray("steps")) {
+            JsonObject step = element.getAsJsonObject();
+            String name = step.get("kind").getAsString();
+            timings.merge(name, step.get("millis").getAsDouble(), Double::sum);
+            if (step.has("wallMillis")) {
+                for (Map.Entry<String, JsonElement> phase : step.getAsJsonObject("wallMillis").entrySet()) {
+                    timings.merge(name + "/" + phase.getKey(), phase.getValue().getAsDouble(), Double::sum);
+                }
+            }
+        }
+        return timings;
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> stream = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) stream.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        ToolArgs options = new ToolArgs(args);
+        Path gameDir = Paths.get(options.get("work", "build/macro-benchmark")).toAbsolutePath();
+        Path output = Paths.get(options.get("output", "build/reports/macro-benchmark.json"));
+        deleteRecursively(gameDir);
+        Files.createDirectories(gameDir);
+
+        BackupConfig config = new BackupConfig();
+        config.setCompressionLevel(options.getInt("level", config.getCompressionLevel()));
+        config.setCompressionThreads(options.getInt("threads", config.getCompressionThreads()));
+        config.setSpaceCheckEnabled(false);
+        config.setJmxEnabled(false);
+        config.setAutoRestartAfterRestore(false);
+        config.setMaxBackups(100);
+
+        SyntheticWorldGenerator generator = new SyntheticWorldGenerator(options.getLong("seed", 1),
+            Runtime.getRuntime().availableProcessors());
+        BackupDriver driver = new BackupDriver(gameDir, config);
+        JsonObject report;
+        try {
+            report = driver.run(generator, options.getLong("size-mb", 512) * 1024 * 1024, options.getInt("players", 500),
+                options.getInt("cycles", 3), options.getDouble("churn", 0.05));
+        } catch (VerificationException e) {
+            System.err.println("Restored world does not match the source world:");
+            e.mismatches.stream().limit(20).forEach(m -> System.err.println("  " + m));
+            System.exit(2);
+            return;
+        }
+
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            GSON.toJson(report, writer);
+        }
+        System.out.println("Report written to " + output);
+        if (!options.has("keep")) {
+            deleteRecursively(gameDir);
+        }
+
+        if (options.has("baseline")) {
+            JsonObject baseline;
+            try (Reader reader = Files.newBufferedReader(Paths.get(options.get("baseline", "")), StandardCharsets.UTF_8)) {
+                baseline = JsonParser.parseReader(reader).getAsJsonObject();
+            }
+            List<String> regressions = compare(baseline, report, options.getDouble("tolerance", 0.2),
+                options.getDouble("min-millis", 100));
+            if (!regressions.isEmpty()) {
+                System.err.println("Regressions against baseline:");
+                regressions.forEach(r -> System.err.println("  " + r));
+                System.exit(3);
+            }
+            System.out.println("No regressions against baseline");
+        }
+    }
+
+    private static class VerificationException extends RuntimeException {
+        private final List<String> mismatches;
+
+        VerificationException(List<String> mismatches) {
+            super(mismatches.size() + " files differ after restore");
+            this.mismatches = mismatches;
+        }
+    }
+}
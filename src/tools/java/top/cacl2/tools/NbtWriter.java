@@ -0,0 +1,135 @@
+package top.cacl2.tools;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+final class NbtWriter {
+    static final byte END = 0;
+    static final byte BYTE = 1;
+    static final byte SHORT = 2;
+    static final byte INT = 3;
+    static final byte LONG = 4;
+    static final byte FLOAT = 5;
+    static final byte DOUBLE = 6;
+    static final byte BYTE_ARRAY = 7;
+    static final byte STRING = 8;
+    static final byte LIST = 9;
+    static final byte COMPOUND = 10;
+    static final byte INT_ARRAY = 11;
+    static final byte LONG_ARRAY = 12;
+
+    private final DataOutputStream out;
+
+    NbtWriter(OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+
+    private void header(byte type, String name) throws IOException {
+        out.writeByte(type);
+        out.writeUTF(name);
+    }
+
+    NbtWriter compound(String name) throws IOException {
+        header(COMPOUND, name);
+        return this;
+    }
+
+    NbtWriter end() throws IOException {
+        out.writeByte(END);
+        return this;
+    }
+
+    NbtWriter list(String name, byte elementType, int size) throws IOException {
+        header(LIST, name);
+        out.writeByte(size == 0 ? END : elementType);
+        out.writeInt(size);
+        return this;
+    }
+
+    NbtWriter putByte(String name, int value) throws IOException {
+        header(BYTE, name);
+        out.writeByte(value);
+        return this;
+    }
+
+    NbtWriter putShort(String name, int value) throws IOException {
+        header(SHORT, name);
+        out.writeShort(value);
+        return this;
+    }
+
+    NbtWriter putInt(String name, int value) throws IOException {
+        header(INT, name);
+        out.writeInt(value);
+        return this;
+    }
+
+    NbtWriter putLong(String name, long value) throws IOException {
+        header(LONG, name);
+        out.writeLong(value);
+        return this;
+    }
+
+    NbtWriter putFloat(String name, float value) throws IOException {
+        header(FLOAT, name);
+        out.writeFloat(value);
+        return this;
+    }
+
+    NbtWriter putDouble(String name, double value) throws IOException {
+        header(DOUBLE, name);
+        out.writeDouble(value);
+        return this;
+    }
+
+    NbtWriter putString(String name, String value) throws IOException {
+        header(STRING, name);
+        out.writeUTF(value);
+        return this;
+    }
+
+    NbtWriter putByteArray(String name, byte[] value) throws IOException {
+        header(BYTE_ARRAY, name);
+        out.writeInt(value.length);
+        out.write(value);
+        return this;
+    }
+
+    NbtWriter putIntArray(String name, int[] value) throws IOException {
+        header(INT_ARRAY, name);
+        out.writeInt(value.length);
+        for (int v : value) {
+            out.writeInt(v);
+        }
+        return this;
+    }
+
+    NbtWriter putLongArray(String name, long[] value) throws IOException {
+        header(LONG_ARRAY, name);
+        out.writeInt(value.length);
+        for (long v : value) {
+            out.writeLong(v);
+        }
+        return this;
+    }
+
+    NbtWriter rawDouble(double value) throws IOException {
+        out.writeDouble(value);
+        return this;
+    }
+
+    NbtWriter rawFloat(float value) throws IOException {
+        out.writeFloat(value);
+        return this;
+    }
+
+    NbtWriter rawString(String value) throws IOException {
+        out.writeUTF(value);
+        return this;
+    }
+
+    void flush() throws IOException {
+        out.flush();
+    }
+}
@@ -0,0 +1,124 @@
+package top.cacl2.tools;
+
+import top.cacl2.backup.RegionFiles;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+final class RegionFile {
+    private static final byte COMPRESSION_ZLIB = 2;
+
+    private final byte[][] payloads = new byte[RegionFiles.CHUNKS_PER_REGION][];
+    private final int[] timestamps = new int[RegionFiles.CHUNKS_PER_REGION];
+
+    static RegionFile read(Path file) throws IOException {
+        RegionFile region = new RegionFile();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < RegionFiles.HEADER_SIZE) {
+                return region;
+            }
+            ByteBuffer header = ByteBuffer.allocate(RegionFiles.HEADER_SIZE);
+            readFully(channel, header, 0);
+            header.flip();
+            int[] locations = new int[RegionFiles.CHUNKS_PER_REGION];
+            for (int i = 0; i < locations.length; i++) {
+                locations[i] = header.getInt();
+            }
+            for (int i = 0; i < region.timestamps.length; i++) {
+                region.timestamps[i] = header.getInt();
+            }
+            for (int i = 0; i < locations.length; i++) {
+                long offset = (long) (locations[i] >>> 8) * RegionFiles.SECTOR_SIZE;
+                if (locations[i] == 0 || offset + 5 > channel.size()) {
+                    continue;
+                }
+                ByteBuffer prefix = ByteBuffer.allocate(5);
+                readFully(channel, prefix, offset);
+                prefix.flip();
+                int length = prefix.getInt();
+                if (length <= 1 || offset + 4 + length > channel.size()) {
+                    continue;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length - 1);
+                readFully(channel, payload, offset + 5);
+                region.payloads[i] = payload.array();
+            }
+        }
+        return region;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of region file");
+            }
+        }
+    }
+
+    void put(int index, byte[] payload, int timestampSeconds) {
+        payloads[index] = payload;
+        timestamps[index] = timestampSeconds;
+    }
+
+    boolean has(int index) {
+        return payloads[index] != null;
+    }
+
+    int chunkCount() {
+        int count = 0;
+        for (byte[] payload : payloads) {
+            if (payload != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    long write(Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RegionFiles.HEADER_SIZE);
+        int sector = RegionFiles.HEADER_SIZE / RegionFiles.SECTOR_SIZE;
+        int[] locations = new int[RegionFiles.CHUNKS_PER_REGION];
+        for (int i = 0; i < payloads.length; i++) {
+            if (payloads[i] != null) {
+                int sectors = sectorsFor(payloads[i].length);
+                locations[i] = sector << 8 | sectors;
+                sector += sectors;
+            }
+        }
+        for (int location : locations) {
+            header.putInt(location);
+        }
+        for (int timestamp : timestamps) {
+            header.putInt(timestamp);
+        }
+        header.flip();
+
+        Files.createDirectories(file.getParent());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(header);
+            for (byte[] payload : payloads) {
+                if (payload == null) {
+                    continue;
+                }
+                ByteBuffer chunk = ByteBuffer.allocate(sectorsFor(payload.length) * RegionFiles.SECTOR_SIZE);
+                chunk.putInt(payload.length + 1);
+                chunk.put(COMPRESSION_ZLIB);
+                chunk.put(payload);
+                chunk.clear();
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+            }
+            return channel.size();
+        }
+    }
+
+    private static int sectorsFor(int payloadLength) {
+        return (payloadLength + 5 + RegionFiles.SECTOR_SIZE - 1) / RegionFiles.SECTOR_SIZE;
+    }
+}
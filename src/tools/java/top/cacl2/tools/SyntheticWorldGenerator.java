@@ -0,0 +1,619 @@
+package top.cacl2.tools;
+
+import top.cacl2.backup.RegionFiles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class SyntheticWorldGenerator {
+    private static final int DATA_VERSION = 4671;
+    private static final int SECTIONS = 24;
+    private static final int MIN_SECTION_Y = -4;
+    private static final int SURFACE_SECTION = 8;
+    private static final String[] UNDERGROUND = {
+        "minecraft:stone", "minecraft:deepslate", "minecraft:andesite", "minecraft:diorite", "minecraft:granite",
+        "minecraft:tuff", "minecraft:gravel", "minecraft:dirt", "minecraft:cave_air", "minecraft:water",
+        "minecraft:lava", "minecraft:coal_ore", "minecraft:iron_ore", "minecraft:copper_ore", "minecraft:redstone_ore",
+        "minecraft:diamond_ore"
+    };
+    private static final String[] SURFACE = {
+        "minecraft:air", "minecraft:grass_block", "minecraft:dirt", "minecraft:stone", "minecraft:short_grass",
+        "minecraft:oak_log", "minecraft:oak_leaves", "minecraft:water", "minecraft:sand", "minecraft:poppy",
+        "minecraft:cobblestone", "minecraft:oak_planks", "minecraft:torch"
+    };
+    private static final String[] BIOMES = {
+        "minecraft:plains", "minecraft:forest", "minecraft:river", "minecraft:dripstone_caves", "minecraft:lush_caves",
+        "minecraft:birch_forest", "minecraft:taiga", "minecraft:desert"
+    };
+    private static final String[] ITEMS = {
+        "minecraft:cobblestone", "minecraft:oak_log", "minecraft:torch", "minecraft:iron_ingot", "minecraft:bread",
+        "minecraft:diamond_pickaxe", "minecraft:stone_bricks", "minecraft:redstone", "minecraft:white_wool",
+        "minecraft:ender_pearl", "minecraft:cooked_beef", "minecraft:arrow"
+    };
+    private static final String[] ENTITIES = {
+        "minecraft:cow", "minecraft:sheep", "minecraft:zombie", "minecraft:skeleton", "minecraft:item",
+        "minecraft:villager", "minecraft:chicken", "minecraft:item_frame"
+    };
+    private static final String[] POI = {
+        "minecraft:home", "minecraft:meeting", "minecraft:farmer", "minecraft:librarian", "minecraft:nether_portal"
+    };
+
+    private final long seed;
+    private final int threads;
+
+    public SyntheticWorldGenerator(long seed, int threads) {
+        this.seed = seed;
+        this.threads = Math.max(1, threads);
+    }
+
+    public Summary generate(Path worldDir, long targetBytes, int players) throws IOException {
+        Files.createDirectories(worldDir);
+        Summary summary = new Summary();
+        Random random = new Random(seed);
+        long now = System.currentTimeMillis() / 1000;
+
+        writeLevelData(worldDir, random, now, summary);
+        for (int i = 0; i < players; i++) {
+            writePlayer(worldDir, new UUID(random.nextLong(), random.nextLong()), new Random(random.nextLong()), summary);
+        }
+        writeSavedData(worldDir, Math.max(1, players / 4), random, summary);
+
+        int index = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            while (summary.bytes < targetBytes) {
+                List<Future<Summary>> batch = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    int regionIndex = index++;
+                    batch.add(executor.submit(() -> writeRegion(worldDir, regionIndex, 0, now)));
+                }
+                for (Future<Summary> future : batch) {
+                    summary.add(get(future));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return summary;
+    }
+
+    public Summary mutate(Path worldDir, double churn, long mutationSeed) throws IOException {
+        Summary summary = new Summary();
+        Random random = new Random(seed ^ mutationSeed);
+        long now = System.currentTimeMillis() / 1000;
+
+        writeLevelData(worldDir, random, now, summary);
+
+        List<Path> playerFiles = listFiles(worldDir.resolve("playerdata"), ".dat");
+        for (Path playerFile : playerFiles) {
+            if (random.nextDouble() < churn) {
+                String name = playerFile.getFileName().toString();
+                writePlayer(worldDir, UUID.fromString(name.substring(0, name.length() - 4)), new Random(random.nextLong()), summary);
+            }
+        }
+        int newPlayers = (int) Math.ceil(playerFiles.size() * churn / 10);
+        for (int i = 0; i < newPlayers; i++) {
+            writePlayer(worldDir, new UUID(random.nextLong(), random.nextLong()), new Random(random.nextLong()), summary);
+        }
+
+        List<Path> regions = new ArrayList<>();
+        for (String dimension : new String[]{"", "DIM-1", "DIM1"}) {
+            regions.addAll(listFiles(worldDir.resolve(dimension).resolve("region"), ".mca"));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Summary>> futures = new ArrayList<>();
+            for (Path region : regions) {
+                if (random.nextDouble() < churn) {
+                    long regionSeed = random.nextLong();
+                    futures.add(executor.submit(() -> rewriteChunks(region, regionSeed, now)));
+                }
+            }
+            int explored = (int) Math.ceil(regions.size() * churn / 5);
+            for (int i = 0; i < explored; i++) {
+                int regionIndex = regions.size() + i + (int) (mutationSeed & 0xFFFF) * 1000;
+                futures.add(executor.submit(() -> writeRegion(worldDir, regionIndex, mutationSeed, now)));
+            }
+            for (Future<Summary> future : futures) {
+                summary.add(get(future));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return summary;
+    }
+
+    private static Summary get(Future<Summary> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating world", e);
+        } catch (java.util.concurrent.ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static List<Path> listFiles(Path dir, String suffix) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return new ArrayList<>();
+        }
+        try (var stream = Files.list(dir)) {
+            return stream.filter(p -> p.getFileName().toString().endsWith(suffix)).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private Summary writeRegion(Path worldDir, int index, long generation, long now) throws IOException {
+        int[] position = spiral(index / 10);
+        String dimension = switch (index % 10) {
+            case 8 -> "DIM-1";
+            case 9 -> "DIM1";
+            default -> "";
+        };
+        Path dimensionDir = dimension.isEmpty() ? worldDir : worldDir.resolve(dimension);
+        String fileName = "r." + position[0] + "." + position[1] + ".mca";
+        Random random = new Random(mix(seed, index, generation));
+
+        RegionFile terrain = new RegionFile();
+        RegionFile entities = new RegionFile();
+        RegionFile poi = new RegionFile();
+        double fill = 0.4 + random.nextDouble() * 0.6;
+        for (int i = 0; i < RegionFiles.CHUNKS_PER_REGION; i++) {
+            if (random.nextDouble() >= fill) {
+                continue;
+            }
+            int chunkX = position[0] * 32 + (i & 31);
+            int chunkZ = position[1] * 32 + (i >> 5);
+            int timestamp = (int) (now - random.nextInt(30 * 24 * 3600));
+            terrain.put(i, chunkPayload(new Random(random.nextLong()), chunkX, chunkZ, timestamp), timestamp);
+            if (random.nextDouble() < 0.3) {
+                entities.put(i, entityPayload(new Random(random.nextLong()), chunkX, chunkZ), timestamp);
+            }
+            if (random.nextDouble() < 0.05) {
+                poi.put(i, poiPayload(new Random(random.nextLong()), chunkX, chunkZ), timestamp);
+            }
+        }
+
+        Summary summary = new Summary();
+        summary.addFile(terrain.write(dimensionDir.resolve("region").resolve(fileName)));
+        summary.addFile(entities.write(dimensionDir.resolve("entities").resolve(fileName)));
+        if (poi.chunkCount() > 0) {
+            summary.addFile(poi.write(dimensionDir.resolve("poi").resolve(fileName)));
+        }
+        summary.regions++;
+        summary.chunks += terrain.chunkCount();
+        return summary;
+    }
+
+    private Summary rewriteChunks(Path regionFile, long regionSeed, long now) throws IOException {
+        Random random = new Random(regionSeed);
+        RegionFile region = RegionFile.read(regionFile);
+        String[] parts = regionFile.getFileName().toString().split("\\.");
+        int regionX = Integer.parseInt(parts[1]);
+        int regionZ = Integer.parseInt(parts[2]);
+        double rewrite = 0.1 + random.nextDouble() * 0.3;
+        int rewritten = 0;
+        for (int i = 0; i < RegionFiles.CHUNKS_PER_REGION; i++) {
+            boolean present = region.has(i);
+            if ((present && random.nextDouble() < rewrite) || (!present && random.nextDouble() < 0.02)) {
+                region.put(i, chunkPayload(new Random(random.nextLong()), regionX * 32 + (i & 31), regionZ * 32 + (i >> 5), (int) now), (int) now);
+                rewritten++;
+            }
+        }
+        Summary summary = new Summary();
+        summary.addFile(region.write(regionFile));
+        summary.regions++;
+        summary.chunks += rewritten;
+        return summary;
+    }
+
+    private static int[] spiral(int n) {
+        if (n == 0) {
+            return new int[]{0, 0};
+        }
+        int ring = (int) Math.ceil((Math.sqrt(n + 1) - 1) / 2);
+        int side = ring * 2;
+        int max = (side + 1) * (side + 1) - 1;
+        int offset = max - n;
+        if (offset < side) {
+            return new int[]{ring - offset, -ring};
+        }
+        offset -= side;
+        if (offset < side) {
+            return new int[]{-ring, -ring + offset};
+        }
+        offset -= side;
+        if (offset < side) {
+            return new int[]{-ring + offset, ring};
+        }
+        offset -= side;
+        return new int[]{ring, ring - offset};
+    }
+
+    private static long mix(long seed, long a, long b) {
+        long h = seed * 0x9E3779B97F4A7C15L + a;
+        h = (h ^ (h >>> 31)) * 0xBF58476D1CE4E5B9L + b;
+        return h ^ (h >>> 29);
+    }
+
+    private static byte[] zlib(NbtBody body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * 1024);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytes, new Deflater(Deflater.DEFAULT_COMPRESSION))) {
+            NbtWriter nbt = new NbtWriter(out);
+            body.write(nbt);
+            nbt.flush();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeGzip(Path file, NbtBody body, Summary summary) throws IOException {
+        Files.createDirectories(file.getParent());
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            NbtWriter nbt = new NbtWriter(out);
+            body.write(nbt);
+            nbt.flush();
+        }
+        summary.addFile(Files.size(file));
+    }
+
+    private static byte[] chunkPayload(Random random, int chunkX, int chunkZ, long lastUpdate) throws IOException {
+        return zlib(nbt -> {
+            nbt.compound("");
+            nbt.putInt("DataVersion", DATA_VERSION);
+            nbt.putInt("xPos", chunkX);
+            nbt.putInt("yPos", MIN_SECTION_Y);
+            nbt.putInt("zPos", chunkZ);
+            nbt.putString("Status", "minecraft:full");
+            nbt.putLong("LastUpdate", lastUpdate * 20);
+            nbt.putLong("InhabitedTime", random.nextInt(200000));
+
+            nbt.list("sections", NbtWriter.COMPOUND, SECTIONS);
+            for (int s = 0; s < SECTIONS; s++) {
+                boolean air = s > SURFACE_SECTION + 1;
+                String[] palette = air ? new String[]{"minecraft:air"} : pickPalette(random, s <= SURFACE_SECTION - 2 ? UNDERGROUND : SURFACE);
+                nbt.putByte("Y", MIN_SECTION_Y + s);
+                nbt.compound("block_states");
+                nbt.list("palette", NbtWriter.COMPOUND, palette.length);
+                for (String name : palette) {
+                    nbt.putString("Name", name).end();
+                }
+                if (palette.length > 1) {
+                    nbt.putLongArray("data", packedIndices(random, palette.length, 4096, 4));
+                }
+                nbt.end();
+                nbt.compound("biomes");
+                String[] biomes = pickPalette(random, BIOMES, 1 + random.nextInt(2));
+                nbt.list("palette", NbtWriter.STRING, biomes.length);
+                for (String biome : biomes) {
+                    nbt.rawString(biome);
+                }
+                if (biomes.length > 1) {
+                    nbt.putLongArray("data", packedIndices(random, biomes.length, 64, 1));
+                }
+                nbt.end();
+                nbt.putByteArray("SkyLight", light(random, air ? 1.0 : s >= SURFACE_SECTION ? 0.6 : 0.0));
+                if (!air) {
+                    nbt.putByteArray("BlockLight", light(random, 0.05));
+                }
+                nbt.end();
+            }
+
+            nbt.compound("Heightmaps");
+            for (String heightmap : new String[]{"MOTION_BLOCKING", "MOTION_BLOCKING_NO_LEAVES", "OCEAN_FLOOR", "WORLD_SURFACE"}) {
+                nbt.putLongArray(heightmap, heightmap(random));
+            }
+            nbt.end();
+
+            int blockEntities = random.nextDouble() < 0.2 ? 1 + random.nextInt(6) : 0;
+            nbt.list("block_entities", NbtWriter.COMPOUND, blockEntities);
+            for (int i = 0; i < blockEntities; i++) {
+                nbt.putString("id", "minecraft:chest");
+                nbt.putInt("x", chunkX * 16 + random.nextInt(16));
+                nbt.putInt("y", random.nextInt(120) - 60);
+                nbt.putInt("z", chunkZ * 16 + random.nextInt(16));
+                nbt.putByte("keepPacked", 0);
+                writeItems(nbt, "Items", random, random.nextInt(27));
+                nbt.end();
+            }
+
+            nbt.compound("structures");
+            nbt.compound("starts").end();
+            nbt.compound("References").end();
+            nbt.end();
+            nbt.list("PostProcessing", NbtWriter.LIST, 0);
+            nbt.putByte("isLightOn", 1);
+            nbt.end();
+        });
+    }
+
+    private static byte[] entityPayload(Random random, int chunkX, int chunkZ) throws IOException {
+        return zlib(nbt -> {
+            nbt.compound("");
+            nbt.putInt("DataVersion", DATA_VERSION);
+            nbt.putIntArray("Position", new int[]{chunkX, chunkZ});
+            int count = 1 + random.nextInt(8);
+            nbt.list("Entities", NbtWriter.COMPOUND, count);
+            for (int i = 0; i < count; i++) {
+                nbt.putString("id", ENTITIES[random.nextInt(ENTITIES.length)]);
+                nbt.list("Pos", NbtWriter.DOUBLE, 3)
+                    .rawDouble(chunkX * 16 + random.nextDouble() * 16)
+                    .rawDouble(60 + random.nextDouble() * 20)
+                    .rawDouble(chunkZ * 16 + random.nextDouble() * 16);
+                nbt.list("Motion", NbtWriter.DOUBLE, 3).rawDouble(0).rawDouble(-0.0784).rawDouble(0);
+                nbt.list("Rotation", NbtWriter.FLOAT, 2).rawFloat(random.nextFloat() * 360).rawFloat(0);
+                nbt.putFloat("Health", 10 + random.nextInt(10));
+                nbt.putShort("Air", 300);
+                nbt.putByte("OnGround", 1);
+                nbt.putIntArray("UUID", new int[]{random.nextInt(), random.nextInt(), random.nextInt(), random.nextInt()});
+                nbt.end();
+            }
+            nbt.end();
+        });
+    }
+
+    private static byte[] poiPayload(Random random, int chunkX, int chunkZ) throws IOException {
+        return zlib(nbt -> {
+            nbt.compound("");
+            nbt.putInt("DataVersion", DATA_VERSION);
+            nbt.compound("Sections");
+            nbt.compound("4");
+            nbt.putByte("Valid", 1);
+            int count = 1 + random.nextInt(4);
+            nbt.list("Records", NbtWriter.COMPOUND, count);
+            for (int i = 0; i < count; i++) {
+                nbt.putString("type", POI[random.nextInt(POI.length)]);
+                nbt.putIntArray("pos", new int[]{chunkX * 16 + random.nextInt(16), 64 + random.nextInt(16), chunkZ * 16 + random.nextInt(16)});
+                nbt.putInt("free_tickets", random.nextInt(2));
+                nbt.end();
+            }
+            nbt.end();
+            nbt.end();
+            nbt.end();
+        });
+    }
+
+    private static void writePlayer(Path worldDir, UUID uuid, Random random, Summary summary) throws IOException {
+        Path playerFile = worldDir.resolve("playerdata").resolve(uuid + ".dat");
+        writeGzip(playerFile, nbt -> {
+            nbt.compound("");
+            nbt.putInt("DataVersion", DATA_VERSION);
+            nbt.list("Pos", NbtWriter.DOUBLE, 3)
+                .rawDouble(random.nextGaussian() * 2000).rawDouble(64 + random.nextInt(40)).rawDouble(random.nextGaussian() * 2000);
+            nbt.list("Rotation", NbtWriter.FLOAT, 2).rawFloat(random.nextFloat() * 360).rawFloat(random.nextFloat() * 90);
+            nbt.putFloat("Health", 20);
+            nbt.putInt("XpLevel", random.nextInt(60));
+            nbt.putFloat("XpP", random.nextFloat());
+            nbt.putInt("foodLevel", 20);
+            nbt.putInt("playerGameType", 0);
+            nbt.putString("Dimension", "minecraft:overworld");
+            nbt.putIntArray("UUID", new int[]{(int) (uuid.getMostSignificantBits() >> 32), (int) uuid.getMostSignificantBits(),
+                (int) (uuid.getLeastSignificantBits() >> 32), (int) uuid.getLeastSignificantBits()});
+            writeItems(nbt, "Inventory", random, random.nextInt(37));
+            writeItems(nbt, "EnderItems", random, random.nextInt(28));
+            nbt.compound("abilities");
+            nbt.putByte("flying", 0);
+            nbt.putFloat("walkSpeed", 0.1f);
+            nbt.putFloat("flySpeed", 0.05f);
+            nbt.end();
+            nbt.end();
+        }, summary);
+        Files.copy(playerFile, playerFile.resolveSibling(uuid + ".dat_old"), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        summary.addFile(Files.size(playerFile));
+
+        StringBuilder advancements = new StringBuilder("{\n");
+        int advancementCount = 5 + random.nextInt(80);
+        for (int i = 0; i < advancementCount; i++) {
+            advancements.append("  \"minecraft:story/advancement_").append(i).append("\": {\n")
+                .append("    \"criteria\": {\n      \"criterion_").append(i).append("\": \"2026-0")
+                .append(1 + random.nextInt(9)).append("-1").append(random.nextInt(10)).append(" 12:0")
+                .append(random.nextInt(10)).append(":00 +0000\"\n    },\n    \"done\": true\n  },\n");
+        }
+        advancements.append("  \"DataVersion\": ").append(DATA_VERSION).append("\n}");
+        summary.addFile(writeText(worldDir.resolve("advancements").resolve(uuid + ".json"), advancements.toString()));
+
+        StringBuilder stats = new StringBuilder("{\"stats\":{\"minecraft:custom\":{");
+        int statCount = 10 + random.nextInt(60);
+        for (int i = 0; i < statCount; i++) {
+            stats.append(i == 0 ? "" : ",").append("\"minecraft:").append(ITEMS[i % ITEMS.length]).append('_').append(i)
+                .append("\":").append(random.nextInt(1_000_000));
+        }
+        stats.append("}},\"DataVersion\":").append(DATA_VERSION).append('}');
+        summary.addFile(writeText(worldDir.resolve("stats").resolve(uuid + ".json"), stats.toString()));
+    }
+
+    private static void writeLevelData(Path worldDir, Random random, long now, Summary summary) throws IOException {
+        Path levelDat = worldDir.resolve("level.dat");
+        writeGzip(levelDat, nbt -> {
+            nbt.compound("");
+            nbt.compound("Data");
+            nbt.putInt("DataVersion", DATA_VERSION);
+            nbt.putString("LevelName", "world");
+            nbt.putLong("LastPlayed", now * 1000);
+            nbt.putLong("Time", random.nextInt(Integer.MAX_VALUE));
+            nbt.putLong("DayTime", random.nextInt(24000));
+            nbt.putInt("SpawnX", 0);
+            nbt.putInt("SpawnY", 64);
+            nbt.putInt("SpawnZ", 0);
+            nbt.compound("GameRules");
+            nbt.putString("doDaylightCycle", "true");
+            nbt.putString("keepInventory", "false");
+            nbt.end();
+            nbt.end();
+            nbt.end();
+        }, summary);
+        Files.copy(levelDat, levelDat.resolveSibling("level.dat_old"), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        summary.addFile(Files.size(levelDat));
+    }
+
+    private static void writeSavedData(Path worldDir, int maps, Random random, Summary summary) throws IOException {
+        Path data = worldDir.resolve("data");
+        for (String name : new String[]{"raids", "scoreboard", "random_sequences", "command_storage_minecraft"}) {
+            writeGzip(data.resolve(name + ".dat"), nbt -> {
+                nbt.compound("");
+                nbt.putInt("DataVersion", DATA_VERSION);
+                nbt.compound("data");
+                int entries = random.nextInt(200);
+                for (int i = 0; i < entries; i++) {
+                    nbt.putLong(name + "_" + i, random.nextLong());
+                }
+                nbt.end();
+                nbt.end();
+            }, summary);
+        }
+        for (int i = 0; i < maps; i++) {
+            byte[] colors = new byte[128 * 128];
+            byte color = (byte) random.nextInt(200);
+            for (int j = 0; j < colors.length; j++) {
+                if (random.nextInt(24) == 0) {
+                    color = (byte) random.nextInt(200);
+                }
+                colors[j] = color;
+            }
+            writeGzip(data.resolve("map_" + i + ".dat"), nbt -> {
+                nbt.compound("");
+                nbt.putInt("DataVersion", DATA_VERSION);
+                nbt.compound("data");
+                nbt.putString("dimension", "minecraft:overworld");
+                nbt.putByte("scale", random.nextInt(4));
+                nbt.putInt("xCenter", random.nextInt(10000) - 5000);
+                nbt.putInt("zCenter", random.nextInt(10000) - 5000);
+                nbt.putByteArray("colors", colors);
+                nbt.end();
+                nbt.end();
+            }, summary);
+        }
+    }
+
+    private static long writeText(Path file, String text) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return Files.size(file);
+    }
+
+    private static void writeItems(NbtWriter nbt, String name, Random random, int count) throws IOException {
+        nbt.list(name, NbtWriter.COMPOUND, count);
+        for (int i = 0; i < count; i++) {
+            nbt.putByte("Slot", i);
+            nbt.putString("id", ITEMS[random.nextInt(ITEMS.length)]);
+            nbt.putInt("count", 1 + random.nextInt(64));
+            nbt.end();
+        }
+    }
+
+    private static String[] pickPalette(Random random, String[] names) {
+        return pickPalette(random, names, 2 + random.nextInt(Math.min(names.length - 1, 10)));
+    }
+
+    private static String[] pickPalette(Random random, String[] names, int size) {
+        String[] palette = new String[size];
+        int start = random.nextInt(names.length);
+        for (int i = 0; i < size; i++) {
+            palette[i] = names[(start + i) % names.length];
+        }
+        return palette;
+    }
+
+    private static long[] packedIndices(Random random, int paletteSize, int entries, int minBits) {
+        int bits = Math.max(minBits, 32 - Integer.numberOfLeadingZeros(paletteSize - 1));
+        int perLong = 64 / bits;
+        long[] data = new long[(entries + perLong - 1) / perLong];
+        int value = 0;
+        for (int i = 0; i < entries; i++) {
+            if (random.nextInt(12) == 0) {
+                value = random.nextInt(4) == 0 ? random.nextInt(paletteSize) : 0;
+            }
+            data[i / perLong] |= (long) value << (i % perLong * bits);
+        }
+        return data;
+    }
+
+    private static long[] heightmap(Random random) {
+        long[] data = new long[37];
+        int height = 64 + 60 + random.nextInt(20);
+        for (int i = 0; i < 256; i++) {
+            if (random.nextInt(8) == 0) {
+                height = Math.max(1, Math.min(383, height + random.nextInt(5) - 2));
+            }
+            data[i / 7] |= (long) height << (i % 7 * 9);
+        }
+        return data;
+    }
+
+    private static byte[] light(Random random, double litFraction) {
+        byte[] light = new byte[2048];
+        boolean lit = random.nextDouble() < litFraction;
+        for (int i = 0; i < light.length; i++) {
+            if (random.nextInt(64) == 0) {
+                lit = random.nextDouble() < litFraction;
+            }
+            light[i] = lit ? (byte) 0xFF : (byte) (random.nextInt(16) == 0 ? random.nextInt(256) : 0);
+        }
+        return light;
+    }
+
+    public static void main(String[] args) throws Exception {
+        ToolArgs options = new ToolArgs(args);
+        Path world = Paths.get(options.get("world", "run/synthetic/world"));
+        SyntheticWorldGenerator generator = new SyntheticWorldGenerator(options.getLong("seed", 1),
+            options.getInt("threads", Runtime.getRuntime().availableProcessors()));
+
+        long start = System.nanoTime();
+        Summary summary;
+        if (options.has("churn")) {
+            summary = generator.mutate(world, options.getDouble("churn", 0.05), options.getLong("mutation", System.currentTimeMillis()));
+        } else {
+            summary = generator.generate(world, options.getLong("size-mb", 1024) * 1024 * 1024, options.getInt("players", 1000));
+        }
+        System.out.printf("%s %s: %d files, %.1f MB, %d regions, %d chunks in %ds%n",
+            options.has("churn") ? "Mutated" : "Generated", world, summary.getFiles(), summary.getBytes() / (1024.0 * 1024),
+            summary.getRegions(), summary.getChunks(), TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+    }
+
+    private interface NbtBody {
+        void write(NbtWriter nbt) throws IOException;
+    }
+
+    public static class Summary {
+        private long files;
+        private long bytes;
+        private long regions;
+        private long chunks;
+
+        private void addFile(long size) {
+            files++;
+            bytes += size;
+        }
+
+        private void add(Summary other) {
+            files += other.files;
+            bytes += other.bytes;
+            regions += other.regions;
+            chunks += other.chunks;
+        }
+
+        public long getFiles() { return files; }
+        public long getBytes() { return bytes; }
+        public long getRegions() { return regions; }
+        public long getChunks() { return chunks; }
+    }
+}